@@ -12,13 +12,12 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.ktu.timetable.admin.AdminDashboardActivity;
 import com.ktu.timetable.lecturer.LecturerDashboardActivity;
 import com.ktu.timetable.models.User;
+import com.ktu.timetable.repository.UserRepository;
 import com.ktu.timetable.student.StudentDashboardActivity;
-import com.ktu.timetable.utils.DatabaseHelper;
-import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.StartupMetrics;
 
 /**
  * Main activity that redirects to the appropriate dashboard based on user role
@@ -26,11 +25,13 @@ import com.ktu.timetable.utils.FirebaseUtil;
 public class MainActivity extends AppCompatActivity {
 
     private FirebaseAuth firebaseAuth;
-    private DatabaseHelper databaseHelper;
+    private UserRepository userRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Opened from notifications, so this can be the first screen of the process
+        StartupMetrics.trackFirstFrame(this);
         setContentView(R.layout.activity_main);
         
         // Setup toolbar
@@ -45,8 +46,8 @@ public class MainActivity extends AppCompatActivity {
         // Initialize Firebase Auth
         firebaseAuth = FirebaseAuth.getInstance();
         
-        // Initialize database helper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize user repository
+        userRepository = UserRepository.getInstance(this);
         
         // Check if user is logged in and redirect if needed
         if (firebaseAuth.getCurrentUser() != null) {
@@ -87,38 +88,18 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         
-        String userId = currentUser.getUid();
-        
-        // Try to get user from Firestore
-        FirebaseUtil.getUsersCollection().document(userId)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        DocumentSnapshot document = task.getResult();
-                        if (document != null && document.exists()) {
-                            User user = document.toObject(User.class);
-                            if (user != null) {
-                                // Save user to local database
-                                databaseHelper.saveUser(user);
-                                redirectToUserDashboard(user);
-                            } else {
-                                // Error getting user data
-                                goToLoginScreen();
-                            }
-                        } else {
-                            // User document doesn't exist
-                            goToLoginScreen();
-                        }
-                    } else {
-                        // Network error, try to get user from local database
-                        User offlineUser = databaseHelper.getUser(userId);
-                        if (offlineUser != null) {
-                            redirectToUserDashboard(offlineUser);
-                        } else {
-                            goToLoginScreen();
-                        }
-                    }
-                });
+        // Routes from the role saved on the device when there is one; the user document is
+        // refreshed in the background
+        userRepository.loadUser(this, currentUser.getUid()).observe(this, result -> {
+            User user = result.getData();
+            if (user != null) {
+                redirectToUserDashboard(user);
+            } else {
+                // User document doesn't exist, or it is not saved here and the server cannot
+                // be reached
+                goToLoginScreen();
+            }
+        });
     }
     
     /**
@@ -140,6 +121,7 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         
+        StartupMetrics.expectDashboard();
         startActivity(intent);
         finish();
     }
@@ -1,9 +1,8 @@
 package com.ktu.timetable;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.widget.ImageView;
@@ -16,31 +15,35 @@ import com.google.firebase.auth.FirebaseUser;
 import com.ktu.timetable.admin.AdminDashboardActivity;
 import com.ktu.timetable.lecturer.LecturerDashboardActivity;
 import com.ktu.timetable.models.User;
+import com.ktu.timetable.repository.UserRepository;
 import com.ktu.timetable.student.StudentDashboardActivity;
-import com.ktu.timetable.utils.DatabaseHelper;
 import com.ktu.timetable.utils.FirebaseUtil;
 import com.ktu.timetable.utils.NotificationHelper;
+import com.ktu.timetable.utils.StartupMetrics;
 
 public class SplashActivity extends AppCompatActivity {
-
-    private static final int SPLASH_TIMEOUT = 2000; // 2 seconds
     
     private FirebaseAuth firebaseAuth;
-    private DatabaseHelper databaseHelper;
+    private UserRepository userRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.trackFirstFrame(this);
         setContentView(R.layout.activity_splash);
         
         // Initialize Firebase Auth
         firebaseAuth = FirebaseAuth.getInstance();
         
-        // Initialize database helper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize user repository
+        userRepository = UserRepository.getInstance(this);
         
-        // Create notification channels
-        NotificationHelper.createNotificationChannels(this);
+        // Notification channels and Firestore are not needed to draw the splash screen
+        final Context appContext = getApplicationContext();
+        StartupMetrics.runAfterFirstFrame(() -> {
+            NotificationHelper.createNotificationChannels(appContext);
+            FirebaseUtil.getFirestore();
+        });
         
         // Get UI elements
         ImageView logoImageView = findViewById(R.id.logoImageView);
@@ -53,45 +56,29 @@ public class SplashActivity extends AppCompatActivity {
         universityNameTextView.startAnimation(fadeIn);
         mottoTextView.startAnimation(fadeIn);
         
-        // Delay and redirect
-        new Handler(Looper.getMainLooper()).postDelayed(this::checkUserAndRedirect, SPLASH_TIMEOUT);
+        checkUserAndRedirect();
     }
     
     /**
-     * Check if user is already logged in and redirect accordingly
+     * Check if user is already logged in and redirect accordingly. The role saved on the
+     * device is used when there is one, so routing does not wait for the network; the user
+     * document is refreshed in the background.
      */
     private void checkUserAndRedirect() {
         FirebaseUser currentUser = firebaseAuth.getCurrentUser();
         
         if (currentUser != null) {
             // User is logged in, check role and redirect
-            FirebaseUtil.getUsersCollection().document(currentUser.getUid())
-                    .get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        if (documentSnapshot.exists()) {
-                            User user = documentSnapshot.toObject(User.class);
-                            // Save user to local database for offline access
-                            if (user != null) {
-                                databaseHelper.saveUser(user);
-                                redirectBasedOnUserRole(user);
-                            } else {
-                                // User data error, redirect to login
-                                goToLoginScreen();
-                            }
-                        } else {
-                            // User document doesn't exist, redirect to login
-                            goToLoginScreen();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        // Network error, try to get user from local database
-                        User offlineUser = databaseHelper.getUser(currentUser.getUid());
-                        if (offlineUser != null) {
-                            redirectBasedOnUserRole(offlineUser);
-                        } else {
-                            goToLoginScreen();
-                        }
-                    });
+            userRepository.loadUser(this, currentUser.getUid()).observe(this, result -> {
+                User user = result.getData();
+                if (user != null) {
+                    redirectBasedOnUserRole(user);
+                } else {
+                    // User document doesn't exist, or it is not saved here and the server
+                    // cannot be reached
+                    goToLoginScreen();
+                }
+            });
         } else {
             // User is not logged in
             goToLoginScreen();
@@ -113,9 +100,11 @@ public class SplashActivity extends AppCompatActivity {
             intent = new Intent(SplashActivity.this, StudentDashboardActivity.class);
         } else {
             // Default or unknown role
-            intent = new Intent(SplashActivity.this, LoginActivity.class);
+            goToLoginScreen();
+            return;
         }
         
+        StartupMetrics.expectDashboard();
         startActivity(intent);
         finish();
     }
@@ -1,7 +1,9 @@
 package com.ktu.timetable.admin;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu; 
 import android.view.MenuItem;
 import android.view.View; 
@@ -9,30 +11,68 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity; 
 import androidx.appcompat.widget.Toolbar;
 
+import com.google.android.gms.tasks.Tasks;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.ktu.timetable.LoginActivity;
 import com.ktu.timetable.R;
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
 import com.ktu.timetable.models.User;
+import com.ktu.timetable.scheduler.TimetableGenerator;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.CsvImporter;
+import com.ktu.timetable.utils.DatabaseHelper;
 import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.OutboxManager;
+import com.ktu.timetable.utils.SlotReservations;
+import com.ktu.timetable.utils.StartMinuteBackfill;
+import com.ktu.timetable.utils.StartupMetrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Dashboard for admin users with options to manage timetable system
  */
 public class AdminDashboardActivity extends AppCompatActivity {
 
+    private static final String TAG = "AdminDashboardActivity";
+    private static final int REQUEST_IMPORT_CSV = 1;
+    private static final String STATE_IMPORT_TYPE = "import_type";
+
     private TextView welcomeTextView;
     private Button logoutButton;
     private FirebaseAuth firebaseAuth;
     private User currentUser;
+    
+    private AlertDialog generatorDialog;
+    private volatile TimetableGenerator generator;
+    private volatile boolean generationCancelled;
+    private Future<?> generation;
+    
+    private String importType;
+    private CsvImporter importer;
+    private AlertDialog importDialog;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.trackDashboard(this);
         setContentView(R.layout.activity_admin_dashboard);
 
         // Initialize Firebase Auth
@@ -52,8 +92,43 @@ public class AdminDashboardActivity extends AppCompatActivity {
         // Set listeners
         logoutButton.setOnClickListener(v -> logout());
 
+        if (savedInstanceState != null) {
+            importType = savedInstanceState.getString(STATE_IMPORT_TYPE);
+        }
+
         // Load user data
         loadUserData();
+
+        // Send edits left in the outbox by an earlier session
+        OutboxManager.getInstance(this).flush();
+        // Timetable entries saved before startMinute existed are missing from paged queries
+        StartMinuteBackfill.runOnce(this);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_IMPORT_TYPE, importType);
+    }
+
+    @Override
+    protected void onDestroy() {
+        // The import keeps running, but its dialog belongs to this activity
+        if (importDialog != null) {
+            importDialog.dismiss();
+            importDialog = null;
+        }
+        // A generated timetable is only saved while the admin is watching
+        cancelGeneration();
+        if (generation != null) {
+            generation.cancel(true);
+            generation = null;
+        }
+        if (generatorDialog != null) {
+            generatorDialog.dismiss();
+            generatorDialog = null;
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -153,6 +228,288 @@ public class AdminDashboardActivity extends AppCompatActivity {
         startActivity(intent);
     }
 
+    /**
+     * Handle generate timetable click
+     * @param view View that was clicked
+     */
+    public void onGenerateTimetableClick(View view) {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.generate_timetable)
+                .setMessage(R.string.generate_timetable_confirm)
+                .setPositiveButton(R.string.generate, (dialog, which) -> generateTimetable())
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Load the catalogue, run the timetable generator and save the result, all on the
+     * jobs executor. Progress is shown in a dialog that can cancel the run, and the run
+     * is cancelled when this screen is destroyed.
+     */
+    private void generateTimetable() {
+        generationCancelled = false;
+        generatorDialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.generate_timetable)
+                .setMessage(R.string.generate_timetable_loading)
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (dialog, which) -> cancelGeneration())
+                .show();
+
+        try {
+            generation = AppExecutors.getInstance().jobs().submit(this::runGenerator);
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Timetable generation not started", e);
+            finishGeneration("Error: " + e.getMessage());
+        }
+    }
+
+    private void cancelGeneration() {
+        generationCancelled = true;
+        TimetableGenerator running = generator;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Body of a generation run. Interrupted when the screen is destroyed.
+     */
+    private void runGenerator() {
+        try {
+            List<Course> courses = new ArrayList<>();
+            List<String> practicalCourseIds = new ArrayList<>();
+            for (DocumentSnapshot document : Tasks.await(FirebaseUtil.getCoursesCollection().get())) {
+                Course course = document.toObject(Course.class);
+                if (course != null) {
+                    courses.add(course);
+                    if (course.isPractical()) {
+                        practicalCourseIds.add(course.getId());
+                    }
+                }
+            }
+            List<Lecturer> lecturers = new ArrayList<>();
+            for (DocumentSnapshot document : Tasks.await(FirebaseUtil.getLecturersCollection().get())) {
+                Lecturer lecturer = document.toObject(Lecturer.class);
+                if (lecturer != null) {
+                    lecturers.add(lecturer);
+                }
+            }
+            List<Classroom> classrooms = new ArrayList<>();
+            for (DocumentSnapshot document : Tasks.await(FirebaseUtil.getClassroomsCollection().get())) {
+                Classroom classroom = document.toObject(Classroom.class);
+                if (classroom != null) {
+                    classrooms.add(classroom);
+                }
+            }
+            List<TimetableEntry> existingEntries = new ArrayList<>();
+            for (DocumentSnapshot document : Tasks.await(FirebaseUtil.getTimetableCollection().get())) {
+                TimetableEntry entry = document.toObject(TimetableEntry.class);
+                if (entry != null) {
+                    existingEntries.add(entry);
+                }
+            }
+            
+            if (generationCancelled) {
+                finishGeneration(null);
+                return;
+            }
+            generator = new TimetableGenerator(courses, lecturers, classrooms);
+            generator.setFixedEntries(existingEntries);
+            generator.setPracticalCourseIds(practicalCourseIds);
+            TimetableGenerator.Result result = generator.generate((elapsedMillis, moves, hardViolations, softPenalty) ->
+                    showGeneratorProgress(getString(R.string.generate_timetable_progress,
+                            elapsedMillis / 1000, hardViolations, softPenalty)));
+            generator = null;
+            
+            if (generationCancelled) {
+                finishGeneration(null);
+            } else if (result.getEntries().isEmpty()) {
+                finishGeneration(getString(R.string.generate_timetable_nothing));
+            } else if (!result.isClashFree()) {
+                finishGeneration(getString(R.string.generate_timetable_clashes, result.getHardViolations()));
+            } else {
+                int saved = saveGeneratedEntries(result.getEntries());
+                finishGeneration(saved == result.getEntries().size()
+                        ? getString(R.string.generate_timetable_success, saved)
+                        : getString(R.string.generate_timetable_slots_taken, saved, result.getEntries().size() - saved));
+            }
+        } catch (ExecutionException | IllegalStateException e) {
+            finishGeneration("Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            finishGeneration(null);
+        }
+    }
+
+    /**
+     * Book and write generated entries to Firestore in reservation transactions, then to the
+     * local database. Entries whose slots were booked by someone else since the timetable was
+     * loaded are left out. Must be called off the main thread.
+     * @param entries Entries to save
+     * @return Number of entries saved
+     */
+    private int saveGeneratedEntries(List<TimetableEntry> entries) throws ExecutionException, InterruptedException {
+        String userId = FirebaseUtil.getCurrentUserId();
+        List<TimetableEntry> saved = new ArrayList<>();
+        
+        for (int from = 0; from < entries.size(); from += SlotReservations.MAX_ENTRIES_PER_TRANSACTION) {
+            int to = Math.min(from + SlotReservations.MAX_ENTRIES_PER_TRANSACTION, entries.size());
+            showGeneratorProgress(getString(R.string.generate_timetable_saving, from, entries.size()));
+            
+            List<TimetableEntry> chunk = entries.subList(from, to);
+            for (TimetableEntry entry : chunk) {
+                entry.setLastModifiedBy(userId);
+            }
+            Set<String> rejected = new HashSet<>();
+            for (SlotReservations.Rejection rejection : Tasks.await(SlotReservations.scheduleAll(chunk))) {
+                Log.w(TAG, "Generated entry " + rejection.getEntry().getId() + " lost its slot to "
+                        + rejection.getHolderId());
+                rejected.add(rejection.getEntry().getId());
+            }
+            for (TimetableEntry entry : chunk) {
+                if (!rejected.contains(entry.getId())) {
+                    saved.add(entry);
+                }
+            }
+        }
+        
+        DatabaseHelper.getInstance(this).saveTimetableEntries(saved);
+        return saved.size();
+    }
+
+    private void showGeneratorProgress(String message) {
+        runOnUiThread(() -> {
+            if (generatorDialog != null) {
+                generatorDialog.setMessage(message);
+            }
+        });
+    }
+
+    /**
+     * Close the progress dialog and show the outcome
+     * @param message Message to show, or null if the run was cancelled
+     */
+    private void finishGeneration(String message) {
+        runOnUiThread(() -> {
+            if (generatorDialog != null) {
+                generatorDialog.dismiss();
+                generatorDialog = null;
+            }
+            if (message != null && !isDestroyed()) {
+                Snackbar.make(findViewById(android.R.id.content), message, Snackbar.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Handle import from CSV click
+     * @param view View that was clicked
+     */
+    public void onImportCsvClick(View view) {
+        final String[] types = {
+                CsvImporter.TYPE_COURSES,
+                CsvImporter.TYPE_LECTURERS,
+                CsvImporter.TYPE_CLASSROOMS,
+                CsvImporter.TYPE_TIMETABLE
+        };
+        String[] labels = {
+                getString(R.string.import_type_courses),
+                getString(R.string.import_type_lecturers),
+                getString(R.string.import_type_classrooms),
+                getString(R.string.import_type_timetable)
+        };
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.import_choose_type)
+                .setItems(labels, (dialog, which) -> {
+                    importType = types[which];
+                    Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                    intent.addCategory(Intent.CATEGORY_OPENABLE);
+                    intent.setType("*/*");
+                    intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{
+                            "text/csv", "text/comma-separated-values", "text/plain"});
+                    startActivityForResult(intent, REQUEST_IMPORT_CSV);
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_IMPORT_CSV && resultCode == RESULT_OK && data != null
+                && data.getData() != null && importType != null) {
+            importCsv(data.getData(), importType);
+        }
+    }
+
+    /**
+     * Import a CSV file in the background, showing progress in a dialog that can cancel it
+     * @param uri File to import
+     * @param type One of the CsvImporter.TYPE_* constants
+     */
+    private void importCsv(Uri uri, String type) {
+        importer = new CsvImporter(this);
+        importDialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.import_csv)
+                .setMessage(getString(R.string.import_progress, 0, 0))
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (dialog, which) -> importer.cancel())
+                .show();
+
+        importer.importFile(uri, type, new CsvImporter.ImportListener() {
+            @Override
+            public void onProgress(int rowsRead, int rowsAccepted) {
+                if (importDialog != null) {
+                    importDialog.setMessage(getString(R.string.import_progress, rowsRead, rowsAccepted));
+                }
+            }
+
+            @Override
+            public void onComplete(CsvImporter.ImportResult result) {
+                if (importDialog != null) {
+                    importDialog.dismiss();
+                    importDialog = null;
+                }
+                if (!isDestroyed()) {
+                    showImportResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Show how many rows were imported and why the first skipped rows were skipped
+     * @param result Outcome of the import
+     */
+    private void showImportResult(CsvImporter.ImportResult result) {
+        if (result.isCancelled()) {
+            Snackbar.make(findViewById(android.R.id.content), R.string.import_cancelled, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+
+        StringBuilder message = new StringBuilder();
+        if (result.getFailure() != null) {
+            message.append(getString(R.string.import_failed, result.getFailure()));
+        } else {
+            message.append(getString(R.string.import_success, result.getRowsImported(), result.getRowsRead()));
+        }
+        if (result.getErrorCount() > 0) {
+            message.append("\n\n").append(getString(R.string.import_skipped, result.getErrorCount()));
+            for (CsvImporter.RowError error : result.getErrors()) {
+                message.append('\n').append(getString(R.string.import_error_line, error.getLine(), error.getMessage()));
+            }
+            int hidden = result.getErrorCount() - result.getErrors().size();
+            if (hidden > 0) {
+                message.append('\n').append(getString(R.string.import_more_errors, hidden));
+            }
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.import_csv)
+                .setMessage(message)
+                .setPositiveButton(R.string.ok, null)
+                .show();
+    }
+
     /**
      * Logout the current user
      */
@@ -1,6 +1,8 @@
 package com.ktu.timetable.admin;
 
+import android.content.Intent;
 import android.os.Bundle;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ArrayAdapter;
@@ -8,6 +10,7 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -15,17 +18,22 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.tabs.TabLayout;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.ktu.timetable.R;
 import com.ktu.timetable.adapters.TimetableAdapter;
+import com.ktu.timetable.export.TimetableExporter;
 import com.ktu.timetable.models.Classroom;
 import com.ktu.timetable.models.Department;
 import com.ktu.timetable.models.Lecturer;
 import com.ktu.timetable.models.TimetableEntry;
-import com.ktu.timetable.utils.DatabaseHelper;
-import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.repository.ReferenceDataRepository;
+import com.ktu.timetable.repository.TimetablePager;
+import com.ktu.timetable.repository.TimetableRepository;
+import com.ktu.timetable.utils.ConflictIndex;
+import com.ktu.timetable.utils.TimeUtils;
+import com.ktu.timetable.utils.TimetableAudit;
+import com.ktu.timetable.utils.TimetableListDiffer;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -38,6 +46,15 @@ import java.util.Map;
  */
 public class AdminTimetableActivity extends AppCompatActivity {
 
+    // Rows left below the last visible one when the next page is requested
+    private static final int PREFETCH_DISTANCE = 10;
+    private static final int REQUEST_EXPORT = 1;
+    private static final String STATE_EXPORT_FORMAT = "export_format";
+    // Clashes listed in the audit dialog; the counts cover all of them
+    private static final int MAX_LISTED_CLASHES = 50;
+    private static final int[] DAY_NAMES = {R.string.monday, R.string.tuesday, R.string.wednesday,
+            R.string.thursday, R.string.friday, R.string.saturday, R.string.sunday};
+
     private RecyclerView timetableRecyclerView;
     private ProgressBar progressBar;
     private TextView emptyView;
@@ -45,24 +62,33 @@ public class AdminTimetableActivity extends AppCompatActivity {
     private TabLayout tabLayout;
 
     private TimetableAdapter adapter;
-    private List<TimetableEntry> allTimetableEntries;
+    private TimetableListDiffer timetableDiffer;
+    private TimetablePager pager;
+    private List<TimetableEntry> loadedEntries;
+    private boolean offlineNoticeShown;
     private List<TimetableEntry> filteredTimetableEntries;
     private List<Department> departments;
     private List<Lecturer> lecturers;
     private List<Classroom> classrooms;
     private Map<String, String> levels;
 
-    private DatabaseHelper databaseHelper;
+    private ReferenceDataRepository referenceDataRepository;
+    private TimetableRepository timetableRepository;
     private String currentFilterDepartmentId = null;
     private String currentFilterLevel = null;
     private String currentFilterLecturerId = null;
     private String currentFilterClassroomId = null;
+    private String exportFormat;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_student_timetable);
 
+        if (savedInstanceState != null) {
+            exportFormat = savedInstanceState.getString(STATE_EXPORT_FORMAT);
+        }
+
         // Setup toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -71,8 +97,9 @@ public class AdminTimetableActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        // Initialize database helper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize repositories
+        referenceDataRepository = ReferenceDataRepository.getInstance(this);
+        timetableRepository = TimetableRepository.getInstance(this);
 
         // Initialize UI elements
         timetableRecyclerView = findViewById(R.id.timetableRecyclerView);
@@ -83,10 +110,22 @@ public class AdminTimetableActivity extends AppCompatActivity {
 
         // Set up RecyclerView
         timetableRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        allTimetableEntries = new ArrayList<>();
+        loadedEntries = new ArrayList<>();
         filteredTimetableEntries = new ArrayList<>();
         adapter = new TimetableAdapter(filteredTimetableEntries);
+        timetableDiffer = new TimetableListDiffer(adapter, filteredTimetableEntries);
         timetableRecyclerView.setAdapter(adapter);
+        timetableRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // Fetch the next page before the user reaches the end of the list
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
 
         // Initialize data collections
         departments = new ArrayList<>();
@@ -108,7 +147,25 @@ public class AdminTimetableActivity extends AppCompatActivity {
         loadDepartments();
         loadLecturers();
         loadClassrooms();
-        loadAllTimetableEntries();
+
+        // Load the first page of the selected day
+        TabLayout.Tab selectedTab = tabLayout.getSelectedTab();
+        if (selectedTab != null) {
+            filterTimetableByDay(selectedTab.getPosition() + 1);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_FORMAT, exportFormat);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.timetable_menu, menu);
+        getMenuInflater().inflate(R.menu.admin_timetable_menu, menu);
+        return true;
     }
 
     @Override
@@ -117,9 +174,166 @@ public class AdminTimetableActivity extends AppCompatActivity {
             onBackPressed();
             return true;
         }
+        if (item.getItemId() == R.id.action_export) {
+            showExportDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_audit) {
+            auditTimetable();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_EXPORT || resultCode != RESULT_OK || data == null
+                || data.getData() == null || exportFormat == null) {
+            return;
+        }
+        TimetableExporter exporter = new TimetableExporter(this);
+        TimetableExporter.EntrySource source = exportSource(exporter);
+        if (source == null) {
+            return;
+        }
+        exporter.export(data.getData(), exportFormat, exportTitle(), source, new TimetableExporter.ExportCallback() {
+            @Override
+            public void onExported(int entryCount) {
+                Snackbar.make(findViewById(android.R.id.content),
+                        getString(R.string.export_success, entryCount), Snackbar.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onExportFailed(Exception e) {
+                Snackbar.make(findViewById(android.R.id.content), exporter.failureMessage(e), Snackbar.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Check the whole timetable for clashes and show them with a count per department
+     */
+    private void auditTimetable() {
+        Snackbar.make(findViewById(android.R.id.content), R.string.audit_running, Snackbar.LENGTH_SHORT).show();
+        timetableRepository.auditTimetable(this).observe(this, result -> showAuditReport(result.getData()));
+    }
+
+    private void showAuditReport(TimetableAudit.Report report) {
+        List<TimetableAudit.Clash> clashes = report.getClashes();
+        StringBuilder message = new StringBuilder();
+        if (clashes.isEmpty()) {
+            message.append(getString(R.string.audit_no_clashes));
+        } else {
+            message.append(getString(R.string.audit_summary, report.getHardClashCount(),
+                    report.getClashCount(ConflictIndex.CONFLICT_LECTURER),
+                    report.getClashCount(ConflictIndex.CONFLICT_CLASSROOM),
+                    report.getClashCount(ConflictIndex.CONFLICT_COHORT)));
+            if (report.getSoftClashCount() > 0) {
+                message.append("\n").append(getString(R.string.audit_soft_summary, report.getSoftClashCount()));
+            }
+
+            if (!report.getClashCountsByDepartment().isEmpty()) {
+                message.append("\n\n").append(getString(R.string.audit_by_department));
+                for (Map.Entry<String, Integer> count : report.getClashCountsByDepartment().entrySet()) {
+                    message.append("\n").append(getString(R.string.audit_department_count,
+                            departmentName(count.getKey()), count.getValue()));
+                }
+            }
+
+            message.append("\n");
+            for (int i = 0; i < clashes.size() && i < MAX_LISTED_CLASHES; i++) {
+                TimetableAudit.Clash clash = clashes.get(i);
+                int format = clash.isSoft() ? R.string.audit_soft_clash : R.string.audit_clash;
+                message.append("\n").append(getString(format,
+                        clash.getType(),
+                        getString(DAY_NAMES[clash.getFirst().getDayOfWeek() - 1]),
+                        TimeUtils.formatMinuteOfDay(TimeUtils.minuteOfDay(clash.getSecond().getStartTime())),
+                        clash.getFirst().getCourseCode() + " - " + clash.getFirst().getType(),
+                        clash.getSecond().getCourseCode() + " - " + clash.getSecond().getType()));
+            }
+            if (clashes.size() > MAX_LISTED_CLASHES) {
+                message.append("\n").append(getString(R.string.audit_more_clashes,
+                        clashes.size() - MAX_LISTED_CLASHES));
+            }
+        }
+
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.audit_timetable)
+                .setMessage(message.toString())
+                .setPositiveButton(R.string.ok, null)
+                .show();
+    }
+
+    private String departmentName(String departmentId) {
+        for (Department department : departments) {
+            if (departmentId.equals(department.getId())) {
+                return department.getName();
+            }
+        }
+        return departmentId;
+    }
+
+    /**
+     * Let the admin pick a format and a file to export the filtered timetable to. A sheet
+     * covers the whole week of one classroom, one lecturer or one class.
+     */
+    private void showExportDialog() {
+        if (exportSource(new TimetableExporter(this)) == null) {
+            Snackbar.make(findViewById(android.R.id.content), R.string.export_choose_filter, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.export_timetable)
+                .setItems(R.array.export_formats, (dialog, which) -> {
+                    exportFormat = TimetableExporter.FORMATS[which];
+                    startActivityForResult(TimetableExporter.createDocumentIntent(exportFormat, exportTitle()),
+                            REQUEST_EXPORT);
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * @return Entries matching the current filter, or null if it does not pick out one
+     * classroom, lecturer or class
+     */
+    private TimetableExporter.EntrySource exportSource(TimetableExporter exporter) {
+        if (currentFilterClassroomId != null) {
+            return exporter.byClassroom(currentFilterClassroomId);
+        }
+        if (currentFilterLecturerId != null) {
+            return exporter.byLecturer(currentFilterLecturerId);
+        }
+        if (currentFilterDepartmentId != null && currentFilterLevel != null) {
+            return exporter.byDepartmentAndLevel(currentFilterDepartmentId, currentFilterLevel);
+        }
+        return null;
+    }
+
+    private String exportTitle() {
+        if (currentFilterClassroomId != null) {
+            for (Classroom classroom : classrooms) {
+                if (currentFilterClassroomId.equals(classroom.getId())) {
+                    return classroom.getFullName() + " Timetable";
+                }
+            }
+        } else if (currentFilterLecturerId != null) {
+            for (Lecturer lecturer : lecturers) {
+                if (currentFilterLecturerId.equals(lecturer.getId())) {
+                    return lecturer.getFullName() + " Timetable";
+                }
+            }
+        } else if (currentFilterDepartmentId != null) {
+            for (Department department : departments) {
+                if (currentFilterDepartmentId.equals(department.getId())) {
+                    return department.getName() + " Level " + currentFilterLevel + " Timetable";
+                }
+            }
+        }
+        return "Timetable";
+    }
+
     /**
      * Set up tabs for days of the week
      */
@@ -161,150 +375,73 @@ public class AdminTimetableActivity extends AppCompatActivity {
     }
 
     /**
-     * Load all departments from Firestore
+     * Observe all departments from the shared reference data cache
      */
     private void loadDepartments() {
-        FirebaseUtil.getDepartmentsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    departments.clear();
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Department department = documentSnapshot.toObject(Department.class);
-                        if (department != null) {
-                            departments.add(department);
-                            databaseHelper.saveDepartment(department);
-                        }
-                    }
-                    databaseHelper.updateSyncTime(FirebaseUtil.DEPARTMENTS_COLLECTION);
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    departments.addAll(databaseHelper.getAllDepartments());
-                });
+        referenceDataRepository.getDepartments().observe(this, result -> {
+            departments.clear();
+            departments.addAll(result.getData());
+        });
     }
 
     /**
-     * Load all lecturers from Firestore
+     * Observe all lecturers from the shared reference data cache
      */
     private void loadLecturers() {
-        FirebaseUtil.getLecturersCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    lecturers.clear();
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Lecturer lecturer = documentSnapshot.toObject(Lecturer.class);
-                        if (lecturer != null) {
-                            lecturers.add(lecturer);
-                            databaseHelper.saveLecturer(lecturer);
-                        }
-                    }
-                    databaseHelper.updateSyncTime(FirebaseUtil.LECTURERS_COLLECTION);
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    lecturers.addAll(databaseHelper.getAllLecturers());
-                });
+        referenceDataRepository.getLecturers().observe(this, result -> {
+            lecturers.clear();
+            lecturers.addAll(result.getData());
+        });
     }
 
     /**
-     * Load all classrooms from Firestore
+     * Observe all classrooms from the shared reference data cache
      */
     private void loadClassrooms() {
-        FirebaseUtil.getClassroomsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    classrooms.clear();
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Classroom classroom = documentSnapshot.toObject(Classroom.class);
-                        if (classroom != null) {
-                            classrooms.add(classroom);
-                            databaseHelper.saveClassroom(classroom);
-                        }
-                    }
-                    databaseHelper.updateSyncTime(FirebaseUtil.CLASSROOMS_COLLECTION);
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    classrooms.addAll(databaseHelper.getAllClassrooms());
-                });
+        referenceDataRepository.getClassrooms().observe(this, result -> {
+            classrooms.clear();
+            classrooms.addAll(result.getData());
+        });
     }
 
     /**
-     * Load all timetable entries from Firestore
+     * Start browsing the timetable of a day from its first page, with the current filters
+     * @param dayOfWeek Day of week (1 = Monday, 2 = Tuesday, etc.)
      */
-    private void loadAllTimetableEntries() {
+    private void filterTimetableByDay(int dayOfWeek) {
+        // Filters are applied by the query; earlier pages no longer apply
+        pager = timetableRepository.openTimetablePager(currentFilterDepartmentId, currentFilterLevel,
+                currentFilterLecturerId, currentFilterClassroomId, dayOfWeek);
+        loadedEntries.clear();
+        offlineNoticeShown = false;
+        timetableDiffer.submit(loadedEntries, null);
+
         progressBar.setVisibility(View.VISIBLE);
         emptyView.setVisibility(View.GONE);
-
-        FirebaseUtil.getTimetableCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    allTimetableEntries.clear();
-                    for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        TimetableEntry entry = documentSnapshot.toObject(TimetableEntry.class);
-                        allTimetableEntries.add(entry);
-                        databaseHelper.saveTimetableEntry(entry);
-                    }
-                    
-                    databaseHelper.updateSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
-                    
-                    // Filter timetable by the current day tab
-                    TabLayout.Tab selectedTab = tabLayout.getSelectedTab();
-                    if (selectedTab != null) {
-                        filterTimetableByDay(selectedTab.getPosition() + 1);
-                    }
-                    
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    allTimetableEntries.addAll(databaseHelper.getAllTimetableEntries());
-                    
-                    // Filter timetable by the current day tab
-                    TabLayout.Tab selectedTab = tabLayout.getSelectedTab();
-                    if (selectedTab != null) {
-                        filterTimetableByDay(selectedTab.getPosition() + 1);
-                    }
-                    
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                });
+        loadNextPage();
     }
 
     /**
-     * Filter timetable by day of week
-     * @param dayOfWeek Day of week (1 = Monday, 2 = Tuesday, etc.)
+     * Load the next page of the current day, if there is one
      */
-    private void filterTimetableByDay(int dayOfWeek) {
-        filteredTimetableEntries.clear();
-        
-        for (TimetableEntry entry : allTimetableEntries) {
-            if (entry.getDayOfWeek() == dayOfWeek) {
-                // Apply other filters if set
-                boolean matchesDepartment = currentFilterDepartmentId == null || 
-                        currentFilterDepartmentId.equals(entry.getDepartmentId());
-                boolean matchesLevel = currentFilterLevel == null || 
-                        currentFilterLevel.equals(entry.getLevel());
-                boolean matchesLecturer = currentFilterLecturerId == null || 
-                        currentFilterLecturerId.equals(entry.getLecturerId());
-                boolean matchesClassroom = currentFilterClassroomId == null || 
-                        currentFilterClassroomId.equals(entry.getClassroomId());
-                
-                if (matchesDepartment && matchesLevel && matchesLecturer && matchesClassroom) {
-                    filteredTimetableEntries.add(entry);
-                }
-            }
+    private void loadNextPage() {
+        if (pager == null || !pager.canLoadMore()) {
+            return;
         }
+        final TimetablePager requestPager = pager;
+        requestPager.loadNextPage(this).observe(this, result -> {
+            if (requestPager != pager) {
+                return;
+            }
+            loadedEntries.addAll(result.getData());
+            progressBar.setVisibility(View.GONE);
+            timetableDiffer.submit(loadedEntries, this::updateEmptyView);
 
-        // Sort entries by start time
-        filteredTimetableEntries.sort((o1, o2) -> {
-            if (o1.getStartTime() == null || o2.getStartTime() == null) return 0;
-            return o1.getStartTime().compareTo(o2.getStartTime());
+            if (result.isOffline() && !offlineNoticeShown) {
+                offlineNoticeShown = true;
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
         });
-        
-        adapter.notifyDataSetChanged();
-        updateEmptyView();
     }
 
     /**
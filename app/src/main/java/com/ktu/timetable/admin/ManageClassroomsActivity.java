@@ -24,12 +24,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.ktu.timetable.R;
 import com.ktu.timetable.adapters.ClassroomAdapter;
 import com.ktu.timetable.models.Classroom;
-import com.ktu.timetable.utils.DatabaseHelper;
-import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.repository.CatalogueSearch;
+import com.ktu.timetable.repository.ReferenceDataRepository;
+import com.ktu.timetable.utils.OutboxManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -47,7 +47,9 @@ public class ManageClassroomsActivity extends AppCompatActivity implements Class
     private List<Classroom> allClassrooms;
     private List<Classroom> filteredClassrooms;
     
-    private DatabaseHelper databaseHelper;
+    private OutboxManager outboxManager;
+    private ReferenceDataRepository referenceDataRepository;
+    private CatalogueSearch<Classroom> classroomSearch;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -62,8 +64,10 @@ public class ManageClassroomsActivity extends AppCompatActivity implements Class
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        // Initialize DatabaseHelper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize outbox and repository
+        outboxManager = OutboxManager.getInstance(this);
+        referenceDataRepository = ReferenceDataRepository.getInstance(this);
+        classroomSearch = referenceDataRepository.searchClassrooms(this, (query, results) -> showClassrooms(results));
 
         // Initialize UI components
         classroomsRecyclerView = findViewById(R.id.classroomsRecyclerView);
@@ -117,61 +121,33 @@ public class ManageClassroomsActivity extends AppCompatActivity implements Class
     private void loadClassrooms() {
         progressBar.setVisibility(View.VISIBLE);
 
-        FirebaseUtil.getClassroomsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    allClassrooms.clear();
-                    filteredClassrooms.clear();
-
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Classroom classroom = documentSnapshot.toObject(Classroom.class);
-                        if (classroom != null) {
-                            allClassrooms.add(classroom);
-                            filteredClassrooms.add(classroom);
-                            
-                            // Save to local database
-                            databaseHelper.saveClassroom(classroom);
-                        }
-                    }
+        referenceDataRepository.getClassrooms().observe(this, result -> {
+            allClassrooms.clear();
+            allClassrooms.addAll(result.getData());
 
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.CLASSROOMS_COLLECTION);
-                    
-                    // Update UI
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    allClassrooms.addAll(databaseHelper.getAllClassrooms());
-                    filteredClassrooms.addAll(allClassrooms);
-                    
-                    // Update UI
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                    
-                    Snackbar.make(classroomsRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+            // Update UI, keeping any search that was typed while loading
+            progressBar.setVisibility(View.GONE);
+            filterClassrooms(searchEditText.getText().toString());
+
+            if (result.isOffline()) {
+                Snackbar.make(classroomsRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void filterClassrooms(String query) {
-        filteredClassrooms.clear();
-        
-        if (query.isEmpty()) {
-            filteredClassrooms.addAll(allClassrooms);
+        if (query.trim().isEmpty()) {
+            classroomSearch.cancel();
+            showClassrooms(allClassrooms);
         } else {
-            query = query.toLowerCase();
-            for (Classroom classroom : allClassrooms) {
-                if (classroom.getName().toLowerCase().contains(query) ||
-                    (classroom.getBuildingName() != null && classroom.getBuildingName().toLowerCase().contains(query)) ||
-                    (classroom.getRoomNumber() != null && classroom.getRoomNumber().toLowerCase().contains(query))) {
-                    filteredClassrooms.add(classroom);
-                }
-            }
+            // Searched in the local database once typing pauses
+            classroomSearch.search(query);
         }
-        
+    }
+
+    private void showClassrooms(List<Classroom> classrooms) {
+        filteredClassrooms.clear();
+        filteredClassrooms.addAll(classrooms);
         adapter.notifyDataSetChanged();
         updateEmptyView();
     }
@@ -310,36 +286,39 @@ public class ManageClassroomsActivity extends AppCompatActivity implements Class
             // Show progress indicator
             progressBar.setVisibility(View.VISIBLE);
             
-            // Save to Firestore
-            FirebaseUtil.getClassroomsCollection().document(classroomToSave.getId())
-                    .set(classroomToSave)
-                    .addOnSuccessListener(aVoid -> {
-                        // Save to local database
-                        databaseHelper.saveClassroom(classroomToSave);
-                        
-                        if (classroom == null) {
-                            // New classroom
-                            allClassrooms.add(classroomToSave);
-                            filteredClassrooms.add(classroomToSave);
-                            adapter.notifyItemInserted(filteredClassrooms.indexOf(classroomToSave));
-                            Snackbar.make(classroomsRecyclerView, R.string.add_success, Snackbar.LENGTH_SHORT).show();
-                        } else {
-                            // Update existing classroom
-                            int position = filteredClassrooms.indexOf(classroom);
-                            if (position != -1) {
-                                adapter.notifyItemChanged(position);
-                            }
-                            Snackbar.make(classroomsRecyclerView, R.string.update_success, Snackbar.LENGTH_SHORT).show();
-                        }
-                        
-                        updateEmptyView();
-                        progressBar.setVisibility(View.GONE);
-                        dialog.dismiss();
-                    })
-                    .addOnFailureListener(e -> {
-                        progressBar.setVisibility(View.GONE);
-                        Snackbar.make(classroomsRecyclerView, "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
-                    });
+            // Save locally and queue the write to Firestore
+            outboxManager.saveClassroom(classroomToSave, (success, entriesRenamed) -> {
+                if (!success) {
+                    progressBar.setVisibility(View.GONE);
+                    Snackbar.make(classroomsRecyclerView, R.string.save_error, Snackbar.LENGTH_LONG).show();
+                    return;
+                }
+                
+                if (classroom == null) {
+                    // New classroom
+                    allClassrooms.add(classroomToSave);
+                    filteredClassrooms.add(classroomToSave);
+                    adapter.notifyItemInserted(filteredClassrooms.indexOf(classroomToSave));
+                    Snackbar.make(classroomsRecyclerView, R.string.add_success, Snackbar.LENGTH_SHORT).show();
+                } else {
+                    // Update existing classroom
+                    int position = filteredClassrooms.indexOf(classroom);
+                    if (position != -1) {
+                        adapter.notifyItemChanged(position);
+                    }
+                    if (entriesRenamed > 0) {
+                        // Timetable classes showing the old name were updated with it
+                        Snackbar.make(classroomsRecyclerView, getString(R.string.update_success_renamed, entriesRenamed),
+                                Snackbar.LENGTH_LONG).show();
+                    } else {
+                        Snackbar.make(classroomsRecyclerView, R.string.update_success, Snackbar.LENGTH_SHORT).show();
+                    }
+                }
+                
+                updateEmptyView();
+                progressBar.setVisibility(View.GONE);
+                dialog.dismiss();
+            });
         });
 
         dialog.show();
@@ -352,25 +331,26 @@ public class ManageClassroomsActivity extends AppCompatActivity implements Class
                 .setPositiveButton("Delete", (dialog, which) -> {
                     progressBar.setVisibility(View.VISIBLE);
                     
-                    FirebaseUtil.getClassroomsCollection().document(classroom.getId())
-                            .delete()
-                            .addOnSuccessListener(aVoid -> {
-                                // Remove from local database and lists
-                                allClassrooms.remove(classroom);
-                                int position = filteredClassrooms.indexOf(classroom);
-                                if (position != -1) {
-                                    filteredClassrooms.remove(position);
-                                    adapter.notifyItemRemoved(position);
-                                }
-                                
-                                updateEmptyView();
-                                progressBar.setVisibility(View.GONE);
-                                Snackbar.make(classroomsRecyclerView, R.string.delete_success, Snackbar.LENGTH_SHORT).show();
-                            })
-                            .addOnFailureListener(e -> {
-                                progressBar.setVisibility(View.GONE);
-                                Snackbar.make(classroomsRecyclerView, "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
-                            });
+                    // Delete locally and queue the deletion for Firestore
+                    outboxManager.deleteClassroom(classroom.getId(), success -> {
+                        if (!success) {
+                            progressBar.setVisibility(View.GONE);
+                            Snackbar.make(classroomsRecyclerView, R.string.save_error, Snackbar.LENGTH_LONG).show();
+                            return;
+                        }
+                        
+                        // Remove from lists
+                        allClassrooms.remove(classroom);
+                        int position = filteredClassrooms.indexOf(classroom);
+                        if (position != -1) {
+                            filteredClassrooms.remove(position);
+                            adapter.notifyItemRemoved(position);
+                        }
+                        
+                        updateEmptyView();
+                        progressBar.setVisibility(View.GONE);
+                        Snackbar.make(classroomsRecyclerView, R.string.delete_success, Snackbar.LENGTH_SHORT).show();
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
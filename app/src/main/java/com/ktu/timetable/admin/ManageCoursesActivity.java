@@ -25,15 +25,14 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.ktu.timetable.R;
 import com.ktu.timetable.adapters.CourseAdapter;
 import com.ktu.timetable.models.Course;
 import com.ktu.timetable.models.Department;
-import com.ktu.timetable.utils.DatabaseHelper;
-import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.repository.CatalogueSearch;
+import com.ktu.timetable.repository.ReferenceDataRepository;
+import com.ktu.timetable.utils.OutboxManager;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -55,7 +54,9 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
     private List<Department> departments;
     private Map<String, Department> departmentMap;
     
-    private DatabaseHelper databaseHelper;
+    private OutboxManager outboxManager;
+    private ReferenceDataRepository referenceDataRepository;
+    private CatalogueSearch<Course> courseSearch;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -70,8 +71,10 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        // Initialize DatabaseHelper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize outbox and repository
+        outboxManager = OutboxManager.getInstance(this);
+        referenceDataRepository = ReferenceDataRepository.getInstance(this);
+        courseSearch = referenceDataRepository.searchCourses(this, (query, results) -> showCourses(results));
 
         // Initialize UI components
         coursesRecyclerView = findViewById(R.id.coursesRecyclerView);
@@ -113,6 +116,7 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
 
         // Load data
         loadDepartments();
+        loadCourses();
     }
 
     @Override
@@ -127,105 +131,49 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
     private void loadDepartments() {
         progressBar.setVisibility(View.VISIBLE);
 
-        FirebaseUtil.getDepartmentsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    departments.clear();
-                    departmentMap.clear();
-
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Department department = documentSnapshot.toObject(Department.class);
-                        if (department != null) {
-                            departments.add(department);
-                            departmentMap.put(department.getId(), department);
-                            
-                            // Save to local database
-                            databaseHelper.saveDepartment(department);
-                        }
-                    }
+        referenceDataRepository.getDepartments().observe(this, result -> {
+            departments.clear();
+            departmentMap.clear();
+            for (Department department : result.getData()) {
+                departments.add(department);
+                departmentMap.put(department.getId(), department);
+            }
 
-                    // Sync timestamp update
-                    databaseHelper.updateSyncTime(FirebaseUtil.DEPARTMENTS_COLLECTION);
-                    
-                    // Load courses after departments
-                    loadCourses();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    departments.addAll(databaseHelper.getAllDepartments());
-                    for (Department department : departments) {
-                        departmentMap.put(department.getId(), department);
-                    }
-                    
-                    // Load courses after departments
-                    loadCourses();
-                    
-                    Snackbar.make(coursesRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+            if (result.isOffline()) {
+                Snackbar.make(coursesRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void loadCourses() {
-        FirebaseUtil.getCoursesCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    allCourses.clear();
-                    filteredCourses.clear();
-
-                    for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Course course = documentSnapshot.toObject(Course.class);
-                        if (course != null) {
-                            // Set department name from departmentMap
-                            Department department = departmentMap.get(course.getDepartmentId());
-                            if (department != null) {
-                                course.setDepartmentName(department.getName());
-                            }
-                            
-                            allCourses.add(course);
-                            filteredCourses.add(course);
-                            
-                            // Save to local database
-                            databaseHelper.saveCourse(course);
-                        }
-                    }
+        // Department names are filled in by the repository from the saved departments
+        referenceDataRepository.getCourses().observe(this, result -> {
+            allCourses.clear();
+            allCourses.addAll(result.getData());
 
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.COURSES_COLLECTION);
-                    
-                    // Update UI
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    allCourses.addAll(databaseHelper.getAllCourses());
-                    filteredCourses.addAll(allCourses);
-                    
-                    // Update UI
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                    
-                    Snackbar.make(coursesRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+            // Update UI, keeping any search that was typed while loading
+            progressBar.setVisibility(View.GONE);
+            filterCourses(searchEditText.getText().toString());
+
+            if (result.isOffline()) {
+                Snackbar.make(coursesRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void filterCourses(String query) {
-        filteredCourses.clear();
-        
-        if (query.isEmpty()) {
-            filteredCourses.addAll(allCourses);
+        if (query.trim().isEmpty()) {
+            courseSearch.cancel();
+            showCourses(allCourses);
         } else {
-            query = query.toLowerCase();
-            for (Course course : allCourses) {
-                if (course.getCode().toLowerCase().contains(query) ||
-                    course.getName().toLowerCase().contains(query) ||
-                    (course.getDepartmentName() != null && course.getDepartmentName().toLowerCase().contains(query))) {
-                    filteredCourses.add(course);
-                }
-            }
+            // Searched in the local database once typing pauses
+            courseSearch.search(query);
         }
-        
+    }
+
+    private void showCourses(List<Course> courses) {
+        filteredCourses.clear();
+        filteredCourses.addAll(courses);
         adapter.notifyDataSetChanged();
         updateEmptyView();
     }
@@ -257,6 +205,7 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
         AutoCompleteTextView levelSpinner = dialogView.findViewById(R.id.levelSpinner);
         AutoCompleteTextView semesterSpinner = dialogView.findViewById(R.id.semesterSpinner);
         Switch electiveSwitch = dialogView.findViewById(R.id.electiveSwitch);
+        Switch practicalSwitch = dialogView.findViewById(R.id.practicalSwitch);
         TextInputEditText descriptionEditText = dialogView.findViewById(R.id.descriptionEditText);
         Button cancelButton = dialogView.findViewById(R.id.cancelButton);
         Button saveButton = dialogView.findViewById(R.id.saveButton);
@@ -294,6 +243,7 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
             levelSpinner.setText(course.getLevel(), false);
             semesterSpinner.setText(course.getSemester(), false);
             electiveSwitch.setChecked(course.isElective());
+            practicalSwitch.setChecked(course.isPractical());
             descriptionEditText.setText(course.getDescription());
             
             // Set department spinner
@@ -317,6 +267,7 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
             String level = levelSpinner.getText().toString().trim();
             String semester = semesterSpinner.getText().toString().trim();
             boolean isElective = electiveSwitch.isChecked();
+            boolean isPractical = practicalSwitch.isChecked();
             String description = descriptionEditText.getText().toString().trim();
             
             if (code.isEmpty()) {
@@ -382,41 +333,45 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
             courseToSave.setLevel(level);
             courseToSave.setSemester(semester);
             courseToSave.setElective(isElective);
+            courseToSave.setPractical(isPractical);
             courseToSave.setDescription(description);
             
             // Show progress indicator
             progressBar.setVisibility(View.VISIBLE);
             
-            // Save to Firestore
-            FirebaseUtil.getCoursesCollection().document(courseToSave.getId())
-                    .set(courseToSave)
-                    .addOnSuccessListener(aVoid -> {
-                        // Save to local database
-                        databaseHelper.saveCourse(courseToSave);
-                        
-                        if (course == null) {
-                            // New course
-                            allCourses.add(courseToSave);
-                            filteredCourses.add(courseToSave);
-                            adapter.notifyItemInserted(filteredCourses.indexOf(courseToSave));
-                            Snackbar.make(coursesRecyclerView, R.string.add_success, Snackbar.LENGTH_SHORT).show();
-                        } else {
-                            // Update existing course
-                            int position = filteredCourses.indexOf(course);
-                            if (position != -1) {
-                                adapter.notifyItemChanged(position);
-                            }
-                            Snackbar.make(coursesRecyclerView, R.string.update_success, Snackbar.LENGTH_SHORT).show();
-                        }
-                        
-                        updateEmptyView();
-                        progressBar.setVisibility(View.GONE);
-                        dialog.dismiss();
-                    })
-                    .addOnFailureListener(e -> {
-                        progressBar.setVisibility(View.GONE);
-                        Snackbar.make(coursesRecyclerView, "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
-                    });
+            // Save locally and queue the write to Firestore
+            outboxManager.saveCourse(courseToSave, (success, entriesRenamed) -> {
+                if (!success) {
+                    progressBar.setVisibility(View.GONE);
+                    Snackbar.make(coursesRecyclerView, R.string.save_error, Snackbar.LENGTH_LONG).show();
+                    return;
+                }
+                
+                if (course == null) {
+                    // New course
+                    allCourses.add(courseToSave);
+                    filteredCourses.add(courseToSave);
+                    adapter.notifyItemInserted(filteredCourses.indexOf(courseToSave));
+                    Snackbar.make(coursesRecyclerView, R.string.add_success, Snackbar.LENGTH_SHORT).show();
+                } else {
+                    // Update existing course
+                    int position = filteredCourses.indexOf(course);
+                    if (position != -1) {
+                        adapter.notifyItemChanged(position);
+                    }
+                    if (entriesRenamed > 0) {
+                        // Timetable classes showing the old name were updated with it
+                        Snackbar.make(coursesRecyclerView, getString(R.string.update_success_renamed, entriesRenamed),
+                                Snackbar.LENGTH_LONG).show();
+                    } else {
+                        Snackbar.make(coursesRecyclerView, R.string.update_success, Snackbar.LENGTH_SHORT).show();
+                    }
+                }
+                
+                updateEmptyView();
+                progressBar.setVisibility(View.GONE);
+                dialog.dismiss();
+            });
         });
 
         dialog.show();
@@ -429,25 +384,26 @@ public class ManageCoursesActivity extends AppCompatActivity implements CourseAd
                 .setPositiveButton("Delete", (dialog, which) -> {
                     progressBar.setVisibility(View.VISIBLE);
                     
-                    FirebaseUtil.getCoursesCollection().document(course.getId())
-                            .delete()
-                            .addOnSuccessListener(aVoid -> {
-                                // Remove from local database and lists
-                                allCourses.remove(course);
-                                int position = filteredCourses.indexOf(course);
-                                if (position != -1) {
-                                    filteredCourses.remove(position);
-                                    adapter.notifyItemRemoved(position);
-                                }
-                                
-                                updateEmptyView();
-                                progressBar.setVisibility(View.GONE);
-                                Snackbar.make(coursesRecyclerView, R.string.delete_success, Snackbar.LENGTH_SHORT).show();
-                            })
-                            .addOnFailureListener(e -> {
-                                progressBar.setVisibility(View.GONE);
-                                Snackbar.make(coursesRecyclerView, "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
-                            });
+                    // Delete locally and queue the deletion for Firestore
+                    outboxManager.deleteCourse(course.getId(), success -> {
+                        if (!success) {
+                            progressBar.setVisibility(View.GONE);
+                            Snackbar.make(coursesRecyclerView, R.string.save_error, Snackbar.LENGTH_LONG).show();
+                            return;
+                        }
+                        
+                        // Remove from lists
+                        allCourses.remove(course);
+                        int position = filteredCourses.indexOf(course);
+                        if (position != -1) {
+                            filteredCourses.remove(position);
+                            adapter.notifyItemRemoved(position);
+                        }
+                        
+                        updateEmptyView();
+                        progressBar.setVisibility(View.GONE);
+                        Snackbar.make(coursesRecyclerView, R.string.delete_success, Snackbar.LENGTH_SHORT).show();
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
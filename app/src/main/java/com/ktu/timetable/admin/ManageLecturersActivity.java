@@ -24,14 +24,14 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.ktu.timetable.R;
 import com.ktu.timetable.adapters.LecturerAdapter;
 import com.ktu.timetable.models.Department;
 import com.ktu.timetable.models.Lecturer;
 import com.ktu.timetable.models.User;
-import com.ktu.timetable.utils.DatabaseHelper;
-import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.repository.CatalogueSearch;
+import com.ktu.timetable.repository.ReferenceDataRepository;
+import com.ktu.timetable.utils.OutboxManager;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -53,7 +53,9 @@ public class ManageLecturersActivity extends AppCompatActivity implements Lectur
     private List<Department> departments;
     private Map<String, Department> departmentMap;
     
-    private DatabaseHelper databaseHelper;
+    private OutboxManager outboxManager;
+    private ReferenceDataRepository referenceDataRepository;
+    private CatalogueSearch<Lecturer> lecturerSearch;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -68,8 +70,10 @@ public class ManageLecturersActivity extends AppCompatActivity implements Lectur
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        // Initialize DatabaseHelper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize outbox and repository
+        outboxManager = OutboxManager.getInstance(this);
+        referenceDataRepository = ReferenceDataRepository.getInstance(this);
+        lecturerSearch = referenceDataRepository.searchLecturers(this, (query, results) -> showLecturers(results));
 
         // Initialize UI components
         lecturersRecyclerView = findViewById(R.id.lecturersRecyclerView);
@@ -111,6 +115,7 @@ public class ManageLecturersActivity extends AppCompatActivity implements Lectur
 
         // Load data
         loadDepartments();
+        loadLecturers();
     }
 
     @Override
@@ -125,106 +130,49 @@ public class ManageLecturersActivity extends AppCompatActivity implements Lectur
     private void loadDepartments() {
         progressBar.setVisibility(View.VISIBLE);
 
-        FirebaseUtil.getDepartmentsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    departments.clear();
-                    departmentMap.clear();
-
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Department department = documentSnapshot.toObject(Department.class);
-                        if (department != null) {
-                            departments.add(department);
-                            departmentMap.put(department.getId(), department);
-                            
-                            // Save to local database
-                            databaseHelper.saveDepartment(department);
-                        }
-                    }
+        referenceDataRepository.getDepartments().observe(this, result -> {
+            departments.clear();
+            departmentMap.clear();
+            for (Department department : result.getData()) {
+                departments.add(department);
+                departmentMap.put(department.getId(), department);
+            }
 
-                    // Sync timestamp update
-                    databaseHelper.updateSyncTime(FirebaseUtil.DEPARTMENTS_COLLECTION);
-                    
-                    // Load lecturers after departments
-                    loadLecturers();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    departments.addAll(databaseHelper.getAllDepartments());
-                    for (Department department : departments) {
-                        departmentMap.put(department.getId(), department);
-                    }
-                    
-                    // Load lecturers after departments
-                    loadLecturers();
-                    
-                    Snackbar.make(lecturersRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+            if (result.isOffline()) {
+                Snackbar.make(lecturersRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void loadLecturers() {
-        FirebaseUtil.getLecturersCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    allLecturers.clear();
-                    filteredLecturers.clear();
-
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Lecturer lecturer = documentSnapshot.toObject(Lecturer.class);
-                        if (lecturer != null) {
-                            // Set department name from departmentMap
-                            Department department = departmentMap.get(lecturer.getDepartmentId());
-                            if (department != null) {
-                                lecturer.setDepartmentName(department.getName());
-                            }
-                            
-                            allLecturers.add(lecturer);
-                            filteredLecturers.add(lecturer);
-                            
-                            // Save to local database
-                            databaseHelper.saveLecturer(lecturer);
-                        }
-                    }
+        // Department names are filled in by the repository from the saved departments
+        referenceDataRepository.getLecturers().observe(this, result -> {
+            allLecturers.clear();
+            allLecturers.addAll(result.getData());
 
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.LECTURERS_COLLECTION);
-                    
-                    // Update UI
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    allLecturers.addAll(databaseHelper.getAllLecturers());
-                    filteredLecturers.addAll(allLecturers);
-                    
-                    // Update UI
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                    
-                    Snackbar.make(lecturersRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+            // Update UI, keeping any search that was typed while loading
+            progressBar.setVisibility(View.GONE);
+            filterLecturers(searchEditText.getText().toString());
+
+            if (result.isOffline()) {
+                Snackbar.make(lecturersRecyclerView, R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void filterLecturers(String query) {
-        filteredLecturers.clear();
-        
-        if (query.isEmpty()) {
-            filteredLecturers.addAll(allLecturers);
+        if (query.trim().isEmpty()) {
+            lecturerSearch.cancel();
+            showLecturers(allLecturers);
         } else {
-            query = query.toLowerCase();
-            for (Lecturer lecturer : allLecturers) {
-                if (lecturer.getFirstName().toLowerCase().contains(query) ||
-                    lecturer.getLastName().toLowerCase().contains(query) ||
-                    lecturer.getStaffId().toLowerCase().contains(query) ||
-                    (lecturer.getDepartmentName() != null && lecturer.getDepartmentName().toLowerCase().contains(query))) {
-                    filteredLecturers.add(lecturer);
-                }
-            }
+            // Searched in the local database once typing pauses
+            lecturerSearch.search(query);
         }
-        
+    }
+
+    private void showLecturers(List<Lecturer> lecturers) {
+        filteredLecturers.clear();
+        filteredLecturers.addAll(lecturers);
         adapter.notifyDataSetChanged();
         updateEmptyView();
     }
@@ -391,38 +339,41 @@ public class ManageLecturersActivity extends AppCompatActivity implements Lectur
     }
     
     private void saveLecturer(Lecturer lecturer, AlertDialog dialog) {
-        // Save to Firestore
-        FirebaseUtil.getLecturersCollection().document(lecturer.getId())
-                .set(lecturer)
-                .addOnSuccessListener(aVoid -> {
-                    // Save to local database
-                    databaseHelper.saveLecturer(lecturer);
-                    
-                    boolean isNewLecturer = !allLecturers.contains(lecturer);
-                    
-                    if (isNewLecturer) {
-                        // New lecturer
-                        allLecturers.add(lecturer);
-                        filteredLecturers.add(lecturer);
-                        adapter.notifyItemInserted(filteredLecturers.indexOf(lecturer));
-                        Snackbar.make(lecturersRecyclerView, R.string.add_success, Snackbar.LENGTH_SHORT).show();
-                    } else {
-                        // Update existing lecturer
-                        int position = filteredLecturers.indexOf(lecturer);
-                        if (position != -1) {
-                            adapter.notifyItemChanged(position);
-                        }
-                        Snackbar.make(lecturersRecyclerView, R.string.update_success, Snackbar.LENGTH_SHORT).show();
-                    }
-                    
-                    updateEmptyView();
-                    progressBar.setVisibility(View.GONE);
-                    dialog.dismiss();
-                })
-                .addOnFailureListener(e -> {
-                    progressBar.setVisibility(View.GONE);
-                    Snackbar.make(lecturersRecyclerView, "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
-                });
+        // Save locally and queue the write to Firestore
+        outboxManager.saveLecturer(lecturer, (success, entriesRenamed) -> {
+            if (!success) {
+                progressBar.setVisibility(View.GONE);
+                Snackbar.make(lecturersRecyclerView, R.string.save_error, Snackbar.LENGTH_LONG).show();
+                return;
+            }
+            
+            boolean isNewLecturer = !allLecturers.contains(lecturer);
+            
+            if (isNewLecturer) {
+                // New lecturer
+                allLecturers.add(lecturer);
+                filteredLecturers.add(lecturer);
+                adapter.notifyItemInserted(filteredLecturers.indexOf(lecturer));
+                Snackbar.make(lecturersRecyclerView, R.string.add_success, Snackbar.LENGTH_SHORT).show();
+            } else {
+                // Update existing lecturer
+                int position = filteredLecturers.indexOf(lecturer);
+                if (position != -1) {
+                    adapter.notifyItemChanged(position);
+                }
+                if (entriesRenamed > 0) {
+                    // Timetable classes showing the old name were updated with it
+                    Snackbar.make(lecturersRecyclerView, getString(R.string.update_success_renamed, entriesRenamed),
+                            Snackbar.LENGTH_LONG).show();
+                } else {
+                    Snackbar.make(lecturersRecyclerView, R.string.update_success, Snackbar.LENGTH_SHORT).show();
+                }
+            }
+            
+            updateEmptyView();
+            progressBar.setVisibility(View.GONE);
+            dialog.dismiss();
+        });
     }
 
     private void deleteLecturer(Lecturer lecturer) {
@@ -432,25 +383,26 @@ public class ManageLecturersActivity extends AppCompatActivity implements Lectur
                 .setPositiveButton("Delete", (dialog, which) -> {
                     progressBar.setVisibility(View.VISIBLE);
                     
-                    FirebaseUtil.getLecturersCollection().document(lecturer.getId())
-                            .delete()
-                            .addOnSuccessListener(aVoid -> {
-                                // Remove from local database and lists
-                                allLecturers.remove(lecturer);
-                                int position = filteredLecturers.indexOf(lecturer);
-                                if (position != -1) {
-                                    filteredLecturers.remove(position);
-                                    adapter.notifyItemRemoved(position);
-                                }
-                                
-                                updateEmptyView();
-                                progressBar.setVisibility(View.GONE);
-                                Snackbar.make(lecturersRecyclerView, R.string.delete_success, Snackbar.LENGTH_SHORT).show();
-                            })
-                            .addOnFailureListener(e -> {
-                                progressBar.setVisibility(View.GONE);
-                                Snackbar.make(lecturersRecyclerView, "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
-                            });
+                    // Delete locally and queue the deletion for Firestore
+                    outboxManager.deleteLecturer(lecturer.getId(), success -> {
+                        if (!success) {
+                            progressBar.setVisibility(View.GONE);
+                            Snackbar.make(lecturersRecyclerView, R.string.save_error, Snackbar.LENGTH_LONG).show();
+                            return;
+                        }
+                        
+                        // Remove from lists
+                        allLecturers.remove(lecturer);
+                        int position = filteredLecturers.indexOf(lecturer);
+                        if (position != -1) {
+                            filteredLecturers.remove(position);
+                            adapter.notifyItemRemoved(position);
+                        }
+                        
+                        updateEmptyView();
+                        progressBar.setVisibility(View.GONE);
+                        Snackbar.make(lecturersRecyclerView, R.string.delete_success, Snackbar.LENGTH_SHORT).show();
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
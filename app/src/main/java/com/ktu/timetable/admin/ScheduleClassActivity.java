@@ -2,6 +2,7 @@ package com.ktu.timetable.admin;
 
 import android.app.TimePickerDialog;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ArrayAdapter;
@@ -13,19 +14,28 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.LiveData;
 
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.ktu.timetable.R;
 import com.ktu.timetable.models.Classroom;
 import com.ktu.timetable.models.Course;
 import com.ktu.timetable.models.Department;
 import com.ktu.timetable.models.Lecturer;
 import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.repository.ReferenceDataRepository;
+import com.ktu.timetable.repository.Resource;
+import com.ktu.timetable.repository.TimetableRepository;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.ConflictIndex;
 import com.ktu.timetable.utils.DatabaseHelper;
 import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.OccupancyIndex;
+import com.ktu.timetable.utils.OutboxManager;
+import com.ktu.timetable.utils.SlotReservations;
+import com.ktu.timetable.utils.TimeUtils;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -36,9 +46,13 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ScheduleClassActivity extends AppCompatActivity {
 
+    private static final String TAG = "ScheduleClassActivity";
+    private static final int MAX_ROOM_SUGGESTIONS = 3;
+
     private AutoCompleteTextView departmentSpinner;
     private AutoCompleteTextView levelSpinner;
     private AutoCompleteTextView courseSpinner;
@@ -58,11 +72,10 @@ public class ScheduleClassActivity extends AppCompatActivity {
     private List<Lecturer> lecturers;
     private List<Classroom> classrooms;
     private List<TimetableEntry> timetableEntries;
+    private ConflictIndex conflictIndex;
+    private OccupancyIndex occupancyIndex;
     
-    private Map<String, Department> departmentMap;
     private Map<String, Course> courseMap;
-    private Map<String, Lecturer> lecturerMap;
-    private Map<String, Classroom> classroomMap;
     
     private String selectedDepartmentId;
     private String selectedLevel;
@@ -75,6 +88,10 @@ public class ScheduleClassActivity extends AppCompatActivity {
     private Date selectedEndTime;
     
     private DatabaseHelper databaseHelper;
+    private OutboxManager outboxManager;
+    private ReferenceDataRepository referenceDataRepository;
+    private TimetableRepository timetableRepository;
+    private LiveData<Resource<List<Course>>> departmentCourses;
     private SimpleDateFormat timeFormat;
     private SimpleDateFormat timeFormatWithDate;
     
@@ -91,8 +108,11 @@ public class ScheduleClassActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
         
-        // Initialize database helper
+        // Initialize database helper, outbox and repositories
         databaseHelper = DatabaseHelper.getInstance(this);
+        outboxManager = OutboxManager.getInstance(this);
+        referenceDataRepository = ReferenceDataRepository.getInstance(this);
+        timetableRepository = TimetableRepository.getInstance(this);
         
         // Initialize date formatters
         timeFormat = new SimpleDateFormat("h:mm a", Locale.US);
@@ -119,11 +139,10 @@ public class ScheduleClassActivity extends AppCompatActivity {
         lecturers = new ArrayList<>();
         classrooms = new ArrayList<>();
         timetableEntries = new ArrayList<>();
+        conflictIndex = new ConflictIndex();
+        occupancyIndex = new OccupancyIndex();
         
-        departmentMap = new HashMap<>();
         courseMap = new HashMap<>();
-        lecturerMap = new HashMap<>();
-        classroomMap = new HashMap<>();
         
         // Setup spinners
         setupLevelSpinner();
@@ -166,6 +185,7 @@ public class ScheduleClassActivity extends AppCompatActivity {
                     break;
                 }
             }
+            checkForConflicts();
         });
         
         lecturerSpinner.setOnItemClickListener((parent, view, position, id) -> {
@@ -289,251 +309,127 @@ public class ScheduleClassActivity extends AppCompatActivity {
     }
     
     private void loadDepartments() {
-        FirebaseUtil.getDepartmentsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    departments.clear();
-                    departmentMap.clear();
-                    List<String> departmentNames = new ArrayList<>();
-                    
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Department department = documentSnapshot.toObject(Department.class);
-                        if (department != null) {
-                            departments.add(department);
-                            departmentMap.put(department.getId(), department);
-                            departmentNames.add(department.getName());
-                            
-                            // Save to local database
-                            databaseHelper.saveDepartment(department);
-                        }
-                    }
-                    
-                    // Set departments adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, departmentNames);
-                    departmentSpinner.setAdapter(adapter);
-                    
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.DEPARTMENTS_COLLECTION);
-                    
-                    checkIfAllDataLoaded();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    departments.addAll(databaseHelper.getAllDepartments());
-                    List<String> departmentNames = new ArrayList<>();
-                    
-                    for (Department department : departments) {
-                        departmentMap.put(department.getId(), department);
-                        departmentNames.add(department.getName());
-                    }
-                    
-                    // Set departments adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, departmentNames);
-                    departmentSpinner.setAdapter(adapter);
-                    
-                    checkIfAllDataLoaded();
-                    
-                    Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+        referenceDataRepository.getDepartments().observe(this, result -> {
+            departments.clear();
+            List<String> departmentNames = new ArrayList<>();
+            
+            for (Department department : result.getData()) {
+                departments.add(department);
+                departmentNames.add(department.getName());
+            }
+            
+            // Set departments adapter
+            ArrayAdapter<String> adapter = new ArrayAdapter<>(
+                    this, android.R.layout.simple_dropdown_item_1line, departmentNames);
+            departmentSpinner.setAdapter(adapter);
+            
+            checkIfAllDataLoaded();
+            
+            if (result.isOffline()) {
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
     
     private void loadLecturers() {
-        FirebaseUtil.getLecturersCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    lecturers.clear();
-                    lecturerMap.clear();
-                    List<String> lecturerNames = new ArrayList<>();
-                    
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Lecturer lecturer = documentSnapshot.toObject(Lecturer.class);
-                        if (lecturer != null) {
-                            lecturers.add(lecturer);
-                            lecturerMap.put(lecturer.getId(), lecturer);
-                            lecturerNames.add(lecturer.getFullName());
-                            
-                            // Save to local database
-                            databaseHelper.saveLecturer(lecturer);
-                        }
-                    }
-                    
-                    // Set lecturers adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, lecturerNames);
-                    lecturerSpinner.setAdapter(adapter);
-                    
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.LECTURERS_COLLECTION);
-                    
-                    checkIfAllDataLoaded();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    lecturers.addAll(databaseHelper.getAllLecturers());
-                    List<String> lecturerNames = new ArrayList<>();
-                    
-                    for (Lecturer lecturer : lecturers) {
-                        lecturerMap.put(lecturer.getId(), lecturer);
-                        lecturerNames.add(lecturer.getFullName());
-                    }
-                    
-                    // Set lecturers adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, lecturerNames);
-                    lecturerSpinner.setAdapter(adapter);
-                    
-                    checkIfAllDataLoaded();
-                    
-                    Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+        referenceDataRepository.getLecturers().observe(this, result -> {
+            lecturers.clear();
+            List<String> lecturerNames = new ArrayList<>();
+            
+            for (Lecturer lecturer : result.getData()) {
+                lecturers.add(lecturer);
+                lecturerNames.add(lecturer.getFullName());
+            }
+            
+            // Set lecturers adapter
+            ArrayAdapter<String> adapter = new ArrayAdapter<>(
+                    this, android.R.layout.simple_dropdown_item_1line, lecturerNames);
+            lecturerSpinner.setAdapter(adapter);
+            
+            checkIfAllDataLoaded();
+            
+            if (result.isOffline()) {
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
     
     private void loadClassrooms() {
-        FirebaseUtil.getClassroomsCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    classrooms.clear();
-                    classroomMap.clear();
-                    List<String> classroomNames = new ArrayList<>();
-                    
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Classroom classroom = documentSnapshot.toObject(Classroom.class);
-                        if (classroom != null) {
-                            classrooms.add(classroom);
-                            classroomMap.put(classroom.getId(), classroom);
-                            classroomNames.add(classroom.getFullName());
-                            
-                            // Save to local database
-                            databaseHelper.saveClassroom(classroom);
-                        }
-                    }
-                    
-                    // Set classrooms adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, classroomNames);
-                    classroomSpinner.setAdapter(adapter);
-                    
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.CLASSROOMS_COLLECTION);
-                    
-                    checkIfAllDataLoaded();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    classrooms.addAll(databaseHelper.getAllClassrooms());
-                    List<String> classroomNames = new ArrayList<>();
-                    
-                    for (Classroom classroom : classrooms) {
-                        classroomMap.put(classroom.getId(), classroom);
-                        classroomNames.add(classroom.getFullName());
-                    }
-                    
-                    // Set classrooms adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, classroomNames);
-                    classroomSpinner.setAdapter(adapter);
-                    
-                    checkIfAllDataLoaded();
-                    
-                    Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+        referenceDataRepository.getClassrooms().observe(this, result -> {
+            classrooms.clear();
+            List<String> classroomNames = new ArrayList<>();
+            
+            for (Classroom classroom : result.getData()) {
+                classrooms.add(classroom);
+                classroomNames.add(classroom.getFullName());
+            }
+            
+            // Set classrooms adapter
+            ArrayAdapter<String> adapter = new ArrayAdapter<>(
+                    this, android.R.layout.simple_dropdown_item_1line, classroomNames);
+            classroomSpinner.setAdapter(adapter);
+            
+            checkIfAllDataLoaded();
+            
+            if (result.isOffline()) {
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
     
     private void loadTimetableEntries() {
-        FirebaseUtil.getTimetableCollection()
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    timetableEntries.clear();
-                    
-                    for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        TimetableEntry entry = documentSnapshot.toObject(TimetableEntry.class);
-                        if (entry != null) {
-                            timetableEntries.add(entry);
-                            
-                            // Save to local database
-                            databaseHelper.saveTimetableEntry(entry);
-                        }
-                    }
-                    
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
-                    
-                    checkIfAllDataLoaded();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    timetableEntries.addAll(databaseHelper.getAllTimetableEntries());
-                    
-                    checkIfAllDataLoaded();
-                    
-                    Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+        // Syncs in the background and reads only the columns the indexes and conflict messages use
+        timetableRepository.loadTimetableSlots(this).observe(this, result -> {
+            timetableEntries.clear();
+            timetableEntries.addAll(result.getData());
+            
+            // Index entries for conflict checking and room suggestions
+            conflictIndex.build(timetableEntries);
+            occupancyIndex.build(timetableEntries);
+            
+            checkIfAllDataLoaded();
+            
+            if (result.isOffline()) {
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
     
     private void loadCoursesForDepartment(String departmentId) {
-        FirebaseUtil.getCoursesCollection()
-                .whereEqualTo("departmentId", departmentId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    courses.clear();
-                    courseMap.clear();
-                    List<String> courseNames = new ArrayList<>();
-                    
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        Course course = documentSnapshot.toObject(Course.class);
-                        if (course != null) {
-                            // If level is selected, filter by level
-                            if (selectedLevel == null || selectedLevel.isEmpty() || 
-                                    selectedLevel.equals(course.getLevel())) {
-                                courses.add(course);
-                                courseMap.put(course.getId(), course);
-                                courseNames.add(course.getCode() + " - " + course.getName());
-                            }
-                            
-                            // Save to local database
-                            databaseHelper.saveCourse(course);
-                        }
-                    }
-                    
-                    // Set courses adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, courseNames);
-                    courseSpinner.setAdapter(adapter);
-                    
-                    // Clear selected course
-                    courseSpinner.setText("", false);
-                    selectedCourseId = null;
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    List<Course> allCourses = databaseHelper.getCoursesByDepartment(departmentId);
-                    courses.clear();
-                    courseMap.clear();
-                    List<String> courseNames = new ArrayList<>();
-                    
-                    for (Course course : allCourses) {
-                        // If level is selected, filter by level
-                        if (selectedLevel == null || selectedLevel.isEmpty() || 
-                                selectedLevel.equals(course.getLevel())) {
-                            courses.add(course);
-                            courseMap.put(course.getId(), course);
-                            courseNames.add(course.getCode() + " - " + course.getName());
-                        }
-                    }
-                    
-                    // Set courses adapter
-                    ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                            this, android.R.layout.simple_dropdown_item_1line, courseNames);
-                    courseSpinner.setAdapter(adapter);
-                    
-                    // Clear selected course
-                    courseSpinner.setText("", false);
-                    selectedCourseId = null;
-                    
-                    Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+        // Ignore results still pending for a previously selected department
+        if (departmentCourses != null) {
+            departmentCourses.removeObservers(this);
+        }
+        departmentCourses = referenceDataRepository.getCoursesForDepartment(departmentId);
+        departmentCourses.observe(this, result -> {
+            courses.clear();
+            courseMap.clear();
+            conflictIndex.setElectiveCourses(result.getData());
+            List<String> courseNames = new ArrayList<>();
+            
+            for (Course course : result.getData()) {
+                // If level is selected, filter by level
+                if (selectedLevel == null || selectedLevel.isEmpty() || 
+                        selectedLevel.equals(course.getLevel())) {
+                    courses.add(course);
+                    courseMap.put(course.getId(), course);
+                    courseNames.add(course.getCode() + " - " + course.getName());
+                }
+            }
+            
+            // Set courses adapter
+            ArrayAdapter<String> adapter = new ArrayAdapter<>(
+                    this, android.R.layout.simple_dropdown_item_1line, courseNames);
+            courseSpinner.setAdapter(adapter);
+            
+            // Clear selected course
+            courseSpinner.setText("", false);
+            selectedCourseId = null;
+            
+            if (result.isOffline()) {
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
     
     private void checkIfAllDataLoaded() {
@@ -542,10 +438,14 @@ public class ScheduleClassActivity extends AppCompatActivity {
         }
     }
     
-    private void checkForConflicts() {
+    /**
+     * Check the selected slot against the timetable and show any clashes
+     * @return true if a hard clash blocks the slot
+     */
+    private boolean checkForConflicts() {
         if (selectedDayOfWeek == 0 || selectedStartTime == null || selectedEndTime == null ||
                 selectedLecturerId == null || selectedClassroomId == null) {
-            return;
+            return false;
         }
         
         // Create a temporary timetable entry for conflict checking
@@ -556,22 +456,91 @@ public class ScheduleClassActivity extends AppCompatActivity {
         newEntry.setLecturerId(selectedLecturerId);
         newEntry.setClassroomId(selectedClassroomId);
         
-        // Check for conflicts
-        boolean hasConflict = false;
-        for (TimetableEntry entry : timetableEntries) {
-            if (entry.getDayOfWeek() == selectedDayOfWeek) {
-                if (entry.hasLecturerConflict(newEntry) || entry.hasClassroomConflict(newEntry)) {
-                    hasConflict = true;
-                    break;
-                }
-            }
+        // Students of the class are only known once a course is chosen
+        Course course = selectedCourseId != null ? courseMap.get(selectedCourseId) : null;
+        if (course != null) {
+            newEntry.setCourseId(course.getId());
+            newEntry.setDepartmentId(selectedDepartmentId);
+            newEntry.setLevel(selectedLevel);
+            newEntry.setSemester(course.getSemester());
         }
         
-        if (hasConflict) {
+        // Look up clashing entries in the conflict index
+        List<ConflictIndex.Conflict> conflicts = conflictIndex.findConflicts(newEntry);
+        boolean hardConflict = ConflictIndex.hasHardConflict(conflicts);
+        
+        if (!conflicts.isEmpty()) {
+            conflictWarningTextView.setText(buildConflictMessage(conflicts, hardConflict));
             conflictWarningTextView.setVisibility(View.VISIBLE);
         } else {
             conflictWarningTextView.setVisibility(View.GONE);
         }
+        return hardConflict;
+    }
+    
+    /**
+     * Build the warning text listing which classes clash with the selected slot
+     * @param conflicts Conflicts found for the slot
+     * @param hardConflict Whether any of them blocks the slot
+     * @return Warning message
+     */
+    private String buildConflictMessage(List<ConflictIndex.Conflict> conflicts, boolean hardConflict) {
+        StringBuilder message = new StringBuilder(getString(
+                hardConflict ? R.string.conflict_error : R.string.conflict_elective_warning));
+        boolean roomClash = false;
+        
+        for (ConflictIndex.Conflict conflict : conflicts) {
+            TimetableEntry entry = conflict.getEntry();
+            message.append("\n").append(getString(
+                    conflict.isSoft() ? R.string.conflict_detail_elective : R.string.conflict_detail,
+                    conflict.getType(),
+                    entry.getCourseCode() + " - " + entry.getType(),
+                    entry.getClassroomName(),
+                    TimeUtils.formatMinuteOfDay(TimeUtils.minuteOfDay(entry.getStartTime())),
+                    TimeUtils.formatMinuteOfDay(TimeUtils.minuteOfDay(entry.getEndTime()))));
+            if (ConflictIndex.CONFLICT_CLASSROOM.equals(conflict.getType())) {
+                roomClash = true;
+            }
+        }
+        
+        // Suggest rooms of at least the same size that are free for the slot
+        if (roomClash) {
+            String freeRooms = findFreeClassroomNames();
+            if (!freeRooms.isEmpty()) {
+                message.append("\n").append(getString(R.string.free_classrooms_suggestion, freeRooms));
+            }
+        }
+        
+        return message.toString();
+    }
+    
+    /**
+     * Find classrooms free for the selected slot with at least the selected room's capacity
+     * @return Comma separated room names, empty if none are free
+     */
+    private String findFreeClassroomNames() {
+        Classroom selectedClassroom = referenceDataRepository.getCachedClassroom(selectedClassroomId);
+        int minCapacity = selectedClassroom != null ? selectedClassroom.getCapacity() : 0;
+        
+        List<Classroom> freeClassrooms = occupancyIndex.findFreeClassrooms(classrooms, selectedDayOfWeek,
+                TimeUtils.minuteOfDay(selectedStartTime), TimeUtils.minuteOfDay(selectedEndTime), minCapacity);
+        
+        StringBuilder names = new StringBuilder();
+        int shown = 0;
+        for (Classroom classroom : freeClassrooms) {
+            if (classroom.getId().equals(selectedClassroomId)) {
+                continue;
+            }
+            if (shown == MAX_ROOM_SUGGESTIONS) {
+                break;
+            }
+            if (shown > 0) {
+                names.append(", ");
+            }
+            names.append(classroom.getName());
+            shown++;
+        }
+        return names.toString();
     }
     
     private void validateAndScheduleClass() {
@@ -627,9 +596,8 @@ public class ScheduleClassActivity extends AppCompatActivity {
             return;
         }
         
-        // Check for conflicts
-        checkForConflicts();
-        if (conflictWarningTextView.getVisibility() == View.VISIBLE) {
+        // Check for conflicts; clashes with electives are shown but do not block
+        if (checkForConflicts()) {
             Snackbar.make(findViewById(android.R.id.content), R.string.conflict_error, Snackbar.LENGTH_SHORT).show();
             return;
         }
@@ -641,11 +609,11 @@ public class ScheduleClassActivity extends AppCompatActivity {
     private void scheduleClass() {
         progressBar.setVisibility(View.VISIBLE);
         
-        // Get objects from maps
+        // Look up the selections; reference data is held by ID in the shared cache
         Course course = courseMap.get(selectedCourseId);
-        Lecturer lecturer = lecturerMap.get(selectedLecturerId);
-        Classroom classroom = classroomMap.get(selectedClassroomId);
-        Department department = departmentMap.get(selectedDepartmentId);
+        Lecturer lecturer = referenceDataRepository.getCachedLecturer(selectedLecturerId);
+        Classroom classroom = referenceDataRepository.getCachedClassroom(selectedClassroomId);
+        Department department = referenceDataRepository.getCachedDepartment(selectedDepartmentId);
         
         // Create timetable entry
         TimetableEntry entry = new TimetableEntry();
@@ -668,30 +636,62 @@ public class ScheduleClassActivity extends AppCompatActivity {
         entry.setLastModified(new Date());
         entry.setLastModifiedBy(FirebaseUtil.getCurrentUserId());
         
-        // Save to Firestore
-        FirebaseUtil.getTimetableCollection().document(entry.getId())
-                .set(entry)
+        // Book the classroom and lecturer on the server and write the entry in one transaction
+        SlotReservations.schedule(entry)
                 .addOnSuccessListener(aVoid -> {
-                    // Save to local database
-                    databaseHelper.saveTimetableEntry(entry);
-                    
-                    // Add to timetable entries list
-                    timetableEntries.add(entry);
-                    
-                    // Show success message
-                    Snackbar.make(findViewById(android.R.id.content), "Class scheduled successfully", Snackbar.LENGTH_SHORT).show();
-                    
-                    // Reset form
-                    resetForm();
-                    
-                    progressBar.setVisibility(View.GONE);
+                    // Save to local database; if that is not possible the next sync brings the entry in
+                    try {
+                        AppExecutors.getInstance().diskIO().execute(() -> databaseHelper.saveTimetableEntry(entry));
+                    } catch (RejectedExecutionException e) {
+                        Log.e(TAG, "Scheduled class not cached locally", e);
+                    }
+                    onClassScheduled(entry, "Class scheduled successfully");
                 })
                 .addOnFailureListener(e -> {
-                    progressBar.setVisibility(View.GONE);
-                    Snackbar.make(findViewById(android.R.id.content), "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
+                    if (e instanceof SlotReservations.SlotTakenException) {
+                        // Booked by someone else since this screen loaded
+                        progressBar.setVisibility(View.GONE);
+                        String type = ((SlotReservations.SlotTakenException) e).getConflictType();
+                        Snackbar.make(findViewById(android.R.id.content),
+                                getString(R.string.conflict_error) + " (" + type + ")", Snackbar.LENGTH_LONG).show();
+                        loadTimetableEntries();
+                    } else if (isOffline(e)) {
+                        // Checked against the local timetable only; queued until the connection is back
+                        outboxManager.saveTimetableEntry(entry, success -> {
+                            if (!success) {
+                                progressBar.setVisibility(View.GONE);
+                                Snackbar.make(findViewById(android.R.id.content), R.string.save_error, Snackbar.LENGTH_LONG).show();
+                                return;
+                            }
+                            onClassScheduled(entry, "Class saved offline and will be sent when connected");
+                        });
+                    } else {
+                        progressBar.setVisibility(View.GONE);
+                        Snackbar.make(findViewById(android.R.id.content), "Error: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
+                    }
                 });
     }
     
+    private static boolean isOffline(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.UNAVAILABLE;
+    }
+    
+    private void onClassScheduled(TimetableEntry entry, String message) {
+        // Add to timetable entries list and indexes
+        timetableEntries.add(entry);
+        conflictIndex.add(entry);
+        occupancyIndex.add(entry);
+        
+        // Show success message
+        Snackbar.make(findViewById(android.R.id.content), message, Snackbar.LENGTH_SHORT).show();
+        
+        // Reset form
+        resetForm();
+        
+        progressBar.setVisibility(View.GONE);
+    }
+    
     private void resetForm() {
         // Clear selections
         departmentSpinner.setText("", false);
@@ -0,0 +1,99 @@
+package com.ktu.timetable.export;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimeUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes entries as CSV with a header row, one entry per line. Fields containing commas,
+ * quotes or line breaks are quoted.
+ */
+class CsvEntryWriter implements EntryWriter {
+
+    private static final String[] HEADER = {
+            "Day", "Start", "End", "Course Code", "Course", "Type", "Lecturer", "Classroom",
+            "Department", "Level", "Semester"
+    };
+
+    private final Writer writer;
+    private final String[] dayNames;
+    private final String[] row = new String[HEADER.length];
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * @param writer Output
+     * @param dayNames Names of the days, Monday first
+     */
+    CsvEntryWriter(Writer writer, String[] dayNames) {
+        this.writer = writer;
+        this.dayNames = dayNames;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        writeRow(HEADER);
+    }
+
+    @Override
+    public void write(TimetableEntry entry) throws IOException {
+        int day = entry.getDayOfWeek();
+        int start = TimeUtils.minuteOfDay(entry.getStartTime());
+        int end = TimeUtils.minuteOfDay(entry.getEndTime());
+
+        row[0] = day >= 1 && day <= dayNames.length ? dayNames[day - 1] : "";
+        row[1] = start >= 0 ? TimeUtils.formatMinuteOfDay(start) : "";
+        row[2] = end >= 0 ? TimeUtils.formatMinuteOfDay(end) : "";
+        row[3] = entry.getCourseCode();
+        row[4] = entry.getCourseName();
+        row[5] = entry.getType();
+        row[6] = entry.getLecturerName();
+        row[7] = entry.getClassroomName();
+        row[8] = entry.getDepartmentName();
+        row[9] = entry.getLevel();
+        row[10] = entry.getSemester();
+        writeRow(row);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    private void writeRow(String[] fields) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendField(fields[i]);
+        }
+        line.append("\r\n");
+        writer.write(line.toString());
+    }
+
+    private void appendField(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
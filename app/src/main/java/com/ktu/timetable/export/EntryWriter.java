@@ -0,0 +1,28 @@
+package com.ktu.timetable.export;
+
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.io.IOException;
+
+/**
+ * Writes timetable entries to an output in one format, one entry at a time, so nothing but the
+ * current entry has to be kept in memory.
+ */
+interface EntryWriter {
+
+    /**
+     * Write anything that comes before the first entry
+     */
+    void begin() throws IOException;
+
+    /**
+     * Write one entry. Entries arrive ordered by day and start time.
+     */
+    void write(TimetableEntry entry) throws IOException;
+
+    /**
+     * Write anything that comes after the last entry and flush the output. The output itself is
+     * closed by the caller.
+     */
+    void finish() throws IOException;
+}
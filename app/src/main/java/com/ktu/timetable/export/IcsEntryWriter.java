@@ -0,0 +1,196 @@
+package com.ktu.timetable.export;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimeUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes entries as an iCalendar file with one weekly repeating event per entry.
+ *
+ * Each event starts on the entry's day in the current week and repeats every week. Times are
+ * written without a time zone, so calendar apps show them at the same clock time wherever the
+ * phone is, as printed on the timetable. Lines end in CRLF and are folded at 75 octets.
+ */
+class IcsEntryWriter implements EntryWriter {
+
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final String[] BYDAY = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Writer writer;
+    private final String calendarName;
+    private final String stamp;
+    private final SimpleDateFormat localFormat = new SimpleDateFormat("yyyyMMdd'T'HHmmss", Locale.US);
+    private final Calendar weekStart = Calendar.getInstance();
+    private final Calendar slot = Calendar.getInstance();
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * @param writer Output, written as UTF-8
+     * @param calendarName Name shown for the calendar in calendar apps
+     */
+    IcsEntryWriter(Writer writer, String calendarName) {
+        this.writer = writer;
+        this.calendarName = calendarName;
+
+        SimpleDateFormat utcFormat = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'", Locale.US);
+        utcFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        stamp = utcFormat.format(new Date());
+
+        // Midnight on Monday of the current week
+        int daysSinceMonday = (weekStart.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+        weekStart.add(Calendar.DAY_OF_MONTH, -daysSinceMonday);
+        weekStart.set(Calendar.HOUR_OF_DAY, 0);
+        weekStart.set(Calendar.MINUTE, 0);
+        weekStart.set(Calendar.SECOND, 0);
+        weekStart.set(Calendar.MILLISECOND, 0);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        writeLine("BEGIN:VCALENDAR");
+        writeLine("VERSION:2.0");
+        writeLine("PRODID:-//KTU//Timetable//EN");
+        writeLine("CALSCALE:GREGORIAN");
+        writeLine("X-WR-CALNAME:" + escape(calendarName));
+    }
+
+    @Override
+    public void write(TimetableEntry entry) throws IOException {
+        int day = entry.getDayOfWeek();
+        int start = TimeUtils.minuteOfDay(entry.getStartTime());
+        int end = TimeUtils.minuteOfDay(entry.getEndTime());
+        if (day < 1 || day > 7 || start < 0 || end <= start) {
+            // Not a valid weekly slot; nothing to put in a calendar
+            return;
+        }
+
+        writeLine("BEGIN:VEVENT");
+        writeLine("UID:" + entry.getId() + "@ktu-timetable");
+        writeLine("DTSTAMP:" + stamp);
+        writeLine("DTSTART:" + formatSlot(day, start));
+        writeLine("DTEND:" + formatSlot(day, end));
+        writeLine("RRULE:FREQ=WEEKLY;BYDAY=" + BYDAY[day - 1]);
+        writeLine("SUMMARY:" + escape(summaryOf(entry)));
+        if (entry.getClassroomName() != null) {
+            writeLine("LOCATION:" + escape(entry.getClassroomName()));
+        }
+        writeLine("DESCRIPTION:" + escape(descriptionOf(entry)));
+        writeLine("END:VEVENT");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writeLine("END:VCALENDAR");
+        writer.flush();
+    }
+
+    private String formatSlot(int day, int minuteOfDay) {
+        slot.setTimeInMillis(weekStart.getTimeInMillis());
+        slot.add(Calendar.DAY_OF_MONTH, day - 1);
+        slot.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        slot.set(Calendar.MINUTE, minuteOfDay % 60);
+        return localFormat.format(slot.getTime());
+    }
+
+    private static String summaryOf(TimetableEntry entry) {
+        StringBuilder summary = new StringBuilder();
+        if (entry.getCourseCode() != null) {
+            summary.append(entry.getCourseCode());
+        }
+        if (entry.getCourseName() != null) {
+            if (summary.length() > 0) {
+                summary.append(' ');
+            }
+            summary.append(entry.getCourseName());
+        }
+        if (entry.getType() != null) {
+            summary.append(" (").append(entry.getType()).append(')');
+        }
+        return summary.toString();
+    }
+
+    private static String descriptionOf(TimetableEntry entry) {
+        StringBuilder description = new StringBuilder();
+        if (entry.getLecturerName() != null) {
+            description.append("Lecturer: ").append(entry.getLecturerName()).append('\n');
+        }
+        if (entry.getDepartmentName() != null) {
+            description.append("Department: ").append(entry.getDepartmentName()).append('\n');
+        }
+        if (entry.getLevel() != null) {
+            description.append("Level: ").append(entry.getLevel()).append('\n');
+        }
+        return description.toString().trim();
+    }
+
+    /**
+     * Escape a value for a TEXT property
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(c);
+                    break;
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Write a content line, folding it so no physical line is longer than 75 octets of UTF-8.
+     * Continuation lines start with a space, which counts towards their length.
+     */
+    private void writeLine(String content) throws IOException {
+        line.setLength(0);
+        int octets = 0;
+        int i = 0;
+        while (i < content.length()) {
+            int codePoint = content.codePointAt(i);
+            int charCount = Character.charCount(codePoint);
+            int size = utf8Length(codePoint);
+            if (octets + size > MAX_LINE_OCTETS) {
+                line.append("\r\n ");
+                octets = 1;
+            }
+            line.append(content, i, i + charCount);
+            octets += size;
+            i += charCount;
+        }
+        line.append("\r\n");
+        writer.write(line.toString());
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,166 @@
+package com.ktu.timetable.export;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.graphics.pdf.PdfDocument;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimeUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes entries as a printable A4 table, one row per entry, starting a new page whenever the
+ * current one is full. Each page repeats the title and column headings and is numbered.
+ *
+ * PdfDocument keeps every finished page until the whole document is written out in
+ * {@link #finish()}, so memory grows with the number of pages. Exports are therefore capped at
+ * {@link #MAX_ENTRIES} entries, about a hundred pages.
+ */
+class PdfEntryWriter implements EntryWriter {
+
+    static final int MAX_ENTRIES = 5000;
+
+    // A4 in PostScript points
+    private static final int PAGE_WIDTH = 595;
+    private static final int PAGE_HEIGHT = 842;
+    private static final int MARGIN = 36;
+    private static final int TITLE_SIZE = 14;
+    private static final int TEXT_SIZE = 9;
+    private static final int ROW_HEIGHT = 16;
+    private static final int CELL_PADDING = 3;
+
+    private static final String[] HEADINGS = {"Day", "Time", "Course", "Type", "Lecturer", "Classroom"};
+    // Column widths, adding up to the page width less the margins
+    private static final int[] COLUMN_WIDTHS = {62, 96, 150, 58, 88, 69};
+
+    private final OutputStream output;
+    private final String title;
+    private final String[] dayNames;
+    private final PdfDocument document = new PdfDocument();
+    private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint headingPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint linePaint = new Paint();
+    private final String[] cells = new String[HEADINGS.length];
+
+    private PdfDocument.Page page;
+    private int pageNumber;
+    private int entryCount;
+    private int y;
+    private int lastDay;
+
+    /**
+     * @param output Output the finished document is written to
+     * @param title Title printed at the top of every page
+     * @param dayNames Names of the days, Monday first
+     */
+    PdfEntryWriter(OutputStream output, String title, String[] dayNames) {
+        this.output = output;
+        this.title = title;
+        this.dayNames = dayNames;
+
+        titlePaint.setTextSize(TITLE_SIZE);
+        titlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        headingPaint.setTextSize(TEXT_SIZE);
+        headingPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        textPaint.setTextSize(TEXT_SIZE);
+        linePaint.setColor(Color.LTGRAY);
+        linePaint.setStrokeWidth(0.5f);
+    }
+
+    @Override
+    public void begin() {
+        startPage();
+    }
+
+    @Override
+    public void write(TimetableEntry entry) throws IOException {
+        if (entryCount == MAX_ENTRIES) {
+            document.close();
+            throw new TimetableExporter.ExportTooLargeException(MAX_ENTRIES);
+        }
+        entryCount++;
+        if (y + ROW_HEIGHT > PAGE_HEIGHT - MARGIN - ROW_HEIGHT) {
+            document.finishPage(page);
+            startPage();
+        }
+
+        int day = entry.getDayOfWeek();
+        int start = TimeUtils.minuteOfDay(entry.getStartTime());
+        int end = TimeUtils.minuteOfDay(entry.getEndTime());
+
+        // Print the day once per group and rule a line between days
+        boolean newDay = day != lastDay;
+        if (newDay && lastDay != 0) {
+            page.getCanvas().drawLine(MARGIN, y, PAGE_WIDTH - MARGIN, y, linePaint);
+        }
+        cells[0] = newDay && day >= 1 && day <= dayNames.length ? dayNames[day - 1] : "";
+        cells[1] = start >= 0 && end >= 0
+                ? TimeUtils.formatMinuteOfDay(start) + " – " + TimeUtils.formatMinuteOfDay(end) : "";
+        cells[2] = entry.getCourseCode() != null && entry.getCourseName() != null
+                ? entry.getCourseCode() + " " + entry.getCourseName() : entry.getCourseName();
+        cells[3] = entry.getType();
+        cells[4] = entry.getLecturerName();
+        cells[5] = entry.getClassroomName();
+        drawRow(cells, textPaint);
+        lastDay = day;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        document.finishPage(page);
+        try {
+            document.writeTo(output);
+            output.flush();
+        } finally {
+            document.close();
+        }
+    }
+
+    private void startPage() {
+        pageNumber++;
+        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageNumber).create();
+        page = document.startPage(pageInfo);
+        Canvas canvas = page.getCanvas();
+
+        y = MARGIN + TITLE_SIZE;
+        canvas.drawText(fit(title, PAGE_WIDTH - 2 * MARGIN, titlePaint), MARGIN, y, titlePaint);
+        canvas.drawText("Page " + pageNumber, MARGIN, PAGE_HEIGHT - MARGIN / 2f, textPaint);
+
+        y += ROW_HEIGHT / 2;
+        drawRow(HEADINGS, headingPaint);
+        canvas.drawLine(MARGIN, y, PAGE_WIDTH - MARGIN, y, headingPaint);
+
+        // Repeat the day at the top of each page
+        lastDay = 0;
+    }
+
+    private void drawRow(String[] values, Paint paint) {
+        Canvas canvas = page.getCanvas();
+        float baseline = y + ROW_HEIGHT - (ROW_HEIGHT - TEXT_SIZE) / 2f - 1;
+        int x = MARGIN;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                canvas.drawText(fit(values[i], COLUMN_WIDTHS[i] - 2 * CELL_PADDING, paint),
+                        x + CELL_PADDING, baseline, paint);
+            }
+            x += COLUMN_WIDTHS[i];
+        }
+        y += ROW_HEIGHT;
+    }
+
+    /**
+     * Shorten text with an ellipsis so it fits a width
+     */
+    private static String fit(String text, float width, Paint paint) {
+        if (paint.measureText(text) <= width) {
+            return text;
+        }
+        int count = paint.breakText(text, true, width - paint.measureText("…"), null);
+        return text.substring(0, Math.max(0, count)) + "…";
+    }
+}
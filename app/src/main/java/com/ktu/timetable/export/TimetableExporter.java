@@ -0,0 +1,261 @@
+package com.ktu.timetable.export;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.ktu.timetable.R;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.RowDecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Exports part of the local timetable as an iCalendar file, CSV or a printable PDF.
+ *
+ * Entries are read from SQLite one row at a time and written straight to the output, so the
+ * memory used by iCalendar and CSV exports does not depend on how many entries are exported. A
+ * PDF is held until it is complete, so its size is capped. Output goes to a file the user
+ * picked with the system document picker, written through its file descriptor.
+ */
+public class TimetableExporter {
+
+    public static final String FORMAT_ICS = "ics";
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_PDF = "pdf";
+    // In the order of the export_formats labels
+    public static final String[] FORMATS = {FORMAT_ICS, FORMAT_CSV, FORMAT_PDF};
+
+    private static final String TAG = "TimetableExporter";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+    private final AppExecutors executors;
+
+    /**
+     * Reads the entries to export into a sink, ordered by day and start time
+     */
+    public interface EntrySource {
+        /**
+         * @param sink Receives each entry
+         * @return Number of entries read
+         */
+        int read(RowDecoder.RowSink<TimetableEntry> sink);
+    }
+
+    /**
+     * Receives the outcome of an export on the main thread
+     */
+    public interface ExportCallback {
+        /**
+         * @param entryCount Number of entries exported
+         */
+        void onExported(int entryCount);
+
+        /**
+         * @param e Why the file could not be written
+         */
+        void onExportFailed(Exception e);
+    }
+
+    /**
+     * Thrown when an export has more entries than its format allows
+     */
+    public static class ExportTooLargeException extends IOException {
+
+        private final int limit;
+
+        ExportTooLargeException(int limit) {
+            super("More than " + limit + " entries to export");
+            this.limit = limit;
+        }
+
+        /**
+         * @return Most entries the format can export
+         */
+        public int getLimit() {
+            return limit;
+        }
+    }
+
+    /**
+     * Thrown from inside a row sink to stop reading when the output fails
+     */
+    private static class OutputFailedException extends RuntimeException {
+        OutputFailedException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * @param context Context used to open the output file and the database
+     */
+    public TimetableExporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.databaseHelper = DatabaseHelper.getInstance(context);
+        this.executors = AppExecutors.getInstance();
+    }
+
+    /**
+     * @param format One of the FORMAT_* constants
+     * @return MIME type of the format
+     */
+    public static String mimeType(String format) {
+        switch (format) {
+            case FORMAT_ICS:
+                return "text/calendar";
+            case FORMAT_CSV:
+                return "text/csv";
+            case FORMAT_PDF:
+                return "application/pdf";
+            default:
+                throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
+
+    /**
+     * Build an intent that asks the user where to save an export
+     * @param format One of the FORMAT_* constants
+     * @param fileName Suggested file name, without extension
+     * @return Intent for startActivityForResult; the result data holds the chosen file
+     */
+    public static Intent createDocumentIntent(String format, String fileName) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(mimeType(format));
+        intent.putExtra(Intent.EXTRA_TITLE, fileName.replaceAll("[\\\\/:*?\"<>|]", "_") + "." + format);
+        return intent;
+    }
+
+    /**
+     * @return Source reading the timetable of one class
+     */
+    public EntrySource byDepartmentAndLevel(final String departmentId, final String level) {
+        return sink -> databaseHelper.getTimetableByDepartmentAndLevel(departmentId, level, null, sink);
+    }
+
+    /**
+     * @return Source reading the timetable of one lecturer
+     */
+    public EntrySource byLecturer(final String lecturerId) {
+        return sink -> databaseHelper.getTimetableByLecturer(lecturerId, null, sink);
+    }
+
+    /**
+     * @return Source reading the timetable of one classroom
+     */
+    public EntrySource byClassroom(final String classroomId) {
+        return sink -> databaseHelper.getTimetableByClassroom(classroomId, null, sink);
+    }
+
+    /**
+     * Export on the jobs executor
+     * @param uri File to write, as returned by the document picker
+     * @param format One of the FORMAT_* constants
+     * @param title Title of the calendar or document
+     * @param source Entries to export
+     * @param callback Receives the outcome on the main thread
+     */
+    public void export(final Uri uri, final String format, final String title, final EntrySource source,
+                       final ExportCallback callback) {
+        try {
+            executors.jobs().execute(() -> {
+                try (ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "wt")) {
+                    if (descriptor == null) {
+                        throw new FileNotFoundException(uri.toString());
+                    }
+                    final int count;
+                    try (OutputStream output = new FileOutputStream(descriptor.getFileDescriptor())) {
+                        count = write(output, format, title, source);
+                    }
+                    executors.mainThread().execute(() -> callback.onExported(count));
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error exporting timetable to " + uri, e);
+                    executors.mainThread().execute(() -> callback.onExportFailed(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Export to " + uri + " not started", e);
+            executors.mainThread().execute(() -> callback.onExportFailed(e));
+        }
+    }
+
+    /**
+     * @param e Failure passed to {@link ExportCallback#onExportFailed(Exception)}
+     * @return Message to show the user
+     */
+    public String failureMessage(Exception e) {
+        if (e instanceof ExportTooLargeException) {
+            return context.getString(R.string.export_too_large, ((ExportTooLargeException) e).getLimit());
+        }
+        return context.getString(R.string.export_error);
+    }
+
+    /**
+     * Export to a stream on the calling thread. The stream is not closed.
+     * @param output Stream to write to
+     * @param format One of the FORMAT_* constants
+     * @param title Title of the calendar or document
+     * @param source Entries to export
+     * @return Number of entries read
+     * @throws IOException If the output cannot be written
+     */
+    public int write(OutputStream output, String format, String title, EntrySource source) throws IOException {
+        final EntryWriter writer = createWriter(output, format, title);
+        writer.begin();
+        int count;
+        try {
+            count = source.read(entry -> {
+                try {
+                    writer.write(entry);
+                } catch (IOException e) {
+                    // Stop reading; the cursor is closed on the way out
+                    throw new OutputFailedException(e);
+                }
+            });
+        } catch (OutputFailedException e) {
+            throw (IOException) e.getCause();
+        }
+        writer.finish();
+        return count;
+    }
+
+    private EntryWriter createWriter(OutputStream output, String format, String title) {
+        String[] dayNames = {
+                context.getString(R.string.monday),
+                context.getString(R.string.tuesday),
+                context.getString(R.string.wednesday),
+                context.getString(R.string.thursday),
+                context.getString(R.string.friday),
+                context.getString(R.string.saturday),
+                context.getString(R.string.sunday)
+        };
+        switch (format) {
+            case FORMAT_ICS:
+                return new IcsEntryWriter(textWriter(output), title);
+            case FORMAT_CSV:
+                return new CsvEntryWriter(textWriter(output), dayNames);
+            case FORMAT_PDF:
+                return new PdfEntryWriter(new BufferedOutputStream(output, BUFFER_SIZE), title, dayNames);
+            default:
+                throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
+
+    private static BufferedWriter textWriter(OutputStream output) {
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+}
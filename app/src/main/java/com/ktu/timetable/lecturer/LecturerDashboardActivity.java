@@ -2,6 +2,7 @@ package com.ktu.timetable.lecturer;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu; 
 import android.view.MenuItem;
 import android.view.View;
@@ -19,15 +20,20 @@ import com.ktu.timetable.LoginActivity;
 import com.ktu.timetable.R;
 import com.ktu.timetable.models.Lecturer;
 import com.ktu.timetable.models.User;
+import com.ktu.timetable.utils.AppExecutors;
 import com.ktu.timetable.utils.DatabaseHelper;
 import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.StartupMetrics;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 public class LecturerDashboardActivity extends AppCompatActivity {
 
+    private static final String TAG = "LecturerDashboardActivity";
+
     private TextView welcomeTextView;
     private TextView syncStatusTextView;
     private Button logoutButton;
@@ -40,6 +46,7 @@ public class LecturerDashboardActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.trackDashboard(this);
         setContentView(R.layout.activity_lecturer_dashboard);
         
         // Initialize Firebase Auth
@@ -163,11 +170,24 @@ public class LecturerDashboardActivity extends AppCompatActivity {
     }
     
     private void updateSyncStatus() {
-        String lastSyncTime = databaseHelper.getLastSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
-        if (lastSyncTime != null) {
-            syncStatusTextView.setText("Last synced: " + lastSyncTime);
-        } else {
-            syncStatusTextView.setText("Last synced: Never");
+        // Opening the database can be slow on first use, so read it off the main thread
+        final AppExecutors executors = AppExecutors.getInstance();
+        try {
+            executors.diskIO().execute(() -> {
+                final String lastSyncTime = databaseHelper.getLastSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
+                executors.mainThread().execute(() -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (lastSyncTime != null) {
+                        syncStatusTextView.setText("Last synced: " + lastSyncTime);
+                    } else {
+                        syncStatusTextView.setText("Last synced: Never");
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Sync status not read", e);
         }
     }
     
@@ -1,12 +1,17 @@
 package com.ktu.timetable.lecturer;
 
+import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -14,30 +19,39 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.tabs.TabLayout;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.ktu.timetable.R;
 import com.ktu.timetable.adapters.TimetableAdapter;
+import com.ktu.timetable.export.TimetableExporter;
 import com.ktu.timetable.models.TimetableEntry;
-import com.ktu.timetable.utils.DatabaseHelper;
-import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.repository.TimetableRepository;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.TimetableDayBuckets;
+import com.ktu.timetable.utils.TimetableListDiffer;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 public class LecturerTimetableActivity extends AppCompatActivity {
 
+    private static final String TAG = "LecturerTimetableActivity";
+    private static final int REQUEST_EXPORT = 1;
+    private static final String STATE_EXPORT_FORMAT = "export_format";
+
     private RecyclerView timetableRecyclerView;
     private ProgressBar progressBar;
     private TextView emptyView;
     private TabLayout tabLayout;
     
     private TimetableAdapter adapter;
-    private List<TimetableEntry> allTimetableEntries;
+    private TimetableListDiffer timetableDiffer;
+    private TimetableDayBuckets dayBuckets;
     private List<TimetableEntry> filteredTimetableEntries;
     
-    private DatabaseHelper databaseHelper;
+    private TimetableRepository timetableRepository;
     private String lecturerId;
+    private String exportFormat;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -46,6 +60,9 @@ public class LecturerTimetableActivity extends AppCompatActivity {
         
         // Get lecturer ID from intent
         lecturerId = getIntent().getStringExtra("LECTURER_ID");
+        if (savedInstanceState != null) {
+            exportFormat = savedInstanceState.getString(STATE_EXPORT_FORMAT);
+        }
         
         // Setup toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -55,8 +72,8 @@ public class LecturerTimetableActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
         
-        // Initialize database helper
-        databaseHelper = DatabaseHelper.getInstance(this);
+        // Initialize repository
+        timetableRepository = TimetableRepository.getInstance(this);
         
         // Initialize UI elements
         timetableRecyclerView = findViewById(R.id.timetableRecyclerView);
@@ -66,9 +83,10 @@ public class LecturerTimetableActivity extends AppCompatActivity {
         
         // Setup RecyclerView
         timetableRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        allTimetableEntries = new ArrayList<>();
+        dayBuckets = new TimetableDayBuckets(new ArrayList<TimetableEntry>());
         filteredTimetableEntries = new ArrayList<>();
         adapter = new TimetableAdapter(filteredTimetableEntries);
+        timetableDiffer = new TimetableListDiffer(adapter, filteredTimetableEntries);
         timetableRecyclerView.setAdapter(adapter);
         
         // Setup tabs for days of the week
@@ -78,15 +96,65 @@ public class LecturerTimetableActivity extends AppCompatActivity {
         loadTimetableData();
     }
     
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_FORMAT, exportFormat);
+    }
+    
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.timetable_menu, menu);
+        return true;
+    }
+    
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             onBackPressed();
             return true;
         }
+        if (item.getItemId() == R.id.action_export) {
+            showExportDialog();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
     
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_EXPORT && resultCode == RESULT_OK && data != null
+                && data.getData() != null && exportFormat != null && lecturerId != null) {
+            TimetableExporter exporter = new TimetableExporter(this);
+            exporter.export(data.getData(), exportFormat, "My Timetable", exporter.byLecturer(lecturerId),
+                    new TimetableExporter.ExportCallback() {
+                        @Override
+                        public void onExported(int entryCount) {
+                            Snackbar.make(findViewById(android.R.id.content),
+                                    getString(R.string.export_success, entryCount), Snackbar.LENGTH_LONG).show();
+                        }
+                        
+                        @Override
+                        public void onExportFailed(Exception e) {
+                            Snackbar.make(findViewById(android.R.id.content), exporter.failureMessage(e), Snackbar.LENGTH_LONG).show();
+                        }
+                    });
+        }
+    }
+    
+    private void showExportDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_timetable)
+                .setItems(R.array.export_formats, (dialog, which) -> {
+                    exportFormat = TimetableExporter.FORMATS[which];
+                    startActivityForResult(TimetableExporter.createDocumentIntent(exportFormat, "My Timetable"),
+                            REQUEST_EXPORT);
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+    
     private void setupTabs() {
         tabLayout.addTab(tabLayout.newTab().setText(R.string.monday));
         tabLayout.addTab(tabLayout.newTab().setText(R.string.tuesday));
@@ -134,69 +202,53 @@ public class LecturerTimetableActivity extends AppCompatActivity {
             return;
         }
         
-        FirebaseUtil.getTimetableByLecturer(lecturerId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    allTimetableEntries.clear();
-                    
-                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        TimetableEntry entry = documentSnapshot.toObject(TimetableEntry.class);
-                        if (entry != null) {
-                            allTimetableEntries.add(entry);
-                            
-                            // Save to local database
-                            databaseHelper.saveTimetableEntry(entry);
-                        }
-                    }
-                    
-                    // Update sync timestamp
-                    databaseHelper.updateSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
-                    
-                    // Filter timetable by the current day tab
-                    TabLayout.Tab selectedTab = tabLayout.getSelectedTab();
-                    if (selectedTab != null) {
-                        filterTimetableByDay(selectedTab.getPosition() + 1);
-                    }
-                    
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                })
-                .addOnFailureListener(e -> {
-                    // Try to load from local database
-                    allTimetableEntries.addAll(databaseHelper.getTimetableByLecturer(lecturerId));
-                    
-                    // Filter timetable by the current day tab
-                    TabLayout.Tab selectedTab = tabLayout.getSelectedTab();
-                    if (selectedTab != null) {
-                        filterTimetableByDay(selectedTab.getPosition() + 1);
-                    }
-                    
-                    progressBar.setVisibility(View.GONE);
-                    updateEmptyView();
-                    
-                    Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
-                });
+        // Shows the local timetable, then live changes from the server while the screen is visible
+        timetableRepository.observeTimetableByLecturer(this, lecturerId).observe(this, result -> {
+            showTimetable(result.getData());
+            if (result.isOffline()) {
+                Snackbar.make(findViewById(android.R.id.content), R.string.network_error, Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
     
-    private void filterTimetableByDay(int dayOfWeek) {
-        filteredTimetableEntries.clear();
-        
-        for (TimetableEntry entry : allTimetableEntries) {
-            if (entry.getDayOfWeek() == dayOfWeek) {
-                filteredTimetableEntries.add(entry);
-            }
+    private void showTimetable(final List<TimetableEntry> entries) {
+        // Bucket and sort by day once per result, off the main thread
+        final AppExecutors executors = AppExecutors.getInstance();
+        try {
+            executors.computation().execute(() -> {
+                final TimetableDayBuckets buckets = new TimetableDayBuckets(entries);
+                executors.mainThread().execute(() -> showBuckets(buckets));
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Bucketing on the main thread", e);
+            showBuckets(new TimetableDayBuckets(entries));
         }
-        
-        // Sort entries by start time
-        filteredTimetableEntries.sort((o1, o2) -> {
-            if (o1.getStartTime() == null || o2.getStartTime() == null) return 0;
-            return o1.getStartTime().compareTo(o2.getStartTime());
-        });
-        
-        adapter.notifyDataSetChanged();
+    }
+
+    private void showBuckets(TimetableDayBuckets buckets) {
+        if (isDestroyed()) {
+            return;
+        }
+        dayBuckets = buckets;
+
+        // Filter timetable by the current day tab
+        TabLayout.Tab selectedTab = tabLayout.getSelectedTab();
+        if (selectedTab != null) {
+            filterTimetableByDay(selectedTab.getPosition() + 1);
+        }
+
+        progressBar.setVisibility(View.GONE);
         updateEmptyView();
     }
     
+    private void filterTimetableByDay(int dayOfWeek) {
+        // Entries of the day are already sorted by start time
+        List<TimetableEntry> dayEntries = dayBuckets.getDay(dayOfWeek);
+
+        // Diff against the shown list off the main thread and animate only what changed
+        timetableDiffer.submit(dayEntries, this::updateEmptyView);
+    }
+    
     private void updateEmptyView() {
         if (filteredTimetableEntries.isEmpty()) {
             emptyView.setVisibility(View.VISIBLE);
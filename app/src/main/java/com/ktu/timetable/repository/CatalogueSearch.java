@@ -0,0 +1,129 @@
+package com.ktu.timetable.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.RowDecoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Searches one catalogue table of the local database as the user types. Queries are debounced,
+ * so a burst of keystrokes runs a single search once typing pauses, and run on the disk I/O
+ * executor. Only the results of the latest query are delivered, on the main thread; nothing is
+ * delivered after the owner is destroyed. Must be used on the main thread.
+ * @param <T> Type of the records searched
+ */
+public class CatalogueSearch<T> implements LifecycleEventObserver {
+
+    private static final String TAG = "CatalogueSearch";
+
+    // Pause in typing before a search runs
+    static final long DEBOUNCE_MILLIS = 200;
+    // Best matches returned for a query
+    static final int MAX_RESULTS = 200;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Searcher<T> searcher;
+    private final ResultListener<T> listener;
+
+    // Incremented for every query, so results of older ones can be recognised and dropped
+    private int generation;
+    private boolean destroyed;
+    private Runnable pending;
+
+    /**
+     * Runs a query against the database on a background thread
+     */
+    interface Searcher<T> {
+        int search(String query, int limit, RowDecoder.RowSink<T> sink);
+    }
+
+    /**
+     * Receives search results on the main thread
+     */
+    public interface ResultListener<T> {
+        /**
+         * @param query Query the results are for
+         * @param results Matching records, best first
+         */
+        void onResults(String query, List<T> results);
+    }
+
+    CatalogueSearch(LifecycleOwner owner, Searcher<T> searcher, ResultListener<T> listener) {
+        this.searcher = searcher;
+        this.listener = listener;
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            destroyed = true;
+        } else {
+            owner.getLifecycle().addObserver(this);
+        }
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_DESTROY) {
+            source.getLifecycle().removeObserver(this);
+            destroyed = true;
+            cancel();
+        }
+    }
+
+    /**
+     * Search once typing pauses, replacing any query still waiting or running
+     * @param query Text typed by the user
+     */
+    public void search(final String query) {
+        cancel();
+        if (destroyed) {
+            return;
+        }
+        final int queryGeneration = generation;
+        pending = () -> {
+            pending = null;
+            runSearch(query, queryGeneration);
+        };
+        handler.postDelayed(pending, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Drop any query still waiting or running, for example when the search box is cleared
+     */
+    public void cancel() {
+        generation++;
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+
+    private void runSearch(final String query, final int queryGeneration) {
+        final AppExecutors executors = AppExecutors.getInstance();
+        try {
+            executors.diskIO().execute(() -> {
+                final List<T> results = new ArrayList<>();
+                try {
+                    searcher.search(query, MAX_RESULTS, results::add);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Error searching for " + query, e);
+                }
+                executors.mainThread().execute(() -> {
+                    if (!destroyed && queryGeneration == generation) {
+                        listener.onResults(query, results);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Search for " + query + " not run", e);
+        }
+    }
+}
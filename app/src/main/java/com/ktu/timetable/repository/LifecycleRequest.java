@@ -0,0 +1,92 @@
+package com.ktu.timetable.repository;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.ktu.timetable.utils.AppExecutors;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * One repository load tied to the screen that asked for it. When the owner is destroyed the
+ * request is cancelled: queued background steps are skipped and no result is published.
+ * Must be created on the main thread.
+ * @param <T> Result type
+ */
+class LifecycleRequest<T> implements LifecycleEventObserver {
+
+    private final MutableLiveData<T> result = new MutableLiveData<>();
+    private volatile boolean cancelled;
+    private Future<?> pending;
+
+    LifecycleRequest(LifecycleOwner owner) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancelled = true;
+        } else {
+            owner.getLifecycle().addObserver(this);
+        }
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_DESTROY) {
+            source.getLifecycle().removeObserver(this);
+            cancel();
+        }
+    }
+
+    LiveData<T> getResult() {
+        return result;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Run a step on the disk I/O executor unless the request has been cancelled
+     * @param step Work to run
+     */
+    void runInBackground(final Runnable step) {
+        if (cancelled) {
+            return;
+        }
+        try {
+            Future<?> future = AppExecutors.getInstance().diskIO().submit(() -> {
+                if (!cancelled) {
+                    step.run();
+                }
+            });
+            synchronized (this) {
+                pending = future;
+            }
+        } catch (RejectedExecutionException e) {
+            cancel();
+        }
+    }
+
+    /**
+     * Publish a result from any thread unless the request has been cancelled
+     * @param value Result to publish
+     */
+    void publish(T value) {
+        if (!cancelled) {
+            result.postValue(value);
+        }
+    }
+
+    private void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.ktu.timetable.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps a timetable query up to date while its screen is started.
+ *
+ * The local entries are published first. A Firestore snapshot listener then patches the
+ * in-memory entries and the SQLite cache with each ADDED, MODIFIED and REMOVED change and
+ * publishes the result, so edits appear without reloading. The first snapshot confirmed by the
+ * server replaces the local entries in full. All processing runs in order on a serial disk I/O
+ * executor; the listener is removed when the screen stops.
+ */
+class LiveTimetableQuery implements LifecycleEventObserver {
+
+    private static final String TAG = "LiveTimetableQuery";
+
+    // Order entries are shown in: by day, then by start time
+    private static final Comparator<TimetableEntry> DAY_AND_TIME_ORDER = new Comparator<TimetableEntry>() {
+        @Override
+        public int compare(TimetableEntry a, TimetableEntry b) {
+            if (a.getDayOfWeek() != b.getDayOfWeek()) {
+                return a.getDayOfWeek() < b.getDayOfWeek() ? -1 : 1;
+            }
+            int startA = TimeUtils.minuteOfDay(a.getStartTime());
+            int startB = TimeUtils.minuteOfDay(b.getStartTime());
+            return startA < startB ? -1 : (startA == startB ? 0 : 1);
+        }
+    };
+
+    /**
+     * Reads the entries matching the query from the local database
+     */
+    interface LocalQuery {
+        List<TimetableEntry> read();
+    }
+
+    private final Query query;
+    private final LocalQuery localQuery;
+    private final boolean wholeCollection;
+    private final DatabaseHelper databaseHelper;
+    private final Executor serialExecutor;
+    private final MutableLiveData<Resource<List<TimetableEntry>>> result = new MutableLiveData<>();
+
+    // Only touched on the serial executor
+    private final Map<String, TimetableEntry> entriesById = new HashMap<>();
+    private boolean localLoaded;
+    private boolean serverConfirmed;
+
+    private ListenerRegistration registration;
+    private volatile boolean destroyed;
+
+    /**
+     * @param owner Screen the results are for
+     * @param query Firestore query to listen to
+     * @param localQuery Reads the same entries from SQLite
+     * @param wholeCollection true if the query covers the whole timetable collection. Only
+     *                        then does an entry leaving the query mean it was deleted.
+     */
+    LiveTimetableQuery(LifecycleOwner owner, Query query, LocalQuery localQuery, boolean wholeCollection,
+                       DatabaseHelper databaseHelper) {
+        this.query = query;
+        this.localQuery = localQuery;
+        this.wholeCollection = wholeCollection;
+        this.databaseHelper = databaseHelper;
+        this.serialExecutor = AppExecutors.getInstance().newSerialDiskExecutor();
+
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            destroyed = true;
+        } else {
+            owner.getLifecycle().addObserver(this);
+        }
+    }
+
+    LiveData<Resource<List<TimetableEntry>>> getResult() {
+        return result;
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        switch (event) {
+            case ON_START:
+                start();
+                break;
+            case ON_STOP:
+                stop();
+                break;
+            case ON_DESTROY:
+                destroyed = true;
+                source.getLifecycle().removeObserver(this);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void start() {
+        serialExecutor.execute(() -> {
+            if (!localLoaded && !destroyed) {
+                for (TimetableEntry entry : localQuery.read()) {
+                    entriesById.put(entry.getId(), entry);
+                }
+                localLoaded = true;
+                publish(null);
+            }
+            // Changes made while stopped arrive as a fresh full snapshot
+            serverConfirmed = false;
+        });
+
+        registration = query.addSnapshotListener(serialExecutor, MetadataChanges.INCLUDE, this::onSnapshot);
+    }
+
+    private void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private void onSnapshot(QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (destroyed) {
+            return;
+        }
+        if (error != null) {
+            // Keep showing what we have
+            Log.w(TAG, "Timetable listener failed", error);
+            publish(error);
+            return;
+        }
+        if (snapshot == null) {
+            return;
+        }
+
+        List<TimetableEntry> changed = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+
+        if (!serverConfirmed && !snapshot.getMetadata().isFromCache()) {
+            // First complete answer from the server: it is the full truth for this query
+            serverConfirmed = true;
+            Map<String, TimetableEntry> current = new HashMap<>();
+            for (DocumentSnapshot document : snapshot.getDocuments()) {
+                TimetableEntry entry = document.toObject(TimetableEntry.class);
+                if (entry != null) {
+                    current.put(entry.getId(), entry);
+                    if (isNewer(entry)) {
+                        changed.add(entry);
+                    }
+                }
+            }
+            if (wholeCollection) {
+                for (String id : entriesById.keySet()) {
+                    if (!current.containsKey(id)) {
+                        deletedIds.add(id);
+                    }
+                }
+            }
+            entriesById.clear();
+            entriesById.putAll(current);
+        } else {
+            List<DocumentChange> documentChanges = snapshot.getDocumentChanges();
+            if (documentChanges.isEmpty()) {
+                // Metadata only
+                return;
+            }
+            for (DocumentChange change : documentChanges) {
+                DocumentSnapshot document = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    entriesById.remove(document.getId());
+                    if (wholeCollection) {
+                        deletedIds.add(document.getId());
+                    }
+                } else {
+                    TimetableEntry entry = document.toObject(TimetableEntry.class);
+                    if (entry != null) {
+                        if (isNewer(entry)) {
+                            changed.add(entry);
+                        }
+                        entriesById.put(entry.getId(), entry);
+                    }
+                }
+            }
+        }
+
+        // Entries that only left a narrower query are kept locally; the next sync corrects them
+        if ((!changed.isEmpty() || !deletedIds.isEmpty())
+                && !databaseHelper.applyTimetableChanges(changed, deletedIds)) {
+            Log.w(TAG, "Could not cache timetable changes");
+        }
+        publish(null);
+    }
+
+    /**
+     * @return true unless the same version of the entry is already held, which is the case for
+     * most of the full snapshot sent each time the listener starts
+     */
+    private boolean isNewer(TimetableEntry entry) {
+        TimetableEntry known = entriesById.get(entry.getId());
+        return known == null || known.getLastModified() == null
+                || !known.getLastModified().equals(entry.getLastModified());
+    }
+
+    private void publish(Exception error) {
+        if (destroyed) {
+            return;
+        }
+        List<TimetableEntry> entries = new ArrayList<>(entriesById.values());
+        Collections.sort(entries, DAY_AND_TIME_ORDER);
+        result.postValue(error == null ? Resource.success(entries) : Resource.offline(entries, error));
+    }
+}
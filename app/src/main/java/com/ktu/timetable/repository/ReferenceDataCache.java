@@ -0,0 +1,258 @@
+package com.ktu.timetable.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * One reference collection shared by every screen of the process, such as the departments.
+ *
+ * The local copy is read from SQLite when the first screen starts observing. A Firestore
+ * snapshot listener then keeps it up to date: each document is compared by ID with the copy
+ * held, and only documents whose locally kept fields differ are written to SQLite. The first
+ * snapshot confirmed by the server is the full truth, so documents missing from it are deleted.
+ * The collection is re-read from SQLite after each write, so edits waiting in the outbox are
+ * kept, and its version only moves when the contents do. A snapshot that repeats what is held,
+ * such as the one sent when the listener reattaches, writes and publishes nothing.
+ *
+ * The listener stays attached while any screen observes and for a short while after, so moving
+ * between screens does not start a new listen. Work runs in order on a serial disk I/O executor.
+ * @param <T> Model type
+ */
+class ReferenceDataCache<T> extends LiveData<Resource<List<T>>> {
+
+    private static final String TAG = "ReferenceDataCache";
+
+    // How long the listener stays attached after the last screen stops observing
+    private static final long LINGER_MILLIS = 60 * 1000L;
+
+    /**
+     * Reads and writes the local copy of the collection
+     */
+    interface LocalStore<T> {
+        List<T> readAll();
+
+        boolean save(List<T> items);
+
+        String getId(T item);
+
+        /**
+         * @return Fields kept locally, compared to tell whether a document changed
+         */
+        List<Object> stamp(T item);
+    }
+
+    /**
+     * Immutable copy of the collection at one version
+     */
+    private static class Contents<T> {
+        final long version;
+        final List<T> items;
+        final Map<String, T> itemsById;
+        final Map<String, List<Object>> stampsById;
+
+        Contents(long version, List<T> items, Map<String, T> itemsById, Map<String, List<Object>> stampsById) {
+            this.version = version;
+            this.items = Collections.unmodifiableList(items);
+            this.itemsById = Collections.unmodifiableMap(itemsById);
+            this.stampsById = stampsById;
+        }
+    }
+
+    private final String collection;
+    private final Query query;
+    private final Class<T> type;
+    private final LocalStore<T> store;
+    private final DatabaseHelper databaseHelper;
+    private final Executor serialExecutor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable detach = this::detach;
+
+    // Written on the serial executor
+    private volatile Contents<T> contents;
+    private boolean serverConfirmed;
+
+    // Only touched on the main thread
+    private ListenerRegistration registration;
+
+    /**
+     * @param collection Firestore collection, as passed to the DatabaseHelper
+     * @param query Query covering the whole collection
+     * @param type Model type
+     * @param store Local copy of the collection
+     */
+    ReferenceDataCache(String collection, Query query, Class<T> type, LocalStore<T> store,
+                       DatabaseHelper databaseHelper) {
+        this.collection = collection;
+        this.query = query;
+        this.type = type;
+        this.store = store;
+        this.databaseHelper = databaseHelper;
+        this.serialExecutor = AppExecutors.getInstance().newSerialDiskExecutor();
+    }
+
+    /**
+     * @param id Document ID
+     * @return Item held for the ID, or null if there is none or the local copy has not been read
+     */
+    T get(String id) {
+        Contents<T> current = contents;
+        return current == null ? null : current.itemsById.get(id);
+    }
+
+    /**
+     * Re-read the local copy after it was edited locally, publishing it if it changed
+     */
+    void onLocalEdit() {
+        serialExecutor.execute(() -> {
+            // Nothing to refresh until a screen has asked for the collection
+            if (contents != null && reload()) {
+                publish(null);
+            }
+        });
+    }
+
+    @Override
+    protected void onActive() {
+        handler.removeCallbacks(detach);
+        if (registration != null) {
+            return;
+        }
+
+        serialExecutor.execute(() -> {
+            if (contents == null) {
+                reload();
+                publish(null);
+            }
+            // A new listen starts with a fresh full snapshot
+            serverConfirmed = false;
+        });
+        registration = query.addSnapshotListener(serialExecutor, MetadataChanges.INCLUDE, this::onSnapshot);
+    }
+
+    @Override
+    protected void onInactive() {
+        handler.postDelayed(detach, LINGER_MILLIS);
+    }
+
+    private void detach() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private void onSnapshot(QuerySnapshot snapshot, FirebaseFirestoreException error) {
+        if (error != null) {
+            // Keep showing what we have
+            Log.w(TAG, "Listener for " + collection + " failed", error);
+            publish(error);
+            return;
+        }
+        if (snapshot == null) {
+            return;
+        }
+
+        Contents<T> current = contents;
+        List<T> changed = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+
+        if (!serverConfirmed && !snapshot.getMetadata().isFromCache()) {
+            // First complete answer from the server: it is the full truth for the collection
+            serverConfirmed = true;
+            Set<String> serverIds = new HashSet<>();
+            for (DocumentSnapshot document : snapshot.getDocuments()) {
+                serverIds.add(document.getId());
+                addIfChanged(document, current, changed);
+            }
+            for (String id : current.itemsById.keySet()) {
+                if (!serverIds.contains(id)) {
+                    deletedIds.add(id);
+                }
+            }
+        } else {
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                DocumentSnapshot document = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    if (current.itemsById.containsKey(document.getId())) {
+                        deletedIds.add(document.getId());
+                    }
+                } else {
+                    addIfChanged(document, current, changed);
+                }
+            }
+        }
+
+        if (changed.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+
+        if (!databaseHelper.runInTransaction(() -> store.save(changed)
+                && databaseHelper.deleteReferenceRows(collection, deletedIds))) {
+            Log.w(TAG, "Could not cache " + collection + " changes");
+        }
+        if (reload()) {
+            publish(null);
+        }
+    }
+
+    private void addIfChanged(DocumentSnapshot document, Contents<T> current, List<T> changed) {
+        T item = document.toObject(type);
+        if (item != null && !store.stamp(item).equals(current.stampsById.get(document.getId()))) {
+            changed.add(item);
+        }
+    }
+
+    /**
+     * Read the local copy into memory
+     * @return true if it differs from what was held
+     */
+    private boolean reload() {
+        List<T> items = store.readAll();
+        Map<String, T> itemsById = new LinkedHashMap<>();
+        Map<String, List<Object>> stampsById = new HashMap<>();
+        for (T item : items) {
+            itemsById.put(store.getId(item), item);
+            stampsById.put(store.getId(item), store.stamp(item));
+        }
+
+        Contents<T> previous = contents;
+        if (previous != null && previous.stampsById.equals(stampsById)) {
+            return false;
+        }
+        contents = new Contents<>(previous == null ? 1 : previous.version + 1, items, itemsById, stampsById);
+        Log.d(TAG, collection + " at version " + contents.version + ", " + items.size() + " items");
+        return true;
+    }
+
+    private void publish(Exception error) {
+        List<T> items = contents.items;
+        if (error != null) {
+            postValue(Resource.offline(items, error));
+        } else {
+            postValue(serverConfirmed ? Resource.success(items) : Resource.cached(items));
+        }
+    }
+}
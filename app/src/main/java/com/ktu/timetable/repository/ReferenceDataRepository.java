@@ -0,0 +1,315 @@
+package com.ktu.timetable.repository;
+
+import android.content.Context;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Department;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.OutboxManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Departments, courses, lecturers and classrooms, shared by every screen. Each collection is
+ * held in memory by a {@link ReferenceDataCache}: it is read from SQLite the first time a screen
+ * observes it and then kept up to date by a Firestore snapshot listener, so opening a screen
+ * again costs no network reads unless something changed. Local edits recorded through the
+ * outbox show up straight away.
+ */
+public class ReferenceDataRepository {
+
+    private static ReferenceDataRepository instance;
+
+    private final DatabaseHelper databaseHelper;
+    private final ReferenceDataCache<Department> departments;
+    private final ReferenceDataCache<Course> courses;
+    private final ReferenceDataCache<Lecturer> lecturers;
+    private final ReferenceDataCache<Classroom> classrooms;
+
+    /**
+     * Get singleton instance of ReferenceDataRepository
+     * @param context Application context
+     * @return ReferenceDataRepository instance
+     */
+    public static synchronized ReferenceDataRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReferenceDataRepository(DatabaseHelper.getInstance(context));
+            OutboxManager.getInstance(context).addEditListener(instance::onLocalEdit);
+        }
+        return instance;
+    }
+
+    private ReferenceDataRepository(final DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+
+        departments = new ReferenceDataCache<>(FirebaseUtil.DEPARTMENTS_COLLECTION,
+                FirebaseUtil.getDepartmentsCollection(), Department.class,
+                new ReferenceDataCache.LocalStore<Department>() {
+                    @Override
+                    public List<Department> readAll() {
+                        return databaseHelper.getAllDepartments();
+                    }
+
+                    @Override
+                    public boolean save(List<Department> items) {
+                        return databaseHelper.saveDepartments(items);
+                    }
+
+                    @Override
+                    public String getId(Department department) {
+                        return department.getId();
+                    }
+
+                    @Override
+                    public List<Object> stamp(Department department) {
+                        return Arrays.<Object>asList(text(department.getName()), text(department.getCode()),
+                                text(department.getFacultyId()), text(department.getFacultyName()),
+                                text(department.getHodId()));
+                    }
+                }, databaseHelper);
+
+        // Department names of courses and lecturers are filled in from the saved departments,
+        // so they are left out of the stamps
+        courses = new ReferenceDataCache<>(FirebaseUtil.COURSES_COLLECTION,
+                FirebaseUtil.getCoursesCollection(), Course.class,
+                new ReferenceDataCache.LocalStore<Course>() {
+                    @Override
+                    public List<Course> readAll() {
+                        return databaseHelper.getAllCourses();
+                    }
+
+                    @Override
+                    public boolean save(List<Course> items) {
+                        Map<String, String> departmentNames = getDepartmentNames();
+                        for (Course course : items) {
+                            String departmentName = departmentNames.get(course.getDepartmentId());
+                            if (departmentName != null) {
+                                course.setDepartmentName(departmentName);
+                            }
+                        }
+                        return databaseHelper.saveCourses(items);
+                    }
+
+                    @Override
+                    public String getId(Course course) {
+                        return course.getId();
+                    }
+
+                    @Override
+                    public List<Object> stamp(Course course) {
+                        return Arrays.<Object>asList(text(course.getCode()), text(course.getName()),
+                                text(course.getDepartmentId()), course.getCreditHours(), text(course.getLevel()),
+                                text(course.getSemester()), course.isElective(), course.isPractical(),
+                                text(course.getDescription()));
+                    }
+                }, databaseHelper);
+
+        lecturers = new ReferenceDataCache<>(FirebaseUtil.LECTURERS_COLLECTION,
+                FirebaseUtil.getLecturersCollection(), Lecturer.class,
+                new ReferenceDataCache.LocalStore<Lecturer>() {
+                    @Override
+                    public List<Lecturer> readAll() {
+                        return databaseHelper.getAllLecturers();
+                    }
+
+                    @Override
+                    public boolean save(List<Lecturer> items) {
+                        Map<String, String> departmentNames = getDepartmentNames();
+                        for (Lecturer lecturer : items) {
+                            String departmentName = departmentNames.get(lecturer.getDepartmentId());
+                            if (departmentName != null) {
+                                lecturer.setDepartmentName(departmentName);
+                            }
+                        }
+                        return databaseHelper.saveLecturers(items);
+                    }
+
+                    @Override
+                    public String getId(Lecturer lecturer) {
+                        return lecturer.getId();
+                    }
+
+                    @Override
+                    public List<Object> stamp(Lecturer lecturer) {
+                        return Arrays.<Object>asList(text(lecturer.getUserId()), text(lecturer.getStaffId()),
+                                text(lecturer.getTitle()), text(lecturer.getFirstName()), text(lecturer.getLastName()),
+                                text(lecturer.getDepartmentId()), text(lecturer.getEmail()),
+                                text(lecturer.getPhoneNumber()));
+                    }
+                }, databaseHelper);
+
+        classrooms = new ReferenceDataCache<>(FirebaseUtil.CLASSROOMS_COLLECTION,
+                FirebaseUtil.getClassroomsCollection(), Classroom.class,
+                new ReferenceDataCache.LocalStore<Classroom>() {
+                    @Override
+                    public List<Classroom> readAll() {
+                        return databaseHelper.getAllClassrooms();
+                    }
+
+                    @Override
+                    public boolean save(List<Classroom> items) {
+                        return databaseHelper.saveClassrooms(items);
+                    }
+
+                    @Override
+                    public String getId(Classroom classroom) {
+                        return classroom.getId();
+                    }
+
+                    @Override
+                    public List<Object> stamp(Classroom classroom) {
+                        return Arrays.<Object>asList(text(classroom.getName()), text(classroom.getBuildingName()),
+                                text(classroom.getFloor()), text(classroom.getRoomNumber()), classroom.getCapacity(),
+                                text(classroom.getType()), classroom.isHasProjector(), classroom.isHasAirCondition(),
+                                classroom.isHasComputers(), text(classroom.getNotes()));
+                    }
+                }, databaseHelper);
+    }
+
+    /**
+     * @return All departments, updated whenever they change
+     */
+    public LiveData<Resource<List<Department>>> getDepartments() {
+        return departments;
+    }
+
+    /**
+     * @return All courses, updated whenever they change. Department names are filled in from
+     * the saved departments.
+     */
+    public LiveData<Resource<List<Course>>> getCourses() {
+        return courses;
+    }
+
+    /**
+     * @param departmentId Department ID
+     * @return Courses of one department, taken from all courses and updated with them
+     */
+    public LiveData<Resource<List<Course>>> getCoursesForDepartment(final String departmentId) {
+        final MediatorLiveData<Resource<List<Course>>> result = new MediatorLiveData<>();
+        result.addSource(courses, resource -> {
+            List<Course> departmentCourses = new ArrayList<>();
+            for (Course course : resource.getData()) {
+                if (departmentId.equals(course.getDepartmentId())) {
+                    departmentCourses.add(course);
+                }
+            }
+            result.setValue(resource.isOffline()
+                    ? Resource.offline(departmentCourses, resource.getError())
+                    : resource.isCached() ? Resource.cached(departmentCourses) : Resource.success(departmentCourses));
+        });
+        return result;
+    }
+
+    /**
+     * @return All lecturers, updated whenever they change. Department names are filled in from
+     * the saved departments.
+     */
+    public LiveData<Resource<List<Lecturer>>> getLecturers() {
+        return lecturers;
+    }
+
+    /**
+     * @return All classrooms, updated whenever they change
+     */
+    public LiveData<Resource<List<Classroom>>> getClassrooms() {
+        return classrooms;
+    }
+
+    /**
+     * @param id Department ID
+     * @return Department held in memory, or null if unknown or not loaded yet
+     */
+    public Department getCachedDepartment(String id) {
+        return departments.get(id);
+    }
+
+    /**
+     * @param id Lecturer ID
+     * @return Lecturer held in memory, or null if unknown or not loaded yet
+     */
+    public Lecturer getCachedLecturer(String id) {
+        return lecturers.get(id);
+    }
+
+    /**
+     * @param id Classroom ID
+     * @return Classroom held in memory, or null if unknown or not loaded yet
+     */
+    public Classroom getCachedClassroom(String id) {
+        return classrooms.get(id);
+    }
+
+    /**
+     * Create a search over the locally stored courses by code, name and description
+     * @param owner Screen the results are for; nothing is delivered after it is destroyed
+     * @param listener Receives the results of each query on the main thread
+     * @return Search to feed the text of the search box
+     */
+    public CatalogueSearch<Course> searchCourses(LifecycleOwner owner,
+                                                 CatalogueSearch.ResultListener<Course> listener) {
+        return new CatalogueSearch<>(owner, databaseHelper::searchCourses, listener);
+    }
+
+    /**
+     * Create a search over the locally stored lecturers by name, staff ID and email
+     * @param owner Screen the results are for; nothing is delivered after it is destroyed
+     * @param listener Receives the results of each query on the main thread
+     * @return Search to feed the text of the search box
+     */
+    public CatalogueSearch<Lecturer> searchLecturers(LifecycleOwner owner,
+                                                     CatalogueSearch.ResultListener<Lecturer> listener) {
+        return new CatalogueSearch<>(owner, databaseHelper::searchLecturers, listener);
+    }
+
+    /**
+     * Create a search over the locally stored classrooms by name, building and room number
+     * @param owner Screen the results are for; nothing is delivered after it is destroyed
+     * @param listener Receives the results of each query on the main thread
+     * @return Search to feed the text of the search box
+     */
+    public CatalogueSearch<Classroom> searchClassrooms(LifecycleOwner owner,
+                                                       CatalogueSearch.ResultListener<Classroom> listener) {
+        return new CatalogueSearch<>(owner, databaseHelper::searchClassrooms, listener);
+    }
+
+    private void onLocalEdit(String collection) {
+        switch (collection) {
+            case FirebaseUtil.COURSES_COLLECTION:
+                courses.onLocalEdit();
+                break;
+            case FirebaseUtil.LECTURERS_COLLECTION:
+                lecturers.onLocalEdit();
+                break;
+            case FirebaseUtil.CLASSROOMS_COLLECTION:
+                classrooms.onLocalEdit();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String text(String value) {
+        // Columns saved as null may read back empty
+        return value == null ? "" : value;
+    }
+
+    private Map<String, String> getDepartmentNames() {
+        Map<String, String> departmentNames = new HashMap<>();
+        for (Department department : databaseHelper.getAllDepartments()) {
+            departmentNames.put(department.getId(), department.getName());
+        }
+        return departmentNames;
+    }
+}
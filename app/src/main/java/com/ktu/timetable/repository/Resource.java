@@ -0,0 +1,66 @@
+package com.ktu.timetable.repository;
+
+/**
+ * Result of a repository load: the data to show, plus the error if it came from the local
+ * database because the server could not be reached
+ * @param <T> Data type
+ */
+public class Resource<T> {
+
+    private final T data;
+    private final Exception error;
+    private final boolean cached;
+
+    private Resource(T data, Exception error, boolean cached) {
+        this.data = data;
+        this.error = error;
+        this.cached = cached;
+    }
+
+    /**
+     * @param data Fresh data from the server
+     * @return Successful result
+     */
+    public static <T> Resource<T> success(T data) {
+        return new Resource<>(data, null, false);
+    }
+
+    /**
+     * @param data Data read from the local database while the server copy is still loading
+     * @return Cached result
+     */
+    public static <T> Resource<T> cached(T data) {
+        return new Resource<>(data, null, true);
+    }
+
+    /**
+     * @param data Data read from the local database instead
+     * @param error Error that stopped the server request
+     * @return Offline result
+     */
+    public static <T> Resource<T> offline(T data, Exception error) {
+        return new Resource<>(data, error, false);
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the data came from the local database after a server error
+     */
+    public boolean isOffline() {
+        return error != null;
+    }
+
+    /**
+     * @return true if the data was read from the local database without asking the server
+     */
+    public boolean isCached() {
+        return cached;
+    }
+}
@@ -0,0 +1,130 @@
+package com.ktu.timetable.repository;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.FirebaseUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the timetable of one day page by page, with the filters applied by Firestore.
+ * Each page continues after the last document of the previous one. If the server cannot be
+ * reached the remaining pages are read from the equivalent SQL query instead, continuing after
+ * the last entry shown. Pages are loaded one at a time; create a new pager when the day or the
+ * filters change.
+ */
+public class TimetablePager {
+
+    public static final int PAGE_SIZE = 30;
+
+    private final DatabaseHelper databaseHelper;
+    private final Query query;
+    private final String departmentId;
+    private final String level;
+    private final String lecturerId;
+    private final String classroomId;
+    private final int dayOfWeek;
+
+    // Written on the disk I/O executor while a page loads; handed over through loading
+    private final Set<String> loadedIds = new HashSet<>();
+    private DocumentSnapshot lastDocument;
+    private TimetableEntry lastEntry;
+    private Exception offlineError;
+    private boolean endReached;
+    private volatile boolean loading;
+
+    TimetablePager(DatabaseHelper databaseHelper, String departmentId, String level, String lecturerId,
+                   String classroomId, int dayOfWeek) {
+        this.databaseHelper = databaseHelper;
+        this.departmentId = departmentId;
+        this.level = level;
+        this.lecturerId = lecturerId;
+        this.classroomId = classroomId;
+        this.dayOfWeek = dayOfWeek;
+        this.query = FirebaseUtil.getFilteredTimetable(departmentId, level, lecturerId, classroomId, dayOfWeek);
+    }
+
+    /**
+     * @return true if no page is loading and more entries may follow
+     */
+    public boolean canLoadMore() {
+        return !loading && !endReached;
+    }
+
+    /**
+     * Load the next page. Must be called on the main thread, and only when
+     * {@link #canLoadMore()} is true.
+     * @param owner Screen the page is for; the load is cancelled when it is destroyed
+     * @return Entries of the page ordered by start time, marked offline if read locally
+     */
+    public LiveData<Resource<List<TimetableEntry>>> loadNextPage(LifecycleOwner owner) {
+        final LifecycleRequest<Resource<List<TimetableEntry>>> request = new LifecycleRequest<>(owner);
+        if (request.isCancelled()) {
+            return request.getResult();
+        }
+        loading = true;
+
+        if (offlineError != null) {
+            request.runInBackground(() -> loadLocalPage(request));
+            return request.getResult();
+        }
+
+        Query pageQuery = lastDocument != null ? query.startAfter(lastDocument) : query;
+        AppExecutors executors = AppExecutors.getInstance();
+        pageQuery.limit(PAGE_SIZE).get()
+                .addOnSuccessListener(executors.diskIO(), queryDocumentSnapshots -> {
+                    List<TimetableEntry> page = new ArrayList<>();
+                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
+                        lastDocument = documentSnapshot;
+                        TimetableEntry entry = documentSnapshot.toObject(TimetableEntry.class);
+                        if (entry != null) {
+                            lastEntry = entry;
+                            if (loadedIds.add(entry.getId())) {
+                                page.add(entry);
+                            }
+                        }
+                    }
+                    endReached = queryDocumentSnapshots.size() < PAGE_SIZE;
+
+                    // Keep the local copy current for offline browsing
+                    if (!page.isEmpty()) {
+                        databaseHelper.saveTimetableEntries(page);
+                    }
+                    finishPage(request, Resource.success(page));
+                })
+                .addOnFailureListener(executors.diskIO(), e -> {
+                    // Continue from the local database for this and later pages
+                    offlineError = e;
+                    loadLocalPage(request);
+                });
+        return request.getResult();
+    }
+
+    private void loadLocalPage(LifecycleRequest<Resource<List<TimetableEntry>>> request) {
+        final List<TimetableEntry> page = new ArrayList<>();
+        int rows = databaseHelper.getTimetablePage(departmentId, level, lecturerId, classroomId, dayOfWeek,
+                lastEntry, PAGE_SIZE, entry -> {
+                    lastEntry = entry;
+                    if (loadedIds.add(entry.getId())) {
+                        page.add(entry);
+                    }
+                });
+        endReached = rows < PAGE_SIZE;
+        finishPage(request, Resource.offline(page, offlineError));
+    }
+
+    private void finishPage(LifecycleRequest<Resource<List<TimetableEntry>>> request,
+                            Resource<List<TimetableEntry>> page) {
+        loading = false;
+        request.publish(page);
+    }
+}
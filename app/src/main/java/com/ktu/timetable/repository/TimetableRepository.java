@@ -0,0 +1,204 @@
+package com.ktu.timetable.repository;
+
+import android.content.Context;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.SyncManager;
+import com.ktu.timetable.utils.TimetableAudit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads timetable entries. Each load brings the local timetable up to date with
+ * {@link SyncManager} and then reads the requested entries from SQLite on the disk I/O
+ * executor. If the sync fails the local entries are still returned, marked offline.
+ */
+public class TimetableRepository {
+
+    private static TimetableRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+
+    /**
+     * Get singleton instance of TimetableRepository
+     * @param context Application context
+     * @return TimetableRepository instance
+     */
+    public static synchronized TimetableRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new TimetableRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TimetableRepository(Context context) {
+        this.context = context;
+        this.databaseHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Load every timetable entry
+     * @param owner Screen the result is for; the load is cancelled when it is destroyed
+     * @return Entries ordered by day and start time
+     */
+    public LiveData<Resource<List<TimetableEntry>>> loadAllTimetableEntries(LifecycleOwner owner) {
+        return load(owner, databaseHelper::getAllTimetableEntries);
+    }
+
+    /**
+     * Load every timetable entry with only the columns needed for conflict checking
+     * @param owner Screen the result is for; the load is cancelled when it is destroyed
+     * @return Entries reading {@link DatabaseHelper#TIMETABLE_SLOT_PROJECTION}
+     */
+    public LiveData<Resource<List<TimetableEntry>>> loadTimetableSlots(LifecycleOwner owner) {
+        return load(owner, () -> {
+            List<TimetableEntry> entries = new ArrayList<>();
+            databaseHelper.getAllTimetableEntries(DatabaseHelper.TIMETABLE_SLOT_PROJECTION, entries::add);
+            return entries;
+        });
+    }
+
+    /**
+     * Load the timetable of one lecturer
+     * @param owner Screen the result is for; the load is cancelled when it is destroyed
+     * @param lecturerId Lecturer ID
+     * @return Entries ordered by day and start time
+     */
+    public LiveData<Resource<List<TimetableEntry>>> loadTimetableByLecturer(LifecycleOwner owner,
+                                                                            final String lecturerId) {
+        return load(owner, () -> databaseHelper.getTimetableByLecturer(lecturerId));
+    }
+
+    /**
+     * Load the timetable of one class
+     * @param owner Screen the result is for; the load is cancelled when it is destroyed
+     * @param departmentId Department ID
+     * @param level Student level
+     * @return Entries ordered by day and start time
+     */
+    public LiveData<Resource<List<TimetableEntry>>> loadTimetableByDepartmentAndLevel(
+            LifecycleOwner owner, final String departmentId, final String level) {
+        return load(owner, () -> databaseHelper.getTimetableByDepartmentAndLevel(departmentId, level));
+    }
+
+    /**
+     * Observe every timetable entry. The local entries are delivered first, then every change
+     * made on the server while the screen is started.
+     * @param owner Screen the results are for; listening stops when it stops
+     * @return Entries ordered by day and start time
+     */
+    public LiveData<Resource<List<TimetableEntry>>> observeAllTimetableEntries(LifecycleOwner owner) {
+        return new LiveTimetableQuery(owner, FirebaseUtil.getTimetableCollection(),
+                databaseHelper::getAllTimetableEntries, true, databaseHelper).getResult();
+    }
+
+    /**
+     * Observe the timetable of one lecturer
+     * @param owner Screen the results are for; listening stops when it stops
+     * @param lecturerId Lecturer ID
+     * @return Entries ordered by day and start time
+     */
+    public LiveData<Resource<List<TimetableEntry>>> observeTimetableByLecturer(LifecycleOwner owner,
+                                                                               final String lecturerId) {
+        return new LiveTimetableQuery(owner, FirebaseUtil.getTimetableByLecturer(lecturerId),
+                () -> databaseHelper.getTimetableByLecturer(lecturerId), false, databaseHelper).getResult();
+    }
+
+    /**
+     * Observe the timetable of one class
+     * @param owner Screen the results are for; listening stops when it stops
+     * @param departmentId Department ID
+     * @param level Student level
+     * @return Entries ordered by day and start time
+     */
+    public LiveData<Resource<List<TimetableEntry>>> observeTimetableByDepartmentAndLevel(
+            LifecycleOwner owner, final String departmentId, final String level) {
+        return new LiveTimetableQuery(owner, FirebaseUtil.getTimetableByDepartmentAndLevel(departmentId, level),
+                () -> databaseHelper.getTimetableByDepartmentAndLevel(departmentId, level), false,
+                databaseHelper).getResult();
+    }
+
+    /**
+     * Page through the timetable of one day with the filters that are set
+     * @param departmentId Department ID, or null for any
+     * @param level Student level, or null for any
+     * @param lecturerId Lecturer ID, or null for any
+     * @param classroomId Classroom ID, or null for any
+     * @param dayOfWeek Day of week (1 = Monday, 7 = Sunday)
+     * @return Pager positioned before the first page
+     */
+    public TimetablePager openTimetablePager(String departmentId, String level, String lecturerId,
+                                             String classroomId, int dayOfWeek) {
+        return new TimetablePager(databaseHelper, departmentId, level, lecturerId, classroomId, dayOfWeek);
+    }
+
+    /**
+     * Check the whole timetable for clashes, with the days audited in parallel. Cohort clashes
+     * involving an elective are reported as soft.
+     * @param owner Screen the result is for; the audit is cancelled when it is destroyed
+     * @return Clashes between entries reading {@link DatabaseHelper#TIMETABLE_SLOT_PROJECTION}
+     */
+    public LiveData<Resource<TimetableAudit.Report>> auditTimetable(LifecycleOwner owner) {
+        final LifecycleRequest<Resource<TimetableAudit.Report>> request = new LifecycleRequest<>(owner);
+        if (request.isCancelled()) {
+            return request.getResult();
+        }
+
+        SyncManager.getInstance(context).syncTimetable(new SyncManager.SyncCallback() {
+            @Override
+            public void onSyncComplete(int changedCount, int deletedCount) {
+                request.runInBackground(() -> audit(request, null));
+            }
+
+            @Override
+            public void onSyncFailed(Exception e) {
+                // Audit whatever is in the local database
+                request.runInBackground(() -> audit(request, e));
+            }
+        });
+        return request.getResult();
+    }
+
+    private void audit(LifecycleRequest<Resource<TimetableAudit.Report>> request, Exception syncError) {
+        List<TimetableEntry> entries = new ArrayList<>();
+        databaseHelper.getAllTimetableEntries(DatabaseHelper.TIMETABLE_SLOT_PROJECTION, entries::add);
+        try {
+            TimetableAudit.Report report = TimetableAudit.audit(entries, databaseHelper.getAllCourses(),
+                    AppExecutors.getInstance().parallel());
+            request.publish(syncError == null ? Resource.success(report) : Resource.offline(report, syncError));
+        } catch (InterruptedException e) {
+            // The screen was closed
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private LiveData<Resource<List<TimetableEntry>>> load(LifecycleOwner owner, final LiveTimetableQuery.LocalQuery query) {
+        final LifecycleRequest<Resource<List<TimetableEntry>>> request = new LifecycleRequest<>(owner);
+        if (request.isCancelled()) {
+            return request.getResult();
+        }
+
+        // Fetch only changes since the last sync, then read the requested entries locally
+        SyncManager.getInstance(context).syncTimetable(new SyncManager.SyncCallback() {
+            @Override
+            public void onSyncComplete(int changedCount, int deletedCount) {
+                request.runInBackground(() -> request.publish(Resource.success(query.read())));
+            }
+
+            @Override
+            public void onSyncFailed(Exception e) {
+                // Fall back to whatever is in the local database
+                request.runInBackground(() -> request.publish(Resource.offline(query.read(), e)));
+            }
+        });
+        return request.getResult();
+    }
+}
@@ -0,0 +1,88 @@
+package com.ktu.timetable.repository;
+
+import android.content.Context;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+
+import com.ktu.timetable.models.User;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.StartupMetrics;
+
+/**
+ * Loads the profile of the signed-in user. The locally saved copy is used straight away so
+ * screens can be chosen from the cached role without waiting for the network; the server copy
+ * is fetched in the background and saved for next time.
+ */
+public class UserRepository {
+
+    private static UserRepository instance;
+
+    private final DatabaseHelper databaseHelper;
+
+    /**
+     * Get singleton instance of UserRepository
+     * @param context Application context
+     * @return UserRepository instance
+     */
+    public static synchronized UserRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserRepository(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private UserRepository(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    /**
+     * Load a user, preferring the local copy. If there is one it is published at once, marked
+     * cached, and the server copy is only saved, once the first frame has been drawn. Otherwise
+     * the server copy is published when it arrives; its data is null if the user document does
+     * not exist, and the result is offline with null data if the server cannot be reached.
+     * @param owner Screen the result is for; the load is cancelled when it is destroyed
+     * @param userId User ID
+     * @return User
+     */
+    public LiveData<Resource<User>> loadUser(LifecycleOwner owner, final String userId) {
+        final LifecycleRequest<Resource<User>> request = new LifecycleRequest<>(owner);
+        request.runInBackground(() -> {
+            User cachedUser = databaseHelper.getUser(userId);
+            if (cachedUser != null) {
+                request.publish(Resource.cached(cachedUser));
+                // Nothing waits for it, so leave Firestore alone until the first frame is up
+                StartupMetrics.runAfterFirstFrame(() -> refreshUser(userId, null));
+            } else {
+                refreshUser(userId, request);
+            }
+        });
+        return request.getResult();
+    }
+
+    /**
+     * Fetch a user from the server and save it locally
+     * @param userId User ID
+     * @param request Request to publish the result to, or null to only save it
+     */
+    private void refreshUser(String userId, final LifecycleRequest<Resource<User>> request) {
+        AppExecutors executors = AppExecutors.getInstance();
+        FirebaseUtil.getUsersCollection().document(userId).get()
+                .addOnSuccessListener(executors.diskIO(), documentSnapshot -> {
+                    User user = documentSnapshot.exists() ? documentSnapshot.toObject(User.class) : null;
+                    if (user != null) {
+                        databaseHelper.saveUser(user);
+                    }
+                    if (request != null) {
+                        request.publish(Resource.success(user));
+                    }
+                })
+                .addOnFailureListener(executors.diskIO(), e -> {
+                    if (request != null) {
+                        request.publish(Resource.<User>offline(null, e));
+                    }
+                });
+    }
+}
@@ -0,0 +1,30 @@
+package com.ktu.timetable.services;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Rebuilds the class reminder schedule when alarms are lost or may be at the wrong time: after
+ * a reboot or an app update, when the clock or time zone changes, and when exact alarm access
+ * is granted or revoked.
+ */
+public class BootReceiver extends BroadcastReceiver {
+
+    // AlarmManager.ACTION_SCHEDULE_EXACT_ALARM_PERMISSION_STATE_CHANGED, added in Android 12
+    private static final String ACTION_EXACT_ALARM_PERMISSION_CHANGED =
+            "android.app.action.SCHEDULE_EXACT_ALARM_PERMISSION_STATE_CHANGED";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)
+                || Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)
+                || Intent.ACTION_TIME_CHANGED.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action)
+                || ACTION_EXACT_ALARM_PERMISSION_CHANGED.equals(action)) {
+            final PendingResult result = goAsync();
+            ReminderScheduler.getInstance(context).reschedule(result::finish);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.ktu.timetable.services;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.ktu.timetable.models.Department;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.NotificationHelper;
+import com.ktu.timetable.utils.SyncManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collects timetable change messages and turns each burst into one notification per topic.
+ *
+ * The first change opens a short window. Changes arriving within it are added to the digest
+ * of their topic, keyed by timetable entry, so repeated edits of one entry count once. When the
+ * window closes, a single delta sync brings the local timetable up to date and then one
+ * notification is shown per topic, such as "7 classes changed in Computer Science Level 300".
+ *
+ * Pending changes are kept in shared preferences, so a digest survives the process being
+ * stopped between messages. The window is closed by a main thread timer, backed by an inexact
+ * alarm in case the process is gone by then.
+ */
+public class ChangeDigest {
+
+    private static final String TAG = "ChangeDigest";
+
+    static final String ACTION_FLUSH = "com.ktu.timetable.action.FLUSH_CHANGE_DIGEST";
+
+    // How long changes are collected before the digest is shown
+    private static final long WINDOW_MILLIS = 20 * 1000L;
+    // Extra delay before the backup alarm, which only matters if the timer was lost
+    private static final long BACKUP_DELAY_MILLIS = 60 * 1000L;
+
+    private static final String PREFS_NAME = "change_digest";
+    private static final String KEY_WINDOW_STARTED = "window_started";
+    private static final String KEY_TOPICS = "topics";
+    private static final String KEY_ENTRIES_PREFIX = "entries_";
+    private static final String KEY_LABEL_PREFIX = "label_";
+
+    private static final String TOPIC_PREFIX = "/topics/";
+    private static final String DEPARTMENT_TOPIC_PREFIX = "department_";
+    private static final String LEVEL_TOPIC_SEPARATOR = "_level_";
+    private static final String LECTURER_TOPIC_PREFIX = "lecturer_";
+
+    private static ChangeDigest instance;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Whether this process has a timer running for the open window
+    private boolean flushScheduled;
+
+    /**
+     * Changes of one topic, ready to be shown
+     */
+    private static class TopicDigest {
+        final String topic;
+        final String label;
+        final int changeCount;
+
+        TopicDigest(String topic, String label, int changeCount) {
+            this.topic = topic;
+            this.label = label;
+            this.changeCount = changeCount;
+        }
+    }
+
+    /**
+     * Get singleton instance of ChangeDigest
+     * @param context Application context
+     * @return ChangeDigest instance
+     */
+    public static synchronized ChangeDigest getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChangeDigest(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ChangeDigest(Context context) {
+        this.context = context;
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Add a change to the digest of its topic, opening a window if none is open
+     * @param topic Topic the message was sent to, with or without the /topics/ prefix
+     * @param label Name of the topic to show, or null to work it out from the topic
+     * @param changeKey Timetable entry that changed, or another key unique to the change
+     */
+    public synchronized void add(String topic, String label, String changeKey) {
+        if (topic.startsWith(TOPIC_PREFIX)) {
+            topic = topic.substring(TOPIC_PREFIX.length());
+        }
+
+        // An entry already waiting under another topic is not counted again
+        Set<String> topics = new HashSet<>(preferences.getStringSet(KEY_TOPICS, new HashSet<String>()));
+        for (String pendingTopic : topics) {
+            if (!pendingTopic.equals(topic) && getEntries(pendingTopic).contains(changeKey)) {
+                return;
+            }
+        }
+
+        Set<String> entries = getEntries(topic);
+        entries.add(changeKey);
+        topics.add(topic);
+
+        long now = System.currentTimeMillis();
+        long windowStarted = preferences.getLong(KEY_WINDOW_STARTED, 0);
+        SharedPreferences.Editor editor = preferences.edit()
+                .putStringSet(KEY_TOPICS, topics)
+                .putStringSet(KEY_ENTRIES_PREFIX + topic, entries);
+        if (label != null) {
+            editor.putString(KEY_LABEL_PREFIX + topic, label);
+        }
+        if (windowStarted == 0) {
+            windowStarted = now;
+            editor.putLong(KEY_WINDOW_STARTED, windowStarted);
+        }
+        editor.apply();
+
+        if (!flushScheduled) {
+            // A window left open by a stopped process closes as soon as possible
+            long delay = Math.max(0, windowStarted + WINDOW_MILLIS - now);
+            scheduleFlush(delay);
+        }
+    }
+
+    /**
+     * Close the open window, if any, on the disk I/O executor: sync once, then show one
+     * notification per topic
+     * @param done Run when finished, may be null
+     */
+    void flush(final Runnable done) {
+        try {
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                final List<TopicDigest> digests = takeDigests();
+                if (digests.isEmpty()) {
+                    finish(done);
+                    return;
+                }
+
+                // One delta sync for the whole burst; it joins a sync that is already running
+                SyncManager.getInstance(context).syncTimetable(new SyncManager.SyncCallback() {
+                    @Override
+                    public void onSyncComplete(int changedCount, int deletedCount) {
+                        showDigests(digests);
+                        finish(done);
+                    }
+
+                    @Override
+                    public void onSyncFailed(Exception e) {
+                        // The changes are still worth knowing about; the next sync picks them up
+                        showDigests(digests);
+                        finish(done);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // The backup alarm closes the window instead
+            Log.e(TAG, "Change digest not flushed", e);
+            finish(done);
+        }
+    }
+
+    private static void finish(Runnable done) {
+        if (done != null) {
+            done.run();
+        }
+    }
+
+    private synchronized List<TopicDigest> takeDigests() {
+        flushScheduled = false;
+        cancelBackupAlarm();
+
+        List<TopicDigest> digests = new ArrayList<>();
+        Set<String> topics = preferences.getStringSet(KEY_TOPICS, new HashSet<String>());
+        SharedPreferences.Editor editor = preferences.edit();
+        for (String topic : topics) {
+            int changeCount = getEntries(topic).size();
+            String label = preferences.getString(KEY_LABEL_PREFIX + topic, null);
+            if (changeCount > 0) {
+                digests.add(new TopicDigest(topic, label != null ? label : labelFor(topic), changeCount));
+            }
+            editor.remove(KEY_ENTRIES_PREFIX + topic).remove(KEY_LABEL_PREFIX + topic);
+        }
+        editor.remove(KEY_TOPICS).remove(KEY_WINDOW_STARTED).apply();
+        return digests;
+    }
+
+    private void showDigests(List<TopicDigest> digests) {
+        for (TopicDigest digest : digests) {
+            String classes = digest.changeCount == 1 ? "1 class" : digest.changeCount + " classes";
+            String message = digest.label != null
+                    ? classes + " changed in " + digest.label
+                    : classes + " changed in your timetable";
+            NotificationHelper.showTimetableUpdateNotification(context, digest.topic, "Timetable Updated", message);
+        }
+    }
+
+    private Set<String> getEntries(String topic) {
+        return new HashSet<>(preferences.getStringSet(KEY_ENTRIES_PREFIX + topic, new HashSet<String>()));
+    }
+
+    /**
+     * Work out a name for a topic set up by FirebaseUtil, using the saved departments
+     * @return Name such as "Computer Science Level 300", or null for the user's own timetable
+     */
+    private String labelFor(String topic) {
+        if (!topic.startsWith(DEPARTMENT_TOPIC_PREFIX) || topic.startsWith(LECTURER_TOPIC_PREFIX)) {
+            return null;
+        }
+        String departmentId = topic.substring(DEPARTMENT_TOPIC_PREFIX.length());
+        String level = null;
+        int levelStart = departmentId.lastIndexOf(LEVEL_TOPIC_SEPARATOR);
+        if (levelStart >= 0) {
+            level = departmentId.substring(levelStart + LEVEL_TOPIC_SEPARATOR.length());
+            departmentId = departmentId.substring(0, levelStart);
+        }
+
+        String departmentName = null;
+        for (Department department : DatabaseHelper.getInstance(context).getAllDepartments()) {
+            if (departmentId.equals(department.getId())) {
+                departmentName = department.getName();
+                break;
+            }
+        }
+        if (departmentName == null) {
+            return null;
+        }
+        return level != null ? String.format(Locale.US, "%s Level %s", departmentName, level) : departmentName;
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        flushScheduled = true;
+        handler.postDelayed(() -> flush(null), delayMillis);
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + delayMillis
+                + BACKUP_DELAY_MILLIS, createBackupIntent());
+    }
+
+    private void cancelBackupAlarm() {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(createBackupIntent());
+    }
+
+    private PendingIntent createBackupIntent() {
+        Intent intent = new Intent(context, ReminderReceiver.class);
+        intent.setAction(ACTION_FLUSH);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
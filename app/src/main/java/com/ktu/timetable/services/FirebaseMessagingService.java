@@ -0,0 +1,50 @@
+package com.ktu.timetable.services;
+
+import android.util.Log;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.Map;
+
+/**
+ * Receives timetable change messages sent to the topics set up in FirebaseUtil. Nothing is
+ * fetched or shown per message; each change is added to the {@link ChangeDigest}, which shows
+ * one notification per topic and runs one sync for each burst of changes.
+ *
+ * Messages are expected as data messages carrying the ID of the changed timetable entry under
+ * "entryId" and, optionally, a name for the topic under "topicLabel".
+ */
+public class FirebaseMessagingService extends com.google.firebase.messaging.FirebaseMessagingService {
+
+    private static final String TAG = "MessagingService";
+
+    private static final String KEY_ENTRY_ID = "entryId";
+    private static final String KEY_TOPIC_LABEL = "topicLabel";
+    // Digest topic for messages sent to this device rather than to a topic
+    private static final String DIRECT_TOPIC = "direct";
+
+    @Override
+    public void onMessageReceived(RemoteMessage remoteMessage) {
+        Map<String, String> data = remoteMessage.getData();
+
+        String topic = remoteMessage.getFrom();
+        if (topic == null || !topic.startsWith("/topics/")) {
+            topic = DIRECT_TOPIC;
+        }
+
+        // Without an entry ID each message counts once; redeliveries share a message ID
+        String changeKey = data.get(KEY_ENTRY_ID);
+        if (changeKey == null) {
+            changeKey = remoteMessage.getMessageId() != null
+                    ? remoteMessage.getMessageId() : String.valueOf(remoteMessage.getSentTime());
+        }
+
+        ChangeDigest.getInstance(this).add(topic, data.get(KEY_TOPIC_LABEL), changeKey);
+    }
+
+    @Override
+    public void onNewToken(String token) {
+        // Topic subscriptions move to the new token on their own
+        Log.d(TAG, "Messaging token refreshed");
+    }
+}
@@ -0,0 +1,23 @@
+package com.ktu.timetable.services;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives the class reminder alarm and the change digest backup alarm. Reminders are shown and
+ * the next alarm set on the disk I/O executor while the broadcast is kept alive.
+ */
+public class ReminderReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (ReminderScheduler.ACTION_REMINDER.equals(intent.getAction())) {
+            final PendingResult result = goAsync();
+            ReminderScheduler.getInstance(context).onAlarm(result::finish);
+        } else if (ChangeDigest.ACTION_FLUSH.equals(intent.getAction())) {
+            final PendingResult result = goAsync();
+            ChangeDigest.getInstance(context).flush(result::finish);
+        }
+    }
+}
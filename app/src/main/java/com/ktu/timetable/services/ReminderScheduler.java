@@ -0,0 +1,268 @@
+package com.ktu.timetable.services;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.models.User;
+import com.ktu.timetable.utils.AppExecutors;
+import com.ktu.timetable.utils.DatabaseHelper;
+import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.NotificationHelper;
+import com.ktu.timetable.utils.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reminds the signed-in student or lecturer of their classes, from the local timetable.
+ *
+ * Only one alarm is registered at a time, for the next reminder due. When it fires, every
+ * reminder due within the next few minutes is shown with it and the alarm moves on to the
+ * following one, so each group of classes costs a single wakeup. Each update reads only the next
+ * few classes through the week_start_minute indexes. The schedule is rebuilt after boot, after
+ * the clock or time zone changes and after every timetable sync.
+ */
+public class ReminderScheduler {
+
+    private static final String TAG = "ReminderScheduler";
+
+    static final String ACTION_REMINDER = "com.ktu.timetable.action.CLASS_REMINDER";
+
+    // How long before a class starts its reminder is shown
+    public static final int REMINDER_LEAD_MINUTES = 15;
+    private static final long REMINDER_LEAD_MILLIS = REMINDER_LEAD_MINUTES * 60 * 1000L;
+    // Reminders due this soon after the one that woke the device are shown with it
+    private static final long BATCH_WINDOW_MILLIS = 5 * 60 * 1000L;
+    // Classes read per update; enough to cover several classes starting together
+    private static final int UPCOMING_LIMIT = 8;
+
+    private static final String PREFS_NAME = "class_reminders";
+    // Reminders due up to this time have been shown
+    private static final String KEY_REMINDED_UNTIL = "reminded_until";
+
+    private static ReminderScheduler instance;
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+    private final SharedPreferences preferences;
+
+    /**
+     * Reminder for one occurrence of a class
+     */
+    private static class Reminder {
+        final TimetableEntry entry;
+        final long dueAt;
+
+        Reminder(TimetableEntry entry, long dueAt) {
+            this.entry = entry;
+            this.dueAt = dueAt;
+        }
+    }
+
+    /**
+     * Get singleton instance of ReminderScheduler
+     * @param context Application context
+     * @return ReminderScheduler instance
+     */
+    public static synchronized ReminderScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReminderScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReminderScheduler(Context context) {
+        this.context = context;
+        this.databaseHelper = DatabaseHelper.getInstance(context);
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Rebuild the schedule from the local timetable on the disk I/O executor
+     */
+    public void reschedule() {
+        reschedule(null);
+    }
+
+    /**
+     * Rebuild the schedule from the local timetable on the disk I/O executor
+     * @param done Run when finished, may be null
+     */
+    void reschedule(Runnable done) {
+        run(false, done);
+    }
+
+    /**
+     * Show the reminders that are due and move the alarm on to the next one
+     * @param done Run when finished
+     */
+    void onAlarm(Runnable done) {
+        run(true, done);
+    }
+
+    private void run(final boolean showDue, final Runnable done) {
+        try {
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                try {
+                    update(showDue);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Error scheduling class reminders", e);
+                } finally {
+                    if (done != null) {
+                        done.run();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Class reminders not scheduled", e);
+            if (done != null) {
+                done.run();
+            }
+        }
+    }
+
+    private synchronized void update(boolean showDue) {
+        long now = System.currentTimeMillis();
+        long remindedUntil = preferences.getLong(KEY_REMINDED_UNTIL, 0);
+        // A reminder missed while the phone was off is still worth showing until the class starts
+        long from = Math.max(remindedUntil, now - REMINDER_LEAD_MILLIS);
+
+        List<Reminder> reminders = loadReminders(from);
+        if (reminders == null) {
+            // Nobody to remind
+            cancelAlarm();
+            return;
+        }
+
+        if (showDue) {
+            long until = now + BATCH_WINDOW_MILLIS;
+            for (Reminder reminder : reminders) {
+                if (reminder.dueAt <= until) {
+                    showReminder(reminder.entry);
+                }
+            }
+            preferences.edit().putLong(KEY_REMINDED_UNTIL, until).apply();
+            reminders = loadReminders(until);
+        }
+
+        if (reminders == null || reminders.isEmpty()) {
+            cancelAlarm();
+        } else {
+            setAlarm(reminders.get(0).dueAt);
+        }
+    }
+
+    /**
+     * Read the next reminders of the signed-in user due after a time, ordered by due time
+     * @param from Only reminders due after this time are returned
+     * @return Reminders, or null if no student or lecturer is signed in
+     */
+    private List<Reminder> loadReminders(final long from) {
+        String userId = FirebaseUtil.getCurrentUserId();
+        User user = userId != null ? databaseHelper.getUser(userId) : null;
+        if (user == null) {
+            return null;
+        }
+
+        String departmentId = null;
+        String level = null;
+        String lecturerId = null;
+        if (user.isStudent()) {
+            departmentId = user.getDepartmentId();
+            level = user.getLevel();
+        } else if (user.isLecturer()) {
+            Lecturer lecturer = databaseHelper.getLecturerByUserId(userId);
+            lecturerId = lecturer != null ? lecturer.getId() : null;
+        }
+        if (departmentId == null && lecturerId == null) {
+            return null;
+        }
+
+        // Classes starting from here on have reminders due after from
+        final Calendar classesFrom = Calendar.getInstance();
+        classesFrom.setTimeInMillis(from + REMINDER_LEAD_MILLIS);
+        classesFrom.set(Calendar.SECOND, 0);
+        classesFrom.set(Calendar.MILLISECOND, 0);
+
+        final List<Reminder> reminders = new ArrayList<>();
+        databaseHelper.getUpcomingTimetable(departmentId, level, lecturerId, TimeUtils.minuteOfWeek(classesFrom),
+                UPCOMING_LIMIT, entry -> {
+                    long startsAt = nextStart(entry, classesFrom);
+                    if (startsAt >= 0 && startsAt - REMINDER_LEAD_MILLIS > from) {
+                        reminders.add(new Reminder(entry, startsAt - REMINDER_LEAD_MILLIS));
+                    }
+                });
+        return reminders;
+    }
+
+    /**
+     * @return Time of the first occurrence of an entry at or after a time, or -1 if it has no
+     * valid slot
+     */
+    private static long nextStart(TimetableEntry entry, Calendar after) {
+        int day = entry.getDayOfWeek();
+        int minute = TimeUtils.minuteOfDay(entry.getStartTime());
+        if (day < 1 || day > 7 || minute < 0) {
+            return -1;
+        }
+
+        int afterDay = (after.get(Calendar.DAY_OF_WEEK) + 5) % 7 + 1;
+        int afterMinute = after.get(Calendar.HOUR_OF_DAY) * 60 + after.get(Calendar.MINUTE);
+        int daysAhead = (day - afterDay + 7) % 7;
+        if (daysAhead == 0 && minute < afterMinute) {
+            daysAhead = 7;
+        }
+
+        // Calendar fields rather than millisecond offsets, so daylight saving changes are handled
+        Calendar start = (Calendar) after.clone();
+        start.add(Calendar.DAY_OF_MONTH, daysAhead);
+        start.set(Calendar.HOUR_OF_DAY, minute / 60);
+        start.set(Calendar.MINUTE, minute % 60);
+        return start.getTimeInMillis();
+    }
+
+    private void showReminder(TimetableEntry entry) {
+        NotificationHelper.showClassReminderNotification(
+                context,
+                entry.getId(),
+                entry.getCourseCode(),
+                entry.getCourseName(),
+                entry.getClassroomName(),
+                TimeUtils.formatMinuteOfDay(TimeUtils.minuteOfDay(entry.getStartTime()))
+        );
+    }
+
+    private void setAlarm(long triggerAt) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent alarmIntent = createAlarmIntent();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            // Without exact alarm access, let the system fit the wakeup into a short window
+            alarmManager.setWindow(AlarmManager.RTC_WAKEUP, triggerAt, BATCH_WINDOW_MILLIS, alarmIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, alarmIntent);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAt, alarmIntent);
+        }
+    }
+
+    private void cancelAlarm() {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(createAlarmIntent());
+    }
+
+    private PendingIntent createAlarmIntent() {
+        Intent intent = new Intent(context, ReminderReceiver.class);
+        intent.setAction(ACTION_REMINDER);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -2,6 +2,7 @@ package com.ktu.timetable.student;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -9,25 +10,36 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
+import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.ktu.timetable.LoginActivity;
 import com.ktu.timetable.R;
+import com.ktu.timetable.export.TimetableExporter;
 import com.ktu.timetable.models.Department;
 import com.ktu.timetable.models.User;
+import com.ktu.timetable.utils.AppExecutors;
 import com.ktu.timetable.utils.DatabaseHelper;
 import com.ktu.timetable.utils.FirebaseUtil;
+import com.ktu.timetable.utils.StartupMetrics;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 public class StudentDashboardActivity extends AppCompatActivity {
 
+    private static final String TAG = "StudentDashboardActivity";
+    private static final int REQUEST_EXPORT = 1;
+    private static final String STATE_EXPORT_FORMAT = "export_format";
+
     private TextView welcomeTextView;
     private TextView departmentInfoTextView;
     private TextView levelInfoTextView;
@@ -38,10 +50,12 @@ public class StudentDashboardActivity extends AppCompatActivity {
     private DatabaseHelper databaseHelper;
     private User currentUser;
     private Department userDepartment;
+    private String exportFormat;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.trackDashboard(this);
         setContentView(R.layout.activity_student_dashboard);
         
         // Initialize Firebase Auth
@@ -50,6 +64,10 @@ public class StudentDashboardActivity extends AppCompatActivity {
         // Initialize database helper
         databaseHelper = DatabaseHelper.getInstance(this);
         
+        if (savedInstanceState != null) {
+            exportFormat = savedInstanceState.getString(STATE_EXPORT_FORMAT);
+        }
+        
         // Setup toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -80,8 +98,15 @@ public class StudentDashboardActivity extends AppCompatActivity {
         updateSyncStatus();
     }
     
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_FORMAT, exportFormat);
+    }
+    
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.timetable_menu, menu);
         getMenuInflater().inflate(R.menu.main_menu, menu);
         return true;
     }
@@ -92,9 +117,59 @@ public class StudentDashboardActivity extends AppCompatActivity {
             logout();
             return true;
         }
+        if (item.getItemId() == R.id.action_export) {
+            showExportDialog();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
     
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_EXPORT && resultCode == RESULT_OK && data != null
+                && data.getData() != null && exportFormat != null && currentUser != null) {
+            TimetableExporter exporter = new TimetableExporter(this);
+            exporter.export(data.getData(), exportFormat, exportTitle(),
+                    exporter.byDepartmentAndLevel(currentUser.getDepartmentId(), currentUser.getLevel()),
+                    new TimetableExporter.ExportCallback() {
+                        @Override
+                        public void onExported(int entryCount) {
+                            Snackbar.make(findViewById(android.R.id.content),
+                                    getString(R.string.export_success, entryCount), Snackbar.LENGTH_LONG).show();
+                        }
+                        
+                        @Override
+                        public void onExportFailed(Exception e) {
+                            Snackbar.make(findViewById(android.R.id.content), exporter.failureMessage(e), Snackbar.LENGTH_LONG).show();
+                        }
+                    });
+        }
+    }
+    
+    /**
+     * Let the student pick a format and a file to export their class timetable to
+     */
+    private void showExportDialog() {
+        if (currentUser == null) {
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_timetable)
+                .setItems(R.array.export_formats, (dialog, which) -> {
+                    exportFormat = TimetableExporter.FORMATS[which];
+                    startActivityForResult(TimetableExporter.createDocumentIntent(exportFormat, exportTitle()),
+                            REQUEST_EXPORT);
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+    
+    private String exportTitle() {
+        String title = "Level " + currentUser.getLevel() + " Timetable";
+        return userDepartment != null ? userDepartment.getName() + " " + title : title;
+    }
+    
     private void loadUserData() {
         FirebaseUser user = firebaseAuth.getCurrentUser();
         if (user == null) {
@@ -183,11 +258,24 @@ public class StudentDashboardActivity extends AppCompatActivity {
     }
     
     private void updateSyncStatus() {
-        String lastSyncTime = databaseHelper.getLastSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
-        if (lastSyncTime != null) {
-            syncStatusTextView.setText("Last synced: " + lastSyncTime);
-        } else {
-            syncStatusTextView.setText("Last synced: Never");
+        // Opening the database can be slow on first use, so read it off the main thread
+        final AppExecutors executors = AppExecutors.getInstance();
+        try {
+            executors.diskIO().execute(() -> {
+                final String lastSyncTime = databaseHelper.getLastSyncTime(FirebaseUtil.TIMETABLE_COLLECTION);
+                executors.mainThread().execute(() -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (lastSyncTime != null) {
+                        syncStatusTextView.setText("Last synced: " + lastSyncTime);
+                    } else {
+                        syncStatusTextView.setText("Last synced: Never");
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Sync status not read", e);
         }
     }
     
@@ -0,0 +1,182 @@
+package com.ktu.timetable.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors for work that must stay off the UI thread.
+ *
+ * Disk I/O and Firestore result processing run on a small pool, and CPU work on a single
+ * thread. Long jobs the user starts, such as imports, exports and timetable generation, have a
+ * pool of their own so they never hold the threads that serve the screens. All pools have
+ * bounded queues, so a burst of requests cannot start an unbounded number of threads or pile up
+ * work forever; a full pool throws {@link RejectedExecutionException}, which callers catch.
+ * Threads run at background priority and exit when idle.
+ */
+public class AppExecutors {
+
+    private static final String TAG = "AppExecutors";
+
+    // SQLite allows one writer at a time, so a larger pool only adds contention
+    private static final int DISK_IO_THREADS = 2;
+    private static final int JOB_THREADS = 2;
+    private static final int QUEUE_SIZE = 128;
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+
+    private static AppExecutors instance;
+
+    private final ExecutorService diskIO;
+    private final ExecutorService computation;
+    private final ExecutorService parallel;
+    private final ExecutorService jobs;
+    private final Executor mainThread;
+
+    /**
+     * Get singleton instance of AppExecutors
+     * @return AppExecutors instance
+     */
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    private AppExecutors() {
+        diskIO = newBoundedPool("ktu-disk-io", DISK_IO_THREADS);
+        computation = newBoundedPool("ktu-compute", 1);
+        parallel = newBoundedPool("ktu-parallel", Runtime.getRuntime().availableProcessors());
+        jobs = newBoundedPool("ktu-jobs", JOB_THREADS);
+
+        final Handler handler = new Handler(Looper.getMainLooper());
+        mainThread = handler::post;
+    }
+
+    /**
+     * @return Executor for database and file access and for processing Firestore results
+     */
+    public ExecutorService diskIO() {
+        return diskIO;
+    }
+
+    /**
+     * @return Executor for CPU work such as list diffing, kept apart from disk I/O so it is not
+     * queued behind database writes
+     */
+    public ExecutorService computation() {
+        return computation;
+    }
+
+    /**
+     * @return Executor with a thread per core, for CPU work split into independent parts that
+     * are waited for together, such as the days of a timetable audit
+     */
+    public ExecutorService parallel() {
+        return parallel;
+    }
+
+    /**
+     * @return Executor for long jobs the user starts and waits for, such as imports, exports and
+     * timetable generation, which may run for minutes and block on the network
+     */
+    public ExecutorService jobs() {
+        return jobs;
+    }
+
+    /**
+     * @return Executor that runs tasks on the UI thread
+     */
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * Create an executor that runs its tasks one at a time, in submission order, on the disk
+     * I/O pool. Use it where events must be applied in order, such as snapshot listeners.
+     * @return New serial executor
+     */
+    public Executor newSerialDiskExecutor() {
+        return new SerialExecutor(diskIO);
+    }
+
+    private static ExecutorService newBoundedPool(final String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                IDLE_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                new BackgroundThreadFactory(name),
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                        // Never fall back to running on the caller, which may be the UI thread
+                        Log.e(TAG, name + " queue full, rejecting task");
+                        throw new RejectedExecutionException(name + " queue full");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class SerialExecutor implements Executor {
+        private final Executor executor;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private Runnable active;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(final Runnable task) {
+            tasks.add(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                executor.execute(active);
+            }
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, prefix + "-" + count.incrementAndGet());
+        }
+    }
+}
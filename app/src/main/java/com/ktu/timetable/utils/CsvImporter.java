@@ -0,0 +1,832 @@
+package com.ktu.timetable.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.util.Patterns;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Department;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Imports courses, lecturers, classrooms or timetable entries from a CSV file.
+ *
+ * The file is read one record at a time. The first record names the columns, in any order,
+ * matched ignoring case, spaces and underscores:
+ * <ul>
+ *     <li>Courses: code, name, department, credit_hours, level, semester, elective*, practical*,
+ *     description*</li>
+ *     <li>Lecturers: staff_id, title*, first_name, last_name, department, email, phone*</li>
+ *     <li>Classrooms: name, building, floor*, room_number, capacity, type, projector*,
+ *     air_condition*, computers*, notes*</li>
+ *     <li>Timetable: course (code), lecturer (staff ID), classroom (name), day, start_time,
+ *     end_time, type, level*</li>
+ * </ul>
+ * Columns marked * may be left out; an existing record keeps its value for a column the file
+ * does not have. Rows are checked the way the add and edit dialogs check
+ * their input, and timetable rows are checked for lecturer, classroom and cohort clashes against
+ * the saved timetable and the rows accepted before them. Rows that fail are skipped and reported
+ * by line number. A row with the course code, staff ID or classroom name of an existing record,
+ * or of an earlier row, updates that record instead of adding a duplicate; the last such row
+ * wins and the record is counted once.
+ *
+ * The whole file is read and checked before anything is written, so the database is not locked
+ * while a large file is read. The price is that the valid rows are held in memory until then,
+ * and are checked against the data as it was when the file was read. They are then saved and
+ * queued in the outbox in one SQLite transaction, so an import is kept completely or not at
+ * all. The outbox then writes them to Firestore.
+ */
+public class CsvImporter {
+
+    public static final String TYPE_COURSES = "courses";
+    public static final String TYPE_LECTURERS = "lecturers";
+    public static final String TYPE_CLASSROOMS = "classrooms";
+    public static final String TYPE_TIMETABLE = "timetable";
+
+    private static final String TAG = "CsvImporter";
+
+    // Valid rows saved per call, so each call's statement and ID lists stay small
+    private static final int CHUNK_SIZE = 500;
+    private static final int PROGRESS_INTERVAL = 250;
+    // Errors kept in full; any more are only counted
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String[] LEVELS = {"100", "200", "300", "400"};
+    private static final String[] SEMESTERS = {"1", "2"};
+    private static final String[] CLASSROOM_TYPES = {
+            Classroom.TYPE_LECTURE_HALL,
+            Classroom.TYPE_LAB,
+            Classroom.TYPE_WORKSHOP,
+            Classroom.TYPE_SEMINAR_ROOM
+    };
+    private static final String[] CLASS_TYPES = {
+            TimetableEntry.TYPE_LECTURE,
+            TimetableEntry.TYPE_PRACTICAL,
+            TimetableEntry.TYPE_TUTORIAL
+    };
+    private static final String[] DAY_NAMES = {
+            "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"
+    };
+    private static final Pattern TIME_PATTERN = Pattern.compile("(\\d{1,2}):(\\d{2})\\s*([AaPp][Mm])?");
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+    private final AppExecutors executors;
+    private volatile boolean cancelled;
+
+    /**
+     * Receives the progress and outcome of an import, on the main thread
+     */
+    public interface ImportListener {
+        /**
+         * @param rowsRead Data rows read so far
+         * @param rowsAccepted Records from rows that passed validation so far
+         */
+        void onProgress(int rowsRead, int rowsAccepted);
+
+        /**
+         * @param result Outcome of the import
+         */
+        void onComplete(ImportResult result);
+    }
+
+    /**
+     * A row that was skipped
+     */
+    public static class RowError {
+
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * @return Line of the file the row starts on, counting from 1
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return Why the row was skipped
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Outcome of an import
+     */
+    public static class ImportResult {
+
+        private final List<RowError> errors = new ArrayList<>();
+        private int rowsRead;
+        private int rowsImported;
+        private int errorCount;
+        private String failure;
+        private boolean cancelled;
+
+        /**
+         * @return Number of data rows read
+         */
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        /**
+         * @return Number of records saved, 0 if the import failed or was cancelled. Rows for
+         * the same record count once.
+         */
+        public int getRowsImported() {
+            return rowsImported;
+        }
+
+        /**
+         * @return Number of rows skipped
+         */
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * @return The first skipped rows, in file order
+         */
+        public List<RowError> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return Why nothing was saved, or null if the import was saved or cancelled
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return true if the import was cancelled and nothing was saved
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void addError(int line, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    /**
+     * @param context Context used to open the file and the database
+     */
+    public CsvImporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.databaseHelper = DatabaseHelper.getInstance(context);
+        this.executors = AppExecutors.getInstance();
+    }
+
+    /**
+     * Import a file on the jobs executor
+     * @param uri File to import, as returned by the document picker
+     * @param type One of the TYPE_* constants
+     * @param listener Receives progress and the result on the main thread
+     */
+    public void importFile(final Uri uri, final String type, final ImportListener listener) {
+        cancelled = false;
+        try {
+            executors.jobs().execute(() -> {
+                final ImportResult result = new ImportResult();
+                try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+                    if (input == null) {
+                        throw new FileNotFoundException(uri.toString());
+                    }
+                    CsvReader reader = new CsvReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                    importRows(reader, type, result, listener);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error reading " + uri, e);
+                    result.rowsImported = 0;
+                    result.failure = "Could not read the file: " + e.getMessage();
+                }
+
+                if (result.rowsImported > 0) {
+                    // Import types are named after their collections
+                    OutboxManager outboxManager = OutboxManager.getInstance(context);
+                    outboxManager.notifyLocalEdit(type);
+                    outboxManager.flush();
+                }
+                executors.mainThread().execute(() -> listener.onComplete(result));
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Import of " + uri + " not started", e);
+            final ImportResult result = new ImportResult();
+            result.failure = "Too many tasks running, try again";
+            executors.mainThread().execute(() -> listener.onComplete(result));
+        }
+    }
+
+    /**
+     * Stop a running import. Nothing it read is saved.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void importRows(final CsvReader reader, String type, final ImportResult result,
+                            final ImportListener listener) throws IOException {
+        String[] header = reader.readRecord();
+        if (header == null) {
+            result.failure = "The file is empty";
+            return;
+        }
+
+        final Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            columns.put(normalizeColumn(header[i]), i);
+        }
+
+        final RowParser<?> parser = createParser(type);
+        for (String column : parser.requiredColumns()) {
+            if (!columns.containsKey(normalizeColumn(column))) {
+                result.failure = "Missing column: " + column;
+                return;
+            }
+        }
+
+        String[] fields;
+        while ((fields = reader.readRecord()) != null) {
+            if (cancelled) {
+                result.cancelled = true;
+                return;
+            }
+            result.rowsRead++;
+
+            try {
+                parser.accept(new Row(fields, columns));
+            } catch (InvalidRowException e) {
+                result.addError(reader.getRecordLine(), e.getMessage());
+            }
+
+            if (result.rowsRead % PROGRESS_INTERVAL == 0) {
+                final int read = result.rowsRead;
+                final int accepted = parser.accepted();
+                executors.mainThread().execute(() -> listener.onProgress(read, accepted));
+            }
+        }
+
+        boolean saved = databaseHelper.runInTransaction(() -> {
+            if (cancelled) {
+                result.cancelled = true;
+                return false;
+            }
+            if (!parser.saveAll()) {
+                result.failure = "Could not save the imported rows on this device";
+                return false;
+            }
+            return true;
+        });
+        result.rowsImported = saved ? parser.accepted() : 0;
+    }
+
+    private RowParser<?> createParser(String type) {
+        switch (type) {
+            case TYPE_COURSES:
+                return new CourseParser();
+            case TYPE_LECTURERS:
+                return new LecturerParser();
+            case TYPE_CLASSROOMS:
+                return new ClassroomParser();
+            case TYPE_TIMETABLE:
+                return new TimetableParser();
+            default:
+                throw new IllegalArgumentException("Unknown import type: " + type);
+        }
+    }
+
+    private static String normalizeColumn(String name) {
+        return name.replaceAll("[\\s_]", "").toLowerCase(Locale.US);
+    }
+
+    private static String normalizeKey(String value) {
+        return value.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Turns rows into model objects and saves them a chunk at a time
+     */
+    private abstract static class RowParser<T> {
+
+        // Keyed by ID; rows for the same record return the same object, updated by the later row
+        private final Map<String, T> items = new LinkedHashMap<>();
+
+        abstract String[] requiredColumns();
+
+        abstract T parse(Row row) throws InvalidRowException;
+
+        abstract String idOf(T item);
+
+        abstract boolean save(List<T> items);
+
+        void accept(Row row) throws InvalidRowException {
+            T item = parse(row);
+            items.put(idOf(item), item);
+        }
+
+        int accepted() {
+            return items.size();
+        }
+
+        /**
+         * Save the accepted rows. Call inside a transaction.
+         */
+        boolean saveAll() {
+            List<T> items = new ArrayList<>(this.items.values());
+            for (int from = 0; from < items.size(); from += CHUNK_SIZE) {
+                if (!save(items.subList(from, Math.min(from + CHUNK_SIZE, items.size())))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private class CourseParser extends RowParser<Course> {
+
+        private final Map<String, Department> departments = loadDepartments();
+        private final Map<String, Course> coursesByCode = new HashMap<>();
+
+        CourseParser() {
+            for (Course course : databaseHelper.getAllCourses()) {
+                if (course.getCode() != null) {
+                    coursesByCode.put(normalizeKey(course.getCode()), course);
+                }
+            }
+        }
+
+        @Override
+        String[] requiredColumns() {
+            return new String[]{"code", "name", "department", "credit_hours", "level", "semester"};
+        }
+
+        @Override
+        Course parse(Row row) throws InvalidRowException {
+            String code = row.require("code", "Course code");
+            String name = row.require("name", "Course name");
+            Department department = findDepartment(departments, row.require("department", "Department"));
+            int creditHours = row.requirePositiveInt("credit_hours", "Credit hours");
+            String level = row.requireOneOf("level", "Level", LEVELS);
+            String semester = row.requireOneOf("semester", "Semester", SEMESTERS);
+
+            Course course = coursesByCode.get(normalizeKey(code));
+            if (course == null) {
+                course = new Course();
+                course.setId(UUID.randomUUID().toString());
+                coursesByCode.put(normalizeKey(code), course);
+            }
+            course.setCode(code);
+            course.setName(name);
+            course.setDepartmentId(department.getId());
+            course.setDepartmentName(department.getName());
+            course.setCreditHours(creditHours);
+            course.setLevel(level);
+            course.setSemester(semester);
+            if (row.has("elective")) {
+                course.setElective(row.getBoolean("elective"));
+            }
+            if (row.has("practical")) {
+                course.setPractical(row.getBoolean("practical"));
+            }
+            if (row.has("description")) {
+                course.setDescription(row.get("description"));
+            }
+            return course;
+        }
+
+        @Override
+        String idOf(Course course) {
+            return course.getId();
+        }
+
+        @Override
+        boolean save(List<Course> items) {
+            return databaseHelper.queueCourseSaves(items);
+        }
+    }
+
+    private class LecturerParser extends RowParser<Lecturer> {
+
+        private final Map<String, Department> departments = loadDepartments();
+        private final Map<String, Lecturer> lecturersByStaffId = new HashMap<>();
+
+        LecturerParser() {
+            for (Lecturer lecturer : databaseHelper.getAllLecturers()) {
+                if (lecturer.getStaffId() != null) {
+                    lecturersByStaffId.put(normalizeKey(lecturer.getStaffId()), lecturer);
+                }
+            }
+        }
+
+        @Override
+        String[] requiredColumns() {
+            return new String[]{"staff_id", "first_name", "last_name", "department", "email"};
+        }
+
+        @Override
+        Lecturer parse(Row row) throws InvalidRowException {
+            String staffId = row.require("staff_id", "Staff ID");
+            String firstName = row.require("first_name", "First name");
+            String lastName = row.require("last_name", "Last name");
+            Department department = findDepartment(departments, row.require("department", "Department"));
+            String email = row.require("email", "Email");
+            if (!Patterns.EMAIL_ADDRESS.matcher(email).matches()) {
+                throw new InvalidRowException("Invalid email: " + email);
+            }
+
+            // Existing lecturers keep their linked user account and course assignments
+            Lecturer lecturer = lecturersByStaffId.get(normalizeKey(staffId));
+            if (lecturer == null) {
+                lecturer = new Lecturer();
+                lecturer.setId(UUID.randomUUID().toString());
+                lecturersByStaffId.put(normalizeKey(staffId), lecturer);
+            }
+            lecturer.setStaffId(staffId);
+            if (row.has("title")) {
+                lecturer.setTitle(row.get("title"));
+            }
+            lecturer.setFirstName(firstName);
+            lecturer.setLastName(lastName);
+            lecturer.setDepartmentId(department.getId());
+            lecturer.setDepartmentName(department.getName());
+            lecturer.setEmail(email);
+            if (row.has("phone")) {
+                lecturer.setPhoneNumber(row.get("phone"));
+            }
+            return lecturer;
+        }
+
+        @Override
+        String idOf(Lecturer lecturer) {
+            return lecturer.getId();
+        }
+
+        @Override
+        boolean save(List<Lecturer> items) {
+            return databaseHelper.queueLecturerSaves(items);
+        }
+    }
+
+    private class ClassroomParser extends RowParser<Classroom> {
+
+        private final Map<String, Classroom> classroomsByName = new HashMap<>();
+
+        ClassroomParser() {
+            for (Classroom classroom : databaseHelper.getAllClassrooms()) {
+                if (classroom.getName() != null) {
+                    classroomsByName.put(normalizeKey(classroom.getName()), classroom);
+                }
+            }
+        }
+
+        @Override
+        String[] requiredColumns() {
+            return new String[]{"name", "building", "room_number", "capacity", "type"};
+        }
+
+        @Override
+        Classroom parse(Row row) throws InvalidRowException {
+            String name = row.require("name", "Classroom name");
+            String building = row.require("building", "Building name");
+            String roomNumber = row.require("room_number", "Room number");
+            int capacity = row.requirePositiveInt("capacity", "Capacity");
+            String type = row.requireOneOf("type", "Classroom type", CLASSROOM_TYPES);
+
+            Classroom classroom = classroomsByName.get(normalizeKey(name));
+            if (classroom == null) {
+                classroom = new Classroom();
+                classroom.setId(UUID.randomUUID().toString());
+                classroomsByName.put(normalizeKey(name), classroom);
+            }
+            classroom.setName(name);
+            classroom.setBuildingName(building);
+            if (row.has("floor")) {
+                classroom.setFloor(row.get("floor"));
+            }
+            classroom.setRoomNumber(roomNumber);
+            classroom.setCapacity(capacity);
+            classroom.setType(type);
+            if (row.has("projector")) {
+                classroom.setHasProjector(row.getBoolean("projector"));
+            }
+            if (row.has("air_condition")) {
+                classroom.setHasAirCondition(row.getBoolean("air_condition"));
+            }
+            if (row.has("computers")) {
+                classroom.setHasComputers(row.getBoolean("computers"));
+            }
+            if (row.has("notes")) {
+                classroom.setNotes(row.get("notes"));
+            }
+            return classroom;
+        }
+
+        @Override
+        String idOf(Classroom classroom) {
+            return classroom.getId();
+        }
+
+        @Override
+        boolean save(List<Classroom> items) {
+            return databaseHelper.queueClassroomSaves(items);
+        }
+    }
+
+    private class TimetableParser extends RowParser<TimetableEntry> {
+
+        private final Map<String, Course> coursesByCode = new HashMap<>();
+        private final Map<String, Lecturer> lecturersByStaffId = new HashMap<>();
+        private final Map<String, Classroom> classroomsByName = new HashMap<>();
+        private final ConflictIndex conflictIndex = new ConflictIndex();
+        private final String userId = FirebaseUtil.getCurrentUserId();
+
+        TimetableParser() {
+            List<Course> courses = databaseHelper.getAllCourses();
+            for (Course course : courses) {
+                if (course.getCode() != null) {
+                    coursesByCode.put(normalizeKey(course.getCode()), course);
+                }
+            }
+            conflictIndex.setElectiveCourses(courses);
+            for (Lecturer lecturer : databaseHelper.getAllLecturers()) {
+                if (lecturer.getStaffId() != null) {
+                    lecturersByStaffId.put(normalizeKey(lecturer.getStaffId()), lecturer);
+                }
+            }
+            for (Classroom classroom : databaseHelper.getAllClassrooms()) {
+                if (classroom.getName() != null) {
+                    classroomsByName.put(normalizeKey(classroom.getName()), classroom);
+                }
+            }
+            // Imported rows are checked against the whole saved timetable and each other
+            databaseHelper.getAllTimetableEntries(DatabaseHelper.TIMETABLE_SLOT_PROJECTION, conflictIndex::add);
+        }
+
+        @Override
+        String[] requiredColumns() {
+            return new String[]{"course", "lecturer", "classroom", "day", "start_time", "end_time", "type"};
+        }
+
+        @Override
+        TimetableEntry parse(Row row) throws InvalidRowException {
+            Course course = lookUp(coursesByCode, row.require("course", "Course"), "course");
+            Lecturer lecturer = lookUp(lecturersByStaffId, row.require("lecturer", "Lecturer"), "lecturer");
+            Classroom classroom = lookUp(classroomsByName, row.require("classroom", "Classroom"), "classroom");
+            int dayOfWeek = parseDay(row.require("day", "Day of week"));
+            Date startTime = parseTime(row.require("start_time", "Start time"));
+            Date endTime = parseTime(row.require("end_time", "End time"));
+            String type = row.requireOneOf("type", "Class type", CLASS_TYPES);
+            String level = row.get("level");
+            if (level == null) {
+                level = course.getLevel();
+            } else if (!contains(LEVELS, level)) {
+                throw new InvalidRowException("Invalid level: " + level);
+            }
+
+            if (!endTime.after(startTime)) {
+                throw new InvalidRowException("End time must be after start time");
+            }
+
+            TimetableEntry entry = new TimetableEntry();
+            entry.setId(UUID.randomUUID().toString());
+            entry.setCourseId(course.getId());
+            entry.setCourseName(course.getName());
+            entry.setCourseCode(course.getCode());
+            entry.setLecturerId(lecturer.getId());
+            entry.setLecturerName(lecturer.getFullName());
+            entry.setClassroomId(classroom.getId());
+            entry.setClassroomName(classroom.getFullName());
+            entry.setDepartmentId(course.getDepartmentId());
+            entry.setDepartmentName(course.getDepartmentName());
+            entry.setLevel(level);
+            entry.setSemester(course.getSemester());
+            entry.setDayOfWeek(dayOfWeek);
+            entry.setStartTime(startTime);
+            entry.setEndTime(endTime);
+            entry.setType(type);
+            entry.setLastModified(new Date());
+            entry.setLastModifiedBy(userId);
+
+            // Clashes with electives only affect some students, so they do not reject the row
+            for (ConflictIndex.Conflict conflict : conflictIndex.findConflicts(entry)) {
+                if (conflict.isSoft()) {
+                    continue;
+                }
+                TimetableEntry other = conflict.getEntry();
+                throw new InvalidRowException(conflict.getType() + " clash with " + other.getCourseCode()
+                        + " at " + TimeUtils.formatMinuteOfDay(TimeUtils.minuteOfDay(other.getStartTime())));
+            }
+            conflictIndex.add(entry);
+            return entry;
+        }
+
+        @Override
+        String idOf(TimetableEntry entry) {
+            return entry.getId();
+        }
+
+        @Override
+        boolean save(List<TimetableEntry> items) {
+            // The outbox books their slots on the server when it sends them
+            return databaseHelper.queueTimetableEntrySaves(items);
+        }
+    }
+
+    private Map<String, Department> loadDepartments() {
+        // Departments can be given by ID or by name
+        Map<String, Department> departments = new HashMap<>();
+        for (Department department : databaseHelper.getAllDepartments()) {
+            if (department.getName() != null) {
+                departments.put(normalizeKey(department.getName()), department);
+            }
+            if (department.getId() != null) {
+                departments.put(normalizeKey(department.getId()), department);
+            }
+        }
+        return departments;
+    }
+
+    private static Department findDepartment(Map<String, Department> departments, String value)
+            throws InvalidRowException {
+        return lookUp(departments, value, "department");
+    }
+
+    private static <T> T lookUp(Map<String, T> items, String key, String what) throws InvalidRowException {
+        T item = items.get(normalizeKey(key));
+        if (item == null) {
+            throw new InvalidRowException("Unknown " + what + ": " + key);
+        }
+        return item;
+    }
+
+    private static int parseDay(String value) throws InvalidRowException {
+        String day = normalizeKey(value);
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (day.equals(String.valueOf(i + 1)) || day.equals(DAY_NAMES[i])
+                    || day.equals(DAY_NAMES[i].substring(0, 3))) {
+                return i + 1;
+            }
+        }
+        throw new InvalidRowException("Invalid day of week: " + value);
+    }
+
+    /**
+     * Parse a time such as "14:30" or "2:30 PM" into a date today, the way the time picker
+     * builds them
+     */
+    private static Date parseTime(String value) throws InvalidRowException {
+        Matcher matcher = TIME_PATTERN.matcher(value.trim());
+        if (!matcher.matches()) {
+            throw new InvalidRowException("Invalid time: " + value);
+        }
+        int hour = Integer.parseInt(matcher.group(1));
+        int minute = Integer.parseInt(matcher.group(2));
+        String amPm = matcher.group(3);
+        if (amPm != null) {
+            if (hour < 1 || hour > 12) {
+                throw new InvalidRowException("Invalid time: " + value);
+            }
+            hour = hour % 12 + (amPm.equalsIgnoreCase("pm") ? 12 : 0);
+        }
+        if (hour > 23 || minute > 59) {
+            throw new InvalidRowException("Invalid time: " + value);
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String candidate : values) {
+            if (candidate.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One data row, read by column name
+     */
+    private static class Row {
+
+        private final String[] fields;
+        private final Map<String, Integer> columns;
+
+        Row(String[] fields, Map<String, Integer> columns) {
+            this.fields = fields;
+            this.columns = columns;
+        }
+
+        /**
+         * @return true if the file has the column, even if it is empty in this row
+         */
+        boolean has(String column) {
+            return columns.containsKey(normalizeColumn(column));
+        }
+
+        /**
+         * @return Trimmed value, or null if the column is missing or empty
+         */
+        String get(String column) {
+            Integer index = columns.get(normalizeColumn(column));
+            if (index == null || index >= fields.length) {
+                return null;
+            }
+            String value = fields[index].trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        String require(String column, String label) throws InvalidRowException {
+            String value = get(column);
+            if (value == null) {
+                throw new InvalidRowException(label + " is required");
+            }
+            return value;
+        }
+
+        int requirePositiveInt(String column, String label) throws InvalidRowException {
+            String value = require(column, label);
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new InvalidRowException("Invalid " + label.toLowerCase(Locale.US) + ": " + value);
+        }
+
+        /**
+         * @return The matching allowed value, compared ignoring case
+         */
+        String requireOneOf(String column, String label, String[] allowed) throws InvalidRowException {
+            String value = require(column, label);
+            for (String candidate : allowed) {
+                if (candidate.equalsIgnoreCase(value)) {
+                    return candidate;
+                }
+            }
+            throw new InvalidRowException("Invalid " + label.toLowerCase(Locale.US) + ": " + value);
+        }
+
+        /**
+         * @return true for "yes", "true", "y" or "1"; false otherwise, including when empty
+         */
+        boolean getBoolean(String column) {
+            String value = get(column);
+            if (value == null) {
+                return false;
+            }
+            value = value.toLowerCase(Locale.US);
+            return value.equals("yes") || value.equals("true") || value.equals("y") || value.equals("1");
+        }
+    }
+
+    /**
+     * A row failed validation
+     */
+    private static class InvalidRowException extends Exception {
+        InvalidRowException(String message) {
+            super(message);
+        }
+    }
+}
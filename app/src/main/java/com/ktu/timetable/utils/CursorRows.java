@@ -0,0 +1,55 @@
+package com.ktu.timetable.utils;
+
+import android.database.Cursor;
+
+/**
+ * Reads a SQLite cursor through the {@link Rows} interface the row decoders use
+ */
+final class CursorRows implements Rows {
+
+    private final Cursor cursor;
+
+    CursorRows(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return cursor.moveToNext();
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return cursor.moveToFirst();
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        return cursor.getColumnIndex(columnName);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        return cursor.getString(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return cursor.getInt(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        return cursor.getLong(columnIndex);
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return cursor.isNull(columnIndex);
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
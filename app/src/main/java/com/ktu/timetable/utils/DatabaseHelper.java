@@ -5,6 +5,8 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.ktu.timetable.models.Classroom;
@@ -14,12 +16,15 @@ import com.ktu.timetable.models.Lecturer;
 import com.ktu.timetable.models.TimetableEntry;
 import com.ktu.timetable.models.User;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * SQLite database helper for offline storage
@@ -29,7 +34,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TAG = "DatabaseHelper";
     
     private static final String DATABASE_NAME = "ktu_timetable.db";
-    private static final int DATABASE_VERSION = 1;
+    // Version history:
+    // 1 - initial schema
+    // 2 - sync_info.watermark for incremental sync
+    // 3 - indexes for offline timetable lookups
+    // 4 - times stored as epoch millis, slot columns in minutes
+    // 5 - outbox of local edits waiting to be written to Firestore
+    // 6 - full-text search indexes for courses, lecturers and classrooms
+    // 7 - outbox field lists for partial updates, timetable index by course
+    private static final int DATABASE_VERSION = 8;
     
     // Table names
     private static final String TABLE_USERS = "users";
@@ -39,14 +52,171 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TABLE_CLASSROOMS = "classrooms";
     private static final String TABLE_TIMETABLE = "timetable";
     private static final String TABLE_SYNC_INFO = "sync_info";
+    private static final String TABLE_OUTBOX = "outbox";
+    
+    // Outbox operations
+    public static final String OUTBOX_SET = "set";
+    public static final String OUTBOX_DELETE = "delete";
+    // Writes only the fields listed with the edit, read from the local copy when sent
+    public static final String OUTBOX_UPDATE = "update";
     
     // Common columns
     private static final String COLUMN_ID = "id";
     private static final String COLUMN_NAME = "name";
     private static final String COLUMN_TIMESTAMP = "timestamp";
     
-    // Date format for storing dates
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+    // Searchable columns of each catalogue table, indexed in <table>_search
+    private static final String[] COURSE_SEARCH_COLUMNS = {"code", COLUMN_NAME, "description"};
+    private static final String[] LECTURER_SEARCH_COLUMNS = {"staff_id", "first_name", "last_name", "email"};
+    private static final String[] CLASSROOM_SEARCH_COLUMNS = {COLUMN_NAME, "building_name", "room_number"};
+    
+    // Column lists for the bulk upsert statements, in bind order
+    private static final String[] USER_COLUMNS = {
+            COLUMN_ID, "email", "display_name", "role", "department_id", "level", "staff_id", COLUMN_TIMESTAMP};
+    private static final String[] DEPARTMENT_COLUMNS = {
+            COLUMN_ID, COLUMN_NAME, "code", "faculty_id", "faculty_name", "hod_id", COLUMN_TIMESTAMP};
+    private static final String[] COURSE_COLUMNS = {
+            COLUMN_ID, "code", COLUMN_NAME, "department_id", "department_name", "credit_hours", "level",
+            "semester", "is_elective", "description", "is_practical", COLUMN_TIMESTAMP};
+    private static final String[] LECTURER_COLUMNS = {
+            COLUMN_ID, "user_id", "staff_id", "title", "first_name", "last_name", "department_id",
+            "department_name", "email", "phone_number", COLUMN_TIMESTAMP};
+    private static final String[] CLASSROOM_COLUMNS = {
+            COLUMN_ID, COLUMN_NAME, "building_name", "floor", "room_number", "capacity", "type",
+            "has_projector", "has_air_condition", "has_computers", "notes", COLUMN_TIMESTAMP};
+    private static final String[] TIMETABLE_COLUMNS = {
+            COLUMN_ID, "course_id", "course_name", "course_code", "lecturer_id", "lecturer_name",
+            "classroom_id", "classroom_name", "department_id", "department_name", "level", "semester",
+            "day_of_week", "start_time", "end_time", "start_minute", "end_minute", "week_start_minute",
+            "week_end_minute", "type", "last_modified", "last_modified_by", COLUMN_TIMESTAMP};
+    
+    // Table definitions. Times are epoch millis; slots are also kept as minutes since
+    // midnight and minutes since Monday 00:00 so they can be compared and sorted in SQL.
+    private static final String SQL_CREATE_USERS =
+            "CREATE TABLE " + TABLE_USERS + " (" +
+            COLUMN_ID + " TEXT PRIMARY KEY, " +
+            "email TEXT, " +
+            "display_name TEXT, " +
+            "role TEXT, " +
+            "department_id TEXT, " +
+            "level TEXT, " +
+            "staff_id TEXT, " +
+            COLUMN_TIMESTAMP + " INTEGER" +
+            ")";
+    
+    private static final String SQL_CREATE_DEPARTMENTS =
+            "CREATE TABLE " + TABLE_DEPARTMENTS + " (" +
+            COLUMN_ID + " TEXT PRIMARY KEY, " +
+            COLUMN_NAME + " TEXT, " +
+            "code TEXT, " +
+            "faculty_id TEXT, " +
+            "faculty_name TEXT, " +
+            "hod_id TEXT, " +
+            COLUMN_TIMESTAMP + " INTEGER" +
+            ")";
+    
+    private static final String SQL_CREATE_COURSES =
+            "CREATE TABLE " + TABLE_COURSES + " (" +
+            COLUMN_ID + " TEXT PRIMARY KEY, " +
+            "code TEXT, " +
+            COLUMN_NAME + " TEXT, " +
+            "department_id TEXT, " +
+            "department_name TEXT, " +
+            "credit_hours INTEGER, " +
+            "level TEXT, " +
+            "semester TEXT, " +
+            "is_elective INTEGER, " +
+            "description TEXT, " +
+            "is_practical INTEGER DEFAULT 0, " +
+            COLUMN_TIMESTAMP + " INTEGER" +
+            ")";
+    
+    private static final String SQL_CREATE_LECTURERS =
+            "CREATE TABLE " + TABLE_LECTURERS + " (" +
+            COLUMN_ID + " TEXT PRIMARY KEY, " +
+            "user_id TEXT, " +
+            "staff_id TEXT, " +
+            "title TEXT, " +
+            "first_name TEXT, " +
+            "last_name TEXT, " +
+            "department_id TEXT, " +
+            "department_name TEXT, " +
+            "email TEXT, " +
+            "phone_number TEXT, " +
+            COLUMN_TIMESTAMP + " INTEGER" +
+            ")";
+    
+    private static final String SQL_CREATE_CLASSROOMS =
+            "CREATE TABLE " + TABLE_CLASSROOMS + " (" +
+            COLUMN_ID + " TEXT PRIMARY KEY, " +
+            COLUMN_NAME + " TEXT, " +
+            "building_name TEXT, " +
+            "floor TEXT, " +
+            "room_number TEXT, " +
+            "capacity INTEGER, " +
+            "type TEXT, " +
+            "has_projector INTEGER, " +
+            "has_air_condition INTEGER, " +
+            "has_computers INTEGER, " +
+            "notes TEXT, " +
+            COLUMN_TIMESTAMP + " INTEGER" +
+            ")";
+    
+    private static final String SQL_CREATE_TIMETABLE =
+            "CREATE TABLE " + TABLE_TIMETABLE + " (" +
+            COLUMN_ID + " TEXT PRIMARY KEY, " +
+            "course_id TEXT, " +
+            "course_name TEXT, " +
+            "course_code TEXT, " +
+            "lecturer_id TEXT, " +
+            "lecturer_name TEXT, " +
+            "classroom_id TEXT, " +
+            "classroom_name TEXT, " +
+            "department_id TEXT, " +
+            "department_name TEXT, " +
+            "level TEXT, " +
+            "semester TEXT, " +
+            "day_of_week INTEGER, " +
+            "start_time INTEGER, " +
+            "end_time INTEGER, " +
+            "start_minute INTEGER, " +
+            "end_minute INTEGER, " +
+            "week_start_minute INTEGER, " +
+            "week_end_minute INTEGER, " +
+            "type TEXT, " +
+            "last_modified INTEGER, " +
+            "last_modified_by TEXT, " +
+            COLUMN_TIMESTAMP + " INTEGER" +
+            ")";
+    
+    private static final String SQL_CREATE_SYNC_INFO =
+            "CREATE TABLE " + TABLE_SYNC_INFO + " (" +
+            "collection_name TEXT PRIMARY KEY, " +
+            "last_sync_time INTEGER, " +
+            "watermark INTEGER DEFAULT 0" +
+            ")";
+    
+    // One row per document with a local edit not yet written to Firestore. A newer edit of
+    // the same document replaces the row, so only its latest state is sent. Updates list the
+    // Firestore fields to write, separated by commas.
+    private static final String SQL_CREATE_OUTBOX =
+            "CREATE TABLE " + TABLE_OUTBOX + " (" +
+            COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "collection TEXT NOT NULL, " +
+            "document_id TEXT NOT NULL, " +
+            "operation TEXT NOT NULL, " +
+            "fields TEXT, " +
+            COLUMN_TIMESTAMP + " INTEGER, " +
+            "UNIQUE (collection, document_id)" +
+            ")";
+    
+    // Columns needed to place entries in the conflict and occupancy indexes
+    public static final String[] TIMETABLE_SLOT_PROJECTION = {
+            COLUMN_ID, "course_id", "course_code", "type", "lecturer_id", "classroom_id", "classroom_name",
+            "department_id", "level", "semester", "day_of_week", "start_time", "end_time"};
+    
+    // Sort order for timetable lookups, backed by the week_start_minute indexes
+    private static final String TIMETABLE_ORDER = "week_start_minute ASC";
     
     private static DatabaseHelper instance;
     
@@ -68,131 +238,196 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create users table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_USERS + " (" +
-                COLUMN_ID + " TEXT PRIMARY KEY, " +
-                "email TEXT, " +
-                "display_name TEXT, " +
-                "role TEXT, " +
-                "department_id TEXT, " +
-                "level TEXT, " +
-                "staff_id TEXT, " +
-                COLUMN_TIMESTAMP + " TEXT" +
-                ")"
-        );
-        
-        // Create departments table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_DEPARTMENTS + " (" +
-                COLUMN_ID + " TEXT PRIMARY KEY, " +
-                COLUMN_NAME + " TEXT, " +
-                "code TEXT, " +
-                "faculty_id TEXT, " +
-                "faculty_name TEXT, " +
-                "hod_id TEXT, " +
-                COLUMN_TIMESTAMP + " TEXT" +
-                ")"
-        );
+        db.execSQL(SQL_CREATE_USERS);
+        db.execSQL(SQL_CREATE_DEPARTMENTS);
+        db.execSQL(SQL_CREATE_COURSES);
+        db.execSQL(SQL_CREATE_LECTURERS);
+        db.execSQL(SQL_CREATE_CLASSROOMS);
+        db.execSQL(SQL_CREATE_TIMETABLE);
+        db.execSQL(SQL_CREATE_SYNC_INFO);
+        db.execSQL(SQL_CREATE_OUTBOX);
         
-        // Create courses table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_COURSES + " (" +
-                COLUMN_ID + " TEXT PRIMARY KEY, " +
-                "code TEXT, " +
-                COLUMN_NAME + " TEXT, " +
-                "department_id TEXT, " +
-                "department_name TEXT, " +
-                "credit_hours INTEGER, " +
-                "level TEXT, " +
-                "semester TEXT, " +
-                "is_elective INTEGER, " +
-                "description TEXT, " +
-                COLUMN_TIMESTAMP + " TEXT" +
-                ")"
-        );
+        createIndexes(db);
+        createSearchIndexes(db);
+    }
+    
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Apply each migration in turn so the offline cache survives upgrades.
+        // SQLiteOpenHelper already runs this inside a transaction.
+        switch (oldVersion) {
+            case 1:
+                db.execSQL("ALTER TABLE " + TABLE_SYNC_INFO + " ADD COLUMN watermark INTEGER DEFAULT 0");
+            case 2:
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_department_level ON " + TABLE_TIMETABLE +
+                        " (department_id, level, day_of_week, start_time)");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_lecturer_day ON " + TABLE_TIMETABLE +
+                        " (lecturer_id, day_of_week, start_time)");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_classroom_day ON " + TABLE_TIMETABLE +
+                        " (classroom_id, day_of_week, start_time)");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_day ON " + TABLE_TIMETABLE +
+                        " (day_of_week, start_time)");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_courses_department ON " + TABLE_COURSES +
+                        " (department_id, code)");
+            case 3:
+                migrateTimesToIntegers(db);
+            case 4:
+                db.execSQL(SQL_CREATE_OUTBOX);
+            case 5:
+                createSearchIndexes(db);
+            case 6:
+                if (oldVersion == 5 || oldVersion == 6) {
+                    // Outboxes created by versions 5 and 6 have no field lists
+                    db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN fields TEXT");
+                }
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_course ON " + TABLE_TIMETABLE +
+                        " (course_id)");
+            case 7:
+                db.execSQL("ALTER TABLE " + TABLE_COURSES + " ADD COLUMN is_practical INTEGER DEFAULT 0");
+        }
+    }
+    
+    /**
+     * Create indexes backing the offline timetable and course lookups
+     * @param db Database to update
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_department_level ON " + TABLE_TIMETABLE +
+                " (department_id, level, week_start_minute)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_lecturer_day ON " + TABLE_TIMETABLE +
+                " (lecturer_id, week_start_minute)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_classroom_day ON " + TABLE_TIMETABLE +
+                " (classroom_id, week_start_minute)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_day ON " + TABLE_TIMETABLE +
+                " (week_start_minute)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_timetable_course ON " + TABLE_TIMETABLE +
+                " (course_id)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_courses_department ON " + TABLE_COURSES +
+                " (department_id, code)");
+    }
+    
+    /**
+     * Create the full-text search indexes of the catalogue tables
+     * @param db Database to update
+     */
+    private void createSearchIndexes(SQLiteDatabase db) {
+        createSearchIndex(db, TABLE_COURSES, COURSE_SEARCH_COLUMNS);
+        createSearchIndex(db, TABLE_LECTURERS, LECTURER_SEARCH_COLUMNS);
+        createSearchIndex(db, TABLE_CLASSROOMS, CLASSROOM_SEARCH_COLUMNS);
+    }
+    
+    /**
+     * Create an FTS4 index over some columns of a table, filled from the rows already there.
+     * Index rows share the rowid of the row they index and are kept current by triggers, so
+     * every write path updates the index in the same transaction. Saves use INSERT OR REPLACE,
+     * which does not fire delete triggers for the row it replaces, so the old index row is
+     * removed before each insert instead.
+     * @param db Database to update
+     * @param table Table to index
+     * @param columns Columns to index
+     */
+    private static void createSearchIndex(SQLiteDatabase db, String table, String[] columns) {
+        String index = table + "_search";
+        String columnList = TextUtils.join(", ", columns);
+        StringBuilder newValues = new StringBuilder("NEW.rowid");
+        for (String column : columns) {
+            newValues.append(", NEW.").append(column);
+        }
+        String insertNew = "INSERT INTO " + index + " (docid, " + columnList + ") VALUES (" + newValues + ");";
         
-        // Create lecturers table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_LECTURERS + " (" +
-                COLUMN_ID + " TEXT PRIMARY KEY, " +
-                "user_id TEXT, " +
-                "staff_id TEXT, " +
-                "title TEXT, " +
-                "first_name TEXT, " +
-                "last_name TEXT, " +
-                "department_id TEXT, " +
-                "department_name TEXT, " +
-                "email TEXT, " +
-                "phone_number TEXT, " +
-                COLUMN_TIMESTAMP + " TEXT" +
-                ")"
-        );
+        // Prefix indexes keep short prefix queries from scanning every term
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + index + " USING fts4(" + columnList +
+                ", tokenize=unicode61, prefix=\"1,2,3\")");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_before_insert BEFORE INSERT ON " + table +
+                " BEGIN DELETE FROM " + index + " WHERE docid = (SELECT rowid FROM " + table +
+                " WHERE " + COLUMN_ID + " = NEW." + COLUMN_ID + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_after_insert AFTER INSERT ON " + table +
+                " BEGIN " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_after_update AFTER UPDATE OF " + columnList +
+                " ON " + table + " BEGIN DELETE FROM " + index + " WHERE docid = OLD.rowid; " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_before_delete BEFORE DELETE ON " + table +
+                " BEGIN DELETE FROM " + index + " WHERE docid = OLD.rowid; END");
         
-        // Create classrooms table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_CLASSROOMS + " (" +
-                COLUMN_ID + " TEXT PRIMARY KEY, " +
-                COLUMN_NAME + " TEXT, " +
-                "building_name TEXT, " +
-                "floor TEXT, " +
-                "room_number TEXT, " +
-                "capacity INTEGER, " +
-                "type TEXT, " +
-                "has_projector INTEGER, " +
-                "has_air_condition INTEGER, " +
-                "has_computers INTEGER, " +
-                "notes TEXT, " +
-                COLUMN_TIMESTAMP + " TEXT" +
-                ")"
-        );
+        db.execSQL("DELETE FROM " + index);
+        db.execSQL("INSERT INTO " + index + " (docid, " + columnList + ") SELECT rowid, " + columnList +
+                " FROM " + table);
+    }
+    
+    /**
+     * Version 4: replace formatted date strings with epoch millis and add minute-of-day and
+     * minute-of-week slot columns. SQLite cannot change a column type in place, so each table
+     * is renamed, recreated and copied across. Old values were formatted in local time, which
+     * the 'utc' modifier converts back to UTC epoch seconds.
+     * @param db Database to update
+     */
+    private void migrateTimesToIntegers(SQLiteDatabase db) {
+        rebuildTable(db, TABLE_USERS, SQL_CREATE_USERS, USER_COLUMNS);
+        rebuildTable(db, TABLE_DEPARTMENTS, SQL_CREATE_DEPARTMENTS, DEPARTMENT_COLUMNS);
+        rebuildTable(db, TABLE_COURSES, SQL_CREATE_COURSES, COURSE_COLUMNS);
+        rebuildTable(db, TABLE_LECTURERS, SQL_CREATE_LECTURERS, LECTURER_COLUMNS);
+        rebuildTable(db, TABLE_CLASSROOMS, SQL_CREATE_CLASSROOMS, CLASSROOM_COLUMNS);
+        rebuildTable(db, TABLE_TIMETABLE, SQL_CREATE_TIMETABLE, TIMETABLE_COLUMNS);
         
-        // Create timetable table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_TIMETABLE + " (" +
-                COLUMN_ID + " TEXT PRIMARY KEY, " +
-                "course_id TEXT, " +
-                "course_name TEXT, " +
-                "course_code TEXT, " +
-                "lecturer_id TEXT, " +
-                "lecturer_name TEXT, " +
-                "classroom_id TEXT, " +
-                "classroom_name TEXT, " +
-                "department_id TEXT, " +
-                "department_name TEXT, " +
-                "level TEXT, " +
-                "semester TEXT, " +
-                "day_of_week INTEGER, " +
-                "start_time TEXT, " +
-                "end_time TEXT, " +
-                "type TEXT, " +
-                "last_modified TEXT, " +
-                "last_modified_by TEXT, " +
-                COLUMN_TIMESTAMP + " TEXT" +
-                ")"
-        );
+        db.execSQL("ALTER TABLE " + TABLE_SYNC_INFO + " RENAME TO " + TABLE_SYNC_INFO + "_old");
+        db.execSQL(SQL_CREATE_SYNC_INFO);
+        db.execSQL("INSERT INTO " + TABLE_SYNC_INFO + " (collection_name, last_sync_time, watermark) " +
+                "SELECT collection_name, " + localTimeToMillis("last_sync_time") + ", watermark FROM " +
+                TABLE_SYNC_INFO + "_old");
+        db.execSQL("DROP TABLE " + TABLE_SYNC_INFO + "_old");
         
-        // Create sync info table
-        db.execSQL(
-                "CREATE TABLE " + TABLE_SYNC_INFO + " (" +
-                "collection_name TEXT PRIMARY KEY, " +
-                "last_sync_time TEXT" +
-                ")"
-        );
+        createIndexes(db);
     }
     
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop and recreate all tables on upgrade
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_DEPARTMENTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_COURSES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_LECTURERS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CLASSROOMS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TIMETABLE);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_INFO);
+    private void rebuildTable(SQLiteDatabase db, String table, String createSql, String[] columns) {
+        db.execSQL("ALTER TABLE " + table + " RENAME TO " + table + "_old");
+        db.execSQL(createSql);
         
-        onCreate(db);
+        StringBuilder select = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                select.append(", ");
+            }
+            select.append(migratedValue(columns[i]));
+        }
+        db.execSQL("INSERT INTO " + table + " (" + TextUtils.join(", ", columns) + ") SELECT " + select +
+                " FROM " + table + "_old");
+        
+        // Dropping the old table also drops its indexes
+        db.execSQL("DROP TABLE " + table + "_old");
+    }
+    
+    /**
+     * @param column Column in the version 4 schema
+     * @return SQL expression computing it from a version 3 row
+     */
+    private static String migratedValue(String column) {
+        switch (column) {
+            case "start_time":
+            case "end_time":
+            case "last_modified":
+            case COLUMN_TIMESTAMP:
+                return localTimeToMillis(column);
+            case "start_minute":
+                return localTimeToMinuteOfDay("start_time");
+            case "end_minute":
+                return localTimeToMinuteOfDay("end_time");
+            case "week_start_minute":
+                return "CASE WHEN day_of_week BETWEEN 1 AND 7 THEN (day_of_week - 1) * " + TimeUtils.MINUTES_PER_DAY +
+                        " + " + localTimeToMinuteOfDay("start_time") + " END";
+            case "week_end_minute":
+                return "CASE WHEN day_of_week BETWEEN 1 AND 7 THEN (day_of_week - 1) * " + TimeUtils.MINUTES_PER_DAY +
+                        " + " + localTimeToMinuteOfDay("end_time") + " END";
+            default:
+                return column;
+        }
+    }
+    
+    private static String localTimeToMillis(String column) {
+        return "CAST(strftime('%s', " + column + ", 'utc') AS INTEGER) * 1000";
+    }
+    
+    private static String localTimeToMinuteOfDay(String column) {
+        return "(CAST(strftime('%H', " + column + ") AS INTEGER) * 60 + CAST(strftime('%M', " + column + ") AS INTEGER))";
     }
     
     /**
@@ -201,20 +436,28 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if successful, false otherwise
      */
     public boolean saveUser(User user) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_ID, user.getUid());
-        values.put("email", user.getEmail());
-        values.put("display_name", user.getDisplayName());
-        values.put("role", user.getRole());
-        values.put("department_id", user.getDepartmentId());
-        values.put("level", user.getLevel());
-        values.put("staff_id", user.getStaffId());
-        values.put(COLUMN_TIMESTAMP, getCurrentTimestamp());
-        
-        long result = db.insertWithOnConflict(TABLE_USERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        return result != -1;
+        return saveUsers(Collections.singletonList(user));
+    }
+    
+    /**
+     * Save users to database in a single transaction
+     * @param users Users to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveUsers(Collection<User> users) {
+        return bulkUpsert(TABLE_USERS, USER_COLUMNS, users, new RowBinder<User>() {
+            @Override
+            public void bind(SQLiteStatement statement, User user, long timestamp) {
+                bindText(statement, 1, user.getUid());
+                bindText(statement, 2, user.getEmail());
+                bindText(statement, 3, user.getDisplayName());
+                bindText(statement, 4, user.getRole());
+                bindText(statement, 5, user.getDepartmentId());
+                bindText(statement, 6, user.getLevel());
+                bindText(statement, 7, user.getStaffId());
+                statement.bindLong(8, timestamp);
+            }
+        });
     }
     
     /**
@@ -234,20 +477,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 null
         );
         
-        User user = null;
-        if (cursor.moveToFirst()) {
-            user = new User();
-            user.setUid(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-            user.setEmail(cursor.getString(cursor.getColumnIndex("email")));
-            user.setDisplayName(cursor.getString(cursor.getColumnIndex("display_name")));
-            user.setRole(cursor.getString(cursor.getColumnIndex("role")));
-            user.setDepartmentId(cursor.getString(cursor.getColumnIndex("department_id")));
-            user.setLevel(cursor.getString(cursor.getColumnIndex("level")));
-            user.setStaffId(cursor.getString(cursor.getColumnIndex("staff_id")));
-        }
-        
-        cursor.close();
-        return user;
+        return new ModelDecoders.UserDecoder().decodeFirst(new CursorRows(cursor));
     }
     
     /**
@@ -256,19 +486,27 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if successful, false otherwise
      */
     public boolean saveDepartment(Department department) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_ID, department.getId());
-        values.put(COLUMN_NAME, department.getName());
-        values.put("code", department.getCode());
-        values.put("faculty_id", department.getFacultyId());
-        values.put("faculty_name", department.getFacultyName());
-        values.put("hod_id", department.getHodId());
-        values.put(COLUMN_TIMESTAMP, getCurrentTimestamp());
-        
-        long result = db.insertWithOnConflict(TABLE_DEPARTMENTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        return result != -1;
+        return saveDepartments(Collections.singletonList(department));
+    }
+    
+    /**
+     * Save departments to database in a single transaction
+     * @param departments Departments to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveDepartments(Collection<Department> departments) {
+        return bulkUpsert(TABLE_DEPARTMENTS, DEPARTMENT_COLUMNS, departments, new RowBinder<Department>() {
+            @Override
+            public void bind(SQLiteStatement statement, Department department, long timestamp) {
+                bindText(statement, 1, department.getId());
+                bindText(statement, 2, department.getName());
+                bindText(statement, 3, department.getCode());
+                bindText(statement, 4, department.getFacultyId());
+                bindText(statement, 5, department.getFacultyName());
+                bindText(statement, 6, department.getHodId());
+                statement.bindLong(7, timestamp);
+            }
+        });
     }
     
     /**
@@ -277,11 +515,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<Department> getAllDepartments() {
         List<Department> departments = new ArrayList<>();
+        getAllDepartments(null, departments::add);
+        return departments;
+    }
+    
+    /**
+     * Get all departments from database, streaming each row into a sink
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each department
+     * @return Number of rows decoded
+     */
+    public int getAllDepartments(String[] projection, RowDecoder.RowSink<? super Department> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(
                 TABLE_DEPARTMENTS,
-                null,
+                projection,
                 null,
                 null,
                 null,
@@ -289,22 +538,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COLUMN_NAME + " ASC"
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                Department department = new Department();
-                department.setId(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-                department.setName(cursor.getString(cursor.getColumnIndex(COLUMN_NAME)));
-                department.setCode(cursor.getString(cursor.getColumnIndex("code")));
-                department.setFacultyId(cursor.getString(cursor.getColumnIndex("faculty_id")));
-                department.setFacultyName(cursor.getString(cursor.getColumnIndex("faculty_name")));
-                department.setHodId(cursor.getString(cursor.getColumnIndex("hod_id")));
-                
-                departments.add(department);
-            } while (cursor.moveToNext());
-        }
-        
-        cursor.close();
-        return departments;
+        return new ModelDecoders.DepartmentDecoder().decodeAll(new CursorRows(cursor), sink);
     }
     
     /**
@@ -313,23 +547,32 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if successful, false otherwise
      */
     public boolean saveCourse(Course course) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_ID, course.getId());
-        values.put("code", course.getCode());
-        values.put(COLUMN_NAME, course.getName());
-        values.put("department_id", course.getDepartmentId());
-        values.put("department_name", course.getDepartmentName());
-        values.put("credit_hours", course.getCreditHours());
-        values.put("level", course.getLevel());
-        values.put("semester", course.getSemester());
-        values.put("is_elective", course.isElective() ? 1 : 0);
-        values.put("description", course.getDescription());
-        values.put(COLUMN_TIMESTAMP, getCurrentTimestamp());
-        
-        long result = db.insertWithOnConflict(TABLE_COURSES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        return result != -1;
+        return saveCourses(Collections.singletonList(course));
+    }
+    
+    /**
+     * Save courses to database in a single transaction
+     * @param courses Courses to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveCourses(Collection<Course> courses) {
+        return bulkUpsert(TABLE_COURSES, COURSE_COLUMNS, courses, new RowBinder<Course>() {
+            @Override
+            public void bind(SQLiteStatement statement, Course course, long timestamp) {
+                bindText(statement, 1, course.getId());
+                bindText(statement, 2, course.getCode());
+                bindText(statement, 3, course.getName());
+                bindText(statement, 4, course.getDepartmentId());
+                bindText(statement, 5, course.getDepartmentName());
+                statement.bindLong(6, course.getCreditHours());
+                bindText(statement, 7, course.getLevel());
+                bindText(statement, 8, course.getSemester());
+                statement.bindLong(9, course.isElective() ? 1 : 0);
+                bindText(statement, 10, course.getDescription());
+                statement.bindLong(11, course.isPractical() ? 1 : 0);
+                statement.bindLong(12, timestamp);
+            }
+        });
     }
     
     /**
@@ -338,11 +581,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<Course> getAllCourses() {
         List<Course> courses = new ArrayList<>();
+        getAllCourses(null, courses::add);
+        return courses;
+    }
+    
+    /**
+     * Get all courses from database, streaming each row into a sink
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each course
+     * @return Number of rows decoded
+     */
+    public int getAllCourses(String[] projection, RowDecoder.RowSink<? super Course> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(
                 TABLE_COURSES,
-                null,
+                projection,
                 null,
                 null,
                 null,
@@ -350,26 +604,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 "code ASC"
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                Course course = new Course();
-                course.setId(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-                course.setCode(cursor.getString(cursor.getColumnIndex("code")));
-                course.setName(cursor.getString(cursor.getColumnIndex(COLUMN_NAME)));
-                course.setDepartmentId(cursor.getString(cursor.getColumnIndex("department_id")));
-                course.setDepartmentName(cursor.getString(cursor.getColumnIndex("department_name")));
-                course.setCreditHours(cursor.getInt(cursor.getColumnIndex("credit_hours")));
-                course.setLevel(cursor.getString(cursor.getColumnIndex("level")));
-                course.setSemester(cursor.getString(cursor.getColumnIndex("semester")));
-                course.setElective(cursor.getInt(cursor.getColumnIndex("is_elective")) == 1);
-                course.setDescription(cursor.getString(cursor.getColumnIndex("description")));
-                
-                courses.add(course);
-            } while (cursor.moveToNext());
-        }
-        
-        cursor.close();
-        return courses;
+        return new ModelDecoders.CourseDecoder().decodeAll(new CursorRows(cursor), sink);
     }
     
     /**
@@ -379,11 +614,24 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<Course> getCoursesByDepartment(String departmentId) {
         List<Course> courses = new ArrayList<>();
+        getCoursesByDepartment(departmentId, null, courses::add);
+        return courses;
+    }
+    
+    /**
+     * Get courses by department ID, streaming each row into a sink
+     * @param departmentId Department ID
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each course
+     * @return Number of rows decoded
+     */
+    public int getCoursesByDepartment(String departmentId,
+                                      String[] projection, RowDecoder.RowSink<? super Course> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(
                 TABLE_COURSES,
-                null,
+                projection,
                 "department_id = ?",
                 new String[]{departmentId},
                 null,
@@ -391,26 +639,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 "code ASC"
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                Course course = new Course();
-                course.setId(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-                course.setCode(cursor.getString(cursor.getColumnIndex("code")));
-                course.setName(cursor.getString(cursor.getColumnIndex(COLUMN_NAME)));
-                course.setDepartmentId(cursor.getString(cursor.getColumnIndex("department_id")));
-                course.setDepartmentName(cursor.getString(cursor.getColumnIndex("department_name")));
-                course.setCreditHours(cursor.getInt(cursor.getColumnIndex("credit_hours")));
-                course.setLevel(cursor.getString(cursor.getColumnIndex("level")));
-                course.setSemester(cursor.getString(cursor.getColumnIndex("semester")));
-                course.setElective(cursor.getInt(cursor.getColumnIndex("is_elective")) == 1);
-                course.setDescription(cursor.getString(cursor.getColumnIndex("description")));
-                
-                courses.add(course);
-            } while (cursor.moveToNext());
-        }
-        
-        cursor.close();
-        return courses;
+        return new ModelDecoders.CourseDecoder().decodeAll(new CursorRows(cursor), sink);
     }
     
     /**
@@ -419,23 +648,31 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if successful, false otherwise
      */
     public boolean saveLecturer(Lecturer lecturer) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_ID, lecturer.getId());
-        values.put("user_id", lecturer.getUserId());
-        values.put("staff_id", lecturer.getStaffId());
-        values.put("title", lecturer.getTitle());
-        values.put("first_name", lecturer.getFirstName());
-        values.put("last_name", lecturer.getLastName());
-        values.put("department_id", lecturer.getDepartmentId());
-        values.put("department_name", lecturer.getDepartmentName());
-        values.put("email", lecturer.getEmail());
-        values.put("phone_number", lecturer.getPhoneNumber());
-        values.put(COLUMN_TIMESTAMP, getCurrentTimestamp());
-        
-        long result = db.insertWithOnConflict(TABLE_LECTURERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        return result != -1;
+        return saveLecturers(Collections.singletonList(lecturer));
+    }
+    
+    /**
+     * Save lecturers to database in a single transaction
+     * @param lecturers Lecturers to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveLecturers(Collection<Lecturer> lecturers) {
+        return bulkUpsert(TABLE_LECTURERS, LECTURER_COLUMNS, lecturers, new RowBinder<Lecturer>() {
+            @Override
+            public void bind(SQLiteStatement statement, Lecturer lecturer, long timestamp) {
+                bindText(statement, 1, lecturer.getId());
+                bindText(statement, 2, lecturer.getUserId());
+                bindText(statement, 3, lecturer.getStaffId());
+                bindText(statement, 4, lecturer.getTitle());
+                bindText(statement, 5, lecturer.getFirstName());
+                bindText(statement, 6, lecturer.getLastName());
+                bindText(statement, 7, lecturer.getDepartmentId());
+                bindText(statement, 8, lecturer.getDepartmentName());
+                bindText(statement, 9, lecturer.getEmail());
+                bindText(statement, 10, lecturer.getPhoneNumber());
+                statement.bindLong(11, timestamp);
+            }
+        });
     }
     
     /**
@@ -444,11 +681,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<Lecturer> getAllLecturers() {
         List<Lecturer> lecturers = new ArrayList<>();
+        getAllLecturers(null, lecturers::add);
+        return lecturers;
+    }
+    
+    /**
+     * Get all lecturers from database, streaming each row into a sink
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each lecturer
+     * @return Number of rows decoded
+     */
+    public int getAllLecturers(String[] projection, RowDecoder.RowSink<? super Lecturer> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(
                 TABLE_LECTURERS,
-                null,
+                projection,
                 null,
                 null,
                 null,
@@ -456,26 +704,28 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 "last_name ASC, first_name ASC"
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                Lecturer lecturer = new Lecturer();
-                lecturer.setId(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-                lecturer.setUserId(cursor.getString(cursor.getColumnIndex("user_id")));
-                lecturer.setStaffId(cursor.getString(cursor.getColumnIndex("staff_id")));
-                lecturer.setTitle(cursor.getString(cursor.getColumnIndex("title")));
-                lecturer.setFirstName(cursor.getString(cursor.getColumnIndex("first_name")));
-                lecturer.setLastName(cursor.getString(cursor.getColumnIndex("last_name")));
-                lecturer.setDepartmentId(cursor.getString(cursor.getColumnIndex("department_id")));
-                lecturer.setDepartmentName(cursor.getString(cursor.getColumnIndex("department_name")));
-                lecturer.setEmail(cursor.getString(cursor.getColumnIndex("email")));
-                lecturer.setPhoneNumber(cursor.getString(cursor.getColumnIndex("phone_number")));
-                
-                lecturers.add(lecturer);
-            } while (cursor.moveToNext());
-        }
+        return new ModelDecoders.LecturerDecoder().decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    /**
+     * Get the lecturer profile of a user account
+     * @param userId User ID
+     * @return Lecturer, or null if none is saved
+     */
+    public Lecturer getLecturerByUserId(String userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(
+                TABLE_LECTURERS,
+                null,
+                "user_id = ?",
+                new String[]{userId},
+                null,
+                null,
+                null,
+                "1"
+        );
         
-        cursor.close();
-        return lecturers;
+        return new ModelDecoders.LecturerDecoder().decodeFirst(new CursorRows(cursor));
     }
     
     /**
@@ -484,24 +734,32 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if successful, false otherwise
      */
     public boolean saveClassroom(Classroom classroom) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_ID, classroom.getId());
-        values.put(COLUMN_NAME, classroom.getName());
-        values.put("building_name", classroom.getBuildingName());
-        values.put("floor", classroom.getFloor());
-        values.put("room_number", classroom.getRoomNumber());
-        values.put("capacity", classroom.getCapacity());
-        values.put("type", classroom.getType());
-        values.put("has_projector", classroom.isHasProjector() ? 1 : 0);
-        values.put("has_air_condition", classroom.isHasAirCondition() ? 1 : 0);
-        values.put("has_computers", classroom.isHasComputers() ? 1 : 0);
-        values.put("notes", classroom.getNotes());
-        values.put(COLUMN_TIMESTAMP, getCurrentTimestamp());
-        
-        long result = db.insertWithOnConflict(TABLE_CLASSROOMS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        return result != -1;
+        return saveClassrooms(Collections.singletonList(classroom));
+    }
+    
+    /**
+     * Save classrooms to database in a single transaction
+     * @param classrooms Classrooms to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveClassrooms(Collection<Classroom> classrooms) {
+        return bulkUpsert(TABLE_CLASSROOMS, CLASSROOM_COLUMNS, classrooms, new RowBinder<Classroom>() {
+            @Override
+            public void bind(SQLiteStatement statement, Classroom classroom, long timestamp) {
+                bindText(statement, 1, classroom.getId());
+                bindText(statement, 2, classroom.getName());
+                bindText(statement, 3, classroom.getBuildingName());
+                bindText(statement, 4, classroom.getFloor());
+                bindText(statement, 5, classroom.getRoomNumber());
+                statement.bindLong(6, classroom.getCapacity());
+                bindText(statement, 7, classroom.getType());
+                statement.bindLong(8, classroom.isHasProjector() ? 1 : 0);
+                statement.bindLong(9, classroom.isHasAirCondition() ? 1 : 0);
+                statement.bindLong(10, classroom.isHasComputers() ? 1 : 0);
+                bindText(statement, 11, classroom.getNotes());
+                statement.bindLong(12, timestamp);
+            }
+        });
     }
     
     /**
@@ -510,11 +768,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<Classroom> getAllClassrooms() {
         List<Classroom> classrooms = new ArrayList<>();
+        getAllClassrooms(null, classrooms::add);
+        return classrooms;
+    }
+    
+    /**
+     * Get all classrooms from database, streaming each row into a sink
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each classroom
+     * @return Number of rows decoded
+     */
+    public int getAllClassrooms(String[] projection, RowDecoder.RowSink<? super Classroom> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(
                 TABLE_CLASSROOMS,
-                null,
+                projection,
                 null,
                 null,
                 null,
@@ -522,27 +791,116 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 "building_name ASC, room_number ASC"
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                Classroom classroom = new Classroom();
-                classroom.setId(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-                classroom.setName(cursor.getString(cursor.getColumnIndex(COLUMN_NAME)));
-                classroom.setBuildingName(cursor.getString(cursor.getColumnIndex("building_name")));
-                classroom.setFloor(cursor.getString(cursor.getColumnIndex("floor")));
-                classroom.setRoomNumber(cursor.getString(cursor.getColumnIndex("room_number")));
-                classroom.setCapacity(cursor.getInt(cursor.getColumnIndex("capacity")));
-                classroom.setType(cursor.getString(cursor.getColumnIndex("type")));
-                classroom.setHasProjector(cursor.getInt(cursor.getColumnIndex("has_projector")) == 1);
-                classroom.setHasAirCondition(cursor.getInt(cursor.getColumnIndex("has_air_condition")) == 1);
-                classroom.setHasComputers(cursor.getInt(cursor.getColumnIndex("has_computers")) == 1);
-                classroom.setNotes(cursor.getString(cursor.getColumnIndex("notes")));
-                
-                classrooms.add(classroom);
-            } while (cursor.moveToNext());
+        return new ModelDecoders.ClassroomDecoder().decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    /**
+     * Search courses by code, name and description. Every word of the query must match the start
+     * of a word in one of those fields. Courses whose code starts with the first word come first,
+     * then those whose name does.
+     * @param query Text typed by the user
+     * @param limit Maximum number of courses
+     * @param sink Receives each course
+     * @return Number of rows decoded
+     */
+    public int searchCourses(String query, int limit, RowDecoder.RowSink<? super Course> sink) {
+        return search(TABLE_COURSES, query, new String[]{"code", COLUMN_NAME}, "t.code ASC", limit,
+                new ModelDecoders.CourseDecoder(), sink);
+    }
+    
+    /**
+     * Search lecturers by staff ID, first and last name and email. Every word of the query must
+     * match the start of a word in one of those fields. Lecturers whose staff ID starts with the
+     * first word come first, then those whose last or first name does.
+     * @param query Text typed by the user
+     * @param limit Maximum number of lecturers
+     * @param sink Receives each lecturer
+     * @return Number of rows decoded
+     */
+    public int searchLecturers(String query, int limit, RowDecoder.RowSink<? super Lecturer> sink) {
+        return search(TABLE_LECTURERS, query, new String[]{"staff_id", "last_name", "first_name"},
+                "t.last_name ASC, t.first_name ASC", limit, new ModelDecoders.LecturerDecoder(), sink);
+    }
+    
+    /**
+     * Search classrooms by name, building and room number. Every word of the query must match the
+     * start of a word in one of those fields. Classrooms whose name starts with the first word
+     * come first, then those whose room number or building does.
+     * @param query Text typed by the user
+     * @param limit Maximum number of classrooms
+     * @param sink Receives each classroom
+     * @return Number of rows decoded
+     */
+    public int searchClassrooms(String query, int limit, RowDecoder.RowSink<? super Classroom> sink) {
+        return search(TABLE_CLASSROOMS, query, new String[]{COLUMN_NAME, "room_number", "building_name"},
+                "t.building_name ASC, t.room_number ASC", limit, new ModelDecoders.ClassroomDecoder(), sink);
+    }
+    
+    /**
+     * Run a prefix query against the search index of a table
+     * @param table Indexed table, aliased as t in the order
+     * @param query Text typed by the user
+     * @param rankColumns Columns in order of importance; rows where one starts with the first
+     *                    word of the query rank by the first such column
+     * @param order Order within a rank
+     * @param limit Maximum number of rows
+     * @param decoder Decodes rows of the table
+     * @param sink Receives each row
+     * @return Number of rows decoded
+     */
+    private <T> int search(String table, String query, String[] rankColumns, String order, int limit,
+                           RowDecoder<T> decoder, RowDecoder.RowSink<? super T> sink) {
+        List<String> terms = searchTerms(query);
+        if (terms.isEmpty()) {
+            return 0;
         }
         
-        cursor.close();
-        return classrooms;
+        // Lower case terms can never be read as AND, OR or NOT
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(term).append('*');
+        }
+        
+        StringBuilder rank = new StringBuilder("CASE");
+        for (int i = 0; i < rankColumns.length; i++) {
+            rank.append(" WHEN t.").append(rankColumns[i]).append(" LIKE ?2 THEN ").append(i);
+        }
+        rank.append(" ELSE ").append(rankColumns.length).append(" END");
+        
+        String index = table + "_search";
+        String sql = "SELECT t.* FROM " + index + " JOIN " + table + " t ON t.rowid = " + index + ".docid" +
+                " WHERE " + index + " MATCH ?1 ORDER BY " + rank + ", " + order + " LIMIT " + limit;
+        
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, new String[]{match.toString(), terms.get(0) + "%"});
+        return decoder.decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    /**
+     * Split search text into lower case words the way the unicode61 tokenizer does, at every
+     * character that is not a letter or digit
+     * @param query Text typed by the user
+     * @return Words of the query
+     */
+    private static List<String> searchTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++) {
+            boolean wordChar = i < query.length() && Character.isLetterOrDigit(query.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(query.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
     }
     
     /**
@@ -551,31 +909,50 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if successful, false otherwise
      */
     public boolean saveTimetableEntry(TimetableEntry entry) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_ID, entry.getId());
-        values.put("course_id", entry.getCourseId());
-        values.put("course_name", entry.getCourseName());
-        values.put("course_code", entry.getCourseCode());
-        values.put("lecturer_id", entry.getLecturerId());
-        values.put("lecturer_name", entry.getLecturerName());
-        values.put("classroom_id", entry.getClassroomId());
-        values.put("classroom_name", entry.getClassroomName());
-        values.put("department_id", entry.getDepartmentId());
-        values.put("department_name", entry.getDepartmentName());
-        values.put("level", entry.getLevel());
-        values.put("semester", entry.getSemester());
-        values.put("day_of_week", entry.getDayOfWeek());
-        values.put("start_time", formatDate(entry.getStartTime()));
-        values.put("end_time", formatDate(entry.getEndTime()));
-        values.put("type", entry.getType());
-        values.put("last_modified", formatDate(entry.getLastModified()));
-        values.put("last_modified_by", entry.getLastModifiedBy());
-        values.put(COLUMN_TIMESTAMP, getCurrentTimestamp());
-        
-        long result = db.insertWithOnConflict(TABLE_TIMETABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        return result != -1;
+        return saveTimetableEntries(Collections.singletonList(entry));
+    }
+    
+    /**
+     * Save timetable entries to database in a single transaction
+     * @param entries Timetable entries to save
+     * @return true if successful, false otherwise
+     */
+    public boolean saveTimetableEntries(Collection<TimetableEntry> entries) {
+        return bulkUpsert(TABLE_TIMETABLE, TIMETABLE_COLUMNS, entries, new RowBinder<TimetableEntry>() {
+            @Override
+            public void bind(SQLiteStatement statement, TimetableEntry entry, long timestamp) {
+                bindText(statement, 1, entry.getId());
+                bindText(statement, 2, entry.getCourseId());
+                bindText(statement, 3, entry.getCourseName());
+                bindText(statement, 4, entry.getCourseCode());
+                bindText(statement, 5, entry.getLecturerId());
+                bindText(statement, 6, entry.getLecturerName());
+                bindText(statement, 7, entry.getClassroomId());
+                bindText(statement, 8, entry.getClassroomName());
+                bindText(statement, 9, entry.getDepartmentId());
+                bindText(statement, 10, entry.getDepartmentName());
+                bindText(statement, 11, entry.getLevel());
+                bindText(statement, 12, entry.getSemester());
+                statement.bindLong(13, entry.getDayOfWeek());
+                bindTime(statement, 14, entry.getStartTime());
+                bindTime(statement, 15, entry.getEndTime());
+                
+                // Slot columns let range checks and sorting run on integers
+                int startMinute = TimeUtils.minuteOfDay(entry.getStartTime());
+                int endMinute = TimeUtils.minuteOfDay(entry.getEndTime());
+                int weekOffset = (entry.getDayOfWeek() - 1) * TimeUtils.MINUTES_PER_DAY;
+                boolean validDay = entry.getDayOfWeek() >= 1 && entry.getDayOfWeek() <= 7;
+                bindMinute(statement, 16, startMinute, 0);
+                bindMinute(statement, 17, endMinute, 0);
+                bindMinute(statement, 18, validDay ? startMinute : -1, weekOffset);
+                bindMinute(statement, 19, validDay ? endMinute : -1, weekOffset);
+                
+                bindText(statement, 20, entry.getType());
+                bindTime(statement, 21, entry.getLastModified());
+                bindText(statement, 22, entry.getLastModifiedBy());
+                statement.bindLong(23, timestamp);
+            }
+        });
     }
     
     /**
@@ -586,30 +963,33 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<TimetableEntry> getTimetableByDepartmentAndLevel(String departmentId, String level) {
         List<TimetableEntry> entries = new ArrayList<>();
+        getTimetableByDepartmentAndLevel(departmentId, level, null, entries::add);
+        return entries;
+    }
+    
+    /**
+     * Get timetable entries by department and level, streaming each row into a sink
+     * @param departmentId Department ID
+     * @param level Student level
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each timetable entry
+     * @return Number of rows decoded
+     */
+    public int getTimetableByDepartmentAndLevel(String departmentId, String level,
+                                                String[] projection, RowDecoder.RowSink<? super TimetableEntry> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
-        String selection = "department_id = ? AND level = ?";
-        String[] selectionArgs = {departmentId, level};
-        
         Cursor cursor = db.query(
                 TABLE_TIMETABLE,
-                null,
-                selection,
-                selectionArgs,
+                projection,
+                "department_id = ? AND level = ?",
+                new String[]{departmentId, level},
                 null,
                 null,
-                "day_of_week ASC, start_time ASC"
+                TIMETABLE_ORDER
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                TimetableEntry entry = cursorToTimetableEntry(cursor);
-                entries.add(entry);
-            } while (cursor.moveToNext());
-        }
-        
-        cursor.close();
-        return entries;
+        return new ModelDecoders.TimetableEntryDecoder().decodeAll(new CursorRows(cursor), sink);
     }
     
     /**
@@ -619,30 +999,32 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<TimetableEntry> getTimetableByLecturer(String lecturerId) {
         List<TimetableEntry> entries = new ArrayList<>();
+        getTimetableByLecturer(lecturerId, null, entries::add);
+        return entries;
+    }
+    
+    /**
+     * Get timetable entries by lecturer ID, streaming each row into a sink
+     * @param lecturerId Lecturer ID
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each timetable entry
+     * @return Number of rows decoded
+     */
+    public int getTimetableByLecturer(String lecturerId,
+                                      String[] projection, RowDecoder.RowSink<? super TimetableEntry> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
-        String selection = "lecturer_id = ?";
-        String[] selectionArgs = {lecturerId};
-        
         Cursor cursor = db.query(
                 TABLE_TIMETABLE,
+                projection,
+                "lecturer_id = ?",
+                new String[]{lecturerId},
                 null,
-                selection,
-                selectionArgs,
                 null,
-                null,
-                "day_of_week ASC, start_time ASC"
+                TIMETABLE_ORDER
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                TimetableEntry entry = cursorToTimetableEntry(cursor);
-                entries.add(entry);
-            } while (cursor.moveToNext());
-        }
-        
-        cursor.close();
-        return entries;
+        return new ModelDecoders.TimetableEntryDecoder().decodeAll(new CursorRows(cursor), sink);
     }
     
     /**
@@ -652,30 +1034,143 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<TimetableEntry> getTimetableByClassroom(String classroomId) {
         List<TimetableEntry> entries = new ArrayList<>();
+        getTimetableByClassroom(classroomId, null, entries::add);
+        return entries;
+    }
+    
+    /**
+     * Get timetable entries by classroom ID, streaming each row into a sink
+     * @param classroomId Classroom ID
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each timetable entry
+     * @return Number of rows decoded
+     */
+    public int getTimetableByClassroom(String classroomId,
+                                       String[] projection, RowDecoder.RowSink<? super TimetableEntry> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
-        String selection = "classroom_id = ?";
-        String[] selectionArgs = {classroomId};
+        Cursor cursor = db.query(
+                TABLE_TIMETABLE,
+                projection,
+                "classroom_id = ?",
+                new String[]{classroomId},
+                null,
+                null,
+                TIMETABLE_ORDER
+        );
+        
+        return new ModelDecoders.TimetableEntryDecoder().decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    /**
+     * Get one page of the timetable entries of a day matching the filters that are set, ordered
+     * by start minute and then ID, like {@link FirebaseUtil#getFilteredTimetable}, so a page can
+     * follow one read from Firestore. Within one day week_start_minute orders like start_minute.
+     * Pages continue from the last row of the previous page rather than an offset, so each page
+     * is a range scan on the week_start_minute indexes.
+     * @param departmentId Department ID, or null for any
+     * @param level Student level, or null for any
+     * @param lecturerId Lecturer ID, or null for any
+     * @param classroomId Classroom ID, or null for any
+     * @param dayOfWeek Day of week (1 = Monday, 7 = Sunday)
+     * @param afterEntry Last entry of the previous page, or null for the first page
+     * @param limit Maximum number of entries
+     * @param sink Receives each timetable entry
+     * @return Number of rows decoded
+     */
+    public int getTimetablePage(String departmentId, String level, String lecturerId, String classroomId,
+                                int dayOfWeek, TimetableEntry afterEntry, int limit,
+                                RowDecoder.RowSink<? super TimetableEntry> sink) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        int dayStart = (dayOfWeek - 1) * TimeUtils.MINUTES_PER_DAY;
+        StringBuilder selection = new StringBuilder("week_start_minute >= ? AND week_start_minute < ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(dayStart));
+        args.add(String.valueOf(dayStart + TimeUtils.MINUTES_PER_DAY));
+        appendFilter(selection, args, "department_id", departmentId);
+        appendFilter(selection, args, "level", level);
+        appendFilter(selection, args, "lecturer_id", lecturerId);
+        appendFilter(selection, args, "classroom_id", classroomId);
+        
+        int afterMinute = afterEntry != null ? afterEntry.getStartMinute() : -1;
+        if (afterMinute >= 0) {
+            String afterWeekMinute = String.valueOf(dayStart + afterMinute);
+            selection.append(" AND (week_start_minute > ? OR (week_start_minute = ? AND " + COLUMN_ID + " > ?))");
+            args.add(afterWeekMinute);
+            args.add(afterWeekMinute);
+            args.add(afterEntry.getId());
+        }
         
         Cursor cursor = db.query(
                 TABLE_TIMETABLE,
                 null,
-                selection,
-                selectionArgs,
+                selection.toString(),
+                args.toArray(new String[0]),
                 null,
                 null,
-                "day_of_week ASC, start_time ASC"
+                TIMETABLE_ORDER + ", " + COLUMN_ID + " ASC",
+                String.valueOf(limit)
         );
         
-        if (cursor.moveToFirst()) {
-            do {
-                TimetableEntry entry = cursorToTimetableEntry(cursor);
-                entries.add(entry);
-            } while (cursor.moveToNext());
+        return new ModelDecoders.TimetableEntryDecoder().decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    /**
+     * Get the next timetable entries of a class or a lecturer in week order, starting at a minute
+     * of the week and wrapping round to Monday once the week runs out. Both parts are range scans
+     * on the week_start_minute indexes, so the cost depends on the limit, not the table size.
+     * @param departmentId Department ID, or null for any
+     * @param level Student level, or null for any
+     * @param lecturerId Lecturer ID, or null for any
+     * @param fromWeekMinute First minute of the week to include (0 = Monday 00:00)
+     * @param limit Maximum number of entries
+     * @param sink Receives each timetable entry
+     * @return Number of rows decoded
+     */
+    public int getUpcomingTimetable(String departmentId, String level, String lecturerId, int fromWeekMinute,
+                                    int limit, RowDecoder.RowSink<? super TimetableEntry> sink) {
+        int rows = getTimetableInWeekRange(departmentId, level, lecturerId, fromWeekMinute,
+                TimeUtils.MINUTES_PER_WEEK, limit, sink);
+        if (rows < limit && fromWeekMinute > 0) {
+            rows += getTimetableInWeekRange(departmentId, level, lecturerId, 0, fromWeekMinute,
+                    limit - rows, sink);
         }
+        return rows;
+    }
+    
+    private int getTimetableInWeekRange(String departmentId, String level, String lecturerId, int fromWeekMinute,
+                                        int toWeekMinute, int limit,
+                                        RowDecoder.RowSink<? super TimetableEntry> sink) {
+        SQLiteDatabase db = this.getReadableDatabase();
         
-        cursor.close();
-        return entries;
+        StringBuilder selection = new StringBuilder("week_start_minute >= ? AND week_start_minute < ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(fromWeekMinute));
+        args.add(String.valueOf(toWeekMinute));
+        appendFilter(selection, args, "department_id", departmentId);
+        appendFilter(selection, args, "level", level);
+        appendFilter(selection, args, "lecturer_id", lecturerId);
+        
+        Cursor cursor = db.query(
+                TABLE_TIMETABLE,
+                null,
+                selection.toString(),
+                args.toArray(new String[0]),
+                null,
+                null,
+                TIMETABLE_ORDER,
+                String.valueOf(limit)
+        );
+        
+        return new ModelDecoders.TimetableEntryDecoder().decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    private static void appendFilter(StringBuilder selection, List<String> args, String column, String value) {
+        if (value != null) {
+            selection.append(" AND ").append(column).append(" = ?");
+            args.add(value);
+        }
     }
     
     /**
@@ -684,43 +1179,816 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public List<TimetableEntry> getAllTimetableEntries() {
         List<TimetableEntry> entries = new ArrayList<>();
+        getAllTimetableEntries(null, entries::add);
+        return entries;
+    }
+    
+    /**
+     * Get all timetable entries from database, streaming each row into a sink
+     * @param projection Columns to read, or null for all. Columns left out decode as empty.
+     * @param sink Receives each timetable entry
+     * @return Number of rows decoded
+     */
+    public int getAllTimetableEntries(String[] projection, RowDecoder.RowSink<? super TimetableEntry> sink) {
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(
                 TABLE_TIMETABLE,
+                projection,
+                null,
                 null,
                 null,
                 null,
+                TIMETABLE_ORDER
+        );
+        
+        return new ModelDecoders.TimetableEntryDecoder().decodeAll(new CursorRows(cursor), sink);
+    }
+    
+    /**
+     * Update sync time for a collection
+     * @param collectionName Collection name
+     */
+    public void updateSyncTime(String collectionName) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        
+        values.put("last_sync_time", System.currentTimeMillis());
+        
+        // Update in place so the sync watermark is kept
+        int updated = db.update(TABLE_SYNC_INFO, values, "collection_name = ?", new String[]{collectionName});
+        if (updated == 0) {
+            values.put("collection_name", collectionName);
+            db.insert(TABLE_SYNC_INFO, null, values);
+        }
+    }
+    
+    /**
+     * Get the sync watermark for a collection
+     * @param collectionName Collection name
+     * @return Latest server modification time applied locally, in epoch millis, or 0 if never synced
+     */
+    public long getSyncWatermark(String collectionName) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        Cursor cursor = db.query(
+                TABLE_SYNC_INFO,
+                new String[]{"watermark"},
+                "collection_name = ?",
+                new String[]{collectionName},
                 null,
                 null,
-                "day_of_week ASC, start_time ASC"
+                null
         );
         
+        long watermark = 0;
         if (cursor.moveToFirst()) {
-            do {
-                TimetableEntry entry = cursorToTimetableEntry(cursor);
-                entries.add(entry);
-            } while (cursor.moveToNext());
+            watermark = cursor.getLong(0);
         }
         
         cursor.close();
-        return entries;
+        return watermark;
     }
     
     /**
-     * Update sync time for a collection
-     * @param collectionName Collection name
+     * Apply a batch of timetable changes from the server. Upserts, deletions and the new
+     * watermark are written in one transaction, so an interrupted sync never advances the
+     * watermark past changes that were not stored. Entries with an edit waiting in the outbox
+     * are neither overwritten nor deleted.
+     * @param changedEntries Entries added or modified on the server
+     * @param deletedIds IDs of entries deleted on the server
+     * @param replaceAll true to clear the table first, for a full download
+     * @param watermark New watermark in epoch millis
+     * @return true if successful, false otherwise
      */
-    public void updateSyncTime(String collectionName) {
+    public boolean applyTimetableDelta(List<TimetableEntry> changedEntries, List<String> deletedIds,
+                                       boolean replaceAll, long watermark) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (replaceAll) {
+                // Entries with an edit waiting in the outbox stay until it has been sent
+                db.delete(TABLE_TIMETABLE, "NOT EXISTS (SELECT 1 FROM " + TABLE_OUTBOX
+                                + " WHERE collection = ? AND document_id = " + TABLE_TIMETABLE + "." + COLUMN_ID + ")",
+                        new String[]{FirebaseUtil.TIMETABLE_COLLECTION});
+            }
+            if (!saveTimetableEntries(changedEntries)) {
+                return false;
+            }
+            deleteUnlessPending(db, FirebaseUtil.TIMETABLE_COLLECTION, deletedIds);
+            
+            ContentValues values = new ContentValues();
+            values.put("collection_name", FirebaseUtil.TIMETABLE_COLLECTION);
+            values.put("last_sync_time", System.currentTimeMillis());
+            values.put("watermark", watermark);
+            db.insertWithOnConflict(TABLE_SYNC_INFO, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying timetable changes", e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Apply timetable changes pushed by a snapshot listener in one transaction. The sync
+     * watermark is left alone, so the next incremental sync still fetches anything the
+     * listener did not see. Entries with an edit waiting in the outbox are kept.
+     * @param changedEntries Entries added or modified on the server
+     * @param deletedIds IDs of entries deleted on the server
+     * @return true if successful, false otherwise
+     */
+    public boolean applyTimetableChanges(List<TimetableEntry> changedEntries, List<String> deletedIds) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (!saveTimetableEntries(changedEntries)) {
+                return false;
+            }
+            deleteUnlessPending(db, FirebaseUtil.TIMETABLE_COLLECTION, deletedIds);
+            
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying timetable changes", e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Delete rows of a reference collection that were removed on the server. Rows with an edit
+     * waiting in the outbox are kept, as in the bulk saves.
+     * @param collection Collection with a local copy
+     * @param ids IDs of the removed documents
+     * @return true if successful, false otherwise
+     */
+    public boolean deleteReferenceRows(String collection, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return true;
+        }
+        
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            deleteUnlessPending(db, collection, ids);
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error deleting rows of " + collection, e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Delete rows removed on the server, keeping any with an edit waiting in the outbox. Call
+     * inside a transaction.
+     */
+    private void deleteUnlessPending(SQLiteDatabase db, String collection, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        SQLiteStatement statement = db.compileStatement("DELETE FROM " + tableForCollection(collection)
+                + " WHERE " + COLUMN_ID + " = ?1 AND NOT EXISTS (SELECT 1 FROM " + TABLE_OUTBOX
+                + " WHERE collection = ?2 AND document_id = ?1)");
+        try {
+            for (String id : ids) {
+                statement.bindString(1, id);
+                statement.bindString(2, collection);
+                statement.executeUpdateDelete();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+    
+    /**
+     * Save a timetable entry locally and queue it for Firestore, in one transaction
+     * @param entry Timetable entry to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueTimetableEntrySave(final TimetableEntry entry) {
+        return queueMutation(FirebaseUtil.TIMETABLE_COLLECTION, entry.getId(), OUTBOX_SET,
+                () -> saveTimetableEntry(entry));
+    }
+    
+    /**
+     * Delete a timetable entry locally and queue the deletion for Firestore, in one transaction
+     * @param entryId Timetable entry ID
+     * @return true if successful, false otherwise
+     */
+    public boolean queueTimetableEntryDelete(String entryId) {
+        return queueMutation(FirebaseUtil.TIMETABLE_COLLECTION, entryId, OUTBOX_DELETE, null);
+    }
+    
+    /**
+     * Save a course locally and queue it for Firestore, in one transaction
+     * @param course Course to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueCourseSave(final Course course) {
+        return queueMutation(FirebaseUtil.COURSES_COLLECTION, course.getId(), OUTBOX_SET, () -> saveCourse(course));
+    }
+    
+    /**
+     * Delete a course locally and queue the deletion for Firestore, in one transaction
+     * @param courseId Course ID
+     * @return true if successful, false otherwise
+     */
+    public boolean queueCourseDelete(String courseId) {
+        return queueMutation(FirebaseUtil.COURSES_COLLECTION, courseId, OUTBOX_DELETE, null);
+    }
+    
+    /**
+     * Save a lecturer locally and queue it for Firestore, in one transaction
+     * @param lecturer Lecturer to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueLecturerSave(final Lecturer lecturer) {
+        return queueMutation(FirebaseUtil.LECTURERS_COLLECTION, lecturer.getId(), OUTBOX_SET,
+                () -> saveLecturer(lecturer));
+    }
+    
+    /**
+     * Delete a lecturer locally and queue the deletion for Firestore, in one transaction
+     * @param lecturerId Lecturer ID
+     * @return true if successful, false otherwise
+     */
+    public boolean queueLecturerDelete(String lecturerId) {
+        return queueMutation(FirebaseUtil.LECTURERS_COLLECTION, lecturerId, OUTBOX_DELETE, null);
+    }
+    
+    /**
+     * Save a classroom locally and queue it for Firestore, in one transaction
+     * @param classroom Classroom to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueClassroomSave(final Classroom classroom) {
+        return queueMutation(FirebaseUtil.CLASSROOMS_COLLECTION, classroom.getId(), OUTBOX_SET,
+                () -> saveClassroom(classroom));
+    }
+    
+    /**
+     * Delete a classroom locally and queue the deletion for Firestore, in one transaction
+     * @param classroomId Classroom ID
+     * @return true if successful, false otherwise
+     */
+    public boolean queueClassroomDelete(String classroomId) {
+        return queueMutation(FirebaseUtil.CLASSROOMS_COLLECTION, classroomId, OUTBOX_DELETE, null);
+    }
+    
+    /**
+     * Save courses locally and queue them for Firestore, in one transaction
+     * @param courses Courses to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueCourseSaves(final Collection<Course> courses) {
+        List<String> ids = new ArrayList<>();
+        for (Course course : courses) {
+            ids.add(course.getId());
+        }
+        return queueSaves(FirebaseUtil.COURSES_COLLECTION, ids, () -> {
+            if (!saveCourses(courses)) {
+                return false;
+            }
+            for (Course course : courses) {
+                if (queueCourseNameFanOut(course) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+    
+    /**
+     * Save lecturers locally and queue them for Firestore, in one transaction
+     * @param lecturers Lecturers to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueLecturerSaves(final Collection<Lecturer> lecturers) {
+        List<String> ids = new ArrayList<>();
+        for (Lecturer lecturer : lecturers) {
+            ids.add(lecturer.getId());
+        }
+        return queueSaves(FirebaseUtil.LECTURERS_COLLECTION, ids, () -> {
+            if (!saveLecturers(lecturers)) {
+                return false;
+            }
+            for (Lecturer lecturer : lecturers) {
+                if (queueLecturerNameFanOut(lecturer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+    
+    /**
+     * Save classrooms locally and queue them for Firestore, in one transaction
+     * @param classrooms Classrooms to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueClassroomSaves(final Collection<Classroom> classrooms) {
+        List<String> ids = new ArrayList<>();
+        for (Classroom classroom : classrooms) {
+            ids.add(classroom.getId());
+        }
+        return queueSaves(FirebaseUtil.CLASSROOMS_COLLECTION, ids, () -> {
+            if (!saveClassrooms(classrooms)) {
+                return false;
+            }
+            for (Classroom classroom : classrooms) {
+                if (queueClassroomNameFanOut(classroom) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+    
+    /**
+     * Save timetable entries locally and queue them for Firestore, in one transaction
+     * @param entries Timetable entries to save
+     * @return true if successful, false otherwise
+     */
+    public boolean queueTimetableEntrySaves(final Collection<TimetableEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (TimetableEntry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return queueSaves(FirebaseUtil.TIMETABLE_COLLECTION, ids, () -> saveTimetableEntries(entries));
+    }
+    
+    /**
+     * Copy a course's name and code into the timetable entries that show it, and queue the
+     * changed fields for Firestore. Call in the same transaction as the course save.
+     * @param course Saved course
+     * @return Number of entries updated, or -1 on error
+     */
+    public int queueCourseNameFanOut(Course course) {
+        return queueNameFanOut("course_id", course.getId(),
+                new String[]{FirebaseUtil.FIELD_COURSE_NAME, FirebaseUtil.FIELD_COURSE_CODE},
+                new String[]{course.getName(), course.getCode()});
+    }
+    
+    /**
+     * Copy a lecturer's full name into the timetable entries that show it, and queue the
+     * changed field for Firestore. Call in the same transaction as the lecturer save.
+     * @param lecturer Saved lecturer
+     * @return Number of entries updated, or -1 on error
+     */
+    public int queueLecturerNameFanOut(Lecturer lecturer) {
+        return queueNameFanOut("lecturer_id", lecturer.getId(),
+                new String[]{FirebaseUtil.FIELD_LECTURER_NAME}, new String[]{lecturer.getFullName()});
+    }
+    
+    /**
+     * Copy a classroom's full name into the timetable entries that show it, and queue the
+     * changed field for Firestore. Call in the same transaction as the classroom save.
+     * @param classroom Saved classroom
+     * @return Number of entries updated, or -1 on error
+     */
+    public int queueClassroomNameFanOut(Classroom classroom) {
+        return queueNameFanOut("classroom_id", classroom.getId(),
+                new String[]{FirebaseUtil.FIELD_CLASSROOM_NAME}, new String[]{classroom.getFullName()});
+    }
+    
+    /**
+     * Copy a department's name into the timetable entries that show it, and queue the changed
+     * field for Firestore
+     * @param department Renamed department
+     * @return Number of entries updated, or -1 on error
+     */
+    public int queueDepartmentNameFanOut(Department department) {
+        return queueNameFanOut("department_id", department.getId(),
+                new String[]{FirebaseUtil.FIELD_DEPARTMENT_NAME}, new String[]{department.getName()});
+    }
+    
+    /**
+     * Rewrite names copied into timetable entries, in one transaction. Only entries whose copy
+     * differs are found, through the index on the reference column, so saving a document without
+     * renaming it touches nothing. Each entry gets an outbox update listing just these fields;
+     * an entry already waiting for a full save needs nothing more, as that sends the new names.
+     * @param referenceColumn Timetable column holding the renamed document's ID
+     * @param referenceId Renamed document's ID
+     * @param fields Firestore fields of the names
+     * @param values New names, in the same order
+     * @return Number of entries updated, or -1 on error
+     */
+    private int queueNameFanOut(String referenceColumn, String referenceId, String[] fields, String[] values) {
+        if (referenceId == null) {
+            return 0;
+        }
+        
+        // Entries that reference the document but show a different name
+        StringBuilder stale = new StringBuilder(referenceColumn).append(" = ? AND (");
+        String[] selectionArgs = new String[values.length + 1];
+        selectionArgs[0] = referenceId;
+        ContentValues names = new ContentValues();
+        for (int i = 0; i < fields.length; i++) {
+            String column = nameColumnForField(fields[i]);
+            if (i > 0) {
+                stale.append(" OR ");
+            }
+            // Null is stored for a missing name; compare it as empty so it matches the args
+            stale.append("IFNULL(").append(column).append(", '') <> ?");
+            selectionArgs[i + 1] = values[i] != null ? values[i] : "";
+            names.put(column, values[i]);
+        }
+        stale.append(')');
+        
         SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            List<String> entryIds = new ArrayList<>();
+            Cursor cursor = db.query(TABLE_TIMETABLE, new String[]{COLUMN_ID}, stale.toString(), selectionArgs,
+                    null, null, null);
+            while (cursor.moveToNext()) {
+                entryIds.add(cursor.getString(0));
+            }
+            cursor.close();
+            if (entryIds.isEmpty()) {
+                db.setTransactionSuccessful();
+                return 0;
+            }
+            
+            db.update(TABLE_TIMETABLE, names, stale.toString(), selectionArgs);
+            
+            long timestamp = System.currentTimeMillis();
+            for (String entryId : entryIds) {
+                queueFieldUpdate(db, FirebaseUtil.TIMETABLE_COLLECTION, entryId, fields, timestamp);
+            }
+            
+            db.setTransactionSuccessful();
+            return entryIds.size();
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating timetable names for " + referenceColumn + " " + referenceId, e);
+            return -1;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Queue an update of some fields of a document, merged with any edit already waiting for it
+     */
+    private void queueFieldUpdate(SQLiteDatabase db, String collection, String documentId, String[] fields,
+                                  long timestamp) {
+        Set<String> allFields = new LinkedHashSet<>();
+        Cursor cursor = db.query(TABLE_OUTBOX, new String[]{"operation", "fields"},
+                "collection = ? AND document_id = ?", new String[]{collection, documentId}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                if (!OUTBOX_UPDATE.equals(cursor.getString(0))) {
+                    // A waiting save sends the whole local copy, names included
+                    return;
+                }
+                if (!cursor.isNull(1)) {
+                    Collections.addAll(allFields, cursor.getString(1).split(","));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        Collections.addAll(allFields, fields);
+        
         ContentValues values = new ContentValues();
+        values.put("collection", collection);
+        values.put("document_id", documentId);
+        values.put("operation", OUTBOX_UPDATE);
+        values.put("fields", TextUtils.join(",", allFields));
+        values.put(COLUMN_TIMESTAMP, timestamp);
+        db.insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+    
+    /**
+     * @param field Firestore field of a name copied into timetable entries
+     * @return Timetable column holding it
+     */
+    private static String nameColumnForField(String field) {
+        switch (field) {
+            case FirebaseUtil.FIELD_COURSE_NAME:
+                return "course_name";
+            case FirebaseUtil.FIELD_COURSE_CODE:
+                return "course_code";
+            case FirebaseUtil.FIELD_LECTURER_NAME:
+                return "lecturer_name";
+            case FirebaseUtil.FIELD_CLASSROOM_NAME:
+                return "classroom_name";
+            case FirebaseUtil.FIELD_DEPARTMENT_NAME:
+                return "department_name";
+            default:
+                throw new IllegalArgumentException("No timetable column for " + field);
+        }
+    }
+    
+    /**
+     * Run several writes in one transaction. Nothing is kept unless the work returns true.
+     * @param work Writes to run, typically calls to the queue and save methods
+     * @return true if the work succeeded and was committed, false otherwise
+     */
+    public boolean runInTransaction(LocalWrite work) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (!work.apply()) {
+                return false;
+            }
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error running transaction", e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Writes to the local database as one step of a larger change
+     */
+    public interface LocalWrite {
+        boolean apply();
+    }
+    
+    /**
+     * Apply a change to the local cache and record it in the outbox in one transaction.
+     * Until the outbox row is removed, saves from the server skip the document.
+     * @param collection Firestore collection
+     * @param documentId Document ID
+     * @param operation {@link #OUTBOX_SET} or {@link #OUTBOX_DELETE}
+     * @param localWrite Saves the row for a set; null for a delete
+     * @return true if successful, false otherwise
+     */
+    private boolean queueMutation(String collection, String documentId, String operation, LocalWrite localWrite) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            // An earlier edit of the same document is superseded; removing it first also lets
+            // the local save through
+            db.delete(TABLE_OUTBOX, "collection = ? AND document_id = ?", new String[]{collection, documentId});
+            
+            if (localWrite != null) {
+                if (!localWrite.apply()) {
+                    return false;
+                }
+            } else {
+                db.delete(tableForCollection(collection), COLUMN_ID + " = ?", new String[]{documentId});
+            }
+            
+            ContentValues values = new ContentValues();
+            values.put("collection", collection);
+            values.put("document_id", documentId);
+            values.put("operation", operation);
+            values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
+            if (db.insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE) == -1) {
+                return false;
+            }
+            
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error queueing " + operation + " of " + collection + "/" + documentId, e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Save many documents locally and queue them for Firestore in one transaction, reusing
+     * compiled statements for the outbox rows
+     * @param collection Firestore collection
+     * @param documentIds IDs of the documents being saved
+     * @param localWrite Saves the rows
+     * @return true if successful, false otherwise
+     */
+    private boolean queueSaves(String collection, List<String> documentIds, LocalWrite localWrite) {
+        if (documentIds.isEmpty()) {
+            return true;
+        }
+        
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement clear = db.compileStatement("DELETE FROM " + TABLE_OUTBOX
+                + " WHERE collection = ? AND document_id = ?");
+        SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_OUTBOX
+                + " (collection, document_id, operation, " + COLUMN_TIMESTAMP + ") VALUES (?, ?, ?, ?)");
+        long timestamp = System.currentTimeMillis();
+        
+        db.beginTransaction();
+        try {
+            // Earlier edits are superseded; clearing them first lets the local saves through
+            for (String documentId : documentIds) {
+                clear.bindString(1, collection);
+                clear.bindString(2, documentId);
+                clear.executeUpdateDelete();
+            }
+            
+            if (!localWrite.apply()) {
+                return false;
+            }
+            
+            for (String documentId : documentIds) {
+                insert.bindString(1, collection);
+                insert.bindString(2, documentId);
+                insert.bindString(3, OUTBOX_SET);
+                insert.bindLong(4, timestamp);
+                insert.executeInsert();
+            }
+            
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error queueing " + documentIds.size() + " saves to " + collection, e);
+            return false;
+        } finally {
+            db.endTransaction();
+            clear.close();
+            insert.close();
+        }
+    }
+    
+    /**
+     * @param collection Firestore collection with a local copy
+     * @return Table holding the local copy
+     */
+    private static String tableForCollection(String collection) {
+        switch (collection) {
+            case FirebaseUtil.TIMETABLE_COLLECTION:
+                return TABLE_TIMETABLE;
+            case FirebaseUtil.DEPARTMENTS_COLLECTION:
+                return TABLE_DEPARTMENTS;
+            case FirebaseUtil.COURSES_COLLECTION:
+                return TABLE_COURSES;
+            case FirebaseUtil.LECTURERS_COLLECTION:
+                return TABLE_LECTURERS;
+            case FirebaseUtil.CLASSROOMS_COLLECTION:
+                return TABLE_CLASSROOMS;
+            default:
+                throw new IllegalArgumentException("No local table for " + collection);
+        }
+    }
+    
+    /**
+     * @param table Local table
+     * @return Firestore collection whose edits go through the outbox, or null
+     */
+    private static String collectionForTable(String table) {
+        switch (table) {
+            case TABLE_TIMETABLE:
+                return FirebaseUtil.TIMETABLE_COLLECTION;
+            case TABLE_COURSES:
+                return FirebaseUtil.COURSES_COLLECTION;
+            case TABLE_LECTURERS:
+                return FirebaseUtil.LECTURERS_COLLECTION;
+            case TABLE_CLASSROOMS:
+                return FirebaseUtil.CLASSROOMS_COLLECTION;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * A local edit waiting in the outbox
+     */
+    public static final class PendingMutation {
+        public final long id;
+        public final String collection;
+        public final String documentId;
+        public final String operation;
+        // Firestore fields to write for an update, null otherwise
+        public final String[] fields;
         
-        values.put("collection_name", collectionName);
-        values.put("last_sync_time", getCurrentTimestamp());
+        PendingMutation(long id, String collection, String documentId, String operation, String[] fields) {
+            this.id = id;
+            this.collection = collection;
+            this.documentId = documentId;
+            this.operation = operation;
+            this.fields = fields;
+        }
+    }
+    
+    /**
+     * Get the oldest edits waiting in the outbox
+     * @param limit Maximum number of edits
+     * @return Edits in the order they were made
+     */
+    public List<PendingMutation> getPendingMutations(int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
         
-        db.insertWithOnConflict(TABLE_SYNC_INFO, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        Cursor cursor = db.query(
+                TABLE_OUTBOX,
+                new String[]{COLUMN_ID, "collection", "document_id", "operation", "fields"},
+                null,
+                null,
+                null,
+                null,
+                COLUMN_ID + " ASC",
+                String.valueOf(limit)
+        );
+        
+        List<PendingMutation> mutations = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            String fields = cursor.getString(4);
+            mutations.add(new PendingMutation(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                    cursor.getString(3), fields != null ? fields.split(",") : null));
+        }
+        
+        cursor.close();
+        return mutations;
     }
     
+    /**
+     * Remove edits that have been written to Firestore. An edit made to the same document
+     * since then has a new row ID and is kept.
+     * @param mutations Edits to remove
+     */
+    public void removePendingMutations(List<PendingMutation> mutations) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (PendingMutation mutation : mutations) {
+                db.delete(TABLE_OUTBOX, COLUMN_ID + " = ?", new String[]{String.valueOf(mutation.id)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Get a locally stored document by collection and ID
+     * @param collection Timetable, courses, lecturers or classrooms collection
+     * @param documentId Document ID
+     * @return The stored object, or null if it is not stored or the collection is not cached
+     */
+    public Object getCachedDocument(String collection, String documentId) {
+        RowDecoder<?> decoder;
+        switch (collection) {
+            case FirebaseUtil.TIMETABLE_COLLECTION:
+                decoder = new ModelDecoders.TimetableEntryDecoder();
+                break;
+            case FirebaseUtil.COURSES_COLLECTION:
+                decoder = new ModelDecoders.CourseDecoder();
+                break;
+            case FirebaseUtil.LECTURERS_COLLECTION:
+                decoder = new ModelDecoders.LecturerDecoder();
+                break;
+            case FirebaseUtil.CLASSROOMS_COLLECTION:
+                decoder = new ModelDecoders.ClassroomDecoder();
+                break;
+            default:
+                return null;
+        }
+        
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(
+                tableForCollection(collection),
+                null,
+                COLUMN_ID + " = ?",
+                new String[]{documentId},
+                null,
+                null,
+                null
+        );
+        
+        return decoder.decodeFirst(new CursorRows(cursor));
+    }
+
+    /**
+     * Put the server's copy of a document back after the server rejected a local edit of it.
+     * A document with another edit still waiting in the outbox keeps its local copy.
+     * @param collection Timetable, courses, lecturers or classrooms collection
+     * @param documentId Document ID
+     * @param serverCopy Document as stored on the server, or null if the server has none
+     * @return true if successful, false otherwise
+     */
+    public boolean restoreServerCopy(String collection, String documentId, Object serverCopy) {
+        if (serverCopy == null) {
+            return deleteReferenceRows(collection, Collections.singletonList(documentId));
+        }
+        if (serverCopy instanceof TimetableEntry) {
+            return saveTimetableEntries(Collections.singletonList((TimetableEntry) serverCopy));
+        }
+        if (serverCopy instanceof Course) {
+            return saveCourses(Collections.singletonList((Course) serverCopy));
+        }
+        if (serverCopy instanceof Lecturer) {
+            return saveLecturers(Collections.singletonList((Lecturer) serverCopy));
+        }
+        if (serverCopy instanceof Classroom) {
+            return saveClassrooms(Collections.singletonList((Classroom) serverCopy));
+        }
+        Log.w(TAG, "No local copy kept for " + collection + "/" + documentId);
+        return false;
+    }
+
     /**
      * Get last sync time for a collection
      * @param collectionName Collection name
@@ -740,8 +2008,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         );
         
         String lastSyncTime = null;
-        if (cursor.moveToFirst()) {
-            lastSyncTime = cursor.getString(0);
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+            lastSyncTime = format.format(new Date(cursor.getLong(0)));
         }
         
         cursor.close();
@@ -760,71 +2029,97 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.delete(TABLE_CLASSROOMS, null, null);
         db.delete(TABLE_TIMETABLE, null, null);
         db.delete(TABLE_SYNC_INFO, null, null);
+        db.delete(TABLE_OUTBOX, null, null);
     }
     
     /**
-     * Convert cursor to TimetableEntry object
-     * @param cursor Database cursor
-     * @return TimetableEntry object
+     * Binds one object to the parameters of an upsert statement
      */
-    private TimetableEntry cursorToTimetableEntry(Cursor cursor) {
-        TimetableEntry entry = new TimetableEntry();
-        
-        entry.setId(cursor.getString(cursor.getColumnIndex(COLUMN_ID)));
-        entry.setCourseId(cursor.getString(cursor.getColumnIndex("course_id")));
-        entry.setCourseName(cursor.getString(cursor.getColumnIndex("course_name")));
-        entry.setCourseCode(cursor.getString(cursor.getColumnIndex("course_code")));
-        entry.setLecturerId(cursor.getString(cursor.getColumnIndex("lecturer_id")));
-        entry.setLecturerName(cursor.getString(cursor.getColumnIndex("lecturer_name")));
-        entry.setClassroomId(cursor.getString(cursor.getColumnIndex("classroom_id")));
-        entry.setClassroomName(cursor.getString(cursor.getColumnIndex("classroom_name")));
-        entry.setDepartmentId(cursor.getString(cursor.getColumnIndex("department_id")));
-        entry.setDepartmentName(cursor.getString(cursor.getColumnIndex("department_name")));
-        entry.setLevel(cursor.getString(cursor.getColumnIndex("level")));
-        entry.setSemester(cursor.getString(cursor.getColumnIndex("semester")));
-        entry.setDayOfWeek(cursor.getInt(cursor.getColumnIndex("day_of_week")));
+    private interface RowBinder<T> {
+        void bind(SQLiteStatement statement, T item, long timestamp);
+    }
+    
+    /**
+     * Insert or replace rows with one compiled statement in a single transaction, so either
+     * every row is saved or none is. Inside an outer transaction everything commits with it.
+     * @param table Table name
+     * @param columns Columns in bind order
+     * @param items Objects to save
+     * @param binder Binds an object to the statement
+     * @return true if every row was saved, false otherwise
+     */
+    private <T> boolean bulkUpsert(String table, String[] columns, Collection<T> items, RowBinder<T> binder) {
+        if (items.isEmpty()) {
+            return true;
+        }
         
-        String startTimeStr = cursor.getString(cursor.getColumnIndex("start_time"));
-        String endTimeStr = cursor.getString(cursor.getColumnIndex("end_time"));
-        String lastModifiedStr = cursor.getString(cursor.getColumnIndex("last_modified"));
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(buildUpsertSql(table, columns));
+        long timestamp = System.currentTimeMillis();
         
+        db.beginTransaction();
         try {
-            if (startTimeStr != null) {
-                entry.setStartTime(DATE_FORMAT.parse(startTimeStr));
-            }
-            if (endTimeStr != null) {
-                entry.setEndTime(DATE_FORMAT.parse(endTimeStr));
+            for (T item : items) {
+                statement.clearBindings();
+                binder.bind(statement, item, timestamp);
+                statement.executeInsert();
             }
-            if (lastModifiedStr != null) {
-                entry.setLastModified(DATE_FORMAT.parse(lastModifiedStr));
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving rows to " + table, e);
+            return false;
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+    
+    private static String buildUpsertSql(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(table).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                placeholders.append(", ");
             }
-        } catch (ParseException e) {
-            Log.e(TAG, "Error parsing date", e);
+            sql.append(columns[i]);
+            placeholders.append('?');
         }
         
-        entry.setType(cursor.getString(cursor.getColumnIndex("type")));
-        entry.setLastModifiedBy(cursor.getString(cursor.getColumnIndex("last_modified_by")));
-        
-        return entry;
+        String collection = collectionForTable(table);
+        if (collection == null) {
+            return sql.append(") VALUES (").append(placeholders).append(')').toString();
+        }
+        // Rows with an edit waiting in the outbox keep it until it has been sent, so a refresh
+        // from the server cannot overwrite it
+        return sql.append(") SELECT ").append(placeholders)
+                .append(" WHERE NOT EXISTS (SELECT 1 FROM ").append(TABLE_OUTBOX)
+                .append(" WHERE collection = '").append(collection).append("' AND document_id = ?1)")
+                .toString();
     }
     
-    /**
-     * Format date for database storage
-     * @param date Date to format
-     * @return Formatted date string
-     */
-    private String formatDate(Date date) {
-        if (date == null) {
-            return null;
+    private static void bindText(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
-        return DATE_FORMAT.format(date);
     }
     
-    /**
-     * Get current timestamp
-     * @return Current timestamp string
-     */
-    private String getCurrentTimestamp() {
-        return formatDate(new Date());
+    private static void bindTime(SQLiteStatement statement, int index, Date value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value.getTime());
+        }
+    }
+    
+    private static void bindMinute(SQLiteStatement statement, int index, int minute, int offset) {
+        if (minute < 0) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, offset + minute);
+        }
     }
 }
@@ -10,11 +10,19 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.messaging.FirebaseMessaging;
+import com.ktu.timetable.BuildConfig;
 import com.ktu.timetable.models.User;
 
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Utility class for Firebase operations
  */
@@ -30,6 +38,29 @@ public class FirebaseUtil {
     public static final String CLASSROOMS_COLLECTION = "classrooms";
     public static final String TIMETABLE_COLLECTION = "timetable";
     public static final String NOTIFICATIONS_COLLECTION = "notifications";
+    public static final String TOMBSTONES_COLLECTION = "tombstones";
+    public static final String RESERVATIONS_COLLECTION = "reservations";
+    
+    // Port the Firestore emulator listens on by default
+    private static final int FIRESTORE_EMULATOR_PORT = 8080;
+    
+    // Tombstone fields
+    public static final String FIELD_COLLECTION = "collection";
+    public static final String FIELD_DOCUMENT_ID = "documentId";
+    public static final String FIELD_DELETED_AT = "deletedAt";
+    public static final String FIELD_DELETED_BY = "deletedBy";
+    public static final String FIELD_LAST_MODIFIED = "lastModified";
+    
+    // Names copied into timetable entries from the documents they reference
+    public static final String FIELD_COURSE_NAME = "courseName";
+    public static final String FIELD_COURSE_CODE = "courseCode";
+    public static final String FIELD_LECTURER_NAME = "lecturerName";
+    public static final String FIELD_CLASSROOM_NAME = "classroomName";
+    public static final String FIELD_DEPARTMENT_NAME = "departmentName";
+    
+    // Start of a timetable entry, as a date and as minutes since midnight
+    public static final String FIELD_START_TIME = "startTime";
+    public static final String FIELD_START_MINUTE = "startMinute";
     
     // Firebase instances
     private static FirebaseAuth auth;
@@ -53,6 +84,10 @@ public class FirebaseUtil {
     public static FirebaseFirestore getFirestore() {
         if (firestore == null) {
             firestore = FirebaseFirestore.getInstance();
+            if (!BuildConfig.FIRESTORE_EMULATOR_HOST.isEmpty()) {
+                // Must be set before the first Firestore call
+                firestore.useEmulator(BuildConfig.FIRESTORE_EMULATOR_HOST, FIRESTORE_EMULATOR_PORT);
+            }
         }
         return firestore;
     }
@@ -147,6 +182,106 @@ public class FirebaseUtil {
         return userId != null ? getUsersCollection().document(userId) : null;
     }
     
+    /**
+     * Get the tombstones collection reference. A tombstone records that a document was
+     * deleted, so clients syncing incrementally can remove it from their local copy.
+     * @return CollectionReference for tombstones
+     */
+    public static CollectionReference getTombstonesCollection() {
+        return getFirestore().collection(TOMBSTONES_COLLECTION);
+    }
+    
+    /**
+     * Get the slot reservations collection reference
+     * @return CollectionReference for reservations
+     */
+    public static CollectionReference getReservationsCollection() {
+        return getFirestore().collection(RESERVATIONS_COLLECTION);
+    }
+    
+    /**
+     * Get timetable entries modified after a point in time
+     * @param since Only entries with a later lastModified are returned
+     * @return Query for the changed entries, oldest first
+     */
+    public static Query getTimetableChangesSince(Date since) {
+        return getTimetableCollection()
+                .whereGreaterThan(FIELD_LAST_MODIFIED, since)
+                .orderBy(FIELD_LAST_MODIFIED);
+    }
+    
+    /**
+     * Get tombstones for a collection recorded after a point in time
+     * @param collection Collection the deleted documents belonged to
+     * @param since Only tombstones with a later deletedAt are returned
+     * @return Query for the tombstones, oldest first
+     */
+    public static Query getTombstonesSince(String collection, Date since) {
+        return getTombstonesCollection()
+                .whereEqualTo(FIELD_COLLECTION, collection)
+                .whereGreaterThan(FIELD_DELETED_AT, since)
+                .orderBy(FIELD_DELETED_AT);
+    }
+    
+    /**
+     * Delete a document and record a tombstone for it in the same batch
+     * @param collection Collection name
+     * @param documentId ID of the document to delete
+     * @return Task that completes when both writes are committed
+     */
+    public static Task<Void> deleteWithTombstone(String collection, String documentId) {
+        WriteBatch batch = getFirestore().batch();
+        addDeleteWithTombstone(batch, collection, documentId);
+        return batch.commit();
+    }
+    
+    /**
+     * Add the deletion of a document and its tombstone to a batch. Uses two of the batch's writes.
+     * @param batch Batch to add to
+     * @param collection Collection name
+     * @param documentId ID of the document to delete
+     */
+    public static void addDeleteWithTombstone(WriteBatch batch, String collection, String documentId) {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put(FIELD_COLLECTION, collection);
+        tombstone.put(FIELD_DOCUMENT_ID, documentId);
+        tombstone.put(FIELD_DELETED_AT, FieldValue.serverTimestamp());
+        tombstone.put(FIELD_DELETED_BY, getCurrentUserId());
+        
+        batch.delete(getFirestore().collection(collection).document(documentId));
+        batch.set(getTombstonesCollection().document(collection + "_" + documentId), tombstone);
+    }
+    
+    /**
+     * Get the timetable entries of one day matching the filters that are set, ordered by start
+     * minute and then document ID, like {@link DatabaseHelper#getTimetablePage}. Backed by the
+     * composite indexes in firestore.indexes.json. Documents without a startMinute are left out
+     * until {@link StartMinuteBackfill} has filled it in.
+     * @param departmentId Department ID, or null for any
+     * @param level Student level, or null for any
+     * @param lecturerId Lecturer ID, or null for any
+     * @param classroomId Classroom ID, or null for any
+     * @param dayOfWeek Day of week (1 = Monday, 7 = Sunday)
+     * @return Query for the timetable entries
+     */
+    public static Query getFilteredTimetable(String departmentId, String level, String lecturerId,
+                                             String classroomId, int dayOfWeek) {
+        Query query = getTimetableCollection().whereEqualTo("dayOfWeek", dayOfWeek);
+        if (departmentId != null) {
+            query = query.whereEqualTo("departmentId", departmentId);
+        }
+        if (level != null) {
+            query = query.whereEqualTo("level", level);
+        }
+        if (lecturerId != null) {
+            query = query.whereEqualTo("lecturerId", lecturerId);
+        }
+        if (classroomId != null) {
+            query = query.whereEqualTo("classroomId", classroomId);
+        }
+        return query.orderBy(FIELD_START_MINUTE).orderBy(FieldPath.documentId());
+    }
+    
     /**
      * Get timetable entries for a specific department and level
      * @param departmentId Department ID
@@ -12,6 +12,7 @@ import androidx.core.app.NotificationManagerCompat;
 
 import com.ktu.timetable.MainActivity;
 import com.ktu.timetable.R;
+import com.ktu.timetable.models.TimetableEntry;
 
 /**
  * Helper class for creating and showing notifications
@@ -23,6 +24,12 @@ public class NotificationHelper {
     
     private static final int NOTIFICATION_ID_TIMETABLE_UPDATE = 1001;
     private static final int NOTIFICATION_ID_CLASS_REMINDER = 2001;
+    private static final int NOTIFICATION_ID_SLOT_TAKEN = 3001;
+
+    private static final int[] DAY_NAMES = {
+            R.string.monday, R.string.tuesday, R.string.wednesday, R.string.thursday,
+            R.string.friday, R.string.saturday, R.string.sunday
+    };
     
     /**
      * Create notification channels for the app
@@ -56,12 +63,14 @@ public class NotificationHelper {
     }
     
     /**
-     * Show notification for timetable update
+     * Show notification for timetable update. Each topic has its own notification, so a digest
+     * replaces the previous one for the same topic only.
      * @param context Application context
+     * @param topic Topic the changes were sent to, or null
      * @param title Notification title
      * @param message Notification message
      */
-    public static void showTimetableUpdateNotification(Context context, String title, String message) {
+    public static void showTimetableUpdateNotification(Context context, String topic, String title, String message) {
         Intent intent = new Intent(context, MainActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
         PendingIntent pendingIntent = PendingIntent.getActivity(
@@ -81,7 +90,7 @@ public class NotificationHelper {
         
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
         try {
-            notificationManager.notify(NOTIFICATION_ID_TIMETABLE_UPDATE, builder.build());
+            notificationManager.notify(topic, NOTIFICATION_ID_TIMETABLE_UPDATE, builder.build());
         } catch (SecurityException e) {
             // Permission not granted
             e.printStackTrace();
@@ -89,8 +98,10 @@ public class NotificationHelper {
     }
     
     /**
-     * Show notification for class reminder
+     * Show notification for class reminder. Each class has its own notification, so reminders
+     * for classes starting together do not replace each other.
      * @param context Application context
+     * @param entryId Timetable entry ID, used as the notification tag
      * @param courseCode Course code
      * @param courseName Course name
      * @param classroomName Classroom name
@@ -98,6 +109,7 @@ public class NotificationHelper {
      */
     public static void showClassReminderNotification(
             Context context, 
+            String entryId, 
             String courseCode, 
             String courseName, 
             String classroomName, 
@@ -126,7 +138,47 @@ public class NotificationHelper {
         
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
         try {
-            notificationManager.notify(NOTIFICATION_ID_CLASS_REMINDER, builder.build());
+            notificationManager.notify(entryId, NOTIFICATION_ID_CLASS_REMINDER, builder.build());
+        } catch (SecurityException e) {
+            // Permission not granted
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Show notification for a class saved offline that could not be sent because its slot was
+     * booked on the server in the meantime
+     * @param context Application context
+     * @param entry Timetable entry that was not saved
+     * @param conflictType Classroom or lecturer clash type
+     */
+    public static void showSlotTakenNotification(Context context, TimetableEntry entry, String conflictType) {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+                context, 
+                0, 
+                intent, 
+                PendingIntent.FLAG_IMMUTABLE
+        );
+        
+        int day = entry.getDayOfWeek();
+        String dayName = day >= 1 && day <= DAY_NAMES.length ? context.getString(DAY_NAMES[day - 1]) : "";
+        String message = context.getString(R.string.slot_taken_message, entry.getCourseCode(), dayName,
+                TimeUtils.formatMinuteOfDay(TimeUtils.minuteOfDay(entry.getStartTime())), conflictType);
+        
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID_TIMETABLE_UPDATES)
+                .setSmallIcon(R.drawable.ktu_logo)
+                .setContentTitle(context.getString(R.string.slot_taken_title))
+                .setContentText(message)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+                .setContentIntent(pendingIntent)
+                .setAutoCancel(true);
+        
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
+        try {
+            notificationManager.notify(entry.getId(), NOTIFICATION_ID_SLOT_TAKEN, builder.build());
         } catch (SecurityException e) {
             // Permission not granted
             e.printStackTrace();
@@ -0,0 +1,708 @@
+package com.ktu.timetable.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseNetworkException;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Records timetable and catalogue edits locally first and writes them to Firestore later.
+ *
+ * Each edit updates SQLite and adds a row to the outbox table in one transaction, so it shows
+ * up straight away and survives the app being closed. The outbox is then flushed in Firestore
+ * batches of up to 500 writes. Saves send the latest local copy of the document to its own ID,
+ * so a batch that is retried after a lost reply writes the same result again. Timetable entry
+ * saves go through {@link SlotReservations} transactions instead of batches, so their classroom
+ * and lecturer are booked like any other entry's. An entry whose slot was booked on the server
+ * since it was queued is dropped and reported in a notification. Failed batches are
+ * retried with exponential backoff. A batch the server rejects outright is resent in halves
+ * until the rejected edit is on its own; only that edit is dropped, and the server's copy of its
+ * document is put back locally.
+ *
+ * Saving a renamed course, lecturer or classroom also rewrites the copy of its name held by each
+ * timetable entry that shows it. The entries are updated in the same transaction as the save and
+ * queued as updates of just those fields, so they go out in the same batches and resume with
+ * the rest of the outbox after a failure or restart. An update of an entry since deleted on the
+ * server is dropped with the local entry instead of failing its batch.
+ */
+public class OutboxManager {
+
+    private static final String TAG = "OutboxManager";
+
+    // Firestore limit on writes per batch
+    private static final int MAX_BATCH_WRITES = 500;
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 2000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+
+    // Lecturer fields kept in SQLite. Specializations and course IDs are only edited on the
+    // server, so saves leave them alone.
+    private static final SetOptions LECTURER_FIELDS = SetOptions.mergeFields("id", "userId", "staffId", "title",
+            "firstName", "lastName", "departmentId", "departmentName", "email", "phoneNumber");
+
+    private static OutboxManager instance;
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+    private final AppExecutors executors;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Runnable retry = this::flush;
+    private final List<EditListener> editListeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private boolean flushing;
+    private boolean flushRequested;
+    private int failedAttempts;
+
+    // Parts of a rejected batch waiting to be resent, next part first. Only used by the running
+    // flush.
+    private final ArrayDeque<List<DatabaseHelper.PendingMutation>> isolating = new ArrayDeque<>();
+
+    /**
+     * Callback for an edit being recorded locally
+     */
+    public interface QueueCallback {
+        /**
+         * @param success true if the edit was saved locally and will be sent to Firestore
+         */
+        void onQueued(boolean success);
+    }
+
+    /**
+     * Callback for a course, lecturer or classroom save being recorded locally
+     */
+    public interface SaveCallback {
+        /**
+         * @param success true if the save was recorded locally and will be sent to Firestore
+         * @param entriesRenamed Timetable entries whose copy of the name was updated with it
+         */
+        void onSaved(boolean success, int entriesRenamed);
+    }
+
+    /**
+     * Told about edits as soon as they are recorded locally, before they reach Firestore
+     */
+    public interface EditListener {
+        /**
+         * @param collection Firestore collection of the edited documents
+         */
+        void onLocalEdit(String collection);
+    }
+
+    /**
+     * Records one edit locally
+     */
+    private interface LocalEdit {
+        boolean apply();
+    }
+
+    /**
+     * Copies a new name into the timetable entries that show it
+     */
+    private interface NameFanOut {
+        /**
+         * @return Number of entries updated, or -1 on error
+         */
+        int apply();
+    }
+
+    /**
+     * Get singleton instance of OutboxManager
+     * @param context Application context
+     * @return OutboxManager instance
+     */
+    public static synchronized OutboxManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new OutboxManager(context.getApplicationContext(), DatabaseHelper.getInstance(context),
+                    AppExecutors.getInstance());
+        }
+        return instance;
+    }
+
+    private OutboxManager(Context context, DatabaseHelper databaseHelper, AppExecutors executors) {
+        this.context = context;
+        this.databaseHelper = databaseHelper;
+        this.executors = executors;
+    }
+
+    /**
+     * Save a timetable entry
+     * @param entry Timetable entry to save
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void saveTimetableEntry(final TimetableEntry entry, QueueCallback callback) {
+        queue(FirebaseUtil.TIMETABLE_COLLECTION, () -> databaseHelper.queueTimetableEntrySave(entry), callback);
+    }
+
+    /**
+     * Delete a timetable entry. A tombstone is written with it so other devices' syncs see it.
+     * @param entryId Timetable entry ID
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void deleteTimetableEntry(final String entryId, QueueCallback callback) {
+        queue(FirebaseUtil.TIMETABLE_COLLECTION, () -> databaseHelper.queueTimetableEntryDelete(entryId), callback);
+    }
+
+    /**
+     * Save a course. If it was renamed, the timetable entries showing it are updated too.
+     * @param course Course to save
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void saveCourse(final Course course, SaveCallback callback) {
+        queueWithFanOut(FirebaseUtil.COURSES_COLLECTION, () -> databaseHelper.queueCourseSave(course),
+                () -> databaseHelper.queueCourseNameFanOut(course), callback);
+    }
+
+    /**
+     * Delete a course
+     * @param courseId Course ID
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void deleteCourse(final String courseId, QueueCallback callback) {
+        queue(FirebaseUtil.COURSES_COLLECTION, () -> databaseHelper.queueCourseDelete(courseId), callback);
+    }
+
+    /**
+     * Save a lecturer. If they were renamed, the timetable entries showing them are updated too.
+     * @param lecturer Lecturer to save
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void saveLecturer(final Lecturer lecturer, SaveCallback callback) {
+        queueWithFanOut(FirebaseUtil.LECTURERS_COLLECTION, () -> databaseHelper.queueLecturerSave(lecturer),
+                () -> databaseHelper.queueLecturerNameFanOut(lecturer), callback);
+    }
+
+    /**
+     * Delete a lecturer
+     * @param lecturerId Lecturer ID
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void deleteLecturer(final String lecturerId, QueueCallback callback) {
+        queue(FirebaseUtil.LECTURERS_COLLECTION, () -> databaseHelper.queueLecturerDelete(lecturerId), callback);
+    }
+
+    /**
+     * Save a classroom. If it was renamed, the timetable entries showing it are updated too.
+     * @param classroom Classroom to save
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void saveClassroom(final Classroom classroom, SaveCallback callback) {
+        queueWithFanOut(FirebaseUtil.CLASSROOMS_COLLECTION, () -> databaseHelper.queueClassroomSave(classroom),
+                () -> databaseHelper.queueClassroomNameFanOut(classroom), callback);
+    }
+
+    /**
+     * Delete a classroom
+     * @param classroomId Classroom ID
+     * @param callback Runs on the main thread once the edit is recorded locally, may be null
+     */
+    public void deleteClassroom(final String classroomId, QueueCallback callback) {
+        queue(FirebaseUtil.CLASSROOMS_COLLECTION, () -> databaseHelper.queueClassroomDelete(classroomId), callback);
+    }
+
+    /**
+     * Register a listener for edits recorded locally. Listeners are kept for the life of the
+     * process.
+     * @param listener Called on the thread that recorded the edit
+     */
+    public void addEditListener(EditListener listener) {
+        editListeners.add(listener);
+    }
+
+    /**
+     * Tell the edit listeners that documents of a collection were edited locally
+     * @param collection Firestore collection
+     */
+    void notifyLocalEdit(String collection) {
+        for (EditListener listener : editListeners) {
+            listener.onLocalEdit(collection);
+        }
+    }
+
+    private void queue(final String collection, final LocalEdit edit, final QueueCallback callback) {
+        try {
+            executors.diskIO().execute(() -> {
+                final boolean success = edit.apply();
+                if (success) {
+                    notifyLocalEdit(collection);
+                }
+                if (callback != null) {
+                    executors.mainThread().execute(() -> callback.onQueued(success));
+                }
+                if (success) {
+                    flush();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Could not record edit to " + collection, e);
+            if (callback != null) {
+                executors.mainThread().execute(() -> callback.onQueued(false));
+            }
+        }
+    }
+
+    /**
+     * Record a save and the timetable entries it renames in one transaction
+     */
+    private void queueWithFanOut(final String collection, final LocalEdit save, final NameFanOut fanOut,
+                                 final SaveCallback callback) {
+        try {
+            executors.diskIO().execute(() -> {
+                final int[] renamed = new int[1];
+                final boolean success = databaseHelper.runInTransaction(() -> {
+                    if (!save.apply()) {
+                        return false;
+                    }
+                    renamed[0] = fanOut.apply();
+                    return renamed[0] >= 0;
+                });
+                if (success) {
+                    notifyLocalEdit(collection);
+                    if (renamed[0] > 0) {
+                        notifyLocalEdit(FirebaseUtil.TIMETABLE_COLLECTION);
+                    }
+                }
+                if (callback != null) {
+                    final int entriesRenamed = success ? renamed[0] : 0;
+                    executors.mainThread().execute(() -> callback.onSaved(success, entriesRenamed));
+                }
+                if (success) {
+                    flush();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Could not record save to " + collection, e);
+            if (callback != null) {
+                executors.mainThread().execute(() -> callback.onSaved(false, 0));
+            }
+        }
+    }
+
+    /**
+     * Write waiting edits to Firestore. Does nothing if a flush is already running, except make
+     * sure it picks up edits recorded since it started. Also cancels a scheduled retry and tries
+     * straight away.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (flushing) {
+                flushRequested = true;
+                return;
+            }
+            flushing = true;
+            flushRequested = false;
+        }
+        handler.removeCallbacks(retry);
+
+        try {
+            executors.diskIO().execute(this::writeNextBatch);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not start outbox flush", e);
+            scheduleRetry();
+        }
+    }
+
+    private void writeNextBatch() {
+        runStep(this::sendNextBatch);
+    }
+
+    /**
+     * Run one step of a flush. A failure on this device, such as an unreadable database, keeps
+     * the edits and retries later instead of leaving the flush running forever.
+     */
+    private void runStep(Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Outbox flush failed, will retry", e);
+            isolating.clear();
+            scheduleRetry();
+        }
+    }
+
+    private void sendNextBatch() {
+        boolean resending = !isolating.isEmpty();
+        List<DatabaseHelper.PendingMutation> mutations = resending
+                ? isolating.pop() : databaseHelper.getPendingMutations(MAX_BATCH_WRITES);
+        if (mutations.isEmpty()) {
+            finishFlush();
+            return;
+        }
+        if (isTimetableSave(mutations.get(0))) {
+            writeNextEntries(mutations, resending);
+            return;
+        }
+
+        FirebaseFirestore firestore = FirebaseUtil.getFirestore();
+        WriteBatch batch = firestore.batch();
+        final List<DatabaseHelper.PendingMutation> sent = new ArrayList<>();
+        final List<DatabaseHelper.PendingMutation> updates = new ArrayList<>();
+        int writes = 0;
+
+        for (DatabaseHelper.PendingMutation mutation : mutations) {
+            if (isTimetableSave(mutation)) {
+                // Booked in a transaction of its own
+                break;
+            }
+            boolean timetable = FirebaseUtil.TIMETABLE_COLLECTION.equals(mutation.collection);
+            DocumentReference document = firestore.collection(mutation.collection).document(mutation.documentId);
+
+            if (DatabaseHelper.OUTBOX_DELETE.equals(mutation.operation)) {
+                int needed = timetable ? 2 : 1;
+                if (writes + needed > MAX_BATCH_WRITES) {
+                    break;
+                }
+                sent.add(mutation);
+                if (timetable) {
+                    FirebaseUtil.addDeleteWithTombstone(batch, mutation.collection, mutation.documentId);
+                } else {
+                    batch.delete(document);
+                }
+                writes += needed;
+                continue;
+            }
+
+            if (DatabaseHelper.OUTBOX_UPDATE.equals(mutation.operation)) {
+                if (writes + 1 > MAX_BATCH_WRITES) {
+                    break;
+                }
+                sent.add(mutation);
+                Object item = databaseHelper.getCachedDocument(mutation.collection, mutation.documentId);
+                if (item instanceof TimetableEntry) {
+                    batch.update(document, nameUpdates((TimetableEntry) item, mutation.fields));
+                    updates.add(mutation);
+                    writes++;
+                }
+                continue;
+            }
+
+            Object item = databaseHelper.getCachedDocument(mutation.collection, mutation.documentId);
+            if (writes + 1 > MAX_BATCH_WRITES) {
+                break;
+            }
+            sent.add(mutation);
+            if (item == null) {
+                // Removed locally by a sync since the edit; nothing left to send
+                continue;
+            }
+            batch.set(document, item, item instanceof Lecturer ? LECTURER_FIELDS : SetOptions.merge());
+            writes++;
+        }
+
+        if (resending && sent.size() < mutations.size()) {
+            // The rest of the part goes next
+            isolating.push(new ArrayList<>(mutations.subList(sent.size(), mutations.size())));
+        }
+
+        if (writes == 0) {
+            databaseHelper.removePendingMutations(sent);
+            writeNextBatch();
+            return;
+        }
+
+        batch.commit()
+                .addOnSuccessListener(executors.diskIO(), aVoid -> runStep(() -> {
+                    databaseHelper.removePendingMutations(sent);
+                    synchronized (this) {
+                        failedAttempts = 0;
+                    }
+                    writeNextBatch();
+                }))
+                .addOnFailureListener(executors.diskIO(), e -> runStep(() -> {
+                    if (isRetryable(e)) {
+                        Log.w(TAG, "Outbox batch failed, will retry", e);
+                        isolating.clear();
+                        scheduleRetry();
+                    } else if (isNotFound(e) && !updates.isEmpty()) {
+                        dropMissingTargets(sent, updates, e);
+                    } else {
+                        isolate(sent, e);
+                    }
+                }));
+    }
+
+    /**
+     * Book and write a run of timetable entry saves in one reservation transaction
+     */
+    private void writeNextEntries(List<DatabaseHelper.PendingMutation> mutations, boolean resending) {
+        final List<DatabaseHelper.PendingMutation> sent = new ArrayList<>();
+        final Map<String, DatabaseHelper.PendingMutation> byEntryId = new HashMap<>();
+        List<TimetableEntry> entries = new ArrayList<>();
+        for (DatabaseHelper.PendingMutation mutation : mutations) {
+            if (!isTimetableSave(mutation) || sent.size() == SlotReservations.MAX_ENTRIES_PER_TRANSACTION
+                    || byEntryId.containsKey(mutation.documentId)) {
+                break;
+            }
+            sent.add(mutation);
+            byEntryId.put(mutation.documentId, mutation);
+            Object item = databaseHelper.getCachedDocument(mutation.collection, mutation.documentId);
+            if (item instanceof TimetableEntry) {
+                entries.add((TimetableEntry) item);
+            }
+        }
+
+        if (resending && sent.size() < mutations.size()) {
+            isolating.push(new ArrayList<>(mutations.subList(sent.size(), mutations.size())));
+        }
+        if (entries.isEmpty()) {
+            // Removed locally by a sync since the edits; nothing left to send
+            databaseHelper.removePendingMutations(sent);
+            writeNextBatch();
+            return;
+        }
+
+        SlotReservations.scheduleAll(entries)
+                .addOnSuccessListener(executors.diskIO(), rejections -> runStep(() -> {
+                    databaseHelper.removePendingMutations(sent);
+                    synchronized (this) {
+                        failedAttempts = 0;
+                    }
+                    for (SlotReservations.Rejection rejection : rejections) {
+                        TimetableEntry entry = rejection.getEntry();
+                        Log.w(TAG, "Slot of queued entry " + entry.getId() + " taken by " + rejection.getHolderId());
+                        NotificationHelper.showSlotTakenNotification(context, entry, rejection.getConflictType());
+                        fetchServerCopy(byEntryId.get(entry.getId()));
+                    }
+                    writeNextBatch();
+                }))
+                .addOnFailureListener(executors.diskIO(), e -> runStep(() -> {
+                    if (isRetryable(e)) {
+                        Log.w(TAG, "Outbox entries failed, will retry", e);
+                        isolating.clear();
+                        scheduleRetry();
+                    } else {
+                        isolate(sent, e);
+                    }
+                }));
+    }
+
+    /**
+     * Resend a rejected batch in halves, or drop its edit once it is the only one
+     */
+    private void isolate(List<DatabaseHelper.PendingMutation> sent, Exception e) {
+        if (sent.size() == 1) {
+            drop(sent.get(0), e);
+        } else {
+            Log.w(TAG, "Outbox batch of " + sent.size() + " edits rejected, resending in halves", e);
+            int half = sent.size() / 2;
+            isolating.push(new ArrayList<>(sent.subList(half, sent.size())));
+            isolating.push(new ArrayList<>(sent.subList(0, half)));
+        }
+        writeNextBatch();
+    }
+
+    /**
+     * Drop the name updates of entries deleted on the server, which fail their whole batch, and
+     * resend the rest of the batch
+     */
+    private void dropMissingTargets(final List<DatabaseHelper.PendingMutation> sent,
+                                    final List<DatabaseHelper.PendingMutation> updates, final Exception e) {
+        FirebaseFirestore firestore = FirebaseUtil.getFirestore();
+        final List<Task<DocumentSnapshot>> checks = new ArrayList<>();
+        for (DatabaseHelper.PendingMutation update : updates) {
+            checks.add(firestore.collection(update.collection).document(update.documentId).get());
+        }
+
+        Tasks.whenAllComplete(checks).addOnCompleteListener(executors.diskIO(), task -> runStep(() -> {
+            List<DatabaseHelper.PendingMutation> rest = new ArrayList<>(sent);
+            for (int i = 0; i < checks.size(); i++) {
+                Task<DocumentSnapshot> check = checks.get(i);
+                if (check.isSuccessful() && !check.getResult().exists()) {
+                    DatabaseHelper.PendingMutation update = updates.get(i);
+                    Log.w(TAG, "Dropping name update of " + update.collection + "/" + update.documentId
+                            + ", deleted on the server");
+                    databaseHelper.removePendingMutations(Collections.singletonList(update));
+                    restore(update, null);
+                    rest.remove(update);
+                }
+            }
+
+            if (rest.size() == sent.size()) {
+                // Something else was missing
+                isolate(sent, e);
+                return;
+            }
+            if (!rest.isEmpty()) {
+                isolating.push(rest);
+            }
+            writeNextBatch();
+        }));
+    }
+
+    /**
+     * Give up on an edit the server rejected and put back the server's copy of its document
+     */
+    private void drop(final DatabaseHelper.PendingMutation mutation, Exception e) {
+        Log.e(TAG, "Outbox edit rejected, dropping " + mutation.operation + " of "
+                + mutation.collection + "/" + mutation.documentId, e);
+        databaseHelper.removePendingMutations(Collections.singletonList(mutation));
+        fetchServerCopy(mutation);
+    }
+
+    /**
+     * Put back the server's copy of a document whose edit was dropped
+     */
+    private void fetchServerCopy(final DatabaseHelper.PendingMutation mutation) {
+        final Class<?> type = modelClass(mutation.collection);
+        if (type == null) {
+            return;
+        }
+        FirebaseUtil.getFirestore().collection(mutation.collection).document(mutation.documentId).get()
+                .addOnSuccessListener(executors.diskIO(), document -> {
+                    try {
+                        restore(mutation, document.exists() ? document.toObject(type) : null);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Could not restore " + mutation.collection + "/" + mutation.documentId
+                                + ", the next sync restores it", e);
+                    }
+                })
+                .addOnFailureListener(executors.diskIO(), error -> Log.w(TAG, "Could not fetch "
+                        + mutation.collection + "/" + mutation.documentId + ", the next sync restores it", error));
+    }
+
+    /**
+     * Replace the local copy of a document whose edit was dropped
+     * @param serverCopy Server's copy, or null if the server has none
+     */
+    private void restore(DatabaseHelper.PendingMutation mutation, Object serverCopy) {
+        if (databaseHelper.restoreServerCopy(mutation.collection, mutation.documentId, serverCopy)) {
+            notifyLocalEdit(mutation.collection);
+        }
+    }
+
+    /**
+     * @param collection Firestore collection edited through the outbox
+     * @return Model class of its documents, or null if it has no local copy
+     */
+    private static Class<?> modelClass(String collection) {
+        switch (collection) {
+            case FirebaseUtil.TIMETABLE_COLLECTION:
+                return TimetableEntry.class;
+            case FirebaseUtil.COURSES_COLLECTION:
+                return Course.class;
+            case FirebaseUtil.LECTURERS_COLLECTION:
+                return Lecturer.class;
+            case FirebaseUtil.CLASSROOMS_COLLECTION:
+                return Classroom.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param entry Local copy of a timetable entry
+     * @param fields Name fields to send
+     * @return Values of the fields from the local copy, stamped with the server's time so
+     * incremental syncs on other devices pick them up
+     */
+    private static Map<String, Object> nameUpdates(TimetableEntry entry, String[] fields) {
+        Map<String, Object> updates = new HashMap<>();
+        for (String field : fields) {
+            switch (field) {
+                case FirebaseUtil.FIELD_COURSE_NAME:
+                    updates.put(field, entry.getCourseName());
+                    break;
+                case FirebaseUtil.FIELD_COURSE_CODE:
+                    updates.put(field, entry.getCourseCode());
+                    break;
+                case FirebaseUtil.FIELD_LECTURER_NAME:
+                    updates.put(field, entry.getLecturerName());
+                    break;
+                case FirebaseUtil.FIELD_CLASSROOM_NAME:
+                    updates.put(field, entry.getClassroomName());
+                    break;
+                case FirebaseUtil.FIELD_DEPARTMENT_NAME:
+                    updates.put(field, entry.getDepartmentName());
+                    break;
+                default:
+                    Log.w(TAG, "Unknown timetable field in outbox: " + field);
+                    break;
+            }
+        }
+        updates.put(FirebaseUtil.FIELD_LAST_MODIFIED, FieldValue.serverTimestamp());
+        return updates;
+    }
+
+    private static boolean isTimetableSave(DatabaseHelper.PendingMutation mutation) {
+        return FirebaseUtil.TIMETABLE_COLLECTION.equals(mutation.collection)
+                && DatabaseHelper.OUTBOX_SET.equals(mutation.operation);
+    }
+
+    /**
+     * @return Whether the failure may pass on its own, such as a lost connection. Anything else
+     * thrown while building or reading the write, such as a document that cannot be converted,
+     * fails the same way every time.
+     */
+    private static boolean isRetryable(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return e instanceof FirebaseNetworkException || e instanceof IOException;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case INVALID_ARGUMENT:
+            case PERMISSION_DENIED:
+            case NOT_FOUND:
+            case ALREADY_EXISTS:
+            case OUT_OF_RANGE:
+            case UNIMPLEMENTED:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isNotFound(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND;
+    }
+
+    private void finishFlush() {
+        boolean again;
+        synchronized (this) {
+            flushing = false;
+            again = flushRequested;
+        }
+        if (again) {
+            flush();
+        }
+    }
+
+    private void scheduleRetry() {
+        long delay;
+        synchronized (this) {
+            flushing = false;
+            flushRequested = false;
+            failedAttempts++;
+            delay = Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << Math.min(failedAttempts - 1, 16));
+        }
+
+        // Jitter so devices that lost the network together do not retry together
+        delay = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+        handler.postDelayed(retry, delay);
+    }
+}
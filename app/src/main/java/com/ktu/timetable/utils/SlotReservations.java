@@ -0,0 +1,334 @@
+package com.ktu.timetable.utils;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Books classroom and lecturer time on the server so two admins cannot take the same slot.
+ *
+ * Every classroom and lecturer has one reservation document per day with a fixed ID, such as
+ * "classroom_&lt;id&gt;_3". It maps the IDs of the entries booked that day to their start and
+ * end minutes. Scheduling reads the two documents for the new entry in a Firestore transaction,
+ * checks the times and writes the entry together with the updated bookings, so a concurrent
+ * booking of the same room or lecturer makes one of the transactions retry and fail the check.
+ * Generated, imported and offline entries are booked the same way, many to a transaction, and
+ * an entry whose slot is taken is left out instead of failing the rest.
+ *
+ * Deleting or moving an entry does not clear its old bookings. A booking that overlaps is only
+ * a clash if its entry still exists at that time, which costs one extra read per overlapping
+ * booking; stale bookings are dropped when the document is next written.
+ */
+public class SlotReservations {
+
+    public static final String FIELD_RESOURCE_TYPE = "resourceType";
+    public static final String FIELD_RESOURCE_ID = "resourceId";
+    public static final String FIELD_DAY_OF_WEEK = "dayOfWeek";
+    public static final String FIELD_BOOKINGS = "bookings";
+    public static final String FIELD_START = "start";
+    public static final String FIELD_END = "end";
+
+    // Entries booked per transaction. Each needs up to two reservation writes besides its own
+    // two, and Firestore allows 500 writes in a transaction.
+    public static final int MAX_ENTRIES_PER_TRANSACTION = 120;
+
+    private static final String RESOURCE_CLASSROOM = "classroom";
+    private static final String RESOURCE_LECTURER = "lecturer";
+
+    /**
+     * The slot is already booked by another entry
+     */
+    public static class SlotTakenException extends FirebaseFirestoreException {
+
+        private final String conflictType;
+        private final String entryId;
+
+        SlotTakenException(String conflictType, String entryId) {
+            super(conflictType + " already booked by " + entryId, Code.FAILED_PRECONDITION);
+            this.conflictType = conflictType;
+            this.entryId = entryId;
+        }
+
+        /**
+         * @return {@link ConflictIndex#CONFLICT_CLASSROOM} or {@link ConflictIndex#CONFLICT_LECTURER}
+         */
+        public String getConflictType() {
+            return conflictType;
+        }
+
+        /**
+         * @return ID of the entry holding the slot
+         */
+        public String getEntryId() {
+            return entryId;
+        }
+    }
+
+    /**
+     * An entry left out because its slot was taken
+     */
+    public static class Rejection {
+
+        private final TimetableEntry entry;
+        private final String conflictType;
+        private final String holderId;
+
+        Rejection(TimetableEntry entry, String conflictType, String holderId) {
+            this.entry = entry;
+            this.conflictType = conflictType;
+            this.holderId = holderId;
+        }
+
+        public TimetableEntry getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return {@link ConflictIndex#CONFLICT_CLASSROOM} or {@link ConflictIndex#CONFLICT_LECTURER}
+         */
+        public String getConflictType() {
+            return conflictType;
+        }
+
+        /**
+         * @return ID of the entry holding the slot
+         */
+        public String getHolderId() {
+            return holderId;
+        }
+    }
+
+    /**
+     * Write a timetable entry if its classroom and lecturer are free at that time on the server
+     * @param entry Entry to save, with its ID already set
+     * @return Task that fails with {@link SlotTakenException} if the slot is taken
+     */
+    public static Task<Void> schedule(final TimetableEntry entry) {
+        return FirebaseUtil.getFirestore().runTransaction(new Transaction.Function<Void>() {
+            @Override
+            public Void apply(Transaction transaction) throws FirebaseFirestoreException {
+                List<Rejection> rejections = book(transaction, Collections.singletonList(entry));
+                if (!rejections.isEmpty()) {
+                    throw new SlotTakenException(rejections.get(0).conflictType, rejections.get(0).holderId);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Write the timetable entries whose classroom and lecturer are free at their times on the
+     * server, in one transaction. An entry that clashes with a booking, or with an entry before
+     * it in the list, is left out.
+     * @param entries Up to {@link #MAX_ENTRIES_PER_TRANSACTION} entries, with their IDs set
+     * @return Task with the entries left out
+     */
+    public static Task<List<Rejection>> scheduleAll(final List<TimetableEntry> entries) {
+        return FirebaseUtil.getFirestore().runTransaction(new Transaction.Function<List<Rejection>>() {
+            @Override
+            public List<Rejection> apply(Transaction transaction) throws FirebaseFirestoreException {
+                return book(transaction, entries);
+            }
+        });
+    }
+
+    /**
+     * Book and write the entries whose slots are free
+     * @return Entries left out
+     */
+    private static List<Rejection> book(Transaction transaction, List<TimetableEntry> entries)
+            throws FirebaseFirestoreException {
+        // All reads must come before the first write
+        Map<String, Resource> resources = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> bookings = new HashMap<>();
+        for (TimetableEntry entry : entries) {
+            for (Resource resource : resourcesOf(entry)) {
+                if (!resources.containsKey(resource.key)) {
+                    resources.put(resource.key, resource);
+                    bookings.put(resource.key, new HashMap<>(bookingsOf(transaction.get(resource.reference))));
+                }
+            }
+        }
+
+        List<Rejection> rejections = new ArrayList<>();
+        Map<String, TimetableEntry> booked = new LinkedHashMap<>();
+        Map<String, TimetableEntry> owners = new HashMap<>();
+        for (TimetableEntry entry : entries) {
+            int start = TimeUtils.minuteOfDay(entry.getStartTime());
+            int end = TimeUtils.minuteOfDay(entry.getEndTime());
+            List<Resource> entryResources = resourcesOf(entry);
+
+            Rejection rejection = null;
+            for (Resource resource : entryResources) {
+                String holderId = findHolder(transaction, bookings.get(resource.key), resource, entry.getId(),
+                        start, end, booked, owners);
+                if (holderId != null) {
+                    rejection = new Rejection(entry, resource.conflictType, holderId);
+                    break;
+                }
+            }
+            if (rejection != null) {
+                rejections.add(rejection);
+                continue;
+            }
+
+            for (Resource resource : entryResources) {
+                bookings.get(resource.key).put(entry.getId(), interval(start, end));
+            }
+            booked.put(entry.getId(), entry);
+        }
+
+        for (Resource resource : resources.values()) {
+            transaction.set(resource.reference, reservationDocument(resource, bookings.get(resource.key)));
+        }
+        for (TimetableEntry entry : booked.values()) {
+            DocumentReference document = FirebaseUtil.getTimetableCollection().document(entry.getId());
+            transaction.set(document, entry);
+            // Stamped by the server, so incremental syncs do not depend on this device's clock
+            transaction.update(document, FirebaseUtil.FIELD_LAST_MODIFIED, FieldValue.serverTimestamp());
+        }
+        return rejections;
+    }
+
+    /**
+     * Find the entry holding a resource at an overlapping time. Bookings found to be stale are
+     * removed from the map.
+     * @param bookings Bookings of the resource, by entry ID
+     * @param entryId Entry being booked; its own bookings are its previous version
+     * @param booked Entries already booked in this transaction
+     * @param owners Server copies of booking owners read so far, null if deleted
+     * @return ID of the holding entry, or null if the resource is free
+     */
+    private static String findHolder(Transaction transaction, Map<String, Object> bookings, Resource resource,
+                                     String entryId, int start, int end, Map<String, TimetableEntry> booked,
+                                     Map<String, TimetableEntry> owners) throws FirebaseFirestoreException {
+        Iterator<Map.Entry<String, Object>> iterator = bookings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> booking = iterator.next();
+            String ownerId = booking.getKey();
+            if (ownerId.equals(entryId) || !overlaps(booking.getValue(), start, end)) {
+                continue;
+            }
+
+            TimetableEntry owner = booked.get(ownerId);
+            if (owner == null) {
+                if (!owners.containsKey(ownerId)) {
+                    DocumentSnapshot snapshot = transaction.get(FirebaseUtil.getTimetableCollection().document(ownerId));
+                    owners.put(ownerId, snapshot.exists() ? snapshot.toObject(TimetableEntry.class) : null);
+                }
+                owner = owners.get(ownerId);
+            }
+            if (stillHolds(owner, resource, start, end)) {
+                return ownerId;
+            }
+            // The owner was deleted or moved; forget the booking
+            iterator.remove();
+        }
+        return null;
+    }
+
+    /**
+     * @param bookingStart Start of a booking in minutes since midnight
+     * @param bookingEnd End of a booking in minutes since midnight
+     * @param start Start of the requested slot
+     * @param end End of the requested slot
+     * @return true if the half-open intervals overlap
+     */
+    static boolean overlaps(int bookingStart, int bookingEnd, int start, int end) {
+        return bookingStart < end && start < bookingEnd;
+    }
+
+    private static boolean overlaps(Object booking, int start, int end) {
+        if (!(booking instanceof Map)) {
+            return false;
+        }
+        Object bookingStart = ((Map<?, ?>) booking).get(FIELD_START);
+        Object bookingEnd = ((Map<?, ?>) booking).get(FIELD_END);
+        return bookingStart instanceof Number && bookingEnd instanceof Number
+                && overlaps(((Number) bookingStart).intValue(), ((Number) bookingEnd).intValue(), start, end);
+    }
+
+    /**
+     * @return true if the booking's entry still uses the resource at an overlapping time
+     */
+    private static boolean stillHolds(TimetableEntry ownerEntry, Resource resource, int start, int end) {
+        if (ownerEntry == null || ownerEntry.getDayOfWeek() != resource.dayOfWeek
+                || !resource.resourceId.equals(resource.idOf(ownerEntry))) {
+            return false;
+        }
+        return overlaps(TimeUtils.minuteOfDay(ownerEntry.getStartTime()),
+                TimeUtils.minuteOfDay(ownerEntry.getEndTime()), start, end);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> bookingsOf(DocumentSnapshot reservation) {
+        Object bookings = reservation != null && reservation.exists() ? reservation.get(FIELD_BOOKINGS) : null;
+        return bookings instanceof Map ? (Map<String, Object>) bookings : new HashMap<String, Object>();
+    }
+
+    private static Map<String, Object> interval(int start, int end) {
+        Map<String, Object> interval = new HashMap<>();
+        interval.put(FIELD_START, start);
+        interval.put(FIELD_END, end);
+        return interval;
+    }
+
+    private static Map<String, Object> reservationDocument(Resource resource, Map<String, Object> bookings) {
+        Map<String, Object> document = new HashMap<>();
+        document.put(FIELD_RESOURCE_TYPE, resource.type);
+        document.put(FIELD_RESOURCE_ID, resource.resourceId);
+        document.put(FIELD_DAY_OF_WEEK, resource.dayOfWeek);
+        document.put(FIELD_BOOKINGS, bookings);
+        return document;
+    }
+
+    private static List<Resource> resourcesOf(TimetableEntry entry) {
+        List<Resource> resources = new ArrayList<>();
+        if (entry.getClassroomId() != null) {
+            resources.add(new Resource(RESOURCE_CLASSROOM, ConflictIndex.CONFLICT_CLASSROOM,
+                    entry.getClassroomId(), entry.getDayOfWeek()));
+        }
+        if (entry.getLecturerId() != null) {
+            resources.add(new Resource(RESOURCE_LECTURER, ConflictIndex.CONFLICT_LECTURER,
+                    entry.getLecturerId(), entry.getDayOfWeek()));
+        }
+        return resources;
+    }
+
+    /**
+     * A classroom or lecturer on one day, and its reservation document
+     */
+    private static class Resource {
+        final String type;
+        final String conflictType;
+        final String resourceId;
+        final int dayOfWeek;
+        final String key;
+        final DocumentReference reference;
+
+        Resource(String type, String conflictType, String resourceId, int dayOfWeek) {
+            this.type = type;
+            this.conflictType = conflictType;
+            this.resourceId = resourceId;
+            this.dayOfWeek = dayOfWeek;
+            this.key = type + "_" + resourceId + "_" + dayOfWeek;
+            this.reference = FirebaseUtil.getReservationsCollection().document(key);
+        }
+
+        String idOf(TimetableEntry entry) {
+            return RESOURCE_CLASSROOM.equals(type) ? entry.getClassroomId() : entry.getLecturerId();
+        }
+    }
+}
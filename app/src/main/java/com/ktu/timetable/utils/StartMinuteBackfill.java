@@ -0,0 +1,96 @@
+package com.ktu.timetable.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds the startMinute field to timetable documents written before it existed. The paged
+ * timetable queries order by it, so documents without it would not be shown.
+ *
+ * Only admins can write the timetable, so this runs from the admin dashboard. It reads the
+ * whole collection once and is remembered on the device when every document has the field.
+ * lastModified is left alone, since the local copies already have the start minute.
+ */
+public class StartMinuteBackfill {
+
+    private static final String TAG = "StartMinuteBackfill";
+
+    private static final String PREFS_NAME = "start_minute_backfill";
+    private static final String KEY_DONE = "done";
+
+    // Firestore allows 500 writes per batch
+    private static final int MAX_BATCH_WRITES = 500;
+
+    private static boolean running;
+
+    private StartMinuteBackfill() {
+    }
+
+    /**
+     * Fill in the field unless this device already has, or is doing so now
+     * @param context Context used to remember that the backfill is done
+     */
+    public static synchronized void runOnce(Context context) {
+        final SharedPreferences preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (running || preferences.getBoolean(KEY_DONE, false)) {
+            return;
+        }
+        running = true;
+
+        FirebaseUtil.getTimetableCollection().get()
+                .addOnSuccessListener(AppExecutors.getInstance().diskIO(), queryDocumentSnapshots -> {
+                    List<Task<Void>> commits = new ArrayList<>();
+                    WriteBatch batch = null;
+                    int writes = 0;
+                    int filled = 0;
+                    for (DocumentSnapshot document : queryDocumentSnapshots) {
+                        int startMinute = TimeUtils.minuteOfDay(document.getDate(FirebaseUtil.FIELD_START_TIME));
+                        if (document.contains(FirebaseUtil.FIELD_START_MINUTE) || startMinute < 0) {
+                            continue;
+                        }
+                        if (batch == null || writes == MAX_BATCH_WRITES) {
+                            if (batch != null) {
+                                commits.add(batch.commit());
+                            }
+                            batch = FirebaseUtil.getFirestore().batch();
+                            writes = 0;
+                        }
+                        batch.update(document.getReference(), FirebaseUtil.FIELD_START_MINUTE, startMinute);
+                        writes++;
+                        filled++;
+                    }
+                    if (batch != null) {
+                        commits.add(batch.commit());
+                    }
+
+                    final int count = filled;
+                    Tasks.whenAll(commits).addOnCompleteListener(task -> {
+                        if (task.isSuccessful()) {
+                            Log.d(TAG, "Start minute added to " + count + " timetable entries");
+                            preferences.edit().putBoolean(KEY_DONE, true).apply();
+                        } else {
+                            Log.w(TAG, "Start minute backfill failed, will retry", task.getException());
+                        }
+                        finish();
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Could not read the timetable for the start minute backfill", e);
+                    finish();
+                });
+    }
+
+    private static synchronized void finish() {
+        running = false;
+    }
+}
@@ -0,0 +1,162 @@
+package com.ktu.timetable.utils;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures cold start: the time from process start to the first frame drawn, and to the first
+ * frame of the dashboard the splash screen routes to. Both are logged.
+ *
+ * Startup work that is not needed to draw the first frame, such as setting up Firestore, is
+ * queued with {@link #runAfterFirstFrame(Runnable)} and runs on the main thread once that frame
+ * has been drawn.
+ */
+public final class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    // Stands in for the process start time before Android 7.0, which does not report it
+    private static final long CLASS_LOAD_UPTIME = SystemClock.uptimeMillis();
+
+    private static final List<Runnable> afterFirstFrame = new ArrayList<>();
+    private static boolean firstFrameDrawn;
+    private static boolean dashboardExpected;
+    private static long timeToFirstFrame = -1;
+    private static long timeToDashboard = -1;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Record when an activity started at launch draws its first frame, then run the work
+     * queued with runAfterFirstFrame. Call from onCreate.
+     * @param activity Activity being created
+     */
+    public static void trackFirstFrame(Activity activity) {
+        synchronized (StartupMetrics.class) {
+            if (firstFrameDrawn) {
+                return;
+            }
+        }
+        onNextFrameDrawn(activity, StartupMetrics::onFirstFrame);
+    }
+
+    /**
+     * Note that the user is being routed straight to a dashboard, so the next dashboard to draw
+     * ends the cold start
+     */
+    public static synchronized void expectDashboard() {
+        dashboardExpected = true;
+    }
+
+    /**
+     * Record time-to-dashboard when a dashboard reached from startup draws its first frame.
+     * Call from the dashboard's onCreate.
+     * @param activity Dashboard being created
+     */
+    public static void trackDashboard(final Activity activity) {
+        // The splash screen may have routed here before drawing anything
+        trackFirstFrame(activity);
+
+        synchronized (StartupMetrics.class) {
+            if (!dashboardExpected) {
+                return;
+            }
+            dashboardExpected = false;
+        }
+        onNextFrameDrawn(activity, () -> {
+            long elapsed = sinceProcessStart();
+            synchronized (StartupMetrics.class) {
+                timeToDashboard = elapsed;
+            }
+            Log.i(TAG, "Time to dashboard: " + elapsed + " ms (" + activity.getClass().getSimpleName() + ")");
+        });
+    }
+
+    /**
+     * Run work on the main thread once the first frame has been drawn, or straight away if it
+     * already has been
+     * @param work Work to run
+     */
+    public static void runAfterFirstFrame(Runnable work) {
+        synchronized (StartupMetrics.class) {
+            if (!firstFrameDrawn) {
+                afterFirstFrame.add(work);
+                return;
+            }
+        }
+        AppExecutors.getInstance().mainThread().execute(work);
+    }
+
+    /**
+     * @return Milliseconds from process start to the first frame, or -1 if not drawn yet
+     */
+    public static synchronized long getTimeToFirstFrame() {
+        return timeToFirstFrame;
+    }
+
+    /**
+     * @return Milliseconds from process start to the first dashboard frame, or -1 if not drawn yet
+     */
+    public static synchronized long getTimeToDashboard() {
+        return timeToDashboard;
+    }
+
+    private static void onFirstFrame() {
+        long elapsed = sinceProcessStart();
+        List<Runnable> work;
+        synchronized (StartupMetrics.class) {
+            if (firstFrameDrawn) {
+                return;
+            }
+            firstFrameDrawn = true;
+            timeToFirstFrame = elapsed;
+            work = new ArrayList<>(afterFirstFrame);
+            afterFirstFrame.clear();
+        }
+        Log.i(TAG, "Time to first frame: " + elapsed + " ms");
+        for (Runnable task : work) {
+            task.run();
+        }
+    }
+
+    /**
+     * Run an action on the main thread once the next frame of an activity has been drawn
+     */
+    private static void onNextFrameDrawn(Activity activity, final Runnable action) {
+        final View decorView = activity.getWindow().getDecorView();
+        final Handler handler = new Handler(Looper.getMainLooper());
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                // Listeners cannot be removed while drawing; this runs once the frame is done
+                handler.postAtFrontOfQueue(() -> {
+                    decorView.getViewTreeObserver().removeOnDrawListener(this);
+                    action.run();
+                });
+            }
+        });
+    }
+
+    private static long sinceProcessStart() {
+        long start = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartUptimeMillis() : CLASS_LOAD_UPTIME;
+        return SystemClock.uptimeMillis() - start;
+    }
+}
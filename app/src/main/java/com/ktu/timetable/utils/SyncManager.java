@@ -0,0 +1,206 @@
+package com.ktu.timetable.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.services.ReminderScheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the local timetable table in step with Firestore by downloading only what changed.
+ *
+ * Each sync asks for entries whose lastModified is newer than the stored watermark and for
+ * tombstones of entries deleted since then, applies both to SQLite, and moves the watermark to
+ * the newest timestamp seen, all in one transaction. The first sync downloads the whole
+ * collection. Queries start a little before the watermark to cover writers whose clocks run
+ * slightly behind; re-applying an entry is harmless.
+ */
+public class SyncManager {
+
+    private static final String TAG = "SyncManager";
+
+    // How far before the watermark each delta query starts
+    private static final long WATERMARK_OVERLAP_MILLIS = 5 * 60 * 1000;
+
+    private static SyncManager instance;
+
+    private final DatabaseHelper databaseHelper;
+    private final AppExecutors executors;
+    private final ReminderScheduler reminderScheduler;
+    private final List<SyncCallback> pendingCallbacks = new ArrayList<>();
+    private boolean timetableSyncRunning;
+
+    /**
+     * Callback for sync results
+     */
+    public interface SyncCallback {
+        /**
+         * @param changedCount Number of entries added or updated
+         * @param deletedCount Number of entries removed
+         */
+        void onSyncComplete(int changedCount, int deletedCount);
+
+        /**
+         * @param e Error that stopped the sync. Local data is unchanged.
+         */
+        void onSyncFailed(Exception e);
+    }
+
+    /**
+     * Get singleton instance of SyncManager
+     * @param context Application context
+     * @return SyncManager instance
+     */
+    public static synchronized SyncManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncManager(DatabaseHelper.getInstance(context), AppExecutors.getInstance(),
+                    ReminderScheduler.getInstance(context));
+        }
+        return instance;
+    }
+
+    private SyncManager(DatabaseHelper databaseHelper, AppExecutors executors,
+                        ReminderScheduler reminderScheduler) {
+        this.databaseHelper = databaseHelper;
+        this.executors = executors;
+        this.reminderScheduler = reminderScheduler;
+    }
+
+    /**
+     * Bring the local timetable up to date. If a sync is already running, the callback is
+     * added to it instead of starting another one. Database work and result parsing run on the
+     * disk I/O executor; callbacks run on the main thread.
+     * @param callback Callback for the result, may be null
+     */
+    public void syncTimetable(SyncCallback callback) {
+        synchronized (pendingCallbacks) {
+            if (callback != null) {
+                pendingCallbacks.add(callback);
+            }
+            if (timetableSyncRunning) {
+                return;
+            }
+            timetableSyncRunning = true;
+        }
+
+        try {
+            executors.diskIO().execute(this::startTimetableSync);
+        } catch (RuntimeException e) {
+            finishWithError(e);
+        }
+    }
+
+    private void startTimetableSync() {
+        final long watermark = databaseHelper.getSyncWatermark(FirebaseUtil.TIMETABLE_COLLECTION);
+        final boolean fullSync = watermark == 0;
+        final Date since = new Date(Math.max(0, watermark - WATERMARK_OVERLAP_MILLIS));
+
+        Query query = fullSync
+                ? FirebaseUtil.getTimetableCollection()
+                : FirebaseUtil.getTimetableChangesSince(since);
+
+        query.get()
+                .addOnSuccessListener(executors.diskIO(), queryDocumentSnapshots -> {
+                    List<TimetableEntry> changedEntries = new ArrayList<>();
+                    long newWatermark = watermark;
+
+                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
+                        TimetableEntry entry = documentSnapshot.toObject(TimetableEntry.class);
+                        if (entry != null) {
+                            changedEntries.add(entry);
+                            if (entry.getLastModified() != null) {
+                                newWatermark = Math.max(newWatermark, entry.getLastModified().getTime());
+                            }
+                        }
+                    }
+
+                    if (fullSync) {
+                        // Nothing to delete after a full download. An empty timetable keeps a
+                        // zero watermark, so the next sync downloads it in full again.
+                        applyChanges(changedEntries, new ArrayList<String>(), true, clamp(newWatermark));
+                    } else {
+                        fetchTombstones(since, changedEntries, newWatermark);
+                    }
+                })
+                .addOnFailureListener(executors.diskIO(), this::finishWithError);
+    }
+
+    private void fetchTombstones(Date since, List<TimetableEntry> changedEntries, long watermark) {
+        FirebaseUtil.getTombstonesSince(FirebaseUtil.TIMETABLE_COLLECTION, since)
+                .get()
+                .addOnSuccessListener(executors.diskIO(), queryDocumentSnapshots -> {
+                    List<String> deletedIds = new ArrayList<>();
+                    long newWatermark = watermark;
+
+                    for (DocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
+                        String documentId = documentSnapshot.getString(FirebaseUtil.FIELD_DOCUMENT_ID);
+                        Date deletedAt = documentSnapshot.getDate(FirebaseUtil.FIELD_DELETED_AT);
+                        if (documentId != null) {
+                            deletedIds.add(documentId);
+                        }
+                        if (deletedAt != null) {
+                            newWatermark = Math.max(newWatermark, deletedAt.getTime());
+                        }
+                    }
+
+                    // An entry deleted and then recreated with the same ID must be kept
+                    for (TimetableEntry entry : changedEntries) {
+                        deletedIds.remove(entry.getId());
+                    }
+
+                    applyChanges(changedEntries, deletedIds, false, clamp(newWatermark));
+                })
+                .addOnFailureListener(executors.diskIO(), this::finishWithError);
+    }
+
+    /**
+     * Keep the watermark from running ahead of this device's clock. Documents stamped by a
+     * device with a fast clock before the stamps moved to the server would otherwise hide every
+     * later edit from delta syncs.
+     */
+    private static long clamp(long watermark) {
+        return Math.min(watermark, System.currentTimeMillis());
+    }
+
+    private void applyChanges(List<TimetableEntry> changedEntries, List<String> deletedIds,
+                              boolean replaceAll, long watermark) {
+        if (databaseHelper.applyTimetableDelta(changedEntries, deletedIds, replaceAll, watermark)) {
+            Log.d(TAG, "Timetable synced: " + changedEntries.size() + " changed, " + deletedIds.size() + " deleted");
+            // Classes may have moved, so reminders are worked out again
+            reminderScheduler.reschedule();
+            final List<SyncCallback> callbacks = takeCallbacks();
+            executors.mainThread().execute(() -> {
+                for (SyncCallback callback : callbacks) {
+                    callback.onSyncComplete(changedEntries.size(), deletedIds.size());
+                }
+            });
+        } else {
+            finishWithError(new IllegalStateException("Could not save timetable changes"));
+        }
+    }
+
+    private void finishWithError(Exception e) {
+        Log.w(TAG, "Timetable sync failed", e);
+        final List<SyncCallback> callbacks = takeCallbacks();
+        executors.mainThread().execute(() -> {
+            for (SyncCallback callback : callbacks) {
+                callback.onSyncFailed(e);
+            }
+        });
+    }
+
+    private List<SyncCallback> takeCallbacks() {
+        synchronized (pendingCallbacks) {
+            List<SyncCallback> callbacks = new ArrayList<>(pendingCallbacks);
+            pendingCallbacks.clear();
+            timetableSyncRunning = false;
+            return callbacks;
+        }
+    }
+}
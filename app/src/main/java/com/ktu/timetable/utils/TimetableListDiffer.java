@@ -0,0 +1,118 @@
+package com.ktu.timetable.utils;
+
+import android.util.Log;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Updates a timetable list shown by a RecyclerView with fine-grained change notifications.
+ * The difference between the shown and the new list is computed on the computation executor;
+ * the list and adapter are then updated together on the main thread. If a newer list is
+ * submitted before a diff finishes, the older result is dropped.
+ */
+public class TimetableListDiffer {
+
+    private static final String TAG = "TimetableListDiffer";
+
+    private final RecyclerView.Adapter<?> adapter;
+    private final List<TimetableEntry> shownEntries;
+    private int generation;
+
+    /**
+     * @param adapter Adapter showing the list
+     * @param shownEntries List backing the adapter. Only change it through {@link #submit}.
+     */
+    public TimetableListDiffer(RecyclerView.Adapter<?> adapter, List<TimetableEntry> shownEntries) {
+        this.adapter = adapter;
+        this.shownEntries = shownEntries;
+    }
+
+    /**
+     * Show a new list. Must be called on the main thread.
+     * @param entries Entries to show, in display order
+     * @param onShown Runs on the main thread once the list is shown, may be null
+     */
+    public void submit(List<TimetableEntry> entries, final Runnable onShown) {
+        final int submitted = ++generation;
+        final List<TimetableEntry> oldEntries = new ArrayList<>(shownEntries);
+        final List<TimetableEntry> newEntries = new ArrayList<>(entries);
+        final AppExecutors executors = AppExecutors.getInstance();
+
+        try {
+            executors.computation().execute(() -> {
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new EntryDiff(oldEntries, newEntries));
+                executors.mainThread().execute(() -> {
+                    if (submitted != generation) {
+                        return;
+                    }
+                    shownEntries.clear();
+                    shownEntries.addAll(newEntries);
+                    diff.dispatchUpdatesTo(adapter);
+                    if (onShown != null) {
+                        onShown.run();
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // No thread to diff on; show the list without animating the changes
+            Log.w(TAG, "Diff not run, redrawing the whole list", e);
+            shownEntries.clear();
+            shownEntries.addAll(newEntries);
+            adapter.notifyDataSetChanged();
+            if (onShown != null) {
+                onShown.run();
+            }
+        }
+    }
+
+    private static class EntryDiff extends DiffUtil.Callback {
+        private final List<TimetableEntry> oldEntries;
+        private final List<TimetableEntry> newEntries;
+
+        EntryDiff(List<TimetableEntry> oldEntries, List<TimetableEntry> newEntries) {
+            this.oldEntries = oldEntries;
+            this.newEntries = newEntries;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldEntries.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newEntries.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return equal(oldEntries.get(oldPosition).getId(), newEntries.get(newPosition).getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            TimetableEntry a = oldEntries.get(oldPosition);
+            TimetableEntry b = newEntries.get(newPosition);
+            return a == b || (equal(a.getLastModified(), b.getLastModified())
+                    && a.getDayOfWeek() == b.getDayOfWeek()
+                    && equal(a.getStartTime(), b.getStartTime())
+                    && equal(a.getEndTime(), b.getEndTime())
+                    && equal(a.getCourseCode(), b.getCourseCode())
+                    && equal(a.getCourseName(), b.getCourseName())
+                    && equal(a.getLecturerName(), b.getLecturerName())
+                    && equal(a.getClassroomName(), b.getClassroomName())
+                    && equal(a.getType(), b.getType()));
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
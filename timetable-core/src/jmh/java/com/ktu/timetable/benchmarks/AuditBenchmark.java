@@ -0,0 +1,58 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimetableAudit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-timetable clash audit on one thread and with the days spread over every core. Each
+ * cohort has about 25 classes a week, as in a real faculty, so the clash count grows with the
+ * timetable rather than with its square.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuditBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<TimetableEntry> entries;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        int cohorts = Math.max(1, size / 25);
+        entries = TimetableFixtures.entries(size, Math.max(1, cohorts / TimetableFixtures.LEVELS.length), 42);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public TimetableAudit.Report sequential() {
+        return TimetableAudit.audit(entries);
+    }
+
+    @Benchmark
+    public TimetableAudit.Report parallel() throws InterruptedException {
+        return TimetableAudit.audit(entries, executor);
+    }
+}
@@ -0,0 +1,76 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.ConflictIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clash checks for a new class against the whole timetable: the indexed lookup the schedule
+ * screen uses, the pairwise scan over TimetableEntry's conflict methods it replaced, and the cost
+ * of building the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConflictBenchmark {
+
+    private static final int CANDIDATES = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<TimetableEntry> entries;
+    private ConflictIndex index;
+    private TimetableEntry[] candidates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        entries = TimetableFixtures.entries(size, 42);
+        index = new ConflictIndex();
+        index.build(entries);
+        candidates = TimetableFixtures.entries(size, 7).subList(0, Math.min(size, CANDIDATES))
+                .toArray(new TimetableEntry[0]);
+    }
+
+    private TimetableEntry nextCandidate() {
+        TimetableEntry candidate = candidates[next];
+        next = (next + 1) % candidates.length;
+        return candidate;
+    }
+
+    @Benchmark
+    public List<ConflictIndex.Conflict> indexLookup() {
+        return index.findConflicts(nextCandidate());
+    }
+
+    @Benchmark
+    public int pairwiseScan() {
+        TimetableEntry candidate = nextCandidate();
+        int conflicts = 0;
+        for (TimetableEntry entry : entries) {
+            if (candidate.hasLecturerConflict(entry) || candidate.hasClassroomConflict(entry)) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+
+    @Benchmark
+    public ConflictIndex buildIndex() {
+        ConflictIndex built = new ConflictIndex();
+        built.build(entries);
+        return built;
+    }
+}
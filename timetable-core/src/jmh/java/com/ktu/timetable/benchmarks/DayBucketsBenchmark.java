@@ -0,0 +1,41 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimetableDayBuckets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting a loaded timetable into sorted, indexed day buckets, as the timetable screens do
+ * each time new data arrives
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DayBucketsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<TimetableEntry> entries;
+
+    @Setup
+    public void setUp() {
+        entries = TimetableFixtures.entries(size, 42);
+    }
+
+    @Benchmark
+    public TimetableDayBuckets bucket() {
+        return new TimetableDayBuckets(entries);
+    }
+}
@@ -0,0 +1,51 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.ModelDecoders;
+import com.ktu.timetable.utils.RowDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a whole timetable query into entries, with the rows already in memory so only the
+ * decoder is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DecodeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Object[][] rows;
+
+    @Setup
+    public void setUp() {
+        rows = TimetableFixtures.rows(TimetableFixtures.entries(size, 42));
+    }
+
+    @Benchmark
+    public List<TimetableEntry> decodeAll() {
+        final List<TimetableEntry> entries = new ArrayList<>(rows.length);
+        new ModelDecoders.TimetableEntryDecoder().decodeAll(new TimetableFixtures.EntryRows(rows),
+                new RowDecoder.RowSink<TimetableEntry>() {
+                    @Override
+                    public void accept(TimetableEntry item) {
+                        entries.add(item);
+                    }
+                });
+        return entries;
+    }
+}
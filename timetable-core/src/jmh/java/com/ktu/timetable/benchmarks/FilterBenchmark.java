@@ -0,0 +1,69 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimetableDayBuckets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One filtered day view, as shown when the admin switches tab or filter: intersecting the
+ * bucket position lists, against scanning the whole timetable
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<TimetableEntry> entries;
+    private TimetableDayBuckets buckets;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        entries = TimetableFixtures.entries(size, 42);
+        buckets = new TimetableDayBuckets(entries);
+    }
+
+    @Benchmark
+    public List<TimetableEntry> departmentAndLevel() {
+        int query = next++;
+        return buckets.getDay(1 + query % 5, "department" + query % TimetableFixtures.DEPARTMENTS,
+                TimetableFixtures.LEVELS[query % TimetableFixtures.LEVELS.length], null, null);
+    }
+
+    @Benchmark
+    public List<TimetableEntry> lecturer() {
+        int query = next++;
+        return buckets.getDay(1 + query % 5, null, null, "lecturer" + query % Math.max(1, size / 10), null);
+    }
+
+    @Benchmark
+    public List<TimetableEntry> departmentAndLevelScan() {
+        int query = next++;
+        int day = 1 + query % 5;
+        String departmentId = "department" + query % TimetableFixtures.DEPARTMENTS;
+        String level = TimetableFixtures.LEVELS[query % TimetableFixtures.LEVELS.length];
+        List<TimetableEntry> result = new ArrayList<>();
+        for (TimetableEntry entry : entries) {
+            if (entry.getDayOfWeek() == day && departmentId.equals(entry.getDepartmentId())
+                    && level.equals(entry.getLevel())) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
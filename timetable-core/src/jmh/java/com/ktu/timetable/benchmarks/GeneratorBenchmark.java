@@ -0,0 +1,105 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.scheduler.TimetableGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for the generator to reach a clash-free timetable for a whole faculty. Courses have
+ * three credit hours and belong to one of 60 departments and four levels. Each lecturer
+ * teaches three courses, and there are enough rooms for 90% of the teaching week to be in
+ * use, one in ten of them a lab. The run is cancelled as soon as progress reports no clashes,
+ * so the time includes up to one progress interval of 500 ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeneratorBenchmark {
+
+    private static final int CREDIT_HOURS = 3;
+    private static final int DEPARTMENTS = 60;
+    private static final int COURSES_PER_LECTURER = 3;
+    private static final double ROOM_USE = 0.9;
+    private static final long TIME_BUDGET_MILLIS = 120000;
+
+    @Param({"300", "3000"})
+    public int courseCount;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private List<Course> courses;
+    private List<Lecturer> lecturers;
+    private List<Classroom> classrooms;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        courses = new ArrayList<>();
+        for (int i = 0; i < courseCount; i++) {
+            Course course = new Course("course" + i, "C" + i, "Course " + i,
+                    "department" + (i % DEPARTMENTS), CREDIT_HOURS);
+            course.setLevel(TimetableFixtures.LEVELS[(i / DEPARTMENTS) % TimetableFixtures.LEVELS.length]);
+            course.setSemester("1");
+            courses.add(course);
+        }
+
+        lecturers = new ArrayList<>();
+        for (int i = 0; i * COURSES_PER_LECTURER < courseCount; i++) {
+            Lecturer lecturer = new Lecturer("lecturer" + i, null, "S" + i, "Lecturer", String.valueOf(i));
+            List<String> courseIds = new ArrayList<>();
+            for (int c = i * COURSES_PER_LECTURER; c < Math.min(courseCount, (i + 1) * COURSES_PER_LECTURER); c++) {
+                // Spread each lecturer's courses over departments, as in a real faculty
+                courseIds.add("course" + ((c * 7919L) % courseCount));
+            }
+            lecturer.setCourseIds(courseIds);
+            lecturers.add(lecturer);
+        }
+
+        int weeklyPeriods = (TimetableGenerator.DEFAULT_LAST_DAY - TimetableGenerator.DEFAULT_FIRST_DAY + 1)
+                * (TimetableGenerator.DEFAULT_END_HOUR - TimetableGenerator.DEFAULT_START_HOUR);
+        int roomCount = (int) Math.ceil(courseCount * CREDIT_HOURS / (weeklyPeriods * ROOM_USE));
+        classrooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            Classroom classroom = new Classroom("classroom" + i, "Room " + i, "Main", 40 + random.nextInt(160));
+            classroom.setType(i % 10 == 0 ? Classroom.TYPE_LAB : Classroom.TYPE_LECTURE_HALL);
+            classrooms.add(classroom);
+        }
+    }
+
+    @Benchmark
+    public TimetableGenerator.Result generate() throws InterruptedException {
+        final TimetableGenerator generator = new TimetableGenerator(courses, lecturers, classrooms);
+        generator.setThreadCount(threads);
+        generator.setTimeBudgetMillis(TIME_BUDGET_MILLIS);
+        generator.setSeed(42);
+        TimetableGenerator.Result result = generator.generate(new TimetableGenerator.ProgressListener() {
+            @Override
+            public void onProgress(long elapsedMillis, long moves, long hardViolations, long softPenalty) {
+                if (hardViolations == 0) {
+                    generator.cancel();
+                }
+            }
+        });
+        if (!result.isClashFree()) {
+            throw new IllegalStateException(result.getHardViolations() + " clashes left after "
+                    + TIME_BUDGET_MILLIS + " ms");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,170 @@
+package com.ktu.timetable.benchmarks;
+
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.Rows;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates timetables shaped like a real faculty, the same for every run: weekday classes
+ * between 8 AM and 6 PM, spread over 20 departments and four levels, with a lecturer for every
+ * ten classes and a classroom for every 25. Pass a department count to grow the number of
+ * cohorts with the timetable instead.
+ */
+final class TimetableFixtures {
+
+    static final int DEPARTMENTS = 20;
+    static final String[] LEVELS = {"100", "200", "300", "400"};
+    private static final String[] TYPES = {"Lecture", "Practical", "Tutorial"};
+
+    // Columns of the timetable table, in the order EntryRows returns them
+    private static final String[] COLUMNS = {
+            "id", "course_id", "course_name", "course_code", "lecturer_id", "lecturer_name",
+            "classroom_id", "classroom_name", "department_id", "department_name", "level",
+            "semester", "day_of_week", "start_time", "end_time", "type", "last_modified",
+            "last_modified_by"
+    };
+
+    private TimetableFixtures() {
+    }
+
+    /**
+     * @param size Number of entries
+     * @param seed Random seed; the same seed gives the same timetable
+     * @return Generated entries
+     */
+    static List<TimetableEntry> entries(int size, long seed) {
+        return entries(size, DEPARTMENTS, seed);
+    }
+
+    /**
+     * @param size Number of entries
+     * @param departments Number of departments
+     * @param seed Random seed; the same seed gives the same timetable
+     * @return Generated entries
+     */
+    static List<TimetableEntry> entries(int size, int departments, long seed) {
+        Random random = new Random(seed);
+        int lecturers = Math.max(1, size / 10);
+        int classrooms = Math.max(1, size / 25);
+        List<TimetableEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int department = random.nextInt(departments);
+            int lecturer = random.nextInt(lecturers);
+            int classroom = random.nextInt(classrooms);
+            int startHour = 8 + random.nextInt(9);
+            int hours = 1 + random.nextInt(2);
+
+            TimetableEntry entry = new TimetableEntry();
+            entry.setId("entry" + i);
+            entry.setCourseId("course" + (i % 500));
+            entry.setCourseName("Course " + (i % 500));
+            entry.setCourseCode("C" + (100 + i % 500));
+            entry.setLecturerId("lecturer" + lecturer);
+            entry.setLecturerName("Lecturer " + lecturer);
+            entry.setClassroomId("classroom" + classroom);
+            entry.setClassroomName("Room " + classroom);
+            entry.setDepartmentId("department" + department);
+            entry.setDepartmentName("Department " + department);
+            entry.setLevel(LEVELS[random.nextInt(LEVELS.length)]);
+            entry.setSemester(String.valueOf(1 + random.nextInt(2)));
+            entry.setDayOfWeek(1 + random.nextInt(5));
+            entry.setStartTime(time(startHour));
+            entry.setEndTime(time(startHour + hours));
+            entry.setType(TYPES[random.nextInt(TYPES.length)]);
+            entry.setLastModified(new Date(1700000000000L + i * 1000L));
+            entry.setLastModifiedBy("admin");
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static Date time(int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2024, Calendar.JANUARY, 1, hour, 0);
+        return calendar.getTime();
+    }
+
+    /**
+     * Lay entries out as rows of the timetable table, dates as epoch milliseconds, so decoding
+     * them costs what decoding a cursor does minus SQLite itself
+     */
+    static Object[][] rows(List<TimetableEntry> entries) {
+        Object[][] rows = new Object[entries.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            TimetableEntry entry = entries.get(i);
+            rows[i] = new Object[]{
+                    entry.getId(), entry.getCourseId(), entry.getCourseName(), entry.getCourseCode(),
+                    entry.getLecturerId(), entry.getLecturerName(), entry.getClassroomId(),
+                    entry.getClassroomName(), entry.getDepartmentId(), entry.getDepartmentName(),
+                    entry.getLevel(), entry.getSemester(), (long) entry.getDayOfWeek(),
+                    entry.getStartTime().getTime(), entry.getEndTime().getTime(), entry.getType(),
+                    entry.getLastModified().getTime(), entry.getLastModifiedBy()
+            };
+        }
+        return rows;
+    }
+
+    /**
+     * Rows held in memory, read like a cursor over the timetable table
+     */
+    static final class EntryRows implements Rows {
+        private final Object[][] rows;
+        private int position = -1;
+
+        EntryRows(Object[][] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return ++position < rows.length;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            position = 0;
+            return rows.length > 0;
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equals(columnName)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            Object value = rows[position][columnIndex];
+            return value != null ? value.toString() : null;
+        }
+
+        @Override
+        public int getInt(int columnIndex) {
+            return (int) getLong(columnIndex);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            return (Long) rows[position][columnIndex];
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            return rows[position][columnIndex] == null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -16,6 +16,7 @@ public class Course implements Serializable {
     private String level; // e.g., "100", "200", "300", etc.
     private String semester; // e.g., "1", "2"
     private boolean isElective;
+    private boolean isPractical; // Has a practical session, held in a lab
     private String description;
     
     // Default constructor required for Firestore
@@ -103,6 +104,14 @@ public class Course implements Serializable {
         isElective = elective;
     }
     
+    public boolean isPractical() {
+        return isPractical;
+    }
+    
+    public void setPractical(boolean practical) {
+        isPractical = practical;
+    }
+    
     public String getDescription() {
         return description;
     }
@@ -1,5 +1,7 @@
 package com.ktu.timetable.models;
 
+import com.ktu.timetable.utils.TimeUtils;
+
 import java.io.Serializable;
 import java.util.Date;
 
@@ -148,6 +150,23 @@ public class TimetableEntry implements Serializable {
         this.startTime = startTime;
     }
     
+    /**
+     * Start time as minutes since midnight, stored in Firestore as startMinute. The timetable is
+     * queried by it because startTime also carries the date the entry was created on.
+     * @return Minutes since midnight, or -1 if the start time is not set
+     */
+    public int getStartMinute() {
+        return TimeUtils.minuteOfDay(startTime);
+    }
+    
+    /**
+     * Does nothing; the start minute always follows the start time. Lets Firestore read
+     * documents that have the field.
+     * @param startMinute Ignored
+     */
+    public void setStartMinute(int startMinute) {
+    }
+    
     public Date getEndTime() {
         return endTime;
     }
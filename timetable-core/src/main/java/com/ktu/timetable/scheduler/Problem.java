@@ -0,0 +1,114 @@
+package com.ktu.timetable.scheduler;
+
+/**
+ * Read-only description of a generation run shared by all search workers. Usage arrays are
+ * laid out as [key * timeslotCount + timeslot], where a timeslot is day * periodsPerDay + period.
+ */
+class Problem {
+
+    final Session[] sessions;
+    final int dayCount;
+    final int periodsPerDay;
+    final int timeslotCount;
+    final int roomCount;
+    final int lecturerCount;
+    final int cohortCount;
+    final int courseCount;
+    final boolean[] labRooms;
+    final int labRoomCount;
+
+    // Room indices ordered lab-first and lab-last, used to try the best fitting rooms first
+    final int[] roomsForPractical;
+    final int[] roomsForLecture;
+
+    // Valid start timeslots for each session duration, so a session never runs past the day
+    final int[][] startsByDuration;
+
+    // Usage by classes that already exist and are not moved by the generator
+    final int[] fixedRoomUse;
+    final int[] fixedLecturerUse;
+    final int[] fixedCohortUse;
+
+    Problem(Session[] sessions, int dayCount, int periodsPerDay, boolean[] labRooms,
+            int lecturerCount, int cohortCount, int courseCount,
+            int[] fixedRoomUse, int[] fixedLecturerUse, int[] fixedCohortUse) {
+        this.sessions = sessions;
+        this.dayCount = dayCount;
+        this.periodsPerDay = periodsPerDay;
+        this.timeslotCount = dayCount * periodsPerDay;
+        this.roomCount = labRooms.length;
+        this.lecturerCount = lecturerCount;
+        this.cohortCount = cohortCount;
+        this.courseCount = courseCount;
+        this.labRooms = labRooms;
+        this.fixedRoomUse = fixedRoomUse;
+        this.fixedLecturerUse = fixedLecturerUse;
+        this.fixedCohortUse = fixedCohortUse;
+
+        int labs = 0;
+        for (boolean lab : labRooms) {
+            if (lab) {
+                labs++;
+            }
+        }
+        labRoomCount = labs;
+        roomsForPractical = orderRooms(labRooms, true);
+        roomsForLecture = orderRooms(labRooms, false);
+
+        int maxDuration = 1;
+        for (Session session : sessions) {
+            maxDuration = Math.max(maxDuration, session.duration);
+        }
+        startsByDuration = new int[maxDuration + 1][];
+        for (int duration = 1; duration <= maxDuration; duration++) {
+            startsByDuration[duration] = validStarts(duration);
+        }
+    }
+
+    /**
+     * @param session Session to place
+     * @return Rooms ordered so that those suiting the session come first
+     */
+    int[] preferredRooms(Session session) {
+        return session.practical ? roomsForPractical : roomsForLecture;
+    }
+
+    /**
+     * @param session Session to place
+     * @return Number of rooms at the front of {@link #preferredRooms} that suit the session
+     */
+    int suitableRoomCount(Session session) {
+        return session.practical ? labRoomCount : roomCount - labRoomCount;
+    }
+
+    private int[] validStarts(int duration) {
+        if (duration > periodsPerDay) {
+            return new int[0];
+        }
+        int perDay = periodsPerDay - duration + 1;
+        int[] starts = new int[dayCount * perDay];
+        int i = 0;
+        for (int day = 0; day < dayCount; day++) {
+            for (int period = 0; period < perDay; period++) {
+                starts[i++] = day * periodsPerDay + period;
+            }
+        }
+        return starts;
+    }
+
+    private static int[] orderRooms(boolean[] labRooms, boolean labsFirst) {
+        int[] order = new int[labRooms.length];
+        int i = 0;
+        for (int room = 0; room < labRooms.length; room++) {
+            if (labRooms[room] == labsFirst) {
+                order[i++] = room;
+            }
+        }
+        for (int room = 0; room < labRooms.length; room++) {
+            if (labRooms[room] != labsFirst) {
+                order[i++] = room;
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,413 @@
+package com.ktu.timetable.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * One local-search thread. Builds a greedy starting timetable, then improves it with
+ * simulated annealing over single-session moves. Workers share the best timetable found
+ * through {@link SharedBest} and restart from it when they stall.
+ *
+ * Cost counts clashing pairs: placing a session where n others already use the same room,
+ * lecturer or cohort in a period adds n hard violations, so every move can be scored from
+ * the usage counters alone.
+ */
+class SearchWorker implements Runnable {
+
+    static final int HARD_WEIGHT = 1000;
+    static final int SPREAD_WEIGHT = 10;
+    static final int PRACTICAL_OUTSIDE_LAB_WEIGHT = 5;
+    static final int LECTURE_IN_LAB_WEIGHT = 1;
+
+    private static final int CHECK_INTERVAL = 1024;
+    private static final int CANDIDATES_PER_MOVE = 4;
+    private static final long SYNC_INTERVAL_MILLIS = 2000;
+    private static final int STALL_CHECKS_BEFORE_RESTART = 3;
+    private static final double START_TEMPERATURE = 3.0;
+    private static final double MIN_TEMPERATURE = 0.05;
+    private static final double COOLING_RATE = 0.995;
+
+    private final Problem problem;
+    private final SharedBest sharedBest;
+    private final Random random;
+    private final long deadline;
+
+    private final int[] roomUse;
+    private final int[] lecturerUse;
+    private final int[] cohortUse;
+    private final int[] courseDayUse;
+
+    private final int[] starts;
+    private final int[] rooms;
+    private final int[] bestStarts;
+    private final int[] bestRooms;
+
+    private long currentHard;
+    private long currentSoft;
+    private long bestCost = Long.MAX_VALUE;
+    private long bestHard;
+    private long bestSoft;
+    private boolean bestOffered = true;
+    private volatile long iterations;
+
+    SearchWorker(Problem problem, SharedBest sharedBest, long seed, long deadline) {
+        this.problem = problem;
+        this.sharedBest = sharedBest;
+        this.random = new Random(seed);
+        this.deadline = deadline;
+
+        int slots = problem.timeslotCount;
+        roomUse = new int[problem.roomCount * slots];
+        lecturerUse = new int[problem.lecturerCount * slots];
+        cohortUse = new int[problem.cohortCount * slots];
+        courseDayUse = new int[problem.courseCount * problem.dayCount];
+
+        int sessionCount = problem.sessions.length;
+        starts = new int[sessionCount];
+        rooms = new int[sessionCount];
+        bestStarts = new int[sessionCount];
+        bestRooms = new int[sessionCount];
+    }
+
+    @Override
+    public void run() {
+        construct();
+        saveBest();
+        offerBest();
+
+        if (problem.sessions.length > 0) {
+            improve();
+        }
+        offerBest();
+    }
+
+    /**
+     * @return Moves evaluated by this worker so far
+     */
+    long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Place sessions one at a time, hardest first, each at its cheapest slot
+     */
+    private void construct() {
+        resetUsage();
+
+        final Session[] sessions = problem.sessions;
+        final int[] lecturerLoad = new int[problem.lecturerCount];
+        for (Session session : sessions) {
+            if (session.lecturerIndex >= 0) {
+                lecturerLoad[session.lecturerIndex] += session.duration;
+            }
+        }
+
+        // Busy lecturers and long sessions first, with a little noise so workers differ
+        final int[] priority = new int[sessions.length];
+        List<Integer> order = new ArrayList<>(sessions.length);
+        for (int i = 0; i < sessions.length; i++) {
+            Session session = sessions[i];
+            int load = session.lecturerIndex >= 0 ? lecturerLoad[session.lecturerIndex] : 0;
+            priority[i] = load * 4 + session.duration * 8 + random.nextInt(8);
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return priority[b] - priority[a];
+            }
+        });
+
+        for (int index : order) {
+            Session session = sessions[index];
+            int[] candidates = problem.startsByDuration[session.duration];
+            int[] roomOrder = problem.preferredRooms(session);
+            long bestSlotCost = Long.MAX_VALUE;
+            int bestStart = candidates[0];
+            int bestRoom = roomOrder[0];
+            int ties = 0;
+
+            for (int start : candidates) {
+                long baseCost = hardWithoutRoom(session, start) * HARD_WEIGHT + spreadCost(session, start);
+                if (baseCost > bestSlotCost) {
+                    continue;
+                }
+
+                // Rooms are ordered best fit first, so the first room without a clash is the cheapest
+                int room = roomOrder[0];
+                long roomHard = Long.MAX_VALUE;
+                for (int candidateRoom : roomOrder) {
+                    long hard = roomHard(candidateRoom, start, session.duration);
+                    if (hard < roomHard) {
+                        roomHard = hard;
+                        room = candidateRoom;
+                        if (hard == 0) {
+                            break;
+                        }
+                    }
+                }
+
+                long cost = baseCost + roomHard * HARD_WEIGHT + fitCost(session, room);
+                if (cost < bestSlotCost) {
+                    bestSlotCost = cost;
+                    bestStart = start;
+                    bestRoom = room;
+                    ties = 1;
+                } else if (cost == bestSlotCost && random.nextInt(++ties) == 0) {
+                    bestStart = start;
+                    bestRoom = room;
+                }
+            }
+
+            currentHard += hardCost(session, bestStart, bestRoom);
+            currentSoft += softCost(session, bestStart, bestRoom);
+            place(index, bestStart, bestRoom);
+        }
+    }
+
+    /**
+     * Simulated annealing until the deadline, a perfect timetable or cancellation
+     */
+    private void improve() {
+        final Session[] sessions = problem.sessions;
+        double temperature = START_TEMPERATURE;
+        long lastSync = System.currentTimeMillis();
+        long bestCostAtLastSync = bestCost;
+        int stalledChecks = 0;
+
+        while (true) {
+            for (int step = 0; step < CHECK_INTERVAL; step++) {
+                int index = pickSession();
+                Session session = sessions[index];
+                int oldStart = starts[index];
+                int oldRoom = rooms[index];
+
+                unplace(index);
+                long oldHard = hardCost(session, oldStart, oldRoom);
+                long oldCost = oldHard * HARD_WEIGHT + softCost(session, oldStart, oldRoom);
+
+                // Sample a few destinations and keep the cheapest
+                int newStart = oldStart;
+                int newRoom = oldRoom;
+                long newHard = oldHard;
+                long newCost = Long.MAX_VALUE;
+                for (int k = 0; k < CANDIDATES_PER_MOVE; k++) {
+                    int[] candidates = problem.startsByDuration[session.duration];
+                    int start = candidates[random.nextInt(candidates.length)];
+                    int room = random.nextBoolean() ? oldRoom : randomRoom(session);
+                    if (start == oldStart && room == oldRoom) {
+                        continue;
+                    }
+                    long hard = hardCost(session, start, room);
+                    long cost = hard * HARD_WEIGHT + softCost(session, start, room);
+                    if (cost < newCost) {
+                        newCost = cost;
+                        newStart = start;
+                        newRoom = room;
+                        newHard = hard;
+                    }
+                }
+
+                long delta = newCost - oldCost;
+                if (newCost != Long.MAX_VALUE
+                        && (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature))) {
+                    currentHard += newHard - oldHard;
+                    currentSoft += (newCost - newHard * HARD_WEIGHT) - (oldCost - oldHard * HARD_WEIGHT);
+                    place(index, newStart, newRoom);
+                } else {
+                    place(index, oldStart, oldRoom);
+                }
+
+                if (currentCost() < bestCost) {
+                    saveBest();
+                }
+            }
+            iterations += CHECK_INTERVAL;
+            temperature = Math.max(MIN_TEMPERATURE, temperature * COOLING_RATE);
+
+            if (bestCost == 0) {
+                sharedBest.markSolved();
+            }
+            long now = System.currentTimeMillis();
+            if (now >= deadline || sharedBest.isStopped()) {
+                return;
+            }
+
+            if (now - lastSync >= SYNC_INTERVAL_MILLIS) {
+                lastSync = now;
+                offerBest();
+
+                stalledChecks = bestCost < bestCostAtLastSync ? 0 : stalledChecks + 1;
+                bestCostAtLastSync = bestCost;
+
+                // Restart from the best timetable any worker has found and reheat
+                if (stalledChecks >= STALL_CHECKS_BEFORE_RESTART) {
+                    stalledChecks = 0;
+                    if (!sharedBest.copyInto(starts, rooms, bestCost)) {
+                        System.arraycopy(bestStarts, 0, starts, 0, starts.length);
+                        System.arraycopy(bestRooms, 0, rooms, 0, rooms.length);
+                    }
+                    rebuildUsage();
+                    temperature = START_TEMPERATURE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick a session to move, preferring ones that are part of a clash
+     */
+    private int pickSession() {
+        int count = problem.sessions.length;
+        if (currentHard > 0) {
+            for (int attempt = 0; attempt < 16; attempt++) {
+                int index = random.nextInt(count);
+                if (clashesAtCurrentSlot(index)) {
+                    return index;
+                }
+            }
+        }
+        return random.nextInt(count);
+    }
+
+    private int randomRoom(Session session) {
+        int[] roomOrder = problem.preferredRooms(session);
+        // Mostly stay within the rooms that suit the session type
+        int suitable = problem.suitableRoomCount(session);
+        if (suitable > 0 && random.nextInt(10) < 8) {
+            return roomOrder[random.nextInt(suitable)];
+        }
+        return roomOrder[random.nextInt(roomOrder.length)];
+    }
+
+    private boolean clashesAtCurrentSlot(int index) {
+        Session session = problem.sessions[index];
+        int slots = problem.timeslotCount;
+        int start = starts[index];
+        for (int t = start; t < start + session.duration; t++) {
+            if (roomUse[rooms[index] * slots + t] > 1 || cohortUse[session.cohortIndex * slots + t] > 1) {
+                return true;
+            }
+            if (session.lecturerIndex >= 0 && lecturerUse[session.lecturerIndex * slots + t] > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hard violations a session would add at a slot, assuming it is not currently placed
+     */
+    private long hardCost(Session session, int start, int room) {
+        return hardWithoutRoom(session, start) + roomHard(room, start, session.duration);
+    }
+
+    private long hardWithoutRoom(Session session, int start) {
+        int slots = problem.timeslotCount;
+        long hard = 0;
+        for (int t = start; t < start + session.duration; t++) {
+            hard += cohortUse[session.cohortIndex * slots + t];
+            if (session.lecturerIndex >= 0) {
+                hard += lecturerUse[session.lecturerIndex * slots + t];
+            }
+        }
+        return hard;
+    }
+
+    private long roomHard(int room, int start, int duration) {
+        int base = room * problem.timeslotCount;
+        long hard = 0;
+        for (int t = start; t < start + duration; t++) {
+            hard += roomUse[base + t];
+        }
+        return hard;
+    }
+
+    private long softCost(Session session, int start, int room) {
+        return spreadCost(session, start) + fitCost(session, room);
+    }
+
+    private long spreadCost(Session session, int start) {
+        int day = start / problem.periodsPerDay;
+        return (long) SPREAD_WEIGHT * courseDayUse[session.courseIndex * problem.dayCount + day];
+    }
+
+    private long fitCost(Session session, int room) {
+        boolean lab = problem.labRooms[room];
+        if (session.practical && !lab) {
+            return PRACTICAL_OUTSIDE_LAB_WEIGHT;
+        }
+        if (!session.practical && lab) {
+            return LECTURE_IN_LAB_WEIGHT;
+        }
+        return 0;
+    }
+
+    private void place(int index, int start, int room) {
+        starts[index] = start;
+        rooms[index] = room;
+        updateUsage(problem.sessions[index], start, room, 1);
+    }
+
+    private void unplace(int index) {
+        updateUsage(problem.sessions[index], starts[index], rooms[index], -1);
+    }
+
+    private void updateUsage(Session session, int start, int room, int change) {
+        int slots = problem.timeslotCount;
+        for (int t = start; t < start + session.duration; t++) {
+            roomUse[room * slots + t] += change;
+            cohortUse[session.cohortIndex * slots + t] += change;
+            if (session.lecturerIndex >= 0) {
+                lecturerUse[session.lecturerIndex * slots + t] += change;
+            }
+        }
+        courseDayUse[session.courseIndex * problem.dayCount + start / problem.periodsPerDay] += change;
+    }
+
+    private void resetUsage() {
+        System.arraycopy(problem.fixedRoomUse, 0, roomUse, 0, roomUse.length);
+        System.arraycopy(problem.fixedLecturerUse, 0, lecturerUse, 0, lecturerUse.length);
+        System.arraycopy(problem.fixedCohortUse, 0, cohortUse, 0, cohortUse.length);
+        Arrays.fill(courseDayUse, 0);
+        currentHard = 0;
+        currentSoft = 0;
+    }
+
+    /**
+     * Recompute usage counters and costs after loading a whole timetable
+     */
+    private void rebuildUsage() {
+        resetUsage();
+        for (int index = 0; index < problem.sessions.length; index++) {
+            Session session = problem.sessions[index];
+            currentHard += hardCost(session, starts[index], rooms[index]);
+            currentSoft += softCost(session, starts[index], rooms[index]);
+            place(index, starts[index], rooms[index]);
+        }
+    }
+
+    private long currentCost() {
+        return currentHard * HARD_WEIGHT + currentSoft;
+    }
+
+    private void saveBest() {
+        bestHard = currentHard;
+        bestSoft = currentSoft;
+        bestCost = currentCost();
+        System.arraycopy(starts, 0, bestStarts, 0, starts.length);
+        System.arraycopy(rooms, 0, bestRooms, 0, rooms.length);
+        bestOffered = false;
+    }
+
+    private void offerBest() {
+        if (!bestOffered) {
+            sharedBest.offer(bestCost, bestHard, bestSoft, bestStarts, bestRooms);
+            bestOffered = true;
+        }
+    }
+}
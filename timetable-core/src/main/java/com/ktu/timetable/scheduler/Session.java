@@ -0,0 +1,22 @@
+package com.ktu.timetable.scheduler;
+
+/**
+ * One class meeting the generator has to place. A course with several credit hours is split
+ * into sessions of at most two periods each.
+ */
+class Session {
+
+    final int courseIndex;
+    final int lecturerIndex; // -1 if no lecturer teaches the course
+    final int cohortIndex;
+    final int duration; // in periods
+    final boolean practical;
+
+    Session(int courseIndex, int lecturerIndex, int cohortIndex, int duration, boolean practical) {
+        this.courseIndex = courseIndex;
+        this.lecturerIndex = lecturerIndex;
+        this.cohortIndex = cohortIndex;
+        this.duration = duration;
+        this.practical = practical;
+    }
+}
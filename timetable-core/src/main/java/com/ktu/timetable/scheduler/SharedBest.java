@@ -0,0 +1,78 @@
+package com.ktu.timetable.scheduler;
+
+/**
+ * Best timetable found by any worker, plus the stop flag all workers poll
+ */
+class SharedBest {
+
+    private long cost = Long.MAX_VALUE;
+    private long hardViolations;
+    private long softPenalty;
+    private int[] starts;
+    private int[] rooms;
+    private volatile boolean stopped;
+
+    /**
+     * Record a worker's best timetable if it beats the current one
+     * @return true if it was accepted
+     */
+    synchronized boolean offer(long cost, long hardViolations, long softPenalty, int[] starts, int[] rooms) {
+        if (cost >= this.cost) {
+            return false;
+        }
+        this.cost = cost;
+        this.hardViolations = hardViolations;
+        this.softPenalty = softPenalty;
+        this.starts = starts.clone();
+        this.rooms = rooms.clone();
+        return true;
+    }
+
+    /**
+     * Copy the shared best into a worker's arrays if it is better than the worker's own
+     * @return true if the arrays were overwritten
+     */
+    synchronized boolean copyInto(int[] targetStarts, int[] targetRooms, long workerBestCost) {
+        if (starts == null || cost >= workerBestCost) {
+            return false;
+        }
+        System.arraycopy(starts, 0, targetStarts, 0, starts.length);
+        System.arraycopy(rooms, 0, targetRooms, 0, rooms.length);
+        return true;
+    }
+
+    synchronized long getCost() {
+        return cost;
+    }
+
+    synchronized long getHardViolations() {
+        return hardViolations;
+    }
+
+    synchronized long getSoftPenalty() {
+        return softPenalty;
+    }
+
+    synchronized int[] getStarts() {
+        return starts;
+    }
+
+    synchronized int[] getRooms() {
+        return rooms;
+    }
+
+    /**
+     * Called when a worker finds a timetable with no penalties at all
+     */
+    void markSolved() {
+        stopped = true;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+}
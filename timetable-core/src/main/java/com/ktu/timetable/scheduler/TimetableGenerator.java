@@ -0,0 +1,444 @@
+package com.ktu.timetable.scheduler;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a full weekly timetable from courses, lecturer assignments and classrooms.
+ *
+ * Hard constraints: a lecturer, a classroom, or a department + level + semester group can only
+ * be in one class at a time. Soft constraints: a course's sessions are spread over different
+ * days, practicals go in labs, and lectures keep out of labs.
+ *
+ * Each course gets its credit hours as sessions of at most two periods. Existing entries passed
+ * to {@link #setFixedEntries} are kept as they are and their courses are not scheduled again.
+ * The search runs parallel local-search workers until the time budget runs out or a timetable
+ * with no penalties is found. {@link #generate} blocks, so call it off the main thread.
+ */
+public class TimetableGenerator {
+
+    public static final int DEFAULT_FIRST_DAY = 1; // Monday
+    public static final int DEFAULT_LAST_DAY = 5; // Friday
+    public static final int DEFAULT_START_HOUR = 8;
+    public static final int DEFAULT_END_HOUR = 18;
+    public static final int DEFAULT_PERIOD_MINUTES = 60;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 50000;
+
+    private static final int MAX_SESSION_PERIODS = 2;
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    /**
+     * Receives progress while the generator runs. Called on the thread that called generate().
+     */
+    public interface ProgressListener {
+        /**
+         * @param elapsedMillis Time since generation started
+         * @param moves Moves evaluated so far across all workers
+         * @param hardViolations Clashes in the best timetable so far
+         * @param softPenalty Soft constraint penalty of the best timetable so far
+         */
+        void onProgress(long elapsedMillis, long moves, long hardViolations, long softPenalty);
+    }
+
+    /**
+     * Outcome of a generation run
+     */
+    public static class Result {
+
+        private final List<TimetableEntry> entries;
+        private final long hardViolations;
+        private final long softPenalty;
+        private final List<Course> coursesWithoutLecturer;
+
+        Result(List<TimetableEntry> entries, long hardViolations, long softPenalty,
+               List<Course> coursesWithoutLecturer) {
+            this.entries = entries;
+            this.hardViolations = hardViolations;
+            this.softPenalty = softPenalty;
+            this.coursesWithoutLecturer = coursesWithoutLecturer;
+        }
+
+        /**
+         * @return New timetable entries, not including the fixed ones
+         */
+        public List<TimetableEntry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return Number of clashing pairs left, 0 if the timetable is clash-free
+         */
+        public long getHardViolations() {
+            return hardViolations;
+        }
+
+        public long getSoftPenalty() {
+            return softPenalty;
+        }
+
+        public boolean isClashFree() {
+            return hardViolations == 0;
+        }
+
+        /**
+         * @return Courses no lecturer is assigned to. They are scheduled without a lecturer.
+         */
+        public List<Course> getCoursesWithoutLecturer() {
+            return coursesWithoutLecturer;
+        }
+    }
+
+    private final List<Course> courses;
+    private final List<Lecturer> lecturers;
+    private final List<Classroom> classrooms;
+    private List<TimetableEntry> fixedEntries = new ArrayList<>();
+    private final Set<String> practicalCourseIds = new HashSet<>();
+
+    private int firstDay = DEFAULT_FIRST_DAY;
+    private int lastDay = DEFAULT_LAST_DAY;
+    private int startHour = DEFAULT_START_HOUR;
+    private int endHour = DEFAULT_END_HOUR;
+    private int periodMinutes = DEFAULT_PERIOD_MINUTES;
+    private long timeBudgetMillis = DEFAULT_TIME_BUDGET_MILLIS;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private long seed = System.nanoTime();
+
+    private volatile SharedBest running;
+
+    public TimetableGenerator(List<Course> courses, List<Lecturer> lecturers, List<Classroom> classrooms) {
+        this.courses = courses;
+        this.lecturers = lecturers;
+        this.classrooms = classrooms;
+    }
+
+    /**
+     * @param entries Existing entries to keep. Their slots are treated as taken.
+     */
+    public void setFixedEntries(List<TimetableEntry> entries) {
+        this.fixedEntries = entries != null ? entries : new ArrayList<TimetableEntry>();
+    }
+
+    /**
+     * Mark courses whose first session is a practical that should be held in a lab
+     * @param courseIds Course IDs
+     */
+    public void setPracticalCourseIds(Collection<String> courseIds) {
+        practicalCourseIds.clear();
+        practicalCourseIds.addAll(courseIds);
+    }
+
+    /**
+     * @param firstDay First teaching day (1 = Monday)
+     * @param lastDay Last teaching day (7 = Sunday)
+     */
+    public void setTeachingDays(int firstDay, int lastDay) {
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * @param startHour Hour the first period starts
+     * @param endHour Hour the last period ends
+     * @param periodMinutes Length of one period
+     */
+    public void setTeachingHours(int startHour, int endHour, int periodMinutes) {
+        this.startHour = startHour;
+        this.endHour = endHour;
+        this.periodMinutes = periodMinutes;
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Stop a running generation. generate() returns the best timetable found so far.
+     */
+    public void cancel() {
+        SharedBest shared = running;
+        if (shared != null) {
+            shared.stop();
+        }
+    }
+
+    /**
+     * Run the solver
+     * @param listener Progress listener, may be null
+     * @return Best timetable found
+     */
+    public Result generate(ProgressListener listener) throws InterruptedException {
+        if (classrooms.isEmpty()) {
+            throw new IllegalStateException("At least one classroom is needed to generate a timetable");
+        }
+        int dayCount = lastDay - firstDay + 1;
+        int periodsPerDay = periodMinutes > 0 ? (endHour - startHour) * 60 / periodMinutes : 0;
+        // A day shorter than one period would leave no slot to place a session in
+        if (firstDay < 1 || lastDay > 7 || dayCount < 1 || periodsPerDay < 1) {
+            throw new IllegalStateException("Teaching days and hours are not set up correctly");
+        }
+
+        // Index rooms, lecturers and student groups
+        Map<String, Integer> roomIndex = new HashMap<>();
+        boolean[] labRooms = new boolean[classrooms.size()];
+        for (int i = 0; i < classrooms.size(); i++) {
+            Classroom classroom = classrooms.get(i);
+            roomIndex.put(classroom.getId(), i);
+            labRooms[i] = Classroom.TYPE_LAB.equals(classroom.getType()) || classroom.isHasComputers();
+        }
+
+        Map<String, Integer> lecturerIndex = new HashMap<>();
+        Map<String, List<Integer>> lecturersByCourse = new HashMap<>();
+        for (int i = 0; i < lecturers.size(); i++) {
+            Lecturer lecturer = lecturers.get(i);
+            lecturerIndex.put(lecturer.getId(), i);
+            if (lecturer.getCourseIds() == null) {
+                continue;
+            }
+            for (String courseId : lecturer.getCourseIds()) {
+                List<Integer> teaching = lecturersByCourse.get(courseId);
+                if (teaching == null) {
+                    teaching = new ArrayList<>();
+                    lecturersByCourse.put(courseId, teaching);
+                }
+                teaching.add(i);
+            }
+        }
+        Map<String, Integer> cohortIndex = new HashMap<>();
+
+        // Count usage by the fixed entries
+        Set<String> fixedCourseIds = new HashSet<>();
+        List<int[]> fixedRoomSlots = new ArrayList<>();
+        List<int[]> fixedLecturerSlots = new ArrayList<>();
+        List<int[]> fixedCohortSlots = new ArrayList<>();
+        for (TimetableEntry entry : fixedEntries) {
+            fixedCourseIds.add(entry.getCourseId());
+            int day = entry.getDayOfWeek() - firstDay;
+            int start = TimeUtils.minuteOfDay(entry.getStartTime()) - startHour * 60;
+            int end = TimeUtils.minuteOfDay(entry.getEndTime()) - startHour * 60;
+            if (day < 0 || day >= dayCount || end <= start) {
+                continue;
+            }
+            for (int period = 0; period < periodsPerDay; period++) {
+                // Any overlap with a period makes it taken
+                if (period * periodMinutes < end && (period + 1) * periodMinutes > start) {
+                    int timeslot = day * periodsPerDay + period;
+                    Integer room = roomIndex.get(entry.getClassroomId());
+                    if (room != null) {
+                        fixedRoomSlots.add(new int[]{room, timeslot});
+                    }
+                    Integer lecturer = lecturerIndex.get(entry.getLecturerId());
+                    if (lecturer != null) {
+                        fixedLecturerSlots.add(new int[]{lecturer, timeslot});
+                    }
+                    String cohort = cohortKey(entry.getDepartmentId(), entry.getLevel(), entry.getSemester());
+                    fixedCohortSlots.add(new int[]{indexOf(cohortIndex, cohort), timeslot});
+                }
+            }
+        }
+
+        // Split courses into sessions
+        List<Course> scheduledCourses = new ArrayList<>();
+        List<Session> sessions = new ArrayList<>();
+        List<Course> coursesWithoutLecturer = new ArrayList<>();
+        int[] lecturerLoad = new int[lecturers.size()];
+        int maxPeriods = Math.min(MAX_SESSION_PERIODS, periodsPerDay);
+        int periodsPerHour = Math.max(1, 60 / periodMinutes);
+
+        for (Course course : courses) {
+            if (course.getId() == null || fixedCourseIds.contains(course.getId())) {
+                continue;
+            }
+            int courseIndex = scheduledCourses.size();
+            scheduledCourses.add(course);
+
+            int lecturer = pickLecturer(lecturersByCourse.get(course.getId()), lecturerLoad);
+            if (lecturer < 0) {
+                coursesWithoutLecturer.add(course);
+            }
+            int cohort = indexOf(cohortIndex, cohortKey(course.getDepartmentId(), course.getLevel(), course.getSemester()));
+            boolean practical = practicalCourseIds.contains(course.getId());
+
+            int remaining = Math.max(1, course.getCreditHours()) * periodsPerHour;
+            while (remaining > 0) {
+                int duration = Math.min(maxPeriods, remaining);
+                sessions.add(new Session(courseIndex, lecturer, cohort, duration, practical));
+                if (lecturer >= 0) {
+                    lecturerLoad[lecturer] += duration;
+                }
+                practical = false;
+                remaining -= duration;
+            }
+        }
+
+        int timeslotCount = dayCount * periodsPerDay;
+        Problem problem = new Problem(sessions.toArray(new Session[0]), dayCount, periodsPerDay, labRooms,
+                lecturers.size(), cohortIndex.size(), scheduledCourses.size(),
+                usage(fixedRoomSlots, classrooms.size(), timeslotCount),
+                usage(fixedLecturerSlots, lecturers.size(), timeslotCount),
+                usage(fixedCohortSlots, cohortIndex.size(), timeslotCount));
+
+        SharedBest shared = search(problem, listener);
+
+        return new Result(toEntries(problem, shared, scheduledCourses),
+                shared.getHardViolations(), shared.getSoftPenalty(), coursesWithoutLecturer);
+    }
+
+    private SharedBest search(Problem problem, ProgressListener listener) throws InterruptedException {
+        SharedBest shared = new SharedBest();
+        running = shared;
+
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + timeBudgetMillis;
+        List<SearchWorker> workers = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                SearchWorker worker = new SearchWorker(problem, shared, seed + i, deadline);
+                workers.add(worker);
+                executor.execute(worker);
+            }
+            executor.shutdown();
+
+            while (!executor.awaitTermination(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                reportProgress(listener, shared, workers, startedAt);
+            }
+            reportProgress(listener, shared, workers, startedAt);
+        } catch (InterruptedException e) {
+            shared.stop();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            running = null;
+        }
+        return shared;
+    }
+
+    private static void reportProgress(ProgressListener listener, SharedBest shared,
+                                       List<SearchWorker> workers, long startedAt) {
+        if (listener == null || shared.getStarts() == null) {
+            return;
+        }
+        long moves = 0;
+        for (SearchWorker worker : workers) {
+            moves += worker.getIterations();
+        }
+        listener.onProgress(System.currentTimeMillis() - startedAt, moves,
+                shared.getHardViolations(), shared.getSoftPenalty());
+    }
+
+    private List<TimetableEntry> toEntries(Problem problem, SharedBest shared, List<Course> scheduledCourses) {
+        int[] starts = shared.getStarts();
+        int[] rooms = shared.getRooms();
+        if (starts == null) {
+            return Collections.emptyList();
+        }
+
+        List<TimetableEntry> entries = new ArrayList<>(problem.sessions.length);
+        Date now = new Date();
+        for (int i = 0; i < problem.sessions.length; i++) {
+            Session session = problem.sessions[i];
+            Course course = scheduledCourses.get(session.courseIndex);
+            Classroom classroom = classrooms.get(rooms[i]);
+            int day = starts[i] / problem.periodsPerDay;
+            int period = starts[i] % problem.periodsPerDay;
+            int startMinute = startHour * 60 + period * periodMinutes;
+
+            TimetableEntry entry = new TimetableEntry();
+            entry.setId(UUID.randomUUID().toString());
+            entry.setCourseId(course.getId());
+            entry.setCourseName(course.getName());
+            entry.setCourseCode(course.getCode());
+            if (session.lecturerIndex >= 0) {
+                Lecturer lecturer = lecturers.get(session.lecturerIndex);
+                entry.setLecturerId(lecturer.getId());
+                entry.setLecturerName(lecturer.getFullName());
+            }
+            entry.setClassroomId(classroom.getId());
+            entry.setClassroomName(classroom.getFullName());
+            entry.setDepartmentId(course.getDepartmentId());
+            entry.setDepartmentName(course.getDepartmentName());
+            entry.setLevel(course.getLevel());
+            entry.setSemester(course.getSemester());
+            entry.setDayOfWeek(firstDay + day);
+            entry.setStartTime(timeOfDay(startMinute));
+            entry.setEndTime(timeOfDay(startMinute + session.duration * periodMinutes));
+            entry.setType(session.practical ? TimetableEntry.TYPE_PRACTICAL : TimetableEntry.TYPE_LECTURE);
+            entry.setLastModified(now);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Pick the least loaded lecturer assigned to a course
+     * @return Lecturer index, or -1 if nobody teaches the course
+     */
+    private static int pickLecturer(List<Integer> candidates, int[] lecturerLoad) {
+        if (candidates == null || candidates.isEmpty()) {
+            return -1;
+        }
+        int best = candidates.get(0);
+        for (int candidate : candidates) {
+            if (lecturerLoad[candidate] < lecturerLoad[best]) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static String cohortKey(String departmentId, String level, String semester) {
+        return departmentId + "|" + level + "|" + semester;
+    }
+
+    private static int indexOf(Map<String, Integer> index, String key) {
+        Integer value = index.get(key);
+        if (value == null) {
+            value = index.size();
+            index.put(key, value);
+        }
+        return value;
+    }
+
+    private static int[] usage(List<int[]> slots, int keyCount, int timeslotCount) {
+        int[] usage = new int[keyCount * timeslotCount];
+        for (int[] slot : slots) {
+            usage[slot[0] * timeslotCount + slot[1]]++;
+        }
+        return usage;
+    }
+
+    private static Date timeOfDay(int minuteOfDay) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        calendar.set(Calendar.MINUTE, minuteOfDay % 60);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,443 @@
+package com.ktu.timetable.utils;
+
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of timetable entries used for clash detection.
+ *
+ * Entries are bucketed per classroom, per lecturer and per cohort (department + level +
+ * semester), and then by day of week. Each bucket is an interval list sorted by start time, so
+ * checking a slot is a hash lookup plus a binary search instead of a scan over the whole
+ * timetable.
+ *
+ * Cohort clashes involving an elective course are soft: only students taking that elective
+ * are affected, so they are reported but should not block scheduling.
+ *
+ * Times are compared as minutes of the day. Intervals are half-open, so a class ending at
+ * 10:00 does not clash with one starting at 10:00 in the same room.
+ */
+public class ConflictIndex {
+
+    public static final String CONFLICT_LECTURER = "Lecturer";
+    public static final String CONFLICT_CLASSROOM = "Classroom";
+    public static final String CONFLICT_COHORT = "Department/Level";
+
+    private static final int DAYS_IN_WEEK = 7;
+
+    private final Map<String, IntervalList[]> classroomIndex = new HashMap<>();
+    private final Map<String, IntervalList[]> lecturerIndex = new HashMap<>();
+    private final Map<String, IntervalList[]> cohortIndex = new HashMap<>();
+    private final Map<String, TimetableEntry> entriesById = new HashMap<>();
+    private final Set<String> electiveCourseIds = new HashSet<>();
+
+    /**
+     * A clash between a candidate slot and an existing timetable entry
+     */
+    public static class Conflict {
+
+        private final String type;
+        private final TimetableEntry entry;
+        private final boolean soft;
+
+        public Conflict(String type, TimetableEntry entry) {
+            this(type, entry, false);
+        }
+
+        public Conflict(String type, TimetableEntry entry, boolean soft) {
+            this.type = type;
+            this.entry = entry;
+            this.soft = soft;
+        }
+
+        /**
+         * @return One of the CONFLICT_* constants
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The existing entry that blocks the slot
+         */
+        public TimetableEntry getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return true for a cohort clash involving an elective, which only affects students
+         * taking it
+         */
+        public boolean isSoft() {
+            return soft;
+        }
+    }
+
+    /**
+     * Set which courses are electives, for telling soft cohort clashes from hard ones. Can be
+     * called before or after entries are added.
+     * @param courses Courses to take the elective flag from
+     */
+    public void setElectiveCourses(Collection<Course> courses) {
+        electiveCourseIds.clear();
+        for (Course course : courses) {
+            if (course.isElective() && course.getId() != null) {
+                electiveCourseIds.add(course.getId());
+            }
+        }
+    }
+
+    /**
+     * @param conflicts Conflicts found for a slot
+     * @return true if any of them is hard
+     */
+    public static boolean hasHardConflict(List<Conflict> conflicts) {
+        for (Conflict conflict : conflicts) {
+            if (!conflict.isSoft()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clear the index and rebuild it from a list of entries
+     * @param entries Timetable entries to index
+     */
+    public void build(Collection<TimetableEntry> entries) {
+        classroomIndex.clear();
+        lecturerIndex.clear();
+        cohortIndex.clear();
+        entriesById.clear();
+
+        for (TimetableEntry entry : entries) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Add an entry to the index, replacing any previous version with the same ID
+     * @param entry Timetable entry to add
+     */
+    public void add(TimetableEntry entry) {
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.getId() != null) {
+            remove(entry.getId());
+            entriesById.put(entry.getId(), entry);
+        }
+
+        int day = entry.getDayOfWeek();
+        int start = TimeUtils.minuteOfDay(entry.getStartTime());
+        int end = TimeUtils.minuteOfDay(entry.getEndTime());
+        if (!isValidSlot(day, start, end)) {
+            return;
+        }
+
+        addToBucket(classroomIndex, entry.getClassroomId(), day, start, end, entry);
+        addToBucket(lecturerIndex, entry.getLecturerId(), day, start, end, entry);
+        addToBucket(cohortIndex, cohortKey(entry), day, start, end, entry);
+    }
+
+    /**
+     * Remove an entry from the index
+     * @param entryId ID of the entry to remove
+     * @return true if the entry was indexed, false otherwise
+     */
+    public boolean remove(String entryId) {
+        TimetableEntry entry = entriesById.remove(entryId);
+        if (entry == null) {
+            return false;
+        }
+
+        int day = entry.getDayOfWeek();
+        removeFromBucket(classroomIndex, entry.getClassroomId(), day, entryId);
+        removeFromBucket(lecturerIndex, entry.getLecturerId(), day, entryId);
+        removeFromBucket(cohortIndex, cohortKey(entry), day, entryId);
+        return true;
+    }
+
+    /**
+     * @return Number of entries in the index
+     */
+    public int size() {
+        return entriesById.size();
+    }
+
+    /**
+     * Find lecturer, classroom and cohort clashes for a candidate entry. The candidate's own ID
+     * is ignored, so an entry being edited does not clash with its previous version. Cohort
+     * clashes are only checked if the candidate has a department and level.
+     * @param candidate Entry describing the slot to check
+     * @return Clashing entries, empty if the slot is free
+     */
+    public List<Conflict> findConflicts(TimetableEntry candidate) {
+        List<Conflict> conflicts = new ArrayList<>();
+        int day = candidate.getDayOfWeek();
+        int start = TimeUtils.minuteOfDay(candidate.getStartTime());
+        int end = TimeUtils.minuteOfDay(candidate.getEndTime());
+        if (!isValidSlot(day, start, end)) {
+            return conflicts;
+        }
+
+        collect(lecturerIndex, candidate.getLecturerId(), day, start, end,
+                candidate.getId(), CONFLICT_LECTURER, conflicts);
+        collect(classroomIndex, candidate.getClassroomId(), day, start, end,
+                candidate.getId(), CONFLICT_CLASSROOM, conflicts);
+
+        IntervalList cohort = bucketFor(cohortIndex, cohortKey(candidate), day, false);
+        if (cohort != null) {
+            boolean electiveCandidate = isElective(candidate);
+            List<TimetableEntry> hits = new ArrayList<>();
+            cohort.findOverlaps(start, end, hits);
+            for (TimetableEntry hit : hits) {
+                if (candidate.getId() == null || !candidate.getId().equals(hit.getId())) {
+                    conflicts.add(new Conflict(CONFLICT_COHORT, hit, electiveCandidate || isElective(hit)));
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Find entries taught by a lecturer that overlap a slot
+     * @param lecturerId Lecturer ID
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start of the slot in minutes since midnight
+     * @param endMinute End of the slot in minutes since midnight
+     * @return Overlapping entries
+     */
+    public List<TimetableEntry> findLecturerOverlaps(String lecturerId, int dayOfWeek, int startMinute, int endMinute) {
+        return overlaps(lecturerIndex, lecturerId, dayOfWeek, startMinute, endMinute);
+    }
+
+    /**
+     * Find entries held in a classroom that overlap a slot
+     * @param classroomId Classroom ID
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start of the slot in minutes since midnight
+     * @param endMinute End of the slot in minutes since midnight
+     * @return Overlapping entries
+     */
+    public List<TimetableEntry> findClassroomOverlaps(String classroomId, int dayOfWeek, int startMinute, int endMinute) {
+        return overlaps(classroomIndex, classroomId, dayOfWeek, startMinute, endMinute);
+    }
+
+    /**
+     * Find entries for a department, level and semester that overlap a slot
+     * @param departmentId Department ID
+     * @param level Student level
+     * @param semester Semester
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start of the slot in minutes since midnight
+     * @param endMinute End of the slot in minutes since midnight
+     * @return Overlapping entries
+     */
+    public List<TimetableEntry> findCohortOverlaps(String departmentId, String level, String semester,
+                                                   int dayOfWeek, int startMinute, int endMinute) {
+        return overlaps(cohortIndex, cohortKey(departmentId, level, semester), dayOfWeek, startMinute, endMinute);
+    }
+
+    private List<TimetableEntry> overlaps(Map<String, IntervalList[]> index, String key,
+                                          int day, int start, int end) {
+        List<TimetableEntry> result = new ArrayList<>();
+        if (!isValidSlot(day, start, end)) {
+            return result;
+        }
+        IntervalList bucket = bucketFor(index, key, day, false);
+        if (bucket != null) {
+            bucket.findOverlaps(start, end, result);
+        }
+        return result;
+    }
+
+    private void collect(Map<String, IntervalList[]> index, String key, int day, int start, int end,
+                         String ignoreId, String type, List<Conflict> out) {
+        IntervalList bucket = bucketFor(index, key, day, false);
+        if (bucket == null) {
+            return;
+        }
+        List<TimetableEntry> hits = new ArrayList<>();
+        bucket.findOverlaps(start, end, hits);
+        for (TimetableEntry hit : hits) {
+            if (ignoreId == null || !ignoreId.equals(hit.getId())) {
+                out.add(new Conflict(type, hit));
+            }
+        }
+    }
+
+    private void addToBucket(Map<String, IntervalList[]> index, String key, int day, int start, int end,
+                             TimetableEntry entry) {
+        IntervalList bucket = bucketFor(index, key, day, true);
+        if (bucket != null) {
+            bucket.add(start, end, entry);
+        }
+    }
+
+    private void removeFromBucket(Map<String, IntervalList[]> index, String key, int day, String entryId) {
+        IntervalList bucket = bucketFor(index, key, day, false);
+        if (bucket != null) {
+            bucket.remove(entryId);
+        }
+    }
+
+    private static IntervalList bucketFor(Map<String, IntervalList[]> index, String key, int day, boolean create) {
+        if (key == null || day < 1 || day > DAYS_IN_WEEK) {
+            return null;
+        }
+        IntervalList[] days = index.get(key);
+        if (days == null) {
+            if (!create) {
+                return null;
+            }
+            days = new IntervalList[DAYS_IN_WEEK + 1];
+            index.put(key, days);
+        }
+        if (days[day] == null && create) {
+            days[day] = new IntervalList();
+        }
+        return days[day];
+    }
+
+    private boolean isElective(TimetableEntry entry) {
+        return entry.getCourseId() != null && electiveCourseIds.contains(entry.getCourseId());
+    }
+
+    private static String cohortKey(TimetableEntry entry) {
+        return cohortKey(entry.getDepartmentId(), entry.getLevel(), entry.getSemester());
+    }
+
+    /**
+     * @return Key of the students sharing a timetable, or null without a department and level.
+     * Entries without a semester share one key per department and level.
+     */
+    static String cohortKey(String departmentId, String level, String semester) {
+        if (departmentId == null || level == null) {
+            return null;
+        }
+        return departmentId + "|" + level + "|" + (semester != null ? semester : "");
+    }
+
+    private static boolean isValidSlot(int day, int start, int end) {
+        return day >= 1 && day <= DAYS_IN_WEEK && start >= 0 && end > start;
+    }
+
+    /**
+     * Intervals for one key on one day, sorted by start minute. Alongside each interval we
+     * keep the maximum end minute of all intervals up to that position, which lets an overlap
+     * query stop walking backwards as soon as nothing earlier can reach the slot.
+     */
+    private static class IntervalList {
+
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int[] maxEnds = new int[4];
+        private TimetableEntry[] entries = new TimetableEntry[4];
+        private int size;
+
+        void add(int start, int end, TimetableEntry entry) {
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                maxEnds = Arrays.copyOf(maxEnds, capacity);
+                entries = Arrays.copyOf(entries, capacity);
+            }
+
+            // Insert after any intervals with the same start to keep insertion order stable
+            int position = upperBound(start);
+            int moved = size - position;
+            if (moved > 0) {
+                System.arraycopy(starts, position, starts, position + 1, moved);
+                System.arraycopy(ends, position, ends, position + 1, moved);
+                System.arraycopy(entries, position, entries, position + 1, moved);
+            }
+            starts[position] = start;
+            ends[position] = end;
+            entries[position] = entry;
+            size++;
+            refreshMaxEnds(position);
+        }
+
+        void remove(String entryId) {
+            for (int i = 0; i < size; i++) {
+                if (entryId.equals(entries[i].getId())) {
+                    int moved = size - i - 1;
+                    if (moved > 0) {
+                        System.arraycopy(starts, i + 1, starts, i, moved);
+                        System.arraycopy(ends, i + 1, ends, i, moved);
+                        System.arraycopy(entries, i + 1, entries, i, moved);
+                    }
+                    size--;
+                    entries[size] = null;
+                    refreshMaxEnds(i);
+                    return;
+                }
+            }
+        }
+
+        void findOverlaps(int start, int end, List<TimetableEntry> out) {
+            // Only intervals starting before the end of the slot can overlap it
+            int i = lowerBound(end) - 1;
+            int firstHit = out.size();
+            while (i >= 0 && maxEnds[i] > start) {
+                if (ends[i] > start) {
+                    out.add(entries[i]);
+                }
+                i--;
+            }
+            // Report hits in start-time order
+            Collections.reverse(out.subList(firstHit, out.size()));
+        }
+
+        private void refreshMaxEnds(int from) {
+            int max = from > 0 ? maxEnds[from - 1] : Integer.MIN_VALUE;
+            for (int i = from; i < size; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        /** First position whose start is >= value */
+        private int lowerBound(int value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** First position whose start is > value */
+        private int upperBound(int value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
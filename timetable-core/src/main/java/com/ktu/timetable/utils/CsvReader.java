@@ -0,0 +1,151 @@
+package com.ktu.timetable.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated values one record at a time, so a large file never has to be held in
+ * memory. Fields may be quoted with double quotes, in which case they can contain commas, line
+ * breaks and doubled quotes. Lines may end in \n, \r\n or \r, blank lines are skipped and a
+ * byte order mark at the start of the file is ignored.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int recordLine;
+    private boolean started;
+
+    /**
+     * @param reader Source of the text; closed by {@link #close()}
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record
+     * @return Fields of the record, or null at the end of the input
+     * @throws IOException If the input cannot be read
+     */
+    public String[] readRecord() throws IOException {
+        if (!started) {
+            started = true;
+            if (peek() == '\uFEFF') {
+                read();
+            }
+        }
+
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean inQuotes = false;
+        recordLine = line;
+
+        int c;
+        while ((c = read()) != -1) {
+            if (inQuotes) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"':
+                    if (field.length() == 0 && !quoted) {
+                        quoted = true;
+                        inQuotes = true;
+                    } else {
+                        // Stray quote inside an unquoted field; keep it as text
+                        field.append('"');
+                    }
+                    break;
+                case ',':
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    quoted = false;
+                    break;
+                case '\r':
+                    if (peek() == '\n') {
+                        read();
+                    }
+                    // Fall through
+                case '\n':
+                    line++;
+                    if (fields.isEmpty() && field.length() == 0 && !quoted) {
+                        // Blank line
+                        recordLine = line;
+                        break;
+                    }
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                default:
+                    field.append((char) c);
+                    break;
+            }
+        }
+
+        if (fields.isEmpty() && field.length() == 0 && !quoted) {
+            return null;
+        }
+        // Last record without a line break, or an unterminated quote running to the end
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * @return Line of the input on which the last record read started, counting from 1
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+}
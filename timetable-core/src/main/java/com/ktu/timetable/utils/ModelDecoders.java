@@ -0,0 +1,252 @@
+package com.ktu.timetable.utils;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Department;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.models.User;
+
+/**
+ * Row decoders for the tables of the local database, one per model. Column names match the
+ * schema created by DatabaseHelper in the app.
+ */
+public final class ModelDecoders {
+
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_NAME = "name";
+
+    private ModelDecoders() {
+    }
+
+    /**
+     * Decodes rows of the users table
+     */
+    public static final class UserDecoder extends RowDecoder<User> {
+        private int id, email, displayName, role, departmentId, level, staffId;
+
+        @Override
+        protected void resolve(Rows rows) {
+            id = rows.getColumnIndex(COLUMN_ID);
+            email = rows.getColumnIndex("email");
+            displayName = rows.getColumnIndex("display_name");
+            role = rows.getColumnIndex("role");
+            departmentId = rows.getColumnIndex("department_id");
+            level = rows.getColumnIndex("level");
+            staffId = rows.getColumnIndex("staff_id");
+        }
+
+        @Override
+        protected User decodeRow(Rows rows) {
+            User user = new User();
+            user.setUid(getString(rows, id));
+            user.setEmail(getString(rows, email));
+            user.setDisplayName(getString(rows, displayName));
+            user.setRole(getString(rows, role));
+            user.setDepartmentId(getString(rows, departmentId));
+            user.setLevel(getString(rows, level));
+            user.setStaffId(getString(rows, staffId));
+            return user;
+        }
+    }
+
+    /**
+     * Decodes rows of the departments table
+     */
+    public static final class DepartmentDecoder extends RowDecoder<Department> {
+        private int id, name, code, facultyId, facultyName, hodId;
+
+        @Override
+        protected void resolve(Rows rows) {
+            id = rows.getColumnIndex(COLUMN_ID);
+            name = rows.getColumnIndex(COLUMN_NAME);
+            code = rows.getColumnIndex("code");
+            facultyId = rows.getColumnIndex("faculty_id");
+            facultyName = rows.getColumnIndex("faculty_name");
+            hodId = rows.getColumnIndex("hod_id");
+        }
+
+        @Override
+        protected Department decodeRow(Rows rows) {
+            Department department = new Department();
+            department.setId(getString(rows, id));
+            department.setName(getString(rows, name));
+            department.setCode(getString(rows, code));
+            department.setFacultyId(getString(rows, facultyId));
+            department.setFacultyName(getString(rows, facultyName));
+            department.setHodId(getString(rows, hodId));
+            return department;
+        }
+    }
+
+    /**
+     * Decodes rows of the courses table
+     */
+    public static final class CourseDecoder extends RowDecoder<Course> {
+        private int id, code, name, departmentId, departmentName, creditHours, level, semester, elective, practical, description;
+
+        @Override
+        protected void resolve(Rows rows) {
+            id = rows.getColumnIndex(COLUMN_ID);
+            code = rows.getColumnIndex("code");
+            name = rows.getColumnIndex(COLUMN_NAME);
+            departmentId = rows.getColumnIndex("department_id");
+            departmentName = rows.getColumnIndex("department_name");
+            creditHours = rows.getColumnIndex("credit_hours");
+            level = rows.getColumnIndex("level");
+            semester = rows.getColumnIndex("semester");
+            elective = rows.getColumnIndex("is_elective");
+            practical = rows.getColumnIndex("is_practical");
+            description = rows.getColumnIndex("description");
+        }
+
+        @Override
+        protected Course decodeRow(Rows rows) {
+            Course course = new Course();
+            course.setId(getString(rows, id));
+            course.setCode(getString(rows, code));
+            course.setName(getString(rows, name));
+            course.setDepartmentId(getString(rows, departmentId));
+            course.setDepartmentName(getString(rows, departmentName));
+            course.setCreditHours(getInt(rows, creditHours));
+            course.setLevel(getString(rows, level));
+            course.setSemester(getString(rows, semester));
+            course.setElective(getBoolean(rows, elective));
+            course.setPractical(getBoolean(rows, practical));
+            course.setDescription(getString(rows, description));
+            return course;
+        }
+    }
+
+    /**
+     * Decodes rows of the lecturers table
+     */
+    public static final class LecturerDecoder extends RowDecoder<Lecturer> {
+        private int id, userId, staffId, title, firstName, lastName, departmentId, departmentName, email, phoneNumber;
+
+        @Override
+        protected void resolve(Rows rows) {
+            id = rows.getColumnIndex(COLUMN_ID);
+            userId = rows.getColumnIndex("user_id");
+            staffId = rows.getColumnIndex("staff_id");
+            title = rows.getColumnIndex("title");
+            firstName = rows.getColumnIndex("first_name");
+            lastName = rows.getColumnIndex("last_name");
+            departmentId = rows.getColumnIndex("department_id");
+            departmentName = rows.getColumnIndex("department_name");
+            email = rows.getColumnIndex("email");
+            phoneNumber = rows.getColumnIndex("phone_number");
+        }
+
+        @Override
+        protected Lecturer decodeRow(Rows rows) {
+            Lecturer lecturer = new Lecturer();
+            lecturer.setId(getString(rows, id));
+            lecturer.setUserId(getString(rows, userId));
+            lecturer.setStaffId(getString(rows, staffId));
+            lecturer.setTitle(getString(rows, title));
+            lecturer.setFirstName(getString(rows, firstName));
+            lecturer.setLastName(getString(rows, lastName));
+            lecturer.setDepartmentId(getString(rows, departmentId));
+            lecturer.setDepartmentName(getString(rows, departmentName));
+            lecturer.setEmail(getString(rows, email));
+            lecturer.setPhoneNumber(getString(rows, phoneNumber));
+            return lecturer;
+        }
+    }
+
+    /**
+     * Decodes rows of the classrooms table
+     */
+    public static final class ClassroomDecoder extends RowDecoder<Classroom> {
+        private int id, name, buildingName, floor, roomNumber, capacity, type, hasProjector, hasAirCondition,
+                hasComputers, notes;
+
+        @Override
+        protected void resolve(Rows rows) {
+            id = rows.getColumnIndex(COLUMN_ID);
+            name = rows.getColumnIndex(COLUMN_NAME);
+            buildingName = rows.getColumnIndex("building_name");
+            floor = rows.getColumnIndex("floor");
+            roomNumber = rows.getColumnIndex("room_number");
+            capacity = rows.getColumnIndex("capacity");
+            type = rows.getColumnIndex("type");
+            hasProjector = rows.getColumnIndex("has_projector");
+            hasAirCondition = rows.getColumnIndex("has_air_condition");
+            hasComputers = rows.getColumnIndex("has_computers");
+            notes = rows.getColumnIndex("notes");
+        }
+
+        @Override
+        protected Classroom decodeRow(Rows rows) {
+            Classroom classroom = new Classroom();
+            classroom.setId(getString(rows, id));
+            classroom.setName(getString(rows, name));
+            classroom.setBuildingName(getString(rows, buildingName));
+            classroom.setFloor(getString(rows, floor));
+            classroom.setRoomNumber(getString(rows, roomNumber));
+            classroom.setCapacity(getInt(rows, capacity));
+            classroom.setType(getString(rows, type));
+            classroom.setHasProjector(getBoolean(rows, hasProjector));
+            classroom.setHasAirCondition(getBoolean(rows, hasAirCondition));
+            classroom.setHasComputers(getBoolean(rows, hasComputers));
+            classroom.setNotes(getString(rows, notes));
+            return classroom;
+        }
+    }
+
+    /**
+     * Decodes rows of the timetable table
+     */
+    public static final class TimetableEntryDecoder extends RowDecoder<TimetableEntry> {
+        private int id, courseId, courseName, courseCode, lecturerId, lecturerName, classroomId, classroomName,
+                departmentId, departmentName, level, semester, dayOfWeek, startTime, endTime, type,
+                lastModified, lastModifiedBy;
+
+        @Override
+        protected void resolve(Rows rows) {
+            id = rows.getColumnIndex(COLUMN_ID);
+            courseId = rows.getColumnIndex("course_id");
+            courseName = rows.getColumnIndex("course_name");
+            courseCode = rows.getColumnIndex("course_code");
+            lecturerId = rows.getColumnIndex("lecturer_id");
+            lecturerName = rows.getColumnIndex("lecturer_name");
+            classroomId = rows.getColumnIndex("classroom_id");
+            classroomName = rows.getColumnIndex("classroom_name");
+            departmentId = rows.getColumnIndex("department_id");
+            departmentName = rows.getColumnIndex("department_name");
+            level = rows.getColumnIndex("level");
+            semester = rows.getColumnIndex("semester");
+            dayOfWeek = rows.getColumnIndex("day_of_week");
+            startTime = rows.getColumnIndex("start_time");
+            endTime = rows.getColumnIndex("end_time");
+            type = rows.getColumnIndex("type");
+            lastModified = rows.getColumnIndex("last_modified");
+            lastModifiedBy = rows.getColumnIndex("last_modified_by");
+        }
+
+        @Override
+        protected TimetableEntry decodeRow(Rows rows) {
+            TimetableEntry entry = new TimetableEntry();
+            entry.setId(getString(rows, id));
+            entry.setCourseId(getString(rows, courseId));
+            entry.setCourseName(getString(rows, courseName));
+            entry.setCourseCode(getString(rows, courseCode));
+            entry.setLecturerId(getString(rows, lecturerId));
+            entry.setLecturerName(getString(rows, lecturerName));
+            entry.setClassroomId(getString(rows, classroomId));
+            entry.setClassroomName(getString(rows, classroomName));
+            entry.setDepartmentId(getString(rows, departmentId));
+            entry.setDepartmentName(getString(rows, departmentName));
+            entry.setLevel(getString(rows, level));
+            entry.setSemester(getString(rows, semester));
+            entry.setDayOfWeek(getInt(rows, dayOfWeek));
+            entry.setStartTime(getDate(rows, startTime));
+            entry.setEndTime(getDate(rows, endTime));
+            entry.setType(getString(rows, type));
+            entry.setLastModified(getDate(rows, lastModified));
+            entry.setLastModifiedBy(getString(rows, lastModifiedBy));
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.ktu.timetable.utils;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weekly free/busy bitsets for every classroom and lecturer, built from timetable entries.
+ *
+ * Used by the room finder and the timetable generator. A free room query tests only the words
+ * of each candidate room's bitset that cover the requested range.
+ */
+public class OccupancyIndex {
+
+    private final Map<String, WeekOccupancy> classroomOccupancy = new HashMap<>();
+    private final Map<String, WeekOccupancy> lecturerOccupancy = new HashMap<>();
+    private final Map<String, List<TimetableEntry>> classroomEntries = new HashMap<>();
+    private final Map<String, List<TimetableEntry>> lecturerEntries = new HashMap<>();
+    private final Map<String, TimetableEntry> entriesById = new HashMap<>();
+
+    /**
+     * Clear the index and rebuild it from a list of entries
+     * @param entries Timetable entries to index
+     */
+    public void build(Collection<TimetableEntry> entries) {
+        classroomOccupancy.clear();
+        lecturerOccupancy.clear();
+        classroomEntries.clear();
+        lecturerEntries.clear();
+        entriesById.clear();
+
+        for (TimetableEntry entry : entries) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Mark an entry's slot as busy for its classroom and lecturer, replacing any previous
+     * version with the same ID
+     * @param entry Timetable entry to add
+     */
+    public void add(TimetableEntry entry) {
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.getId() != null) {
+            remove(entry.getId());
+            entriesById.put(entry.getId(), entry);
+        }
+
+        markEntry(classroomOccupancy, classroomEntries, entry.getClassroomId(), entry);
+        markEntry(lecturerOccupancy, lecturerEntries, entry.getLecturerId(), entry);
+    }
+
+    /**
+     * Free an entry's slot
+     * @param entryId ID of the entry to remove
+     * @return true if the entry was indexed, false otherwise
+     */
+    public boolean remove(String entryId) {
+        TimetableEntry entry = entriesById.remove(entryId);
+        if (entry == null) {
+            return false;
+        }
+
+        unmarkEntry(classroomOccupancy, classroomEntries, entry.getClassroomId(), entry);
+        unmarkEntry(lecturerOccupancy, lecturerEntries, entry.getLecturerId(), entry);
+        return true;
+    }
+
+    /**
+     * @param classroomId Classroom ID
+     * @return Busy slots for the classroom, or null if it has no classes
+     */
+    public WeekOccupancy getClassroomOccupancy(String classroomId) {
+        return classroomOccupancy.get(classroomId);
+    }
+
+    /**
+     * @param lecturerId Lecturer ID
+     * @return Busy slots for the lecturer, or null if they have no classes
+     */
+    public WeekOccupancy getLecturerOccupancy(String lecturerId) {
+        return lecturerOccupancy.get(lecturerId);
+    }
+
+    /**
+     * Check whether a classroom is free for a whole slot
+     * @param classroomId Classroom ID
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @return true if the classroom has no class in the range
+     */
+    public boolean isClassroomFree(String classroomId, int dayOfWeek, int startMinute, int endMinute) {
+        return isFree(classroomOccupancy.get(classroomId), dayOfWeek, startMinute, endMinute);
+    }
+
+    /**
+     * Check whether a lecturer is free for a whole slot
+     * @param lecturerId Lecturer ID
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @return true if the lecturer has no class in the range
+     */
+    public boolean isLecturerFree(String lecturerId, int dayOfWeek, int startMinute, int endMinute) {
+        return isFree(lecturerOccupancy.get(lecturerId), dayOfWeek, startMinute, endMinute);
+    }
+
+    /**
+     * Find classrooms that are free for a whole slot and large enough
+     * @param classrooms Classrooms to search
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @param minCapacity Minimum number of seats, 0 for any
+     * @return Free classrooms in the order given
+     */
+    public List<Classroom> findFreeClassrooms(Collection<Classroom> classrooms, int dayOfWeek,
+                                              int startMinute, int endMinute, int minCapacity) {
+        List<Classroom> freeClassrooms = new ArrayList<>();
+        if (!WeekOccupancy.isValidRange(dayOfWeek, startMinute, endMinute)) {
+            return freeClassrooms;
+        }
+
+        for (Classroom classroom : classrooms) {
+            if (classroom.getCapacity() < minCapacity) {
+                continue;
+            }
+            WeekOccupancy busy = classroomOccupancy.get(classroom.getId());
+            if (busy == null || busy.isFree(dayOfWeek, startMinute, endMinute)) {
+                freeClassrooms.add(classroom);
+            }
+        }
+        return freeClassrooms;
+    }
+
+    private static boolean isFree(WeekOccupancy occupancy, int dayOfWeek, int startMinute, int endMinute) {
+        if (!WeekOccupancy.isValidRange(dayOfWeek, startMinute, endMinute)) {
+            return false;
+        }
+        return occupancy == null || occupancy.isFree(dayOfWeek, startMinute, endMinute);
+    }
+
+    private static void markEntry(Map<String, WeekOccupancy> occupancies, Map<String, List<TimetableEntry>> entries,
+                                  String key, TimetableEntry entry) {
+        if (key == null) {
+            return;
+        }
+
+        WeekOccupancy occupancy = occupancies.get(key);
+        if (occupancy == null) {
+            occupancy = new WeekOccupancy();
+            occupancies.put(key, occupancy);
+        }
+        mark(occupancy, entry);
+
+        List<TimetableEntry> keyEntries = entries.get(key);
+        if (keyEntries == null) {
+            keyEntries = new ArrayList<>();
+            entries.put(key, keyEntries);
+        }
+        keyEntries.add(entry);
+    }
+
+    private static void unmarkEntry(Map<String, WeekOccupancy> occupancies, Map<String, List<TimetableEntry>> entries,
+                                    String key, TimetableEntry entry) {
+        if (key == null) {
+            return;
+        }
+
+        List<TimetableEntry> keyEntries = entries.get(key);
+        WeekOccupancy occupancy = occupancies.get(key);
+        if (keyEntries == null || occupancy == null) {
+            return;
+        }
+        keyEntries.remove(entry);
+
+        // Free the slot, then re-mark any remaining entries that share part of it
+        int day = entry.getDayOfWeek();
+        occupancy.clear(day, TimeUtils.minuteOfDay(entry.getStartTime()), TimeUtils.minuteOfDay(entry.getEndTime()));
+        for (TimetableEntry other : keyEntries) {
+            if (other.getDayOfWeek() == day) {
+                mark(occupancy, other);
+            }
+        }
+    }
+
+    private static void mark(WeekOccupancy occupancy, TimetableEntry entry) {
+        occupancy.mark(entry.getDayOfWeek(),
+                TimeUtils.minuteOfDay(entry.getStartTime()),
+                TimeUtils.minuteOfDay(entry.getEndTime()));
+    }
+}
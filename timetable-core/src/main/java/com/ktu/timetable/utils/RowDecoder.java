@@ -0,0 +1,89 @@
+package com.ktu.timetable.utils;
+
+import java.util.Date;
+
+/**
+ * Turns query rows into model objects.
+ *
+ * Column indices are looked up once per query in {@link #resolve(Rows)} instead of once per
+ * field per row. Columns missing from the results, because the query used a projection, resolve
+ * to -1 and decode as null, 0 or false. A decoder remembers the indices for one query at a
+ * time, so use a new instance per query.
+ * @param <T> Model type
+ */
+public abstract class RowDecoder<T> {
+
+    /**
+     * Receives decoded rows one at a time
+     * @param <T> Model type
+     */
+    public interface RowSink<T> {
+        void accept(T item);
+    }
+
+    /**
+     * Look up the indices of the columns this decoder reads
+     * @param rows Rows about to be decoded
+     */
+    protected abstract void resolve(Rows rows);
+
+    /**
+     * Build a model object from the current row
+     * @param rows Rows positioned on a row
+     * @return Decoded object
+     */
+    protected abstract T decodeRow(Rows rows);
+
+    /**
+     * Decode every remaining row into a sink. The rows are closed afterwards.
+     * @param rows Rows to decode
+     * @param sink Receives each decoded object
+     * @return Number of rows decoded
+     */
+    public int decodeAll(Rows rows, RowSink<? super T> sink) {
+        int count = 0;
+        try {
+            resolve(rows);
+            while (rows.moveToNext()) {
+                sink.accept(decodeRow(rows));
+                count++;
+            }
+        } finally {
+            rows.close();
+        }
+        return count;
+    }
+
+    /**
+     * Decode the first row. The rows are closed afterwards.
+     * @param rows Rows to decode
+     * @return Decoded object or null if there are no rows
+     */
+    public T decodeFirst(Rows rows) {
+        try {
+            if (!rows.moveToFirst()) {
+                return null;
+            }
+            resolve(rows);
+            return decodeRow(rows);
+        } finally {
+            rows.close();
+        }
+    }
+
+    protected static String getString(Rows rows, int index) {
+        return index < 0 ? null : rows.getString(index);
+    }
+
+    protected static int getInt(Rows rows, int index) {
+        return index < 0 ? 0 : rows.getInt(index);
+    }
+
+    protected static boolean getBoolean(Rows rows, int index) {
+        return index >= 0 && rows.getInt(index) == 1;
+    }
+
+    protected static Date getDate(Rows rows, int index) {
+        return index < 0 || rows.isNull(index) ? null : new Date(rows.getLong(index));
+    }
+}
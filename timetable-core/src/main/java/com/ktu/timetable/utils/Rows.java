@@ -0,0 +1,39 @@
+package com.ktu.timetable.utils;
+
+/**
+ * Forward-only view of query results, one row at a time. The app reads SQLite cursors through
+ * it; benchmarks and tools can supply rows held in memory.
+ */
+public interface Rows {
+
+    /**
+     * Move to the next row
+     * @return false once past the last row
+     */
+    boolean moveToNext();
+
+    /**
+     * Move to the first row
+     * @return false if there are no rows
+     */
+    boolean moveToFirst();
+
+    /**
+     * @param columnName Column name
+     * @return Index of the column, or -1 if the results do not have it
+     */
+    int getColumnIndex(String columnName);
+
+    String getString(int columnIndex);
+
+    int getInt(int columnIndex);
+
+    long getLong(int columnIndex);
+
+    boolean isNull(int columnIndex);
+
+    /**
+     * Release the results
+     */
+    void close();
+}
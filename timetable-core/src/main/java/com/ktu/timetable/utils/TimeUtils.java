@@ -0,0 +1,55 @@
+package com.ktu.timetable.utils;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Helpers for working with class times as positions in the weekly grid
+ */
+public class TimeUtils {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private TimeUtils() {
+    }
+
+    /**
+     * Get the minute of the day for a date, ignoring the calendar date itself
+     * @param date Date to convert
+     * @return Minutes since midnight (0 - 1439), or -1 if date is null
+     */
+    public static int minuteOfDay(Date date) {
+        if (date == null) {
+            return -1;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+    }
+
+    /**
+     * Get the minute of the week of a time, counting from Monday 00:00 like the timetable does
+     * @param calendar Time to convert
+     * @return Minutes since Monday midnight (0 - 10079)
+     */
+    public static int minuteOfWeek(Calendar calendar) {
+        int daysSinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+        return daysSinceMonday * MINUTES_PER_DAY + calendar.get(Calendar.HOUR_OF_DAY) * 60
+                + calendar.get(Calendar.MINUTE);
+    }
+
+    /**
+     * Format a minute of the day as a 12-hour clock time
+     * @param minuteOfDay Minutes since midnight
+     * @return Formatted time, e.g. "9:30 AM"
+     */
+    public static String formatMinuteOfDay(int minuteOfDay) {
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        String amPm = hour < 12 ? "AM" : "PM";
+        int displayHour = hour % 12 == 0 ? 12 : hour % 12;
+        return String.format(Locale.US, "%d:%02d %s", displayHour, minute, amPm);
+    }
+}
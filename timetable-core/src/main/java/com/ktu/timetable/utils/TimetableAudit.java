@@ -0,0 +1,346 @@
+package com.ktu.timetable.utils;
+
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Checks a whole timetable for clashes: two classes in the same classroom, taught by the same
+ * lecturer or attended by the same department, level and semester at overlapping times.
+ *
+ * Entries are split by day, then grouped by classroom, lecturer and cohort. Each group is
+ * sorted by start time and swept once, keeping the classes still running, so every overlapping
+ * pair is found in O(n log n + clashes) instead of comparing every pair of entries. Days share
+ * nothing, so they can be audited in parallel.
+ *
+ * As in {@link ConflictIndex}, a cohort clash involving an elective course is soft: only students
+ * taking that elective are affected, so it is reported but counted apart from the hard clashes.
+ *
+ * Times are compared as minutes of the day with half-open intervals, as in
+ * {@link ConflictIndex}. Entries without a valid day and time are skipped.
+ */
+public final class TimetableAudit {
+
+    // Sort keys pack the group, the start minute and the position within the day
+    private static final int POSITION_BITS = 21;
+    private static final int START_BITS = 11;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    private static final long START_MASK = (1L << START_BITS) - 1;
+
+    private TimetableAudit() {
+    }
+
+    /**
+     * Two timetable entries that clash
+     */
+    public static class Clash {
+        private final String type;
+        private final TimetableEntry first;
+        private final TimetableEntry second;
+        private final boolean soft;
+
+        Clash(String type, TimetableEntry first, TimetableEntry second, boolean soft) {
+            this.type = type;
+            this.first = first;
+            this.second = second;
+            this.soft = soft;
+        }
+
+        /**
+         * @return One of the ConflictIndex.CONFLICT_ types
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return Entry that starts first, or either if both start together
+         */
+        public TimetableEntry getFirst() {
+            return first;
+        }
+
+        /**
+         * @return Entry that overlaps the first one
+         */
+        public TimetableEntry getSecond() {
+            return second;
+        }
+
+        /**
+         * @return true for a cohort clash involving an elective, which only affects students
+         * taking it
+         */
+        public boolean isSoft() {
+            return soft;
+        }
+    }
+
+    /**
+     * Outcome of an audit
+     */
+    public static class Report {
+        private final List<Clash> clashes;
+        private final Map<String, Integer> countsByType = new HashMap<>();
+        private final Map<String, Integer> countsByDepartment = new TreeMap<>();
+        private int softClashCount;
+
+        Report(List<Clash> clashes) {
+            this.clashes = Collections.unmodifiableList(clashes);
+            for (Clash clash : clashes) {
+                if (clash.isSoft()) {
+                    softClashCount++;
+                    continue;
+                }
+                increment(countsByType, clash.getType());
+                String firstDepartment = clash.getFirst().getDepartmentId();
+                String secondDepartment = clash.getSecond().getDepartmentId();
+                if (firstDepartment != null) {
+                    increment(countsByDepartment, firstDepartment);
+                }
+                if (secondDepartment != null && !secondDepartment.equals(firstDepartment)) {
+                    increment(countsByDepartment, secondDepartment);
+                }
+            }
+        }
+
+        private static void increment(Map<String, Integer> counts, String key) {
+            Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+
+        /**
+         * @return Every clash, hard and soft, by day and then by type
+         */
+        public List<Clash> getClashes() {
+            return clashes;
+        }
+
+        /**
+         * @param type One of the ConflictIndex.CONFLICT_ types
+         * @return Number of hard clashes of that type
+         */
+        public int getClashCount(String type) {
+            Integer count = countsByType.get(type);
+            return count == null ? 0 : count;
+        }
+
+        /**
+         * @return Number of hard clashes of every type
+         */
+        public int getHardClashCount() {
+            return clashes.size() - softClashCount;
+        }
+
+        /**
+         * @return Number of cohort clashes involving an elective
+         */
+        public int getSoftClashCount() {
+            return softClashCount;
+        }
+
+        /**
+         * @return Number of hard clashes involving each department, by department ID. A clash
+         * between two departments counts for both.
+         */
+        public Map<String, Integer> getClashCountsByDepartment() {
+            return Collections.unmodifiableMap(countsByDepartment);
+        }
+    }
+
+    /**
+     * Audit a timetable on the calling thread, treating every course as compulsory
+     * @param entries Entries to check
+     * @return Clashes found
+     */
+    public static Report audit(Collection<TimetableEntry> entries) {
+        return audit(entries, Collections.<Course>emptyList());
+    }
+
+    /**
+     * Audit a timetable on the calling thread
+     * @param entries Entries to check
+     * @param courses Courses to take the elective flag from
+     * @return Clashes found
+     */
+    public static Report audit(Collection<TimetableEntry> entries, Collection<Course> courses) {
+        Set<String> electiveCourseIds = electiveCourseIds(courses);
+        List<Clash> clashes = new ArrayList<>();
+        for (List<TimetableEntry> day : splitByDay(entries)) {
+            clashes.addAll(auditDay(day, electiveCourseIds));
+        }
+        return new Report(clashes);
+    }
+
+    /**
+     * Audit a timetable with each day checked as a separate task, treating every course as
+     * compulsory
+     * @param entries Entries to check
+     * @param executor Executor to run the days on
+     * @return Clashes found, in the same order as {@link #audit(Collection)}
+     * @throws InterruptedException If interrupted while waiting; the remaining days are cancelled
+     */
+    public static Report audit(Collection<TimetableEntry> entries, ExecutorService executor)
+            throws InterruptedException {
+        return audit(entries, Collections.<Course>emptyList(), executor);
+    }
+
+    /**
+     * Audit a timetable with each day checked as a separate task, then wait for all of them
+     * @param entries Entries to check
+     * @param courses Courses to take the elective flag from
+     * @param executor Executor to run the days on
+     * @return Clashes found, in the same order as {@link #audit(Collection, Collection)}
+     * @throws InterruptedException If interrupted while waiting; the remaining days are cancelled
+     */
+    public static Report audit(Collection<TimetableEntry> entries, Collection<Course> courses,
+                               ExecutorService executor) throws InterruptedException {
+        final Set<String> electiveCourseIds = electiveCourseIds(courses);
+        List<Future<List<Clash>>> days = new ArrayList<>();
+        try {
+            for (final List<TimetableEntry> day : splitByDay(entries)) {
+                days.add(executor.submit(new Callable<List<Clash>>() {
+                    @Override
+                    public List<Clash> call() {
+                        return auditDay(day, electiveCourseIds);
+                    }
+                }));
+            }
+
+            List<Clash> clashes = new ArrayList<>();
+            for (Future<List<Clash>> day : days) {
+                clashes.addAll(day.get());
+            }
+            return new Report(clashes);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<List<Clash>> day : days) {
+                day.cancel(true);
+            }
+        }
+    }
+
+    private static Set<String> electiveCourseIds(Collection<Course> courses) {
+        Set<String> ids = new HashSet<>();
+        for (Course course : courses) {
+            if (course.isElective() && course.getId() != null) {
+                ids.add(course.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static List<List<TimetableEntry>> splitByDay(Collection<TimetableEntry> entries) {
+        List<List<TimetableEntry>> days = new ArrayList<>();
+        for (int day = 0; day < WeekOccupancy.DAYS_IN_WEEK; day++) {
+            days.add(new ArrayList<TimetableEntry>());
+        }
+        for (TimetableEntry entry : entries) {
+            int day = entry.getDayOfWeek();
+            if (day >= 1 && day <= WeekOccupancy.DAYS_IN_WEEK) {
+                days.get(day - 1).add(entry);
+            }
+        }
+        return days;
+    }
+
+    private static List<Clash> auditDay(List<TimetableEntry> day, Set<String> electiveCourseIds) {
+        int count = day.size();
+        if (count > POSITION_MASK + 1) {
+            throw new IllegalArgumentException("Too many entries in one day: " + count);
+        }
+
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        String[] lecturers = new String[count];
+        String[] classrooms = new String[count];
+        String[] cohorts = new String[count];
+        boolean[] electives = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            TimetableEntry entry = day.get(i);
+            starts[i] = TimeUtils.minuteOfDay(entry.getStartTime());
+            ends[i] = TimeUtils.minuteOfDay(entry.getEndTime());
+            lecturers[i] = entry.getLecturerId();
+            classrooms[i] = entry.getClassroomId();
+            cohorts[i] = ConflictIndex.cohortKey(entry.getDepartmentId(), entry.getLevel(), entry.getSemester());
+            electives[i] = entry.getCourseId() != null && electiveCourseIds.contains(entry.getCourseId());
+        }
+
+        List<Clash> clashes = new ArrayList<>();
+        sweep(day, starts, ends, lecturers, null, ConflictIndex.CONFLICT_LECTURER, clashes);
+        sweep(day, starts, ends, classrooms, null, ConflictIndex.CONFLICT_CLASSROOM, clashes);
+        sweep(day, starts, ends, cohorts, electives, ConflictIndex.CONFLICT_COHORT, clashes);
+        return clashes;
+    }
+
+    /**
+     * Find the overlapping pairs within each group of one day
+     * @param keys Group of each entry, or null to leave it out
+     * @param softEntries Entries whose clashes are soft, or null if every clash is hard
+     */
+    private static void sweep(List<TimetableEntry> day, int[] starts, int[] ends, String[] keys,
+                              boolean[] softEntries, String type, List<Clash> clashes) {
+        Map<String, Integer> groupIds = new HashMap<>();
+        long[] order = new long[keys.length];
+        int size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null || starts[i] < 0 || ends[i] <= starts[i]) {
+                continue;
+            }
+            Integer groupId = groupIds.get(keys[i]);
+            if (groupId == null) {
+                groupId = groupIds.size();
+                groupIds.put(keys[i], groupId);
+            }
+            order[size++] = ((long) groupId << (START_BITS + POSITION_BITS))
+                    | ((long) starts[i] << POSITION_BITS) | i;
+        }
+        // Sorting the packed keys orders by group, then by start time
+        Arrays.sort(order, 0, size);
+
+        int[] running = new int[Math.max(1, size)];
+        int runningCount = 0;
+        long currentGroup = -1;
+        for (int k = 0; k < size; k++) {
+            long group = order[k] >>> (START_BITS + POSITION_BITS);
+            int start = (int) ((order[k] >>> POSITION_BITS) & START_MASK);
+            int position = (int) (order[k] & POSITION_MASK);
+            if (group != currentGroup) {
+                currentGroup = group;
+                runningCount = 0;
+            }
+
+            // Drop classes that ended by now; every class still running overlaps this one
+            int kept = 0;
+            for (int r = 0; r < runningCount; r++) {
+                int other = running[r];
+                if (ends[other] > start) {
+                    running[kept++] = other;
+                    boolean soft = softEntries != null && (softEntries[other] || softEntries[position]);
+                    clashes.add(new Clash(type, day.get(other), day.get(position), soft));
+                }
+            }
+            running[kept++] = position;
+            runningCount = kept;
+        }
+    }
+}
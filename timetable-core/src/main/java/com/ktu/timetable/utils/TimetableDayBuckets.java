@@ -0,0 +1,199 @@
+package com.ktu.timetable.utils;
+
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timetable entries split into one bucket per day, each sorted by start time when built.
+ *
+ * Each bucket also keeps, for every department, level, lecturer and classroom, the ascending
+ * positions of its entries. A filtered day view intersects the position lists of the active
+ * filters, starting from the shortest, so switching tabs or filters costs time in proportion to
+ * the matching rows rather than re-scanning and re-sorting the whole timetable.
+ */
+public class TimetableDayBuckets {
+
+    private static final Comparator<TimetableEntry> START_TIME_ORDER = new Comparator<TimetableEntry>() {
+        @Override
+        public int compare(TimetableEntry a, TimetableEntry b) {
+            int startA = TimeUtils.minuteOfDay(a.getStartTime());
+            int startB = TimeUtils.minuteOfDay(b.getStartTime());
+            return startA < startB ? -1 : (startA == startB ? 0 : 1);
+        }
+    };
+
+    private final DayBucket[] buckets = new DayBucket[WeekOccupancy.DAYS_IN_WEEK + 1];
+
+    /**
+     * @param entries Entries to index, in any order
+     */
+    public TimetableDayBuckets(Collection<TimetableEntry> entries) {
+        List<List<TimetableEntry>> byDay = new ArrayList<>();
+        for (int day = 0; day <= WeekOccupancy.DAYS_IN_WEEK; day++) {
+            byDay.add(new ArrayList<TimetableEntry>());
+        }
+        for (TimetableEntry entry : entries) {
+            int day = entry.getDayOfWeek();
+            if (day >= 1 && day <= WeekOccupancy.DAYS_IN_WEEK) {
+                byDay.get(day).add(entry);
+            }
+        }
+        for (int day = 1; day <= WeekOccupancy.DAYS_IN_WEEK; day++) {
+            buckets[day] = new DayBucket(byDay.get(day));
+        }
+    }
+
+    /**
+     * @param dayOfWeek Day of week (1 = Monday, 7 = Sunday)
+     * @return Entries of the day sorted by start time; empty for an invalid day
+     */
+    public List<TimetableEntry> getDay(int dayOfWeek) {
+        return getDay(dayOfWeek, null, null, null, null);
+    }
+
+    /**
+     * Get the entries of a day matching every filter that is set
+     * @param dayOfWeek Day of week (1 = Monday, 7 = Sunday)
+     * @param departmentId Department ID, or null for any
+     * @param level Student level, or null for any
+     * @param lecturerId Lecturer ID, or null for any
+     * @param classroomId Classroom ID, or null for any
+     * @return Matching entries sorted by start time
+     */
+    public List<TimetableEntry> getDay(int dayOfWeek, String departmentId, String level,
+                                       String lecturerId, String classroomId) {
+        if (dayOfWeek < 1 || dayOfWeek > WeekOccupancy.DAYS_IN_WEEK) {
+            return new ArrayList<>();
+        }
+        DayBucket bucket = buckets[dayOfWeek];
+
+        List<int[]> filters = new ArrayList<>();
+        if (!bucket.addFilter(filters, bucket.byDepartment, departmentId)
+                || !bucket.addFilter(filters, bucket.byLevel, level)
+                || !bucket.addFilter(filters, bucket.byLecturer, lecturerId)
+                || !bucket.addFilter(filters, bucket.byClassroom, classroomId)) {
+            return new ArrayList<>();
+        }
+        if (filters.isEmpty()) {
+            return new ArrayList<>(bucket.entries);
+        }
+
+        // Intersect from the shortest list so the work is bounded by the smallest match
+        Collections.sort(filters, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return a.length - b.length;
+            }
+        });
+        int[] positions = Arrays.copyOf(filters.get(0), filters.get(0).length);
+        int count = positions.length;
+        for (int i = 1; i < filters.size() && count > 0; i++) {
+            count = intersect(positions, count, filters.get(i));
+        }
+
+        List<TimetableEntry> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(bucket.entries.get(positions[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Keep only the positions also in another list. Both lists are ascending.
+     * @param positions Positions to narrow down, overwritten from the front
+     * @param count Number of positions in use
+     * @param other Positions to intersect with
+     * @return Number of positions kept
+     */
+    private static int intersect(int[] positions, int count, int[] other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < other.length; i++) {
+            while (j < other.length && other[j] < positions[i]) {
+                j++;
+            }
+            if (j < other.length && other[j] == positions[i]) {
+                positions[kept++] = positions[i];
+            }
+        }
+        return kept;
+    }
+
+    private static class DayBucket {
+        final List<TimetableEntry> entries;
+        final Map<String, int[]> byDepartment;
+        final Map<String, int[]> byLevel;
+        final Map<String, int[]> byLecturer;
+        final Map<String, int[]> byClassroom;
+
+        DayBucket(List<TimetableEntry> dayEntries) {
+            Collections.sort(dayEntries, START_TIME_ORDER);
+            entries = dayEntries;
+
+            Map<String, List<Integer>> departments = new HashMap<>();
+            Map<String, List<Integer>> levels = new HashMap<>();
+            Map<String, List<Integer>> lecturers = new HashMap<>();
+            Map<String, List<Integer>> classrooms = new HashMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                TimetableEntry entry = entries.get(i);
+                addPosition(departments, entry.getDepartmentId(), i);
+                addPosition(levels, entry.getLevel(), i);
+                addPosition(lecturers, entry.getLecturerId(), i);
+                addPosition(classrooms, entry.getClassroomId(), i);
+            }
+            byDepartment = toArrays(departments);
+            byLevel = toArrays(levels);
+            byLecturer = toArrays(lecturers);
+            byClassroom = toArrays(classrooms);
+        }
+
+        /**
+         * Add the position list for a filter value
+         * @return false if the filter is set but nothing on this day matches it
+         */
+        boolean addFilter(List<int[]> filters, Map<String, int[]> index, String key) {
+            if (key == null) {
+                return true;
+            }
+            int[] positions = index.get(key);
+            if (positions == null) {
+                return false;
+            }
+            filters.add(positions);
+            return true;
+        }
+
+        private static void addPosition(Map<String, List<Integer>> index, String key, int position) {
+            if (key == null) {
+                return;
+            }
+            List<Integer> positions = index.get(key);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                index.put(key, positions);
+            }
+            positions.add(position);
+        }
+
+        private static Map<String, int[]> toArrays(Map<String, List<Integer>> index) {
+            Map<String, int[]> arrays = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> item : index.entrySet()) {
+                List<Integer> positions = item.getValue();
+                int[] array = new int[positions.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = positions.get(i);
+                }
+                arrays.put(item.getKey(), array);
+            }
+            return arrays;
+        }
+    }
+}
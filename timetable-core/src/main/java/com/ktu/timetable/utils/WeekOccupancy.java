@@ -0,0 +1,226 @@
+package com.ktu.timetable.utils;
+
+import java.util.Arrays;
+
+/**
+ * Free/busy bitset over the teaching week.
+ *
+ * The week is split into 7 days of five-minute slots and each slot is one bit in a long[],
+ * so marking, testing and combining whole schedules are a few word operations. Bit index
+ * for a slot is (day - 1) * SLOTS_PER_DAY + slot.
+ */
+public class WeekOccupancy {
+
+    public static final int SLOT_MINUTES = 5;
+    public static final int SLOTS_PER_DAY = TimeUtils.MINUTES_PER_DAY / SLOT_MINUTES;
+    public static final int DAYS_IN_WEEK = 7;
+    public static final int SLOTS_PER_WEEK = SLOTS_PER_DAY * DAYS_IN_WEEK;
+
+    private static final int WORD_COUNT = (SLOTS_PER_WEEK + 63) >>> 6;
+
+    private final long[] words;
+
+    public WeekOccupancy() {
+        words = new long[WORD_COUNT];
+    }
+
+    public WeekOccupancy(WeekOccupancy other) {
+        words = other.words.clone();
+    }
+
+    /**
+     * Create a mask covering a single slot range
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @return Occupancy with only that range set
+     */
+    public static WeekOccupancy ofRange(int dayOfWeek, int startMinute, int endMinute) {
+        WeekOccupancy occupancy = new WeekOccupancy();
+        occupancy.mark(dayOfWeek, startMinute, endMinute);
+        return occupancy;
+    }
+
+    /**
+     * Mark a time range as busy. Start is rounded down and end rounded up to whole slots,
+     * so a partly used slot always counts as busy.
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @return false if the range is not a valid slot on the grid
+     */
+    public boolean mark(int dayOfWeek, int startMinute, int endMinute) {
+        if (!isValidRange(dayOfWeek, startMinute, endMinute)) {
+            return false;
+        }
+        setRange(firstBit(dayOfWeek, startMinute), lastBit(dayOfWeek, endMinute), true);
+        return true;
+    }
+
+    /**
+     * Mark a time range as free again
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     */
+    public void clear(int dayOfWeek, int startMinute, int endMinute) {
+        if (isValidRange(dayOfWeek, startMinute, endMinute)) {
+            setRange(firstBit(dayOfWeek, startMinute), lastBit(dayOfWeek, endMinute), false);
+        }
+    }
+
+    /**
+     * Check whether every slot in a range is free
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @return true if no slot in the range is busy
+     */
+    public boolean isFree(int dayOfWeek, int startMinute, int endMinute) {
+        if (!isValidRange(dayOfWeek, startMinute, endMinute)) {
+            return false;
+        }
+        int from = firstBit(dayOfWeek, startMinute);
+        int to = lastBit(dayOfWeek, endMinute);
+        int fromWord = from >>> 6;
+        int toWord = to >>> 6;
+
+        for (int word = fromWord; word <= toWord; word++) {
+            long mask = -1L;
+            if (word == fromWord) {
+                mask &= -1L << (from & 63);
+            }
+            if (word == toWord) {
+                mask &= -1L >>> (63 - (to & 63));
+            }
+            if ((words[word] & mask) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param other Occupancy to test against
+     * @return true if any slot is busy in both
+     */
+    public boolean intersects(WeekOccupancy other) {
+        for (int i = 0; i < WORD_COUNT; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add all busy slots of another occupancy to this one
+     * @param other Occupancy to merge in
+     */
+    public void or(WeekOccupancy other) {
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Keep only slots that are busy in both
+     * @param other Occupancy to intersect with
+     */
+    public void and(WeekOccupancy other) {
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Free every slot that is busy in another occupancy
+     * @param other Occupancy to subtract
+     */
+    public void andNot(WeekOccupancy other) {
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    /**
+     * @return true if no slot is busy
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of busy slots in the week
+     */
+    public int busySlotCount() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Free every slot in the week
+     */
+    public void reset() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * @param dayOfWeek Day of week (1 = Monday)
+     * @param startMinute Start in minutes since midnight
+     * @param endMinute End in minutes since midnight
+     * @return true if the range lies within one day of the grid
+     */
+    public static boolean isValidRange(int dayOfWeek, int startMinute, int endMinute) {
+        return dayOfWeek >= 1 && dayOfWeek <= DAYS_IN_WEEK
+                && startMinute >= 0 && endMinute > startMinute && endMinute <= TimeUtils.MINUTES_PER_DAY;
+    }
+
+    private static int firstBit(int dayOfWeek, int startMinute) {
+        return (dayOfWeek - 1) * SLOTS_PER_DAY + startMinute / SLOT_MINUTES;
+    }
+
+    private static int lastBit(int dayOfWeek, int endMinute) {
+        return (dayOfWeek - 1) * SLOTS_PER_DAY + (endMinute + SLOT_MINUTES - 1) / SLOT_MINUTES - 1;
+    }
+
+    private void setRange(int from, int to, boolean busy) {
+        int fromWord = from >>> 6;
+        int toWord = to >>> 6;
+
+        for (int word = fromWord; word <= toWord; word++) {
+            long mask = -1L;
+            if (word == fromWord) {
+                mask &= -1L << (from & 63);
+            }
+            if (word == toWord) {
+                mask &= -1L >>> (63 - (to & 63));
+            }
+            if (busy) {
+                words[word] |= mask;
+            } else {
+                words[word] &= ~mask;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(words, ((WeekOccupancy) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
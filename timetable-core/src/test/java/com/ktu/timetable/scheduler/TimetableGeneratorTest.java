@@ -0,0 +1,135 @@
+package com.ktu.timetable.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.Lecturer;
+import com.ktu.timetable.models.TimetableEntry;
+import com.ktu.timetable.utils.TimetableAudit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TimetableGeneratorTest {
+
+    @Test
+    public void generatesClashFreeTimetable() throws InterruptedException {
+        List<Course> courses = new ArrayList<>();
+        List<Lecturer> lecturers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Course course = new Course("course" + i, "C" + i, "Course " + i, "department" + (i % 4), 3);
+            course.setLevel(String.valueOf(100 * (1 + i % 3)));
+            course.setSemester("1");
+            courses.add(course);
+            if (i % 2 == 0) {
+                Lecturer lecturer = new Lecturer("lecturer" + i, null, "S" + i, "Lecturer", String.valueOf(i));
+                lecturer.setCourseIds(Arrays.asList("course" + i, "course" + (i + 1)));
+                lecturers.add(lecturer);
+            }
+        }
+        List<Classroom> classrooms = Arrays.asList(
+                new Classroom("room1", "Room 1", "Main", 60),
+                new Classroom("room2", "Room 2", "Main", 60),
+                new Classroom("room3", "Room 3", "Main", 60));
+
+        TimetableGenerator generator = new TimetableGenerator(courses, lecturers, classrooms);
+        generator.setThreadCount(1);
+        generator.setSeed(1);
+        generator.setTimeBudgetMillis(20000);
+        TimetableGenerator.Result result = generator.generate(null);
+
+        assertTrue(result.isClashFree());
+        assertTrue(result.getCoursesWithoutLecturer().isEmpty());
+        int periods = 0;
+        for (TimetableEntry entry : result.getEntries()) {
+            assertTrue(entry.getDayOfWeek() >= TimetableGenerator.DEFAULT_FIRST_DAY
+                    && entry.getDayOfWeek() <= TimetableGenerator.DEFAULT_LAST_DAY);
+            periods += (int) ((entry.getEndTime().getTime() - entry.getStartTime().getTime()) / (60 * 1000L)) / 60;
+        }
+        assertEquals(40 * 3, periods);
+        assertTrue(TimetableAudit.audit(result.getEntries()).getClashes().isEmpty());
+    }
+
+    @Test
+    public void practicalSessionsUseLabs() throws InterruptedException {
+        List<Course> courses = new ArrayList<>();
+        List<Lecturer> lecturers = new ArrayList<>();
+        List<String> practicalCourseIds = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Course course = new Course("course" + i, "C" + i, "Course " + i, "department" + (i % 3), 2);
+            course.setLevel("100");
+            course.setSemester("1");
+            courses.add(course);
+            if (i % 2 == 0) {
+                practicalCourseIds.add(course.getId());
+            }
+            Lecturer lecturer = new Lecturer("lecturer" + i, null, "S" + i, "Lecturer", String.valueOf(i));
+            lecturer.setCourseIds(Arrays.asList(course.getId()));
+            lecturers.add(lecturer);
+        }
+        Classroom lab = new Classroom("lab", "Lab", "Main", 40);
+        lab.setType(Classroom.TYPE_LAB);
+        Classroom computerRoom = new Classroom("computers", "Computer room", "Main", 40);
+        computerRoom.setHasComputers(true);
+        List<Classroom> classrooms = Arrays.asList(lab, computerRoom,
+                new Classroom("room1", "Room 1", "Main", 60),
+                new Classroom("room2", "Room 2", "Main", 60));
+
+        TimetableGenerator generator = new TimetableGenerator(courses, lecturers, classrooms);
+        generator.setPracticalCourseIds(practicalCourseIds);
+        generator.setThreadCount(1);
+        generator.setSeed(1);
+        generator.setTimeBudgetMillis(5000);
+        TimetableGenerator.Result result = generator.generate(null);
+
+        assertTrue(result.isClashFree());
+        int practicals = 0;
+        for (TimetableEntry entry : result.getEntries()) {
+            boolean inLab = entry.getClassroomId().equals("lab") || entry.getClassroomId().equals("computers");
+            if (TimetableEntry.TYPE_PRACTICAL.equals(entry.getType())) {
+                practicals++;
+                assertTrue(entry.getCourseId() + " practical outside a lab", inLab);
+            } else {
+                assertTrue(entry.getCourseId() + " lecture in a lab", !inLab);
+            }
+        }
+        // One practical session per practical course
+        assertEquals(practicalCourseIds.size(), practicals);
+    }
+
+    @Test
+    public void rejectsDayShorterThanOnePeriod() throws InterruptedException {
+        TimetableGenerator generator = new TimetableGenerator(
+                Arrays.asList(new Course("course1", "C1", "Course 1", "department1", 3)),
+                new ArrayList<Lecturer>(),
+                Arrays.asList(new Classroom("room1", "Room 1", "Main", 60)));
+        generator.setTeachingHours(8, 9, 90);
+        try {
+            generator.generate(null);
+            fail("A one-hour day cannot hold a 90 minute period");
+        } catch (IllegalStateException expected) {
+            // Rejected instead of splitting the course into empty sessions forever
+        }
+    }
+
+    @Test
+    public void rejectsEmptyTeachingWeek() throws InterruptedException {
+        TimetableGenerator generator = new TimetableGenerator(
+                Arrays.asList(new Course("course1", "C1", "Course 1", "department1", 3)),
+                new ArrayList<Lecturer>(),
+                Arrays.asList(new Classroom("room1", "Room 1", "Main", 60)));
+        generator.setTeachingDays(5, 1);
+        try {
+            generator.generate(null);
+            fail("Last teaching day before the first one");
+        } catch (IllegalStateException expected) {
+            // Rejected
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.ktu.timetable.utils;
+
+import static com.ktu.timetable.utils.TestEntries.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.TimetableEntry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ConflictIndexTest {
+
+    @Test
+    public void findsLecturerClassroomAndCohortClashes() {
+        TimetableEntry existing = entry("a", 1, 9 * 60, 11 * 60, "lecturer1", "room1", "cs", "100");
+        ConflictIndex index = new ConflictIndex();
+        index.build(Arrays.asList(existing));
+
+        List<ConflictIndex.Conflict> conflicts = index.findConflicts(
+                entry("b", 1, 10 * 60, 12 * 60, "lecturer1", "room1", "cs", "100"));
+
+        assertEquals(3, conflicts.size());
+        assertEquals(ConflictIndex.CONFLICT_LECTURER, conflicts.get(0).getType());
+        assertEquals(ConflictIndex.CONFLICT_CLASSROOM, conflicts.get(1).getType());
+        assertEquals(ConflictIndex.CONFLICT_COHORT, conflicts.get(2).getType());
+        for (ConflictIndex.Conflict conflict : conflicts) {
+            assertSame(existing, conflict.getEntry());
+            assertFalse(conflict.isSoft());
+        }
+        assertTrue(ConflictIndex.hasHardConflict(conflicts));
+    }
+
+    @Test
+    public void backToBackClassesDoNotClash() {
+        ConflictIndex index = new ConflictIndex();
+        index.build(Arrays.asList(entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100")));
+
+        assertTrue(index.findConflicts(entry("b", 1, 10 * 60, 11 * 60, "lecturer1", "room1", "cs", "100")).isEmpty());
+        assertTrue(index.findConflicts(entry("c", 1, 8 * 60, 9 * 60, "lecturer1", "room1", "cs", "100")).isEmpty());
+        assertTrue(index.findConflicts(entry("d", 2, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100")).isEmpty());
+    }
+
+    @Test
+    public void editedEntryDoesNotClashWithItsPreviousVersion() {
+        ConflictIndex index = new ConflictIndex();
+        index.build(Arrays.asList(entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100")));
+
+        assertTrue(index.findConflicts(entry("a", 1, 9 * 60 + 30, 10 * 60 + 30, "lecturer1", "room1", "cs", "100"))
+                .isEmpty());
+    }
+
+    @Test
+    public void cohortClashWithElectiveIsSoft() {
+        TimetableEntry core = entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100");
+        TimetableEntry elective = entry("b", 1, 9 * 60, 10 * 60, "lecturer2", "room2", "cs", "100");
+        Course electiveCourse = new Course(elective.getCourseId(), "CS150", "Elective", "cs", 3);
+        electiveCourse.setElective(true);
+
+        ConflictIndex index = new ConflictIndex();
+        index.build(Arrays.asList(core));
+        index.setElectiveCourses(Arrays.asList(electiveCourse));
+
+        List<ConflictIndex.Conflict> conflicts = index.findConflicts(elective);
+        assertEquals(1, conflicts.size());
+        assertTrue(conflicts.get(0).isSoft());
+        assertFalse(ConflictIndex.hasHardConflict(conflicts));
+
+        // Also soft the other way round, when the elective is already in the index
+        index.build(Arrays.asList(elective));
+        TimetableEntry otherCore = entry("c", 1, 9 * 60 + 30, 10 * 60 + 30, "lecturer3", "room3", "cs", "100");
+        conflicts = index.findConflicts(otherCore);
+        assertEquals(1, conflicts.size());
+        assertTrue(conflicts.get(0).isSoft());
+
+        // An elective does not soften lecturer or classroom clashes
+        conflicts = index.findConflicts(entry("d", 1, 9 * 60, 10 * 60, "lecturer2", "room2", "ee", "100"));
+        assertEquals(2, conflicts.size());
+        assertTrue(ConflictIndex.hasHardConflict(conflicts));
+    }
+
+    @Test
+    public void removeFreesTheSlot() {
+        ConflictIndex index = new ConflictIndex();
+        index.build(Arrays.asList(
+                entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100"),
+                entry("b", 1, 9 * 60, 10 * 60, "lecturer2", "room2", "ee", "100")));
+        TimetableEntry candidate = entry("c", 1, 9 * 60, 10 * 60, "lecturer1", "room2", "cs", "100");
+        assertEquals(3, index.findConflicts(candidate).size());
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertEquals(1, index.size());
+
+        List<ConflictIndex.Conflict> conflicts = index.findConflicts(candidate);
+        assertEquals(1, conflicts.size());
+        assertEquals(ConflictIndex.CONFLICT_CLASSROOM, conflicts.get(0).getType());
+    }
+
+    @Test
+    public void addReplacesPreviousVersionOfEntry() {
+        ConflictIndex index = new ConflictIndex();
+        index.add(entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100"));
+        index.add(entry("a", 3, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100"));
+
+        assertEquals(1, index.size());
+        assertTrue(index.findLecturerOverlaps("lecturer1", 1, 9 * 60, 10 * 60).isEmpty());
+        assertEquals(1, index.findLecturerOverlaps("lecturer1", 3, 9 * 60, 10 * 60).size());
+    }
+
+    @Test
+    public void overlapsMatchBruteForce() {
+        List<TimetableEntry> entries = TestEntries.random(500, 11);
+        ConflictIndex index = new ConflictIndex();
+        index.build(entries);
+        // Remove a few so the interval lists are also checked after removal
+        List<TimetableEntry> kept = new ArrayList<>();
+        for (TimetableEntry entry : entries) {
+            if (entry.getId().hashCode() % 5 == 0) {
+                index.remove(entry.getId());
+            } else {
+                kept.add(entry);
+            }
+        }
+
+        for (int day = 1; day <= 5; day++) {
+            for (int start = 8 * 60; start < 18 * 60; start += 20) {
+                TimetableEntry slot = entry(null, day, start, start + 45, null, null, null, null);
+                for (int i = 0; i < 8; i++) {
+                    String lecturerId = "lecturer" + i;
+                    assertEquals(expected(kept, slot, lecturerId, null, null),
+                            ids(index.findLecturerOverlaps(lecturerId, day, start, start + 45)));
+                }
+                for (int i = 0; i < 6; i++) {
+                    String classroomId = "classroom" + i;
+                    assertEquals(expected(kept, slot, null, classroomId, null),
+                            ids(index.findClassroomOverlaps(classroomId, day, start, start + 45)));
+                }
+                String cohort = ConflictIndex.cohortKey("department1", "200", "1");
+                assertEquals(expected(kept, slot, null, null, cohort),
+                        ids(index.findCohortOverlaps("department1", "200", "1", day, start, start + 45)));
+            }
+        }
+    }
+
+    private static Set<String> expected(List<TimetableEntry> entries, TimetableEntry slot,
+                                        String lecturerId, String classroomId, String cohort) {
+        Set<String> ids = new HashSet<>();
+        for (TimetableEntry entry : entries) {
+            boolean matches = lecturerId != null ? lecturerId.equals(entry.getLecturerId())
+                    : classroomId != null ? classroomId.equals(entry.getClassroomId())
+                    : cohort.equals(ConflictIndex.cohortKey(entry.getDepartmentId(), entry.getLevel(),
+                    entry.getSemester()));
+            if (matches && TestEntries.overlaps(entry, slot)) {
+                ids.add(entry.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> ids(List<TimetableEntry> entries) {
+        Set<String> ids = new HashSet<>();
+        for (TimetableEntry entry : entries) {
+            ids.add(entry.getId());
+        }
+        assertEquals("duplicate entries returned", entries.size(), ids.size());
+        return ids;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ktu.timetable.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvReaderTest {
+
+    @Test
+    public void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        List<String[]> records = readAll("code,name\n"
+                + "CS101,\"Programming, part 1\"\n"
+                + "CS102,\"The \"\"hard\"\" one\"\n"
+                + "CS103,\"Two\nlines\"\n"
+                + "CS104,\"\"\n");
+
+        assertEquals(5, records.size());
+        assertArrayEquals(new String[] {"CS101", "Programming, part 1"}, records.get(1));
+        assertArrayEquals(new String[] {"CS102", "The \"hard\" one"}, records.get(2));
+        assertArrayEquals(new String[] {"CS103", "Two\nlines"}, records.get(3));
+        assertArrayEquals(new String[] {"CS104", ""}, records.get(4));
+    }
+
+    @Test
+    public void strayQuoteInUnquotedFieldIsText() throws IOException {
+        List<String[]> records = readAll("Room 5\"A,12\n");
+
+        assertArrayEquals(new String[] {"Room 5\"A", "12"}, records.get(0));
+    }
+
+    @Test
+    public void everyLineEndingEndsARecord() throws IOException {
+        List<String[]> records = readAll("a,1\r\nb,2\rc,3\nd,4");
+
+        assertEquals(4, records.size());
+        assertArrayEquals(new String[] {"a", "1"}, records.get(0));
+        assertArrayEquals(new String[] {"b", "2"}, records.get(1));
+        assertArrayEquals(new String[] {"c", "3"}, records.get(2));
+        assertArrayEquals(new String[] {"d", "4"}, records.get(3));
+    }
+
+    @Test
+    public void blankLinesAreSkippedAndRecordLinesCounted() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,1\r\n\r\n\"b\nc\",2\n\nd,3\n\n"));
+
+        assertArrayEquals(new String[] {"a", "1"}, reader.readRecord());
+        assertEquals(1, reader.getRecordLine());
+        assertArrayEquals(new String[] {"b\nc", "2"}, reader.readRecord());
+        assertEquals(3, reader.getRecordLine());
+        assertArrayEquals(new String[] {"d", "3"}, reader.readRecord());
+        assertEquals(6, reader.getRecordLine());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void byteOrderMarkIsIgnored() throws IOException {
+        List<String[]> records = readAll("\uFEFFcode,name\nCS101,Programming\n");
+
+        assertArrayEquals(new String[] {"code", "name"}, records.get(0));
+        assertArrayEquals(new String[] {"CS101", "Programming"}, records.get(1));
+    }
+
+    @Test
+    public void byteOrderMarkAfterTheStartIsKept() throws IOException {
+        List<String[]> records = readAll("a\n\uFEFFb\n");
+
+        assertArrayEquals(new String[] {"\uFEFFb"}, records.get(1));
+    }
+
+    @Test
+    public void recordsSpanBufferRefills() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("code").append(i).append(",\"name, ").append(i).append("\"\r\n");
+        }
+        // Hand out a few characters at a time so \r\n and "" are split across reads
+        Reader trickle = new StringReader(text.toString()) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+        CsvReader reader = new CsvReader(trickle);
+
+        for (int i = 0; i < 2000; i++) {
+            assertArrayEquals(new String[] {"code" + i, "name, " + i}, reader.readRecord());
+            assertEquals(i + 1, reader.getRecordLine());
+        }
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void unterminatedQuoteRunsToTheEnd() throws IOException {
+        List<String[]> records = readAll("a,\"open\nstill open");
+
+        assertEquals(1, records.size());
+        assertArrayEquals(new String[] {"a", "open\nstill open"}, records.get(0));
+    }
+
+    private static List<String[]> readAll(String text) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(text))) {
+            String[] record;
+            while ((record = reader.readRecord()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
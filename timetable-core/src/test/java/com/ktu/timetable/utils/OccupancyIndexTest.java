@@ -0,0 +1,109 @@
+package com.ktu.timetable.utils;
+
+import static com.ktu.timetable.utils.TestEntries.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.ktu.timetable.models.Classroom;
+import com.ktu.timetable.models.TimetableEntry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class OccupancyIndexTest {
+
+    @Test
+    public void classroomAndLecturerAreBusyForTheirEntries() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.build(Arrays.asList(entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100")));
+
+        assertFalse(index.isClassroomFree("room1", 1, 9 * 60 + 30, 10 * 60 + 30));
+        assertFalse(index.isLecturerFree("lecturer1", 1, 9 * 60, 9 * 60 + 5));
+        assertTrue(index.isClassroomFree("room1", 1, 10 * 60, 11 * 60));
+        assertTrue(index.isClassroomFree("room2", 1, 9 * 60, 10 * 60));
+        assertTrue(index.isLecturerFree("lecturer1", 2, 9 * 60, 10 * 60));
+        assertNull(index.getLecturerOccupancy("lecturer2"));
+    }
+
+    @Test
+    public void removeKeepsSlotsOfOverlappingEntries() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.build(Arrays.asList(
+                entry("a", 1, 9 * 60, 11 * 60, "lecturer1", "room1", "cs", "100"),
+                entry("b", 1, 10 * 60, 12 * 60, "lecturer2", "room1", "cs", "200")));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+
+        assertTrue(index.isClassroomFree("room1", 1, 9 * 60, 10 * 60));
+        assertFalse(index.isClassroomFree("room1", 1, 10 * 60, 11 * 60));
+        assertTrue(index.isLecturerFree("lecturer1", 1, 9 * 60, 11 * 60));
+        assertFalse(index.isLecturerFree("lecturer2", 1, 11 * 60, 12 * 60));
+    }
+
+    @Test
+    public void addReplacesPreviousVersionOfEntry() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.add(entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100"));
+        index.add(entry("a", 2, 9 * 60, 10 * 60, "lecturer1", "room2", "cs", "100"));
+
+        assertTrue(index.isClassroomFree("room1", 1, 9 * 60, 10 * 60));
+        assertTrue(index.isLecturerFree("lecturer1", 1, 9 * 60, 10 * 60));
+        assertFalse(index.isClassroomFree("room2", 2, 9 * 60, 10 * 60));
+    }
+
+    @Test
+    public void invalidRangeIsNeverFree() {
+        OccupancyIndex index = new OccupancyIndex();
+
+        assertFalse(index.isClassroomFree("room1", 0, 9 * 60, 10 * 60));
+        assertFalse(index.isLecturerFree("lecturer1", 1, 10 * 60, 9 * 60));
+        assertTrue(index.findFreeClassrooms(classrooms(3), 1, 10 * 60, 9 * 60, 0).isEmpty());
+    }
+
+    @Test
+    public void freeClassroomsMatchBruteForce() {
+        List<TimetableEntry> entries = TestEntries.random(400, 7);
+        List<Classroom> classrooms = classrooms(8);
+        OccupancyIndex index = new OccupancyIndex();
+        index.build(entries);
+
+        for (int day = 1; day <= 5; day++) {
+            for (int start = 8 * 60; start < 18 * 60; start += 25) {
+                for (int minCapacity : new int[] {0, 40}) {
+                    TimetableEntry slot = entry(null, day, start, start + 50, null, null, null, null);
+                    List<Classroom> expected = new ArrayList<>();
+                    for (Classroom classroom : classrooms) {
+                        if (classroom.getCapacity() >= minCapacity
+                                && isFree(entries, classroom.getId(), slot)) {
+                            expected.add(classroom);
+                        }
+                    }
+                    assertEquals(expected, index.findFreeClassrooms(classrooms, day, start, start + 50, minCapacity));
+                }
+            }
+        }
+    }
+
+    private static boolean isFree(List<TimetableEntry> entries, String classroomId, TimetableEntry slot) {
+        for (TimetableEntry entry : entries) {
+            if (classroomId.equals(entry.getClassroomId()) && TestEntries.overlaps(entry, slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Classroom> classrooms(int count) {
+        List<Classroom> classrooms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            classrooms.add(new Classroom("classroom" + i, "Room " + i, "Main", 20 * (i + 1)));
+        }
+        return classrooms;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ktu.timetable.utils;
+
+import com.ktu.timetable.models.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Timetable entries for tests, built by hand or at random from a seed
+ */
+final class TestEntries {
+
+    private TestEntries() {
+    }
+
+    /**
+     * @return Entry with the given slot, lecturer, classroom and cohort
+     */
+    static TimetableEntry entry(String id, int dayOfWeek, int startMinute, int endMinute,
+                                String lecturerId, String classroomId, String departmentId, String level) {
+        TimetableEntry entry = new TimetableEntry();
+        entry.setId(id);
+        entry.setCourseId("course-" + id);
+        entry.setDayOfWeek(dayOfWeek);
+        entry.setStartTime(time(startMinute));
+        entry.setEndTime(time(endMinute));
+        entry.setLecturerId(lecturerId);
+        entry.setClassroomId(classroomId);
+        entry.setDepartmentId(departmentId);
+        entry.setLevel(level);
+        entry.setSemester("1");
+        return entry;
+    }
+
+    /**
+     * Random weekday entries on a five-minute grid between 8 AM and 6 PM, crowded onto a few
+     * lecturers, classrooms and cohorts so that clashes are common
+     * @param size Number of entries
+     * @param seed Random seed; the same seed gives the same entries
+     */
+    static List<TimetableEntry> random(int size, long seed) {
+        Random random = new Random(seed);
+        List<TimetableEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int start = 8 * 60 + random.nextInt(108) * 5;
+            int length = 5 * (6 + random.nextInt(31));
+            TimetableEntry entry = entry("e" + i, 1 + random.nextInt(5), start, start + length,
+                    "lecturer" + random.nextInt(8), "classroom" + random.nextInt(6),
+                    "department" + random.nextInt(3), String.valueOf(100 * (1 + random.nextInt(2))));
+            entry.setCourseId("course" + random.nextInt(20));
+            // Some entries lack a lecturer, classroom or cohort and must be left out of those checks
+            if (random.nextInt(20) == 0) {
+                entry.setLecturerId(null);
+            }
+            if (random.nextInt(20) == 0) {
+                entry.setClassroomId(null);
+            }
+            if (random.nextInt(20) == 0) {
+                entry.setLevel(null);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * @return Whether two entries are on the same day and their half-open times overlap
+     */
+    static boolean overlaps(TimetableEntry a, TimetableEntry b) {
+        return a.getDayOfWeek() == b.getDayOfWeek()
+                && TimeUtils.minuteOfDay(a.getStartTime()) < TimeUtils.minuteOfDay(b.getEndTime())
+                && TimeUtils.minuteOfDay(b.getStartTime()) < TimeUtils.minuteOfDay(a.getEndTime());
+    }
+
+    static Date time(int minuteOfDay) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2024, Calendar.JANUARY, 1, minuteOfDay / 60, minuteOfDay % 60);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,190 @@
+package com.ktu.timetable.utils;
+
+import static com.ktu.timetable.utils.TestEntries.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.ktu.timetable.models.Course;
+import com.ktu.timetable.models.TimetableEntry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TimetableAuditTest {
+
+    private static final String[] TYPES = {
+            ConflictIndex.CONFLICT_LECTURER, ConflictIndex.CONFLICT_CLASSROOM, ConflictIndex.CONFLICT_COHORT
+    };
+    // Key of the soft cohort clashes in the brute-force results
+    private static final String SOFT = "soft";
+
+    @Test
+    public void findsEachKindOfClash() {
+        TimetableAudit.Report report = TimetableAudit.audit(Arrays.asList(
+                entry("a", 1, 9 * 60, 11 * 60, "lecturer1", "room1", "cs", "100"),
+                entry("b", 1, 10 * 60, 12 * 60, "lecturer1", "room2", "ee", "100"),
+                entry("c", 1, 10 * 60, 11 * 60, "lecturer2", "room1", "ee", "200"),
+                entry("d", 1, 11 * 60, 12 * 60, "lecturer2", "room1", "cs", "100")));
+
+        assertEquals(1, report.getClashCount(ConflictIndex.CONFLICT_LECTURER));
+        assertEquals(1, report.getClashCount(ConflictIndex.CONFLICT_CLASSROOM));
+        assertEquals(0, report.getClashCount(ConflictIndex.CONFLICT_COHORT));
+        assertEquals(2, report.getClashes().size());
+        assertEquals(Integer.valueOf(2), report.getClashCountsByDepartment().get("cs"));
+        assertEquals(Integer.valueOf(2), report.getClashCountsByDepartment().get("ee"));
+    }
+
+    @Test
+    public void skipsEntriesWithoutValidSlot() {
+        TimetableEntry noTimes = entry("b", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100");
+        noTimes.setStartTime(null);
+        TimetableAudit.Report report = TimetableAudit.audit(Arrays.asList(
+                entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100"),
+                noTimes,
+                entry("c", 0, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100")));
+
+        assertTrue(report.getClashes().isEmpty());
+    }
+
+    @Test
+    public void cohortClashWithElectiveIsSoft() {
+        TimetableEntry core = entry("a", 1, 9 * 60, 10 * 60, "lecturer1", "room1", "cs", "100");
+        TimetableEntry elective = entry("b", 1, 9 * 60, 10 * 60, "lecturer2", "room2", "cs", "100");
+        TimetableEntry sameLecturer = entry("c", 1, 9 * 60, 10 * 60, "lecturer2", "room3", "ee", "100");
+        Course electiveCourse = new Course(elective.getCourseId(), "CS150", "Elective", "cs", 3);
+        electiveCourse.setElective(true);
+
+        TimetableAudit.Report report = TimetableAudit.audit(Arrays.asList(core, elective, sameLecturer),
+                Arrays.asList(electiveCourse));
+
+        assertEquals(2, report.getClashes().size());
+        assertEquals(1, report.getHardClashCount());
+        assertEquals(1, report.getSoftClashCount());
+        assertEquals(1, report.getClashCount(ConflictIndex.CONFLICT_LECTURER));
+        assertEquals(0, report.getClashCount(ConflictIndex.CONFLICT_COHORT));
+        // Only the hard lecturer clash counts for the departments
+        assertEquals(Integer.valueOf(1), report.getClashCountsByDepartment().get("cs"));
+        assertEquals(Integer.valueOf(1), report.getClashCountsByDepartment().get("ee"));
+    }
+
+    @Test
+    public void clashesMatchBruteForce() {
+        // Courses 0 to 4 of the random entries are electives
+        List<Course> courses = new ArrayList<>();
+        Set<String> electiveCourseIds = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            Course course = new Course("course" + i, "C" + i, "Course " + i, "department0", 3);
+            course.setElective(i < 5);
+            courses.add(course);
+            if (course.isElective()) {
+                electiveCourseIds.add(course.getId());
+            }
+        }
+
+        for (long seed = 1; seed <= 5; seed++) {
+            List<TimetableEntry> entries = TestEntries.random(300, seed);
+            Map<String, List<String>> expected = bruteForce(entries, electiveCourseIds);
+            TimetableAudit.Report report = TimetableAudit.audit(entries, courses);
+
+            for (String type : TYPES) {
+                assertEquals(type + " clashes for seed " + seed, expected.get(type), pairs(report, type, false));
+                assertEquals(expected.get(type).size(), report.getClashCount(type));
+            }
+            assertEquals("soft clashes for seed " + seed, expected.get(SOFT),
+                    pairs(report, ConflictIndex.CONFLICT_COHORT, true));
+            assertEquals(expected.get(SOFT).size(), report.getSoftClashCount());
+            assertTrue(report.getSoftClashCount() > 0);
+        }
+    }
+
+    @Test
+    public void parallelAuditMatchesSerial() throws InterruptedException {
+        List<TimetableEntry> entries = TestEntries.random(500, 42);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            TimetableAudit.Report serial = TimetableAudit.audit(entries);
+            TimetableAudit.Report parallel = TimetableAudit.audit(entries, executor);
+
+            assertEquals(serial.getClashes().size(), parallel.getClashes().size());
+            for (int i = 0; i < serial.getClashes().size(); i++) {
+                TimetableAudit.Clash a = serial.getClashes().get(i);
+                TimetableAudit.Clash b = parallel.getClashes().get(i);
+                assertEquals(a.getType(), b.getType());
+                assertEquals(a.getFirst(), b.getFirst());
+                assertEquals(a.getSecond(), b.getSecond());
+            }
+            assertEquals(serial.getClashCountsByDepartment(), parallel.getClashCountsByDepartment());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Compare every pair of entries
+     * @return Sorted "id|id" pairs by clash type, with soft cohort clashes under SOFT
+     */
+    private static Map<String, List<String>> bruteForce(List<TimetableEntry> entries, Set<String> electiveCourseIds) {
+        Map<String, List<String>> pairs = new HashMap<>();
+        for (String type : TYPES) {
+            pairs.put(type, new ArrayList<String>());
+        }
+        pairs.put(SOFT, new ArrayList<String>());
+        for (int i = 0; i < entries.size(); i++) {
+            for (int j = i + 1; j < entries.size(); j++) {
+                TimetableEntry a = entries.get(i);
+                TimetableEntry b = entries.get(j);
+                if (!TestEntries.overlaps(a, b)) {
+                    continue;
+                }
+                if (sameKey(a.getLecturerId(), b.getLecturerId())) {
+                    pairs.get(ConflictIndex.CONFLICT_LECTURER).add(pair(a, b));
+                }
+                if (sameKey(a.getClassroomId(), b.getClassroomId())) {
+                    pairs.get(ConflictIndex.CONFLICT_CLASSROOM).add(pair(a, b));
+                }
+                if (sameKey(cohort(a), cohort(b))) {
+                    boolean soft = electiveCourseIds.contains(a.getCourseId())
+                            || electiveCourseIds.contains(b.getCourseId());
+                    pairs.get(soft ? SOFT : ConflictIndex.CONFLICT_COHORT).add(pair(a, b));
+                }
+            }
+        }
+        for (List<String> typePairs : pairs.values()) {
+            Collections.sort(typePairs);
+        }
+        return pairs;
+    }
+
+    private static List<String> pairs(TimetableAudit.Report report, String type, boolean soft) {
+        List<String> pairs = new ArrayList<>();
+        for (TimetableAudit.Clash clash : report.getClashes()) {
+            if (clash.getType().equals(type) && clash.isSoft() == soft) {
+                pairs.add(pair(clash.getFirst(), clash.getSecond()));
+            }
+        }
+        Collections.sort(pairs);
+        return pairs;
+    }
+
+    private static String pair(TimetableEntry a, TimetableEntry b) {
+        return a.getId().compareTo(b.getId()) < 0 ? a.getId() + "|" + b.getId() : b.getId() + "|" + a.getId();
+    }
+
+    private static String cohort(TimetableEntry entry) {
+        return ConflictIndex.cohortKey(entry.getDepartmentId(), entry.getLevel(), entry.getSemester());
+    }
+
+    private static boolean sameKey(String a, String b) {
+        return a != null && a.equals(b);
+    }
+}
@@ -0,0 +1,99 @@
+package com.ktu.timetable.utils;
+
+import static com.ktu.timetable.utils.TestEntries.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.ktu.timetable.models.TimetableEntry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class TimetableDayBucketsTest {
+
+    @Test
+    public void dayIsSortedByStartTime() {
+        TimetableEntry late = entry("late", 2, 14 * 60, 15 * 60, "lecturer1", "room1", "cs", "100");
+        TimetableEntry early = entry("early", 2, 8 * 60, 9 * 60, "lecturer2", "room2", "cs", "100");
+        TimetableEntry other = entry("other", 3, 8 * 60, 9 * 60, "lecturer2", "room2", "cs", "100");
+        TimetableDayBuckets buckets = new TimetableDayBuckets(Arrays.asList(late, early, other));
+
+        assertEquals(Arrays.asList(early, late), buckets.getDay(2));
+        assertEquals(Arrays.asList(other), buckets.getDay(3));
+        assertTrue(buckets.getDay(1).isEmpty());
+        assertTrue(buckets.getDay(0).isEmpty());
+        assertTrue(buckets.getDay(8).isEmpty());
+    }
+
+    @Test
+    public void unknownFilterValueMatchesNothing() {
+        TimetableDayBuckets buckets = new TimetableDayBuckets(Arrays.asList(
+                entry("a", 1, 8 * 60, 9 * 60, "lecturer1", "room1", "cs", "100")));
+
+        assertTrue(buckets.getDay(1, "ee", null, null, null).isEmpty());
+        assertTrue(buckets.getDay(1, "cs", "100", "lecturer2", null).isEmpty());
+        assertEquals(1, buckets.getDay(1, "cs", "100", "lecturer1", "room1").size());
+    }
+
+    @Test
+    public void filtersMatchBruteForce() {
+        List<TimetableEntry> entries = TestEntries.random(600, 3);
+        TimetableDayBuckets buckets = new TimetableDayBuckets(entries);
+        String[] departments = {null, "department0", "department2"};
+        String[] levels = {null, "100", "200"};
+        String[] lecturers = {null, "lecturer1", "lecturer5"};
+        String[] classrooms = {null, "classroom0", "classroom3"};
+
+        for (int day = 1; day <= 7; day++) {
+            for (String department : departments) {
+                for (String level : levels) {
+                    for (String lecturer : lecturers) {
+                        for (String classroom : classrooms) {
+                            assertEquals(expected(entries, day, department, level, lecturer, classroom),
+                                    ids(buckets.getDay(day, department, level, lecturer, classroom)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> expected(List<TimetableEntry> entries, int day, String departmentId,
+                                         String level, String lecturerId, String classroomId) {
+        List<TimetableEntry> matching = new ArrayList<>();
+        for (TimetableEntry entry : entries) {
+            if (entry.getDayOfWeek() == day
+                    && matches(departmentId, entry.getDepartmentId())
+                    && matches(level, entry.getLevel())
+                    && matches(lecturerId, entry.getLecturerId())
+                    && matches(classroomId, entry.getClassroomId())) {
+                matching.add(entry);
+            }
+        }
+        // Collections.sort is stable, so ties keep their input order as in the buckets
+        Collections.sort(matching, new Comparator<TimetableEntry>() {
+            @Override
+            public int compare(TimetableEntry a, TimetableEntry b) {
+                return TimeUtils.minuteOfDay(a.getStartTime()) - TimeUtils.minuteOfDay(b.getStartTime());
+            }
+        });
+        return ids(matching);
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.equals(value);
+    }
+
+    private static List<String> ids(List<TimetableEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (TimetableEntry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,120 @@
+package com.ktu.timetable.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WeekOccupancyTest {
+
+    @Test
+    public void markedRangeIsBusyAndTheRestIsFree() {
+        WeekOccupancy occupancy = new WeekOccupancy();
+        assertTrue(occupancy.mark(2, 9 * 60, 10 * 60));
+
+        assertFalse(occupancy.isFree(2, 9 * 60, 10 * 60));
+        assertFalse(occupancy.isFree(2, 9 * 60 + 55, 11 * 60));
+        assertTrue(occupancy.isFree(2, 10 * 60, 11 * 60));
+        assertTrue(occupancy.isFree(2, 8 * 60, 9 * 60));
+        assertTrue(occupancy.isFree(1, 9 * 60, 10 * 60));
+        assertTrue(occupancy.isFree(3, 9 * 60, 10 * 60));
+        assertEquals(12, occupancy.busySlotCount());
+    }
+
+    @Test
+    public void partlyUsedSlotCountsAsBusy() {
+        WeekOccupancy occupancy = new WeekOccupancy();
+        occupancy.mark(1, 9 * 60 + 2, 9 * 60 + 7);
+
+        assertEquals(2, occupancy.busySlotCount());
+        assertFalse(occupancy.isFree(1, 9 * 60, 9 * 60 + 5));
+        assertFalse(occupancy.isFree(1, 9 * 60 + 5, 9 * 60 + 10));
+        assertTrue(occupancy.isFree(1, 9 * 60 + 10, 9 * 60 + 15));
+    }
+
+    @Test
+    public void rangesAcrossWordBoundariesMatchSlotBySlotCheck() {
+        // Every range on a few days, checked against a plain boolean array of slots
+        int step = 35;
+        for (int day = 1; day <= WeekOccupancy.DAYS_IN_WEEK; day += 3) {
+            for (int start = 0; start < TimeUtils.MINUTES_PER_DAY; start += step) {
+                WeekOccupancy occupancy = new WeekOccupancy();
+                boolean[] busy = new boolean[WeekOccupancy.SLOTS_PER_WEEK];
+                int end = Math.min(TimeUtils.MINUTES_PER_DAY, start + 7 * step);
+                occupancy.mark(day, start, end);
+                markSlots(busy, day, start, end);
+
+                for (int from = 0; from < TimeUtils.MINUTES_PER_DAY; from += step) {
+                    int to = Math.min(TimeUtils.MINUTES_PER_DAY, from + step);
+                    assertEquals("day " + day + " " + start + "-" + end + " vs " + from + "-" + to,
+                            isFree(busy, day, from, to), occupancy.isFree(day, from, to));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void clearFreesOnlyTheRange() {
+        WeekOccupancy occupancy = new WeekOccupancy();
+        occupancy.mark(4, 8 * 60, 12 * 60);
+        occupancy.clear(4, 9 * 60, 10 * 60);
+
+        assertTrue(occupancy.isFree(4, 9 * 60, 10 * 60));
+        assertFalse(occupancy.isFree(4, 8 * 60, 9 * 60));
+        assertFalse(occupancy.isFree(4, 10 * 60, 12 * 60));
+    }
+
+    @Test
+    public void invalidRangesAreRejected() {
+        WeekOccupancy occupancy = new WeekOccupancy();
+
+        assertFalse(occupancy.mark(0, 9 * 60, 10 * 60));
+        assertFalse(occupancy.mark(8, 9 * 60, 10 * 60));
+        assertFalse(occupancy.mark(1, 10 * 60, 10 * 60));
+        assertFalse(occupancy.mark(1, -5, 10));
+        assertFalse(occupancy.mark(1, 23 * 60, TimeUtils.MINUTES_PER_DAY + 5));
+        assertTrue(occupancy.isEmpty());
+        assertFalse(occupancy.isFree(1, 10 * 60, 9 * 60));
+    }
+
+    @Test
+    public void intersectsAndCombinations() {
+        WeekOccupancy monday = WeekOccupancy.ofRange(1, 9 * 60, 10 * 60);
+        WeekOccupancy mondayLater = WeekOccupancy.ofRange(1, 10 * 60, 11 * 60);
+        WeekOccupancy overlapping = WeekOccupancy.ofRange(1, 9 * 60 + 30, 10 * 60 + 30);
+
+        assertFalse(monday.intersects(mondayLater));
+        assertTrue(monday.intersects(overlapping));
+
+        WeekOccupancy both = new WeekOccupancy(monday);
+        both.or(mondayLater);
+        assertFalse(both.isFree(1, 9 * 60, 11 * 60));
+        assertEquals(24, both.busySlotCount());
+
+        both.andNot(monday);
+        assertTrue(both.isFree(1, 9 * 60, 10 * 60));
+        assertEquals(12, both.busySlotCount());
+
+        both.and(overlapping);
+        assertEquals(6, both.busySlotCount());
+        assertFalse(monday.isEmpty());
+    }
+
+    private static void markSlots(boolean[] busy, int day, int start, int end) {
+        int base = (day - 1) * WeekOccupancy.SLOTS_PER_DAY;
+        for (int minute = start; minute < end; minute++) {
+            busy[base + minute / WeekOccupancy.SLOT_MINUTES] = true;
+        }
+    }
+
+    private static boolean isFree(boolean[] busy, int day, int start, int end) {
+        int base = (day - 1) * WeekOccupancy.SLOTS_PER_DAY;
+        for (int minute = start; minute < end; minute++) {
+            if (busy[base + minute / WeekOccupancy.SLOT_MINUTES]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}